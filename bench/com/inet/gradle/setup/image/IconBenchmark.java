@@ -0,0 +1,221 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.image;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.inet.gradle.setup.image.icns.IcnsCodec;
+import com.inet.gradle.setup.image.icns.IconSuite;
+import com.inet.gradle.setup.image.image4j.codec.ico.ICODecoder;
+import com.inet.gradle.setup.image.image4j.codec.ico.ICOEncoder;
+
+/**
+ * Measure the icon codecs. For the icns codec the time and the allocated bytes per encoded and decoded icon suite are
+ * printed. For the ico encoder the time and the file size with raw bitmaps and with PNG compressed large entries are
+ * printed. The allocations are counted with the ThreadMXBean of the current thread, so only the single threaded icns
+ * codec is measured for allocations.
+ * <p>
+ * Run it with "gradle iconBenchmark". To get the numbers of an older version, run the same class against the classes
+ * of that version. The input images are created with a fixed seed, so the numbers are comparable.
+ *
+ * @author Volker Berlin
+ */
+public class IconBenchmark {
+
+    private static final int   ROUNDS     = 5;
+
+    private final int          iterations;
+
+    private final ThreadMXBean threads    = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Create a benchmark.
+     *
+     * @param iterations the count of operations per measured round
+     */
+    private IconBenchmark( int iterations ) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args optional the count of operations per round, default 2000
+     * @throws IOException if any error occur
+     */
+    public static void main( String[] args ) throws IOException {
+        IconBenchmark benchmark = new IconBenchmark( args.length > 0 ? Integer.parseInt( args[0] ) : 2000 );
+        benchmark.icns();
+        benchmark.ico();
+    }
+
+    /**
+     * Create a test image with a checker board and random noise. Noise and runs are needed so that the PackBits
+     * encoding of the icns codec has literal and repeated runs.
+     *
+     * @param size the width and height
+     * @param type the image type
+     * @param random the random source
+     * @return the image
+     */
+    private static BufferedImage createImage( int size, int type, Random random ) {
+        BufferedImage img = new BufferedImage( size, size, type );
+        for( int y = 0; y < size; y++ ) {
+            for( int x = 0; x < size; x++ ) {
+                int value;
+                if( ((x / 4 + y / 4) & 1) == 0 ) {
+                    value = 0xFF2060A0;
+                } else {
+                    value = random.nextInt( 4 ) == 0 ? random.nextInt() : 0x80FF0000 | (x & 0xFF) << 8;
+                }
+                img.setRGB( x, y, value );
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Measure the icns codec with a suite of 16, 32, 48 and 128 pixel icons. The 48 pixel icon is not an INT_ARGB
+     * image to measure also the slow path of the pixel access.
+     *
+     * @throws IOException if any error occur
+     */
+    private void icns() throws IOException {
+        Random random = new Random( 1 );
+        IconSuite suite = new IconSuite();
+        suite.setSmallIcon( createImage( IcnsCodec.SMALL_SIZE, BufferedImage.TYPE_INT_ARGB, random ) );
+        suite.setLargeIcon( createImage( IcnsCodec.LARGE_SIZE, BufferedImage.TYPE_INT_ARGB, random ) );
+        suite.setHugeIcon( createImage( IcnsCodec.HUGE_SIZE, BufferedImage.TYPE_4BYTE_ABGR, random ) );
+        suite.setThumbnailIcon( createImage( IcnsCodec.THUMBNAIL_SIZE, BufferedImage.TYPE_INT_ARGB, random ) );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new IcnsCodec().encode( suite, out );
+        byte[] data = out.toByteArray();
+        System.out.println( "icns: " + data.length + " bytes" );
+
+        OutputStream nul = new OutputStream() {
+            @Override
+            public void write( int b ) {
+                // discard
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len ) {
+                // discard
+            }
+        };
+        measure( "icns encode", () -> new IcnsCodec().encode( suite, nul ) );
+        measure( "icns decode", () -> new IcnsCodec().decode( new ByteArrayInputStream( data ) ) );
+    }
+
+    /**
+     * Measure the ico encoder with 16, 32, 48, 256 and 512 pixel images.
+     *
+     * @throws IOException if any error occur
+     */
+    private void ico() throws IOException {
+        Random random = new Random( 2 );
+        List<BufferedImage> images = new ArrayList<>();
+        for( int size : new int[] { 16, 32, 48, 256, 512 } ) {
+            images.add( createImage( size, BufferedImage.TYPE_INT_ARGB, random ) );
+        }
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        ICOEncoder.write( images, raw );
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ICOEncoder.writeCompressed( images, compressed );
+        int decoded = ICODecoder.read( new ByteArrayInputStream( compressed.toByteArray() ) ).size();
+        System.out.println( "ico: " + raw.size() + " bytes with bitmaps, " + compressed.size() + " bytes with PNG entries, " + decoded + " decoded images" );
+
+        int[] bpp = new int[images.size()];
+        Arrays.fill( bpp, 32 );
+        measureTime( "ico write", () -> ICOEncoder.write( images, bpp, new ByteArrayOutputStream() ) );
+        measureTime( "ico writeCompressed", () -> ICOEncoder.writeCompressed( images, new ByteArrayOutputStream() ) );
+    }
+
+    /**
+     * Measure the time and the allocated bytes of the current thread. The first rounds are the warm up, the result of
+     * the last round is printed.
+     *
+     * @param name the name of the operation
+     * @param operation the operation
+     * @throws IOException if any error occur
+     */
+    private void measure( String name, Operation operation ) throws IOException {
+        if( !(threads instanceof com.sun.management.ThreadMXBean) ) {
+            measureTime( name, operation );
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+        long thread = Thread.currentThread().getId();
+        for( int round = 1; round <= ROUNDS; round++ ) {
+            long bytes = allocations.getThreadAllocatedBytes( thread );
+            long start = System.nanoTime();
+            for( int i = 0; i < iterations; i++ ) {
+                operation.run();
+            }
+            long time = System.nanoTime() - start;
+            bytes = allocations.getThreadAllocatedBytes( thread ) - bytes;
+            if( round == ROUNDS ) {
+                System.out.printf( "%-20s %8d us/op %10d B/op%n", name, time / iterations / 1000, bytes / iterations );
+            }
+        }
+    }
+
+    /**
+     * Measure only the time, used for operations that run on other threads.
+     *
+     * @param name the name of the operation
+     * @param operation the operation
+     * @throws IOException if any error occur
+     */
+    private void measureTime( String name, Operation operation ) throws IOException {
+        int count = Math.max( 1, iterations / 100 );
+        for( int round = 1; round <= ROUNDS; round++ ) {
+            long start = System.nanoTime();
+            for( int i = 0; i < count; i++ ) {
+                operation.run();
+            }
+            long time = System.nanoTime() - start;
+            if( round == ROUNDS ) {
+                System.out.printf( "%-20s %8d us/op%n", name, time / count / 1000 );
+            }
+        }
+    }
+
+    /**
+     * A measured operation.
+     */
+    private interface Operation {
+
+        /**
+         * Run the operation once.
+         *
+         * @throws IOException if any error occur
+         */
+        void run() throws IOException;
+    }
+}
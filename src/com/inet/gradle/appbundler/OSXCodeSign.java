@@ -181,8 +181,37 @@ public class OSXCodeSign<T extends AbstractTask, S extends AbstractSetupBuilder>
      * @param path of the application
      */
     public void signApplication( File path ) {
+        unlockKeychain();
+        codesign( path );
+    }
 
+    /**
+     * Signed an application package in the background. Independent bundles are signed at the same time.
+     * Nested bundles must be signed before the bundle that contains it.
+     * Call {@link #awaitSignatures()} before the bundles are used.
+     * @param path of the application
+     */
+    public void signApplicationAsync( File path ) {
         unlockKeychain();
+        async( () -> {
+            codesign( path );
+            return null;
+        } );
+    }
+
+    /**
+     * Wait until all signatures of {@link #signApplicationAsync(File)} are finished.
+     * Throws the error of the first failed signing.
+     */
+    public void awaitSignatures() {
+        awaitAsync();
+    }
+
+    /**
+     * Call codesign for an application package
+     * @param path of the application
+     */
+    private void codesign( File path ) {
 
         // Codesign
         ArrayList<String> command = new ArrayList<>();
@@ -22,6 +22,7 @@ import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.plugins.BasePlugin;
 
+import com.inet.gradle.setup.abstracts.SetupStage;
 import com.inet.gradle.setup.dmg.Dmg;
 import com.inet.gradle.setup.msi.Msi;
 import com.inet.gradle.setup.unix.deb.Deb;
@@ -43,10 +44,11 @@ public class SetupBuilderPlugin implements Plugin<Project> {
         //        project.getPluginManager().apply( BasePlugin.class ); // API since Gradle 2.3
 
         project.getExtensions().create( "setupBuilder", SetupBuilder.class, project );
-        project.getTasks().create( "deb", Deb.class );
-        project.getTasks().create( "dmg", Dmg.class );
-        project.getTasks().create( "msi", Msi.class );
-        project.getTasks().create( "rpm", Rpm.class );
+        SetupStage stage = project.getTasks().create( SetupStage.NAME, SetupStage.class );
+        project.getTasks().create( "deb", Deb.class ).dependsOn( stage );
+        project.getTasks().create( "dmg", Dmg.class ).dependsOn( stage );
+        project.getTasks().create( "msi", Msi.class ).dependsOn( stage );
+        project.getTasks().create( "rpm", Rpm.class ).dependsOn( stage );
     }
 
 }
@@ -19,12 +19,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.initialization.BuildCancellationToken;
 import org.gradle.initialization.DefaultBuildCancellationToken;
+import org.gradle.process.ExecResult;
 import org.gradle.process.internal.DefaultExecAction;
 
 import com.inet.gradle.setup.util.IndentationOutputStream;
@@ -45,6 +50,8 @@ public abstract class AbstractBuilder<T extends AbstractTask, S extends Abstract
 
     protected File buildDir;
 
+    private AsyncSteps asyncSteps;
+
     /**
      * Builder abstraction
      * @param task concrete task
@@ -76,6 +83,16 @@ public abstract class AbstractBuilder<T extends AbstractTask, S extends Abstract
         exec( parameters, input, output, false);
     }
 
+    /**
+     * Execute an external process that can be aborted.
+     *
+     * @param parameters command line
+     * @param cancellation the process is destroyed if the token is canceled
+     */
+    protected void exec( ArrayList<String> parameters, BuildCancellationToken cancellation ) {
+        exec( parameters, null, null, false, cancellation );
+    }
+
     /**
      * Execute an external process.
      * Returns the response and ignores the exit value.
@@ -104,21 +121,34 @@ public abstract class AbstractBuilder<T extends AbstractTask, S extends Abstract
     }
 
     /**
-     * Execute an external process.
+     * Execute an external process. The call is recorded in the build report of the task.
      *
      * @param parameters command line
      * @param input optional InputStream for the process
      * @param output optional OutputStream for the process
      * @param ignoreExitValue true, does not throw an exception if the return code is not equals zero.
      */
-    @SuppressWarnings( "resource" )
     protected void exec( ArrayList<String> parameters, InputStream input, OutputStream output, boolean ignoreExitValue ) {
+        exec( parameters, input, output, ignoreExitValue, new DefaultBuildCancellationToken() );
+    }
+
+    /**
+     * Execute an external process. The call is recorded in the build report of the task.
+     *
+     * @param parameters command line
+     * @param input optional InputStream for the process
+     * @param output optional OutputStream for the process
+     * @param ignoreExitValue true, does not throw an exception if the return code is not equals zero.
+     * @param cancellation the process is destroyed if the token is canceled
+     */
+    @SuppressWarnings( "resource" )
+    protected void exec( ArrayList<String> parameters, InputStream input, OutputStream output, boolean ignoreExitValue, BuildCancellationToken cancellation ) {
         // print command line to the log
         StringBuilder log = new StringBuilder( "\tCommand: " );
         for( String para : parameters ) {
 
             if ( para == null ) {
-                task.getProject().getLogger().lifecycle( "Parameter not set. This will fail now:" + log.toString() );
+                task.getLogger().lifecycle( "Parameter not set. This will fail now:" + log.toString() );
             } else {
                 log.append( '\"' ).append( para );
                 if( para.endsWith( "\\" ) ) {
@@ -127,7 +157,13 @@ public abstract class AbstractBuilder<T extends AbstractTask, S extends Abstract
                 log.append( "\" " );
             }
         }
-        task.getProject().getLogger().lifecycle( log.toString() );
+        ByteArrayOutputStream asyncLog = AsyncSteps.currentLog();
+        if( asyncLog != null ) {
+            byte[] line = (log.toString() + '\n').getBytes( StandardCharsets.UTF_8 );
+            asyncLog.write( line, 0, line.length );
+        } else {
+            task.getLogger().lifecycle( log.toString() );
+        }
 
         /*// if gradleVersion < 4.5
         DefaultExecAction action = new DefaultExecAction( fileResolver );
@@ -144,23 +180,64 @@ public abstract class AbstractBuilder<T extends AbstractTask, S extends Abstract
             public void execute( Runnable command ) {
                 command.run();
             }
-        }, new DefaultBuildCancellationToken());
+        }, cancellation);
         //// endif
+        BuildReport.Exec record = task.getBuildReport().start( parameters );
         action.setCommandLine( parameters );
-        action.setIgnoreExitValue( ignoreExitValue );
+        action.setIgnoreExitValue( true ); // checked after recording the exit value
         action.setWorkingDir( buildDir );
         if( input != null ) {
             action.setStandardInput( input );
         }
         if( output == null ) {
-            output = new IndentationOutputStream( System.out );
+            output = new IndentationOutputStream( asyncLog != null ? asyncLog : System.out );
         }
-        action.setStandardOutput( output );
+        action.setStandardOutput( record.countStdout( output ) );
+        action.setErrorOutput( record.countStderr( asyncLog != null ? asyncLog : System.err ) );
+        Integer exitValue = null;
         try {
-            action.execute();
+            ExecResult result = action.execute();
+            exitValue = result.getExitValue();
             output.flush();
+            if( !ignoreExitValue ) {
+                result.assertNormalExitValue();
+            }
         } catch( Throwable th ) {
             throw new RuntimeException( th );
+        } finally {
+            record.finish( exitValue );
+        }
+    }
+
+    /**
+     * Run a step with external processes in the background, for example signing a file. At most
+     * {@link AbstractSetupBuilder#getMaxProcesses()} steps run at the same time. The log of a step is buffered and
+     * printed in the order of the calls by {@link #awaitAsync()}. If a step fails then the steps that are not started
+     * yet are skipped.
+     *
+     * @param step the step
+     * @param <R> the type of the result
+     * @return the future of the result
+     */
+    protected <R> Future<R> async( Callable<R> step ) {
+        if( asyncSteps == null ) {
+            int threads = task.getAbstractSetupBuilder().getMaxProcesses();
+            if( threads <= 0 ) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            asyncSteps = new AsyncSteps( threads, "SetupBuilder async " + task.getName(), task.getLogger()::lifecycle );
+        }
+        return asyncSteps.submit( step );
+    }
+
+    /**
+     * Wait until all steps of {@link #async(Callable)} are finished and print its log in the order of the calls.
+     *
+     * @throws RuntimeException the exception of the first failed step
+     */
+    protected void awaitAsync() {
+        if( asyncSteps != null ) {
+            asyncSteps.await();
         }
     }
 
@@ -18,14 +18,22 @@ package com.inet.gradle.setup.abstracts;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.gradle.api.Project;
 import org.gradle.api.file.CopySpec;
 import org.gradle.api.file.FileTree;
+import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.file.copy.CopySpecInternal;
+import org.gradle.api.internal.project.ProjectInternal;
 
 import com.inet.gradle.setup.image.ImageFactory;
+import com.inet.gradle.setup.util.ContentCache;
 import com.inet.gradle.setup.util.Logging;
 
 import groovy.lang.Closure;
@@ -38,6 +46,8 @@ public class AbstractSetupBuilder implements SetupSources {
 
     protected final Project        project;
 
+    private final FileResolver     fileResolver;
+
     private final CopySpecInternal rootSpec;
 
     private Object                 destinationDir;
@@ -68,12 +78,23 @@ public class AbstractSetupBuilder implements SetupSources {
 
     private String                 copyright;
 
+    private long                   buildCacheSize  = 1024;
+
+    private boolean                parallel;
+
+    private int                    maxProcesses;
+
+    private List<PackageEntry>     stagedEntries;
+
+    private Map<String, File>      stagedIcons     = new HashMap<>();
+
     /**
      * Create a new instance.
      * @param project current project
      */
     public AbstractSetupBuilder( Project project ) {
         this.project = project;
+        this.fileResolver = ((ProjectInternal)project).getFileResolver();
         this.rootSpec = (CopySpecInternal)project.copySpec( (Closure<CopySpec>)null );
 
         //init default location
@@ -95,6 +116,15 @@ public class AbstractSetupBuilder implements SetupSources {
         return project;
     }
 
+    /**
+     * Get the file resolver of the project. The resolver can be used outside of the task thread.
+     *
+     * @return the resolver
+     */
+    public FileResolver getFileResolver() {
+        return fileResolver;
+    }
+
     /**
      * Override to remove the annotation OutputDirectories in the Copy task. {@inheritDoc}
      */
@@ -239,14 +269,30 @@ public class AbstractSetupBuilder implements SetupSources {
     }
 
     /**
-     * Retrieve a specific icon from the icons set for the setup
+     * Retrieve a specific icon from the icons set for the setup. Every type is converted only once into the stage
+     * directory. Every call get its own copy in the given directory because the callers can move the file.
      * @param buildDir directory in which to put the icon
      * @param type of the icon to retrieve
      * @return the icon file
      * @throws IOException if an error occurs
      */
     public File getIconForType( File buildDir, String type ) throws IOException {
-        return ImageFactory.getImageFile( project, getIcons(), buildDir, type);
+        File stageDir = new File( getStageDir(), "icons/" + type );
+        File icon;
+        synchronized( stagedIcons ) {
+            icon = stagedIcons.get( type );
+            if( icon == null && !stagedIcons.containsKey( type ) ) {
+                stageDir.mkdirs();
+                icon = ImageFactory.getImageFile( fileResolver, getIcons(), stageDir, type );
+                stagedIcons.put( type, icon );
+            }
+        }
+        if( icon == null || !stageDir.equals( icon.getParentFile() ) ) {
+            return icon; // no icon or an original file of the icons
+        }
+        File copy = new File( buildDir, icon.getName() );
+        Files.copy( icon.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        return copy;
     }
 
     /**
@@ -402,4 +448,95 @@ public class AbstractSetupBuilder implements SetupSources {
     public void setCopyright( String copyright ) {
         this.copyright = copyright;
     }
+
+    /**
+     * Get the maximum size of the persistent build cache in megabytes.
+     * @return the size, 0 if the cache is disabled
+     */
+    public long getBuildCacheSize() {
+        return buildCacheSize;
+    }
+
+    /**
+     * Set the maximum size of the persistent build cache in megabytes. The cache is located in the Gradle user home and
+     * holds already compressed package content of unchanged files and extracted JRE archives. Every type of content
+     * has its own limit. The least recently used entries are removed if the size is exceeded. The default is 1024.
+     * @param buildCacheSize the size, 0 disables the cache
+     */
+    public void setBuildCacheSize( long buildCacheSize ) {
+        this.buildCacheSize = buildCacheSize;
+    }
+
+    /**
+     * If the setup tasks run in parallel with the Gradle worker API.
+     * @return true, if parallel
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Run the setup tasks in parallel with the Gradle worker API. Every task still run in its own build directory. All
+     * tasks share the files of the setupStage task. The files are prepared on the task thread, only the writing of the
+     * deb and rpm package run as work item. Requires Gradle 4.2 or higher. The default is false.
+     * @param parallel true, to run the tasks in parallel
+     */
+    public void setParallel( boolean parallel ) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Get the maximum count of external processes that a setup task run at the same time.
+     * @return the count, 0 for the count of available processors
+     */
+    public int getMaxProcesses() {
+        return maxProcesses;
+    }
+
+    /**
+     * Set the maximum count of external processes that a setup task run at the same time. Independent steps like the
+     * signing of multiple launchers can overlap. The default is 0, the count of available processors. The value 1 run
+     * all processes one after another.
+     * @param maxProcesses the count, 0 for the count of available processors
+     */
+    public void setMaxProcesses( int maxProcesses ) {
+        this.maxProcesses = maxProcesses;
+    }
+
+    /**
+     * The directory of the shared setupStage task.
+     * @return the directory
+     */
+    File getStageDir() {
+        return new File( project.getBuildDir(), "setupStage" );
+    }
+
+    /**
+     * The resolved entries of the shared CopySpec. They are set from the setupStage task.
+     * @return the entries or null if the stage was not executed
+     */
+    List<PackageEntry> getStagedEntries() {
+        return stagedEntries;
+    }
+
+    /**
+     * Set the resolved entries of the shared CopySpec.
+     * @param stagedEntries the entries
+     */
+    void setStagedEntries( List<PackageEntry> stagedEntries ) {
+        this.stagedEntries = stagedEntries;
+    }
+
+    /**
+     * Get the persistent build cache for content of the given type.
+     * @param type the type of the content, used as sub directory
+     * @return the cache or null if disabled
+     */
+    public ContentCache getBuildCache( String type ) {
+        if( buildCacheSize <= 0 ) {
+            return null;
+        }
+        File dir = new File( project.getGradle().getGradleUserHomeDir(), "caches/setupbuilder/" + type );
+        return new ContentCache( dir, buildCacheSize * 1024 * 1024 );
+    }
 }
@@ -20,7 +20,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -54,7 +57,12 @@ import org.gradle.api.tasks.WorkResults;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 //// endif
 import org.gradle.internal.reflect.Instantiator;
+//// if gradleVersion >= 4.2
+import org.gradle.workers.IsolationMode;
+import org.gradle.workers.WorkerExecutor;
+//// endif
 
+import com.inet.gradle.setup.util.ResourceUtils;
 import com.inet.gradle.setup.util.TempPath;
 
 import groovy.lang.Closure;
@@ -72,6 +80,14 @@ public abstract class AbstractTask extends DefaultTask implements SetupSources {
 
     private String                 extension, classifier, version;
 
+    private volatile BuildReport   buildReport = new BuildReport();
+
+    private List<PackageEntry>     stagedEntries;
+
+    private List<PackageEntry>     generatedEntries = new ArrayList<>();
+
+    private PackageJob             packageJob;
+
     /**
      * Constructor with indication to artifact result
      * Runs with the default SetupBuilder for dmg, msi ...
@@ -94,17 +110,95 @@ public abstract class AbstractTask extends DefaultTask implements SetupSources {
     }
 
     /**
-     * The action called from Gradle
+     * The action called from Gradle. If parallel is enabled and the builder has handed over a package job then the
+     * package file is written by a work item of the worker API and the other setup tasks can start.
      */
     @TaskAction
     public void action() {
-        build();
+        prepareBuild();
+        buildSetup();
+        //// if gradleVersion >= 4.2
+        PackageJob job = packageJob;
+        if( job != null ) {
+            packageJob = null;
+            // the artifact is added on the task thread because the configuration is not thread safe
+            addArtifact( new Date() );
+            getWorkerExecutor().submit( SetupWorker.class, config -> {
+                config.setIsolationMode( IsolationMode.NONE );
+                config.setDisplayName( "Write " + getSetupFile().getName() );
+                config.params( job );
+            } );
+            return;
+        }
+        //// endif
+        addArtifact( new Date( getSetupFile().lastModified() ) );
+    }
+
+    /**
+     * Prepare the build. It is called on the task thread before the build. In parallel mode this resolves the CopySpec
+     * of the task into staged entries, so that a {@link PackageJob} can write them without the project. Tasks that
+     * need more override it.
+     */
+    protected void prepareBuild() {
+        if( !setupBuilder.isParallel() ) {
+            return; // the build run on the task thread and streams the files directly
+        }
+        File stageDir = new File( getStagingDir(), "files" );
+        try {
+            if( stageDir.exists() ) {
+                ResourceUtils.deleteDirectory( stageDir.toPath() );
+            }
+        } catch( IOException ex ) {
+            throw new GradleException( "Can not delete: " + stageDir, ex );
+        }
+        List<PackageEntry> entries = new ArrayList<>();
+        processFiles( details -> entries.add( PackageEntry.stage( details, stageDir ) ), rootSpec );
+        stagedEntries = Collections.unmodifiableList( entries );
+    }
+
+    /**
+     * Build the setup and check the result. The report of the external processes is written next to the setup file. A
+     * handed over package job is not executed yet.
+     */
+    private void buildSetup() {
+        buildReport = new BuildReport();
+        packageJob = null;
         File setupFile = getSetupFile();
-        if( !setupFile.exists() ) {
-            throw new GradleException( "Setup file was not created: " + setupFile );
+        try {
+            build();
+            if( packageJob == null && !setupFile.exists() ) {
+                throw new GradleException( "Setup file was not created: " + setupFile );
+            }
+        } finally {
+            File reportFile = new File( setupFile.getPath() + ".report.json" );
+            try {
+                reportFile.getParentFile().mkdirs();
+                buildReport.write( reportFile, getName(), setupFile );
+                getLogger().info( "Build report: " + reportFile );
+            } catch( IOException ex ) {
+                getLogger().warn( "Build report could not be written: " + ex );
+            }
+            stagedEntries = null;
+            generatedEntries.clear();
         }
+    }
+
+    /**
+     * The report of the external processes of the current build.
+     *
+     * @return the report
+     */
+    BuildReport getBuildReport() {
+        return buildReport;
+    }
+
+    /**
+     * Add the setup file as artifact to the archives configuration.
+     * @param date the date of the artifact
+     */
+    private void addArtifact( Date date ) {
         Configuration archives = getProject().getConfigurations().getByName( "archives" );
-        archives.getArtifacts().add( new DefaultPublishArtifact( setupBuilder.getAppIdentifier(), extension, extension, classifier, new Date(setupFile.lastModified()), setupFile, this ) );
+        archives.getArtifacts().add( new DefaultPublishArtifact( setupBuilder.getAppIdentifier(), extension, extension, classifier, date, getSetupFile(), this ) );
     }
 
     /**
@@ -112,32 +206,84 @@ public abstract class AbstractTask extends DefaultTask implements SetupSources {
      * @param target the target directory
      */
     public void copyTo( File target ) {
-        processFiles( new CopyActionProcessingStreamAction() {
+        processEntries( "", entry -> {
+//            entry.copyTo( new File( target, entry.getRelativePath() ) ); // didn't work with mounted smb devices under Unix
+            if( !entry.isDirectory() ) {
+                File f = new File( target, entry.getRelativePath() );
+                if(!f.getParentFile().exists()) {
+                    f.getParentFile().mkdirs(); // the parent directory must be created, else the copy fails
+                }
+                try( InputStream input = entry.open() ) {
+                    Files.copy( input, f.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Hand all files and directories of this task to a package writer. The content is streamed from the sources so that
+     * no copy in the temporary directory is needed. The shared files are taken from the setupStage task if it was
+     * executed and the files of this task from {@link #prepareBuild()} in parallel mode. The generated files follow at
+     * the end.
+     * @param targetRoot the root of the entries in the package, empty for the package root
+     * @param action the action that should be process for every entry
+     */
+    public void processEntries( String targetRoot, PackageEntryAction action ) {
+        CopyActionProcessingStreamAction copyAction = new CopyActionProcessingStreamAction() {
             @Override
             public void processFile( FileCopyDetailsInternal details ) {
-//                details.copyTo( details.getRelativePath().getFile( target ) ); // didn't work with mounted smb devices under Unix
-                if( !details.isDirectory() ) {
-                    try {
-                        File f = details.getRelativePath().getFile( target );
-                        if(!f.getParentFile().exists()) {
-                            f.getParentFile().mkdirs(); // the parent directory must be created, else the copy fails
-                        }
-                        try( InputStream input = details.open() ) {
-                            Files.copy( input, f.toPath(), StandardCopyOption.REPLACE_EXISTING );
-                        }
-                    } catch (IOException ex) {
-                        throw new RuntimeException(ex);
-                    }
+                try {
+                    action.process( new PackageEntry( details, targetRoot ) );
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
                 }
             }
-        } );
+        };
+        List<PackageEntry> sharedEntries = setupBuilder.getStagedEntries();
+        if( sharedEntries == null ) {
+            processFiles( copyAction, setupBuilder.getRootSpec() );
+        } else {
+            processEntries( sharedEntries, targetRoot, action );
+        }
+        if( stagedEntries == null ) {
+            processFiles( copyAction, rootSpec );
+        } else {
+            processEntries( stagedEntries, targetRoot, action );
+        }
+        processEntries( generatedEntries, targetRoot, action );
+    }
+
+    /**
+     * Hand resolved entries to a package writer.
+     * @param entries the entries
+     * @param targetRoot the root of the entries in the package, empty for the package root
+     * @param action the action that should be process for every entry
+     */
+    private static void processEntries( List<PackageEntry> entries, String targetRoot, PackageEntryAction action ) {
+        for( PackageEntry entry : entries ) {
+            try {
+                action.process( entry.withTargetRoot( targetRoot ) );
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    /**
+     * Add a file that was created by the build, for example a launcher. It is added after the files of the CopySpecs
+     * for the rest of the current build, the CopySpec of the task is not changed.
+     * @param file the created file
+     * @param directory the directory in the package relative to the target root, null or empty for the root
+     */
+    public void addGeneratedFile( File file, String directory ) {
+        generatedEntries.add( PackageEntry.generated( file, directory ) );
     }
 
     /**
      * Handle all files of this task.
      * @param action the action that should be process for every file
      */
-    protected void processFiles( CopyActionProcessingStreamAction action ) {
+    public void processFiles( CopyActionProcessingStreamAction action ) {
         processFiles( action, setupBuilder.getRootSpec() );
         processFiles( action, rootSpec );
     }
@@ -147,7 +293,19 @@ public abstract class AbstractTask extends DefaultTask implements SetupSources {
      * @param action the action that should be process for every file
      */
     private void processFiles( CopyActionProcessingStreamAction action, CopySpecInternal copySpec ) {
-        if( setupBuilder.isFailOnEmptyFrom() ) {
+        processFiles( action, copySpec, setupBuilder.isFailOnEmptyFrom(), getInstantiator(), getFileSystem() );
+    }
+
+    /**
+     * Handle all files of the CopySpec.
+     * @param action the action that should be process for every file
+     * @param copySpec the CopySpec
+     * @param failOnEmptyFrom true, if every from must select files
+     * @param instantiator the Gradle instantiator
+     * @param fileSystem the Gradle file system
+     */
+    static void processFiles( CopyActionProcessingStreamAction action, CopySpecInternal copySpec, boolean failOnEmptyFrom, Instantiator instantiator, FileSystem fileSystem ) {
+        if( failOnEmptyFrom ) {
             for( CopySpecInternal cs : copySpec.getChildren() ) {
                 CopySpecResolver rootResolver = cs.buildRootResolver();
                 Set<File> files = rootResolver.getAllSource().getFiles();
@@ -172,9 +330,9 @@ public abstract class AbstractTask extends DefaultTask implements SetupSources {
         }
 
         /*// if gradleVersion < 3.4
-        CopyActionExecuter copyActionExecuter = new CopyActionExecuter( getInstantiator(), getFileSystem() );
+        CopyActionExecuter copyActionExecuter = new CopyActionExecuter( instantiator, fileSystem );
         */// else
-        CopyActionExecuter copyActionExecuter = new CopyActionExecuter( getInstantiator(), getFileSystem(), true );
+        CopyActionExecuter copyActionExecuter = new CopyActionExecuter( instantiator, fileSystem, true );
         //// endif
 
         CopyAction copyAction = new CopyAction() {
@@ -211,6 +369,13 @@ public abstract class AbstractTask extends DefaultTask implements SetupSources {
         throw new UnsupportedOperationException();
     }
 
+    //// if gradleVersion >= 4.2
+    @Inject
+    protected WorkerExecutor getWorkerExecutor() {
+        throw new UnsupportedOperationException();
+    }
+    //// endif
+
     /**
      * The platform depending build.
      */
@@ -267,6 +432,40 @@ public abstract class AbstractTask extends DefaultTask implements SetupSources {
         return new File( setupBuilder.getDestinationDir(), setupFile.toString() );
     }
 
+    /**
+     * The directory for files that are prepared on the task thread before the build, for example the resolved files of
+     * the CopySpec in parallel mode. It is not inside of the temporary directory because the temporary directory of the
+     * deb task is the root of the package.
+     *
+     * @return the directory
+     */
+    public File getStagingDir() {
+        return new File( setupBuilder.getStageDir(), "tasks/" + getName() );
+    }
+
+    /**
+     * If the package file should be written by a work item of the Gradle worker API. Then a builder that supports it
+     * hands over a {@link PackageJob} with {@link #setPackageJob(PackageJob)} instead of writing the package.
+     *
+     * @return true, if parallel
+     */
+    public boolean isParallel() {
+        /*// if gradleVersion < 4.2
+        return false;
+        */// else
+        return setupBuilder.isParallel();
+        //// endif
+    }
+
+    /**
+     * Hand over the job that writes the package file in parallel mode. The job is submitted after the build.
+     *
+     * @param job the job
+     */
+    public void setPackageJob( PackageJob job ) {
+        this.packageJob = job;
+    }
+
     /**
      * Get the file extension.
      *
@@ -168,7 +168,7 @@ public class Application {
      * @throws IOException if an error occurs on reading the image files
      */
     public File getIconForType( File buildDir, String type ) throws IOException {
-        return ImageFactory.getImageFile( setup.getProject(), getIcons(), buildDir, type );
+        return ImageFactory.getImageFile( setup.getFileResolver(), getIcons(), buildDir, type );
     }
 
     /**
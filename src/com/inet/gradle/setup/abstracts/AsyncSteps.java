@@ -0,0 +1,204 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+/**
+ * The background steps of a builder, see {@link AbstractBuilder#async(Callable)}. The first failure of a step is
+ * recorded and thrown by {@link #await()}. Steps that start after a failure are skipped, running steps are not
+ * interrupted.
+ *
+ * @author Volker Berlin
+ */
+class AsyncSteps {
+
+    private static final ThreadLocal<ByteArrayOutputStream> LOG   = new ThreadLocal<>();
+
+    private final int                                       threads;
+
+    private final String                                    threadName;
+
+    private final Consumer<String>                          logger;
+
+    private final List<Step<?>>                             steps = new ArrayList<>();
+
+    private ExecutorService                                 executor;
+
+    private Throwable                                       failure;
+
+    /**
+     * Create a new instance.
+     *
+     * @param threads the maximum count of steps that run at the same time
+     * @param threadName the name of the threads
+     * @param logger receives the buffered log of every step
+     */
+    AsyncSteps( int threads, String threadName, Consumer<String> logger ) {
+        this.threads = threads;
+        this.threadName = threadName;
+        this.logger = logger;
+    }
+
+    /**
+     * Get the log buffer of the step that runs on the current thread.
+     *
+     * @return the buffer or null if the current thread does not run a step
+     */
+    static ByteArrayOutputStream currentLog() {
+        return LOG.get();
+    }
+
+    /**
+     * Start a step in the background.
+     *
+     * @param step the step
+     * @param <R> the type of the result
+     * @return the future of the result
+     */
+    <R> Future<R> submit( Callable<R> step ) {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        FutureTask<R> future = new FutureTask<>( () -> {
+            synchronized( steps ) {
+                if( failure != null ) {
+                    throw new CancellationException( "Skipped because a previous step has failed" );
+                }
+            }
+            LOG.set( log );
+            try {
+                return step.call();
+            } catch( Throwable th ) {
+                synchronized( steps ) {
+                    if( failure == null ) {
+                        failure = th;
+                    }
+                }
+                throw th;
+            } finally {
+                LOG.remove();
+            }
+        } );
+        synchronized( steps ) {
+            if( executor == null ) {
+                executor = Executors.newFixedThreadPool( threads, runnable -> {
+                    Thread thread = new Thread( runnable, threadName );
+                    thread.setDaemon( true );
+                    return thread;
+                } );
+            }
+            steps.add( new Step<>( future, log ) );
+        }
+        executor.execute( future );
+        return future;
+    }
+
+    /**
+     * Wait until all steps are finished and log the output in the order of the calls. The steps stay registered until
+     * they are joined, so that a failure while waiting skips also the steps that are not started yet.
+     *
+     * @throws RuntimeException the exception of the first failed step
+     */
+    void await() {
+        List<Step<?>> joined;
+        synchronized( steps ) {
+            joined = new ArrayList<>( steps );
+        }
+        List<Throwable> others = new ArrayList<>();
+        Throwable first;
+        try {
+            for( Step<?> step : joined ) {
+                try {
+                    step.future.get();
+                } catch( ExecutionException ex ) {
+                    Throwable cause = ex.getCause();
+                    if( !(cause instanceof CancellationException) ) {
+                        others.add( cause );
+                    }
+                } catch( InterruptedException ex ) {
+                    Thread.currentThread().interrupt();
+                    synchronized( steps ) {
+                        for( Step<?> other : steps ) {
+                            other.future.cancel( true );
+                        }
+                    }
+                    throw new RuntimeException( ex );
+                } finally {
+                    if( step.log.size() > 0 ) {
+                        logger.accept( new String( step.log.toByteArray(), StandardCharsets.UTF_8 ).replaceAll( "\\s+$", "" ) );
+                    }
+                }
+            }
+        } finally {
+            synchronized( steps ) {
+                steps.removeAll( joined );
+                first = failure;
+                failure = null;
+                if( steps.isEmpty() && executor != null ) {
+                    executor.shutdown();
+                    executor = null;
+                }
+            }
+        }
+        if( first != null ) {
+            for( Throwable other : others ) {
+                if( other != first ) {
+                    first.addSuppressed( other );
+                }
+            }
+            if( first instanceof RuntimeException ) {
+                throw (RuntimeException)first;
+            }
+            if( first instanceof Error ) {
+                throw (Error)first;
+            }
+            throw new RuntimeException( first );
+        }
+    }
+
+    /**
+     * A step that was started with {@link AsyncSteps#submit(Callable)}.
+     *
+     * @param <R> the type of the result
+     */
+    private static class Step<R> {
+
+        private final Future<R>             future;
+
+        private final ByteArrayOutputStream log;
+
+        /**
+         * Create a new step.
+         *
+         * @param future the future of the step
+         * @param log the buffered log of the step
+         */
+        private Step( Future<R> future, ByteArrayOutputStream log ) {
+            this.future = future;
+            this.log = log;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The timeline of all external processes of a setup task. Every call of an external tool is recorded with its wall
+ * time, exit code and the bytes of its standard and error output. The report is written as JSON file next to the
+ * setup file.
+ *
+ * @author Volker Berlin
+ */
+class BuildReport {
+
+    private final long       start = System.currentTimeMillis();
+
+    private final List<Exec> execs = new ArrayList<>();
+
+    /**
+     * Record the start of an external process.
+     *
+     * @param command the command line
+     * @return the record that must be finished
+     */
+    synchronized Exec start( List<String> command ) {
+        Exec exec = new Exec( command, System.currentTimeMillis() - start );
+        execs.add( exec );
+        return exec;
+    }
+
+    /**
+     * Write the report as JSON.
+     *
+     * @param file the target file
+     * @param taskName the name of the task
+     * @param setupFile the created setup
+     * @throws IOException if an I/O error occurs
+     */
+    synchronized void write( File file, String taskName, File setupFile ) throws IOException {
+        Map<String, long[]> tools = new LinkedHashMap<>();
+        for( Exec exec : execs ) {
+            long[] sum = tools.computeIfAbsent( exec.tool, key -> new long[2] );
+            sum[0]++;
+            sum[1] += Math.max( 0, exec.wallTime );
+        }
+
+        try( Writer out = new OutputStreamWriter( Files.newOutputStream( file.toPath() ), StandardCharsets.UTF_8 ) ) {
+            out.write( "{\n" );
+            out.write( "  \"task\": " + quote( taskName ) + ",\n" );
+            out.write( "  \"setupFile\": " + quote( setupFile.getName() ) + ",\n" );
+            out.write( "  \"start\": " + quote( Instant.ofEpochMilli( start ).toString() ) + ",\n" );
+            out.write( "  \"duration\": " + (System.currentTimeMillis() - start) + ",\n" );
+            out.write( "  \"tools\": {" );
+            String separator = "\n";
+            for( Map.Entry<String, long[]> tool : tools.entrySet() ) {
+                out.write( separator + "    " + quote( tool.getKey() ) + ": { \"count\": " + tool.getValue()[0] + ", \"wallTime\": " + tool.getValue()[1] + " }" );
+                separator = ",\n";
+            }
+            out.write( "\n  },\n" );
+            out.write( "  \"processes\": [" );
+            separator = "\n";
+            for( Exec exec : execs ) {
+                out.write( separator + "    {\n" );
+                out.write( "      \"tool\": " + quote( exec.tool ) + ",\n" );
+                out.write( "      \"command\": " + quote( exec.commandLine ) + ",\n" );
+                out.write( "      \"start\": " + exec.startTime + ",\n" );
+                out.write( "      \"wallTime\": " + exec.wallTime + ",\n" );
+                out.write( "      \"exitCode\": " + exec.exitCode + ",\n" );
+                out.write( "      \"stdout\": " + exec.stdout + ",\n" );
+                out.write( "      \"stderr\": " + exec.stderr + "\n" );
+                out.write( "    }" );
+                separator = ",\n";
+            }
+            out.write( "\n  ]\n}\n" );
+        }
+    }
+
+    /**
+     * Quote a string for JSON.
+     *
+     * @param value the value
+     * @return the quoted value
+     */
+    private static String quote( String value ) {
+        StringBuilder builder = new StringBuilder( value.length() + 2 );
+        builder.append( '"' );
+        for( int i = 0; i < value.length(); i++ ) {
+            char ch = value.charAt( i );
+            switch( ch ) {
+                case '"':
+                case '\\':
+                    builder.append( '\\' ).append( ch );
+                    break;
+                case '\n':
+                    builder.append( "\\n" );
+                    break;
+                case '\r':
+                    builder.append( "\\r" );
+                    break;
+                case '\t':
+                    builder.append( "\\t" );
+                    break;
+                default:
+                    if( ch < 0x20 ) {
+                        builder.append( String.format( "\\u%04x", (int)ch ) );
+                    } else {
+                        builder.append( ch );
+                    }
+            }
+        }
+        return builder.append( '"' ).toString();
+    }
+
+    /**
+     * The record of a single external process.
+     */
+    static class Exec {
+
+        private final String tool;
+
+        private final String commandLine;
+
+        private final long   startTime;
+
+        private final long   startNanos = System.nanoTime();
+
+        private long         wallTime   = -1;
+
+        private int          exitCode   = -1;
+
+        private long         stdout;
+
+        private long         stderr;
+
+        /**
+         * Create a new record.
+         *
+         * @param command the command line
+         * @param startTime the start time relative to the begin of the task
+         */
+        private Exec( List<String> command, long startTime ) {
+            String program = command.isEmpty() || command.get( 0 ) == null ? "" : command.get( 0 );
+            this.tool = new File( program ).getName();
+            this.commandLine = String.join( " ", command );
+            this.startTime = startTime;
+        }
+
+        /**
+         * Wrap the standard output of the process to count the bytes.
+         *
+         * @param out the output stream
+         * @return the counting stream
+         */
+        OutputStream countStdout( OutputStream out ) {
+            return new FilterOutputStream( out ) {
+                @Override
+                public void write( int b ) throws IOException {
+                    stdout++;
+                    out.write( b );
+                }
+
+                @Override
+                public void write( byte[] b, int off, int len ) throws IOException {
+                    stdout += len;
+                    out.write( b, off, len );
+                }
+            };
+        }
+
+        /**
+         * Wrap the error output of the process to count the bytes.
+         *
+         * @param out the output stream
+         * @return the counting stream
+         */
+        OutputStream countStderr( OutputStream out ) {
+            return new FilterOutputStream( out ) {
+                @Override
+                public void write( int b ) throws IOException {
+                    stderr++;
+                    out.write( b );
+                }
+
+                @Override
+                public void write( byte[] b, int off, int len ) throws IOException {
+                    stderr += len;
+                    out.write( b, off, len );
+                }
+            };
+        }
+
+        /**
+         * Record the end of the process.
+         *
+         * @param exitValue the exit code or null if the process could not be executed
+         */
+        void finish( Integer exitValue ) {
+            wallTime = (System.nanoTime() - startNanos) / 1_000_000;
+            if( exitValue != null ) {
+                exitCode = exitValue;
+            }
+        }
+    }
+}
@@ -36,7 +36,7 @@ public class LocalizedResource {
     public File getResource() {
 
         if ( resource != null ) {
-            return setup.getProject().file( resource );
+            return setup.getFileResolver().resolve( resource );
         }
 
         return null;
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.gradle.api.internal.file.copy.FileCopyDetailsInternal;
+
+/**
+ * A single file or directory of a task that should be written into a package. The content is read directly from the
+ * CopySpec so that the package writers does not need a copy of the files in the temporary directory. Entries of the
+ * shared setup stage are backed by a resolved file instead. Only these entries can be serialized for a
+ * {@link PackageJob}.
+ *
+ * @author Volker Berlin
+ */
+public class PackageEntry implements Serializable {
+
+    private static final long                       serialVersionUID = 1L;
+
+    private final transient FileCopyDetailsInternal details;
+
+    private final File                              file;
+
+    private final String[]                          segments;
+
+    private final boolean                           directory;
+
+    private final long                              size;
+
+    private final long                              lastModified;
+
+    private final String                            targetPath;
+
+    /**
+     * Create a new entry.
+     *
+     * @param details the details from the CopySpec
+     * @param targetRoot the root in the package, empty for the package root
+     */
+    PackageEntry( FileCopyDetailsInternal details, String targetRoot ) {
+        this( details, null, details.getRelativePath().getSegments(), details.isDirectory(), details.isDirectory() ? 0 : details.getSize(), details.getLastModified(), targetRoot );
+    }
+
+    /**
+     * Create a new entry.
+     *
+     * @param details the details from the CopySpec or null
+     * @param file the resolved file or null
+     * @param segments the segments of the relative path
+     * @param directory true, for a directory
+     * @param size the size of a file
+     * @param lastModified the modified time
+     * @param targetRoot the root in the package, empty for the package root
+     */
+    private PackageEntry( FileCopyDetailsInternal details, File file, String[] segments, boolean directory, long size, long lastModified, String targetRoot ) {
+        this.details = details;
+        this.file = file;
+        this.segments = segments;
+        this.directory = directory;
+        this.size = size;
+        this.lastModified = lastModified;
+        String path = String.join( "/", segments );
+        this.targetPath = targetRoot.isEmpty() ? path : targetRoot + '/' + path;
+    }
+
+    /**
+     * Resolve the content of the entry to a file that is valid for the whole build. Files that are changed by a filter
+     * or are only available while visiting an archive are copied into the stage directory.
+     *
+     * @param details the details from the CopySpec
+     * @param stageDir the directory for copies
+     * @return the resolved entry with an empty target root
+     */
+    static PackageEntry stage( FileCopyDetailsInternal details, File stageDir ) {
+        PackageEntry entry = new PackageEntry( details, "" );
+        File file = null;
+        if( !entry.isDirectory() ) {
+            file = entry.getSourceFile();
+            if( file == null ) {
+                file = new File( stageDir, entry.getRelativePath() );
+                file.getParentFile().mkdirs();
+                details.copyTo( file );
+            }
+        }
+        return new PackageEntry( null, file, entry.segments, entry.directory, entry.size, entry.lastModified, "" );
+    }
+
+    /**
+     * Create an entry for a file that was created by the build.
+     *
+     * @param file the file
+     * @param directory the directory relative to the target root, null or empty for the root
+     * @return the entry with an empty target root
+     */
+    static PackageEntry generated( File file, String directory ) {
+        String path = directory == null ? file.getName() : directory + '/' + file.getName();
+        String[] segments = Arrays.stream( path.split( "[/\\\\]" ) ).filter( segment -> !segment.isEmpty() ).toArray( String[]::new );
+        return new PackageEntry( null, file, segments, false, file.length(), file.lastModified(), "" );
+    }
+
+    /**
+     * Create a copy of a staged entry with another target root.
+     *
+     * @param targetRoot the root in the package, empty for the package root
+     * @return the new entry
+     */
+    PackageEntry withTargetRoot( String targetRoot ) {
+        return new PackageEntry( details, file, segments, directory, size, lastModified, targetRoot );
+    }
+
+    /**
+     * The path of the entry inside the package. This is the target root and the relative path of the CopySpec.
+     *
+     * @return the path with slashes as separator
+     */
+    public String getTargetPath() {
+        return targetPath;
+    }
+
+    /**
+     * The path relative to the target root.
+     *
+     * @return the relative path
+     */
+    public String getRelativePath() {
+        return String.join( "/", segments );
+    }
+
+    /**
+     * The segments of the relative path. The last segment contains the file name.
+     *
+     * @return the segments
+     */
+    public String[] getSegments() {
+        return segments.clone();
+    }
+
+    /**
+     * The file name of the entry.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return segments[segments.length - 1];
+    }
+
+    /**
+     * If this entry is a directory.
+     *
+     * @return true, if a directory
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * The unix permissions of the entry. Directories and shell scripts are executable (755), all other files get 644.
+     *
+     * @return the permissions
+     */
+    public int getMode() {
+        if( isDirectory() || getName().endsWith( ".sh" ) ) {
+            return 0755;
+        }
+        return 0644;
+    }
+
+    /**
+     * The size of the content in bytes.
+     *
+     * @return the size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * The last modified time in milliseconds.
+     *
+     * @return the time
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * The source file if the content is not changed by a filter.
+     *
+     * @return the source file or null
+     */
+    public File getSourceFile() {
+        if( details == null ) {
+            return file;
+        }
+        try {
+            return details.getFile();
+        } catch( UnsupportedOperationException ex ) {
+            // a filter is set
+            return null;
+        }
+    }
+
+    /**
+     * Open the content of the entry. The caller must close the stream.
+     *
+     * @return the stream
+     * @throws IOException if an I/O error occurs
+     */
+    public InputStream open() throws IOException {
+        if( details == null ) {
+            return new FileInputStream( file );
+        }
+        return details.open();
+    }
+
+    /**
+     * Copy the content to the given file.
+     *
+     * @param target the target file
+     * @throws IOException if an I/O error occurs
+     */
+    public void copyTo( File target ) throws IOException {
+        if( details == null ) {
+            Files.copy( file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        } else {
+            details.copyTo( target );
+        }
+    }
+
+    @Override
+    public String toString() {
+        return targetPath;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import java.io.IOException;
+
+/**
+ * Consumer of the package entries of a task, typically a package format writer.
+ *
+ * @author Volker Berlin
+ */
+@FunctionalInterface
+public interface PackageEntryAction {
+
+    /**
+     * Process a single file or directory.
+     *
+     * @param entry the entry
+     * @throws IOException if an I/O error occurs
+     */
+    void process( PackageEntry entry ) throws IOException;
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * The last step of a build that writes the package file. A job holds only resolved values like files, strings and
+ * staged entries. It does not access the project or the task. In parallel mode it is the parameter of the
+ * {@link SetupWorker} and is serialized by the Gradle worker API.
+ *
+ * @author Volker Berlin
+ */
+public interface PackageJob extends Serializable {
+
+    /**
+     * Write the package file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void run() throws IOException;
+
+    /**
+     * The entries of a task for the package. If the job runs on the task thread then the entries are streamed from the
+     * CopySpec, else the staged entries are used.
+     */
+    @FunctionalInterface
+    interface Entries {
+
+        /**
+         * Hand all entries to the action.
+         *
+         * @param action the action
+         * @throws IOException if an I/O error occurs
+         */
+        void forEach( PackageEntryAction action ) throws IOException;
+    }
+}
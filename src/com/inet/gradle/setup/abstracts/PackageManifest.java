@@ -0,0 +1,317 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.inet.gradle.setup.util.Strings;
+
+/**
+ * The list of all entries of a package with the metadata that the package formats need like size, mode and digests.
+ * The digests of a file are calculated while its content is streamed into the package, that no additional pass over
+ * the files is required. It is used by the deb and rpm writers. The msi build does not stream an archive, it read the
+ * sizes and hashes of the files for WiX with FileInformation.
+ *
+ * @author Volker Berlin
+ */
+public class PackageManifest {
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private long              size;
+
+    /**
+     * Add a directory.
+     *
+     * @param path the absolute path of the directory on the target system
+     * @param mode the unix permissions
+     */
+    public synchronized void addDirectory( String path, int mode ) {
+        entries.add( new Entry( path, mode, 0, null, null, null, true ) );
+    }
+
+    /**
+     * Add a symbolic link.
+     *
+     * @param path the absolute path of the link on the target system
+     * @param target the target of the link
+     */
+    public synchronized void addSymlink( String path, String target ) {
+        entries.add( new Entry( path, 0777, 0, null, null, target, false ) );
+    }
+
+    /**
+     * Add a file. The returned stream must be used to read the content. The file is added with its size and digests if
+     * the stream is closed.
+     *
+     * @param path the absolute path of the file on the target system
+     * @param mode the unix permissions
+     * @param input the content of the file
+     * @return the stream that calculate the metadata
+     */
+    public InputStream addFile( String path, int mode, InputStream input ) {
+        return new DigestStream( path, mode, input );
+    }
+
+    /**
+     * Get all entries in the order in which they was added.
+     *
+     * @return the entries
+     */
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList( new ArrayList<>( entries ) );
+    }
+
+    /**
+     * Get the sum of the size of all files.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Add a finished file entry.
+     *
+     * @param entry the entry
+     */
+    private synchronized void add( Entry entry ) {
+        entries.add( entry );
+        size += entry.getSize();
+    }
+
+    /**
+     * Create a message digest.
+     *
+     * @param algorithm the name of the algorithm
+     * @return the digest
+     */
+    private static MessageDigest createDigest( String algorithm ) {
+        try {
+            return MessageDigest.getInstance( algorithm );
+        } catch( NoSuchAlgorithmException ex ) {
+            throw new IllegalStateException( ex ); // every Java platform must support MD5 and SHA-256
+        }
+    }
+
+    /**
+     * A single file, directory or symbolic link of the package.
+     */
+    public static class Entry {
+
+        private final String  path;
+
+        private final int     mode;
+
+        private final long    size;
+
+        private final byte[]  md5;
+
+        private final byte[]  sha256;
+
+        private final String  linkTarget;
+
+        private final boolean directory;
+
+        /**
+         * Create a new entry.
+         *
+         * @param path the absolute path
+         * @param mode the unix permissions
+         * @param size the size of a file
+         * @param md5 the MD5 of a file
+         * @param sha256 the SHA-256 of a file
+         * @param linkTarget the target of a symbolic link
+         * @param directory true, for a directory
+         */
+        private Entry( String path, int mode, long size, byte[] md5, byte[] sha256, String linkTarget, boolean directory ) {
+            this.path = path;
+            this.mode = mode;
+            this.size = size;
+            this.md5 = md5;
+            this.sha256 = sha256;
+            this.linkTarget = linkTarget;
+            this.directory = directory;
+        }
+
+        /**
+         * The absolute path on the target system.
+         *
+         * @return the path with slashes as separator
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * The unix permissions.
+         *
+         * @return the mode
+         */
+        public int getMode() {
+            return mode;
+        }
+
+        /**
+         * The size of a file.
+         *
+         * @return the size in bytes, 0 for directories and links
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * The MD5 digest of a file.
+         *
+         * @return the digest as lower case hex string or null if not a file
+         */
+        public String getMd5() {
+            return md5 == null ? null : Strings.toHex( md5 );
+        }
+
+        /**
+         * The SHA-256 digest of a file.
+         *
+         * @return the digest as lower case hex string or null if not a file
+         */
+        public String getSha256() {
+            return sha256 == null ? null : Strings.toHex( sha256 );
+        }
+
+        /**
+         * The target of a symbolic link.
+         *
+         * @return the target or null if not a link
+         */
+        public String getLinkTarget() {
+            return linkTarget;
+        }
+
+        /**
+         * If this entry is a directory.
+         *
+         * @return true, if a directory
+         */
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * If this entry is a symbolic link.
+         *
+         * @return true, if a link
+         */
+        public boolean isSymlink() {
+            return linkTarget != null;
+        }
+
+        /**
+         * If this entry is a regular file.
+         *
+         * @return true, if a file
+         */
+        public boolean isFile() {
+            return !directory && linkTarget == null;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    /**
+     * Stream that calculate the size and the digests of the read data.
+     */
+    private class DigestStream extends FilterInputStream {
+
+        private final String        path;
+
+        private final int           mode;
+
+        private final MessageDigest md5    = createDigest( "MD5" );
+
+        private final MessageDigest sha256 = createDigest( "SHA-256" );
+
+        private long                count;
+
+        private boolean             closed;
+
+        /**
+         * Create a new instance.
+         *
+         * @param path the absolute path of the file
+         * @param mode the unix permissions
+         * @param input the content
+         */
+        private DigestStream( String path, int mode, InputStream input ) {
+            super( input );
+            this.path = path;
+            this.mode = mode;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if( b >= 0 ) {
+                md5.update( (byte)b );
+                sha256.update( (byte)b );
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException {
+            int size = super.read( b, off, len );
+            if( size > 0 ) {
+                md5.update( b, off, size );
+                sha256.update( b, off, size );
+                count += size;
+            }
+            return size;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException {
+            throw new IOException( "skip is not supported" );
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if( closed ) {
+                return;
+            }
+            closed = true;
+            super.close();
+            add( new Entry( path, mode, count, md5.digest(), sha256.digest(), null, false ) );
+        }
+    }
+}
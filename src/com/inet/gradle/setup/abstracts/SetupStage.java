@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.TaskAction;
+/*// if gradleVersion < 4.2
+import org.gradle.internal.nativeplatform.filesystem.FileSystem;
+*/// else
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+//// endif
+import org.gradle.internal.reflect.Instantiator;
+
+import com.inet.gradle.setup.SetupBuilder;
+import com.inet.gradle.setup.util.ResourceUtils;
+
+/**
+ * Resolve the files of the setupBuilder CopySpec once for all setup tasks if they run in parallel. The setup tasks use
+ * the resolved entries read only. Icons are also converted only once, see
+ * {@link AbstractSetupBuilder#getIconForType(File, String)}.
+ *
+ * @author Volker Berlin
+ */
+public class SetupStage extends DefaultTask {
+
+    /**
+     * The name of the task.
+     */
+    public static final String NAME = "setupStage";
+
+    /**
+     * Create a new instance.
+     */
+    public SetupStage() {
+        setGroup( "build" );
+        setDescription( "Resolves the files that all setup tasks share." );
+        // without parallel the setup tasks run one after another and stream the files of the CopySpec directly
+        onlyIf( task -> getProject().getExtensions().getByType( SetupBuilder.class ).isParallel() );
+    }
+
+    /**
+     * The action called from Gradle
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @TaskAction
+    public void action() throws IOException {
+        AbstractSetupBuilder setup = getProject().getExtensions().getByType( SetupBuilder.class );
+        File stageDir = new File( setup.getStageDir(), "files" );
+        if( stageDir.exists() ) {
+            ResourceUtils.deleteDirectory( stageDir.toPath() );
+        }
+        List<PackageEntry> entries = new ArrayList<>();
+        AbstractTask.processFiles( details -> entries.add( PackageEntry.stage( details, stageDir ) ), setup.getRootSpec(), setup.isFailOnEmptyFrom(), getInstantiator(), getFileSystem() );
+        setup.setStagedEntries( Collections.unmodifiableList( entries ) );
+    }
+
+    @Inject
+    protected Instantiator getInstantiator() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Inject
+    protected FileSystem getFileSystem() {
+        throw new UnsupportedOperationException();
+    }
+}
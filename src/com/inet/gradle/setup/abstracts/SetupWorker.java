@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javax.inject.Inject;
+
+/**
+ * A work item of the Gradle worker API that writes a package file in the background. The parameter is a
+ * {@link PackageJob} with resolved values only, so the work item does not access the project or the task.
+ *
+ * @author Volker Berlin
+ */
+public class SetupWorker implements Runnable {
+
+    private final PackageJob job;
+
+    /**
+     * Create a new instance. Called from Gradle.
+     *
+     * @param job the job that writes the package
+     */
+    @Inject
+    public SetupWorker( PackageJob job ) {
+        this.job = job;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        try {
+            job.run();
+        } catch( IOException ex ) {
+            throw new UncheckedIOException( ex );
+        }
+    }
+}
@@ -78,7 +78,7 @@ public abstract class AbstractOSXApplicationBuilder<T extends AbstractTask, S ex
 
         String appName = application.getDisplayName();
 
-        task.getProject().getLogger().lifecycle( "\tBuildDir now: " + buildDir );
+        task.getLogger().lifecycle( "\tBuildDir now: " + buildDir );
         appBundler.setOutputDirectory( buildDir );
         appBundler.setName( appName );
         appBundler.setDisplayName( appName );
@@ -202,7 +202,7 @@ public abstract class AbstractOSXApplicationBuilder<T extends AbstractTask, S ex
         }
         File jreDir;
         try {
-            jreDir = task.getProject().file( jre );
+            jreDir = fileResolver.resolve( jre );
         } catch( Exception e ) {
             jreDir = null;
         }
@@ -220,7 +220,7 @@ public abstract class AbstractOSXApplicationBuilder<T extends AbstractTask, S ex
                                 + " can not be found in: " + jreDir );
             }
         }
-        task.getProject().getLogger().lifecycle( "\tbundle JRE: " + jreDir );
+        task.getLogger().lifecycle( "\tbundle JRE: " + jreDir );
 
         Runtime runtime = new Runtime( jreDir );
         if ( task instanceof Dmg ) {
@@ -80,6 +80,7 @@ public class Dmg extends AbstractUnixSetupTask {
         "lib/plugin.jar",
         "lib/security/javaws.policy"
     });
+    private DmgBuilder                     builder;
 
     /**
      * Create the task.
@@ -101,13 +102,21 @@ public class Dmg extends AbstractUnixSetupTask {
         });
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void prepareBuild() {
+        super.prepareBuild();
+        builder = new DmgBuilder( this, getSetupBuilder(), getFileResolver() );
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void build() {
-        ProjectInternal project = (ProjectInternal)getProject();
-        new DmgBuilder( this, getSetupBuilder(), project.getFileResolver() ).build();
+        builder.build();
     }
 
     /**
@@ -215,7 +224,7 @@ public class Dmg extends AbstractUnixSetupTask {
      */
     public File getBackgroundImage() {
         if( backgroundImage != null ) {
-            return getProject().file( backgroundImage );
+            return getFileResolver().resolve( backgroundImage );
         }
         return null;
     }
@@ -313,7 +322,7 @@ public class Dmg extends AbstractUnixSetupTask {
      */
     public File getSetupBackgroundImage() {
         if( setupBackground != null ) {
-            return getProject().file( setupBackground );
+            return getFileResolver().resolve( setupBackground );
         }
         return null;
     }
@@ -332,7 +341,7 @@ public class Dmg extends AbstractUnixSetupTask {
      */
     public File getSetupDarkBackgroundImage() {
         if( setupDarkBackground != null ) {
-            return getProject().file( setupDarkBackground );
+            return getFileResolver().resolve( setupDarkBackground );
         }
         return null;
     }
@@ -99,6 +99,11 @@ public class DmgBuilder extends AbstractBuilder<Dmg, SetupBuilder> {
                 }
             }
 
+            // the applications are signed in parallel
+            if( task.getCodeSign() != null ) {
+                task.getCodeSign().awaitSignatures();
+            }
+
             imageSourceRoot = buildDir.toString(); // + "/" + setup.getApplication() + ".app";
 
             // Just in case. If it still has not been set, we do not know what the user itends.
@@ -540,13 +545,13 @@ public class DmgBuilder extends AbstractBuilder<Dmg, SetupBuilder> {
         ArrayList<String> command = new ArrayList<>();
         command.add( "/usr/bin/osascript" );
 
-        task.getProject().getLogger().lifecycle( "\tSetting DMG display options." );
-        task.getProject().getLogger().debug( applescript.toString() );
+        task.getLogger().lifecycle( "\tSetting DMG display options." );
+        task.getLogger().debug( applescript.toString() );
 
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         exec( command, new ByteArrayInputStream( applescript.toString().getBytes( StandardCharsets.UTF_8 ) ), baos, true );
-        task.getProject().getLogger().lifecycle( "\tDone Setting DMG display options. Ignoring errors if there were any" );
-        task.getProject().getLogger().lifecycle( "\t" + baos.toString() );
+        task.getLogger().lifecycle( "\tDone Setting DMG display options. Ignoring errors if there were any" );
+        task.getLogger().lifecycle( "\t" + baos.toString() );
     }
 
     /**
@@ -557,19 +562,19 @@ public class DmgBuilder extends AbstractBuilder<Dmg, SetupBuilder> {
     private void packageApplescript() throws IOException {
 
         Template applescript = new Template( "dmg/template/package.applescript.txt" );
-        applescript.setPlaceholder( "icon", ImageFactory.getImageFile( task.getProject(), task.getSetupIcon(), buildDir, "icns" ).getAbsolutePath() );
+        applescript.setPlaceholder( "icon", ImageFactory.getImageFile( fileResolver, task.getSetupIcon(), buildDir, "icns" ).getAbsolutePath() );
         applescript.setPlaceholder( "package", new File( imageSourceRoot, setup.getApplication() + ".pkg" ).getAbsolutePath() );
 
         ArrayList<String> command = new ArrayList<>();
         command.add( "/usr/bin/osascript" );
 
-        task.getProject().getLogger().lifecycle( "\tSetting display options for package." );
-        task.getProject().getLogger().debug( applescript.toString() );
+        task.getLogger().lifecycle( "\tSetting display options for package." );
+        task.getLogger().debug( applescript.toString() );
 
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         exec( command, new ByteArrayInputStream( applescript.toString().getBytes( StandardCharsets.UTF_8 ) ), baos, true );
-        task.getProject().getLogger().lifecycle( "\tDone Setting DMG display options for package. Ignoring errors if there were any" );
-        task.getProject().getLogger().lifecycle( "\t" + baos.toString() );
+        task.getLogger().lifecycle( "\tDone Setting DMG display options for package. Ignoring errors if there were any" );
+        task.getLogger().lifecycle( "\t" + baos.toString() );
     }
 
     /**
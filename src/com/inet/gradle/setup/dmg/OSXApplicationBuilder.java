@@ -72,7 +72,7 @@ public class OSXApplicationBuilder extends AbstractOSXApplicationBuilder<Dmg, Se
 
         // codesigning will be done on the final package.
         if( task.getCodeSign() != null ) {
-            task.getCodeSign().signApplication( new File( buildDir, service.getDisplayName() + ".app" ) );
+            task.getCodeSign().signApplicationAsync( new File( buildDir, service.getDisplayName() + ".app" ) );
         } else {
             System.out.println( "Not codesigning the Servce: not configured" );
         }
@@ -108,7 +108,7 @@ public class OSXApplicationBuilder extends AbstractOSXApplicationBuilder<Dmg, Se
         copyBundleFiles( application );
 
         if( task.getCodeSign() != null ) {
-            task.getCodeSign().signApplication( new File( buildDir, application.getDisplayName() + ".app" ) );
+            task.getCodeSign().signApplicationAsync( new File( buildDir, application.getDisplayName() + ".app" ) );
         }
     }
 }
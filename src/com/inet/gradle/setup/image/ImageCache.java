@@ -0,0 +1,166 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+import com.inet.gradle.setup.image.icns.IcnsCodec;
+import com.inet.gradle.setup.image.image4j.codec.ico.ICODecoder;
+import com.inet.gradle.setup.util.ContentCache;
+
+/**
+ * Memory cache for the decoded source images and the converted image files. The entries are keyed by the content hash
+ * of the source files, so every source is decoded only once even if multiple tasks and starters use the same icons.
+ * The values are held soft because the Gradle daemon can live over many builds.
+ *
+ * @author Volker Berlin
+ */
+class ImageCache {
+
+    private static final Map<String, SoftReference<List<BufferedImage>>> IMAGES  = new ConcurrentHashMap<>();
+
+    private static final Map<String, SoftReference<byte[]>>              OUTPUTS = new ConcurrentHashMap<>();
+
+    private static final Map<String, Object>                             LOCKS   = new ConcurrentHashMap<>();
+
+    /**
+     * Write an image file.
+     */
+    @FunctionalInterface
+    interface Converter {
+        /**
+         * Write the converted image.
+         *
+         * @param file the target file
+         * @throws IOException if an I/O error occurs
+         */
+        void write( File file ) throws IOException;
+    }
+
+    /**
+     * Calculate the key of a source file from its content and its extension.
+     *
+     * @param file the source file
+     * @return the key
+     * @throws IOException if an I/O error occurs
+     */
+    static String key( File file ) throws IOException {
+        try( InputStream input = new FileInputStream( file ) ) {
+            return ContentCache.key( input, getExtension( file ) );
+        }
+    }
+
+    /**
+     * Get the decoded images of a source file. The file is decoded only on the first call. The returned images must not
+     * be modified.
+     *
+     * @param file an ico, icns or any other image file that ImageIO can read
+     * @return the images, not modifiable
+     * @throws IOException if an error occur on reading the image file
+     */
+    static List<BufferedImage> read( File file ) throws IOException {
+        String key = key( file );
+        synchronized( lock( key ) ) {
+            SoftReference<List<BufferedImage>> ref = IMAGES.get( key );
+            List<BufferedImage> images = ref == null ? null : ref.get();
+            if( images == null ) {
+                images = new ArrayList<>();
+                switch( getExtension( file ) ) {
+                    case "ico":
+                        images.addAll( ICODecoder.read( file ) );
+                        break;
+                    case "icns":
+                        try( FileInputStream fis = new FileInputStream( file ) ) {
+                            images.addAll( new IcnsCodec().decode( fis ) );
+                        }
+                        break;
+                    default:
+                        images.add( ImageIO.read( file ) );
+                }
+                images = Collections.unmodifiableList( images );
+                IMAGES.put( key, new SoftReference<>( images ) );
+            }
+            return images;
+        }
+    }
+
+    /**
+     * Create a converted image file. If the same sources was already converted to the same format then the result is
+     * copied without converting again.
+     *
+     * @param files the source files
+     * @param format the target format like "ico", "icns" or "png48"
+     * @param target the target file
+     * @param converter create the target file on a cache miss
+     * @return true, if the target file was written; false, if the converter has not create a file
+     * @throws IOException if an error occur on reading or writing the image files
+     */
+    static boolean convert( List<File> files, String format, File target, Converter converter ) throws IOException {
+        StringBuilder builder = new StringBuilder( format );
+        for( File file : files ) {
+            builder.append( ';' ).append( key( file ) );
+        }
+        String key = builder.toString();
+        synchronized( lock( key ) ) {
+            SoftReference<byte[]> ref = OUTPUTS.get( key );
+            byte[] data = ref == null ? null : ref.get();
+            if( data == null ) {
+                converter.write( target );
+                if( !target.isFile() ) {
+                    return false;
+                }
+                OUTPUTS.put( key, new SoftReference<>( Files.readAllBytes( target.toPath() ) ) );
+            } else {
+                Files.write( target.toPath(), data );
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Get the lock object for a key. Different keys can be processed in parallel.
+     *
+     * @param key the key
+     * @return the lock
+     */
+    private static Object lock( String key ) {
+        return LOCKS.computeIfAbsent( key, k -> new Object() );
+    }
+
+    /**
+     * Get the lower case extension of a file name.
+     *
+     * @param file the file
+     * @return the extension without the dot
+     */
+    private static String getExtension( File file ) {
+        String name = file.getName();
+        return name.substring( name.lastIndexOf( '.' ) + 1 ).toLowerCase();
+    }
+}
@@ -16,23 +16,32 @@
 package com.inet.gradle.setup.image;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.imageio.ImageIO;
 
 import org.gradle.api.GradleException;
-import org.gradle.api.Project;
+import org.gradle.api.internal.file.FileResolver;
 
 import com.inet.gradle.setup.image.icns.IcnsCodec;
 import com.inet.gradle.setup.image.icns.IconSuite;
-import com.inet.gradle.setup.image.image4j.codec.ico.ICODecoder;
 import com.inet.gradle.setup.image.image4j.codec.ico.ICOEncoder;
-import com.inet.gradle.setup.image.image4j.util.ImageUtil;
 
 /**
  * Factory for platform dependent image formats.
@@ -44,24 +53,24 @@ public class ImageFactory {
     /**
      * Get a file to an icon in the platform format if set or null if not set in the gradle script
      * 
-     * @param project current project for resolving the file locations
+     * @param fileResolver the resolver of the project for the file locations
      * @param data the set values
      * @param dir directory for temporary build files if the file(s) need converted
      * @param format the platform format, currently "ico", "icns" and png&lt;size&gt;
      * @return a file or null
      * @throws IOException if an error occur on reading the image files
      */
-    public static File getImageFile( Project project, Object data, File dir, String format ) throws IOException {
+    public static File getImageFile( FileResolver fileResolver, Object data, File dir, String format ) throws IOException {
         if( data == null ) {
             return null;
         }
         ArrayList<File> files = new ArrayList<>();
         if( data instanceof Iterable ) {
             for( Object img : (Iterable)data ) {
-                files.add( project.file( img ) );
+                files.add( fileResolver.resolve( img ) );
             }
         } else {
-            files.add( project.file( data ) );
+            files.add( fileResolver.resolve( data ) );
         }
         if( files.size() == 0 ) {
             return null;
@@ -73,60 +82,32 @@ public class ImageFactory {
             }
         }
 
-        String baseFileName = null;
-        ArrayList<BufferedImage> images = new ArrayList<>();
-        for( File file : files ) {
-            String extension = file.getName();
-            if( baseFileName == null ) {
-                baseFileName = extension.substring( 0, extension.lastIndexOf( '.' ) + 1 );
-            }
-            extension = extension.substring( extension.lastIndexOf( '.' ) + 1 );
-            switch( extension ) {
-                case "ico":
-                    images.addAll( ICODecoder.read( file ) );
-                    break;
-                case "icns":
-                    try( FileInputStream fis = new FileInputStream( file ) ) {
-                        images.addAll( new IcnsCodec().decode( fis ) );
-                    }
-                    break;
-                default:
-                    images.add( ImageIO.read( file ) );
-            }
-        }
+        String baseFileName = files.get( 0 ).getName();
+        baseFileName = baseFileName.substring( 0, baseFileName.lastIndexOf( '.' ) + 1 );
+        File file = new File( dir, baseFileName + format );
+        ImageCache.convert( files, format, file, target -> convert( files, format, target ) );
+        return file;
+    }
 
-        if( baseFileName == null ) {
-            baseFileName = "icon.";
+    /**
+     * Convert the source files into the platform format.
+     *
+     * @param files the source files
+     * @param format the platform format
+     * @param file the target file
+     * @throws IOException if an error occur on reading the image files
+     */
+    static void convert( List<File> files, String format, File file ) throws IOException {
+        if( format.equals( "icns" ) ) {
+            writeIcns( files, file );
+            return;
         }
-        File file = new File( dir, baseFileName + format );
+
+        ArrayList<BufferedImage> images = readImages( files );
         switch( format ) {
             case "ico":
                 try( FileOutputStream fos = new FileOutputStream( file ) ) {
-                    ICOEncoder.write( images, fos );
-                }
-                break;
-            case "icns":
-                try( FileOutputStream fos = new FileOutputStream( file ) ) {
-                    IconSuite suite = new IconSuite();
-                    for( BufferedImage img : images ) {
-                        switch( img.getWidth() ) {
-                            case IcnsCodec.SMALL_SIZE:
-                                suite.setSmallIcon( img );
-                                break;
-                            case IcnsCodec.LARGE_SIZE:
-                                suite.setLargeIcon( img );
-                                break;
-                            case IcnsCodec.HUGE_SIZE:
-                                suite.setHugeIcon( img );
-                                break;
-                            case IcnsCodec.THUMBNAIL_SIZE:
-                                suite.setThumbnailIcon( img );
-                                break;
-                            default:
-                                project.getLogger().error( "Ignore icon size: " + img.getWidth() );
-                        }
-                    }
-                    new IcnsCodec().encode( suite, fos );
+                    ICOEncoder.writeCompressed( images, fos );
                 }
                 break;
             default:
@@ -144,7 +125,199 @@ public class ImageFactory {
                 }
                 throw new GradleException( "Unsupported image format: " + format );
         }
-        return file;
+    }
+
+    /**
+     * Read the images of the files. Every file is decoded only once per build, the images are shared and must not be
+     * modified.
+     *
+     * @param files the image files
+     * @return the images
+     * @throws IOException if an error occur on reading the image files
+     */
+    private static ArrayList<BufferedImage> readImages( List<File> files ) throws IOException {
+        ArrayList<BufferedImage> images = new ArrayList<>();
+        for( File file : files ) {
+            images.addAll( ImageCache.read( file ) );
+        }
+        return images;
+    }
+
+    /**
+     * Write an icns file with the classic icons up to 128 pixels and the PNG icons ic07 - ic14 up to 1024 pixels. Sizes
+     * larger as the largest source image are omitted. Source PNG files with a matching size are embedded without
+     * decoding. The missing sizes are scaled in parallel from the best matching source image.
+     *
+     * @param files the source files
+     * @param file the target file
+     * @throws IOException if an error occur on reading the image files
+     */
+    private static void writeIcns( List<File> files, File file ) throws IOException {
+        Map<Integer, byte[]> pngs = new HashMap<>();
+        ArrayList<File> others = new ArrayList<>();
+        for( File source : files ) {
+            byte[] png = source.getName().endsWith( ".png" ) ? Files.readAllBytes( source.toPath() ) : null;
+            int size = png == null ? 0 : getPngSize( png );
+            if( size > 0 ) {
+                pngs.putIfAbsent( size, png );
+            } else {
+                others.add( source );
+            }
+        }
+        ArrayList<BufferedImage> images = readImages( others );
+
+        int maxSize = 0;
+        for( int size : pngs.keySet() ) {
+            maxSize = Math.max( maxSize, size );
+        }
+        for( BufferedImage img : images ) {
+            maxSize = Math.max( maxSize, Math.min( img.getWidth(), img.getHeight() ) );
+        }
+
+        // the PNG files are decoded only once and only if needed
+        ConcurrentHashMap<Integer, BufferedImage> decoded = new ConcurrentHashMap<>();
+        TreeMap<Integer, CompletableFuture<Object[]>> entries = new TreeMap<>();
+        int[] classicSizes = { IcnsCodec.SMALL_SIZE, IcnsCodec.LARGE_SIZE, IcnsCodec.HUGE_SIZE, IcnsCodec.THUMBNAIL_SIZE };
+        for( int size : classicSizes ) {
+            if( size <= maxSize ) {
+                entries.put( size, null );
+            }
+        }
+        ArrayList<Integer> pngSizes = new ArrayList<>();
+        for( int size : IcnsCodec.PNG_SIZES ) {
+            if( size <= maxSize ) {
+                entries.put( size, null );
+                pngSizes.add( size );
+            }
+        }
+        for( int size : entries.keySet() ) {
+            boolean classic = size == IcnsCodec.SMALL_SIZE || size == IcnsCodec.LARGE_SIZE || size == IcnsCodec.HUGE_SIZE || size == IcnsCodec.THUMBNAIL_SIZE;
+            boolean encodePng = pngSizes.contains( size ) && !pngs.containsKey( size );
+            entries.put( size, CompletableFuture.supplyAsync( () -> {
+                byte[] png = pngs.get( size );
+                BufferedImage img = null;
+                if( classic || encodePng ) {
+                    img = getIcnsImage( images, pngs, decoded, size );
+                }
+                if( encodePng ) {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    try {
+                        ImageIO.write( img, "png", output );
+                    } catch( IOException ex ) {
+                        throw new UncheckedIOException( ex );
+                    }
+                    png = output.toByteArray();
+                }
+                return new Object[] { img, png };
+            } ) );
+        }
+
+        IconSuite suite = new IconSuite();
+        try {
+            for( Map.Entry<Integer, CompletableFuture<Object[]>> entry : entries.entrySet() ) {
+                BufferedImage img = (BufferedImage)entry.getValue().join()[0];
+                switch( entry.getKey() ) {
+                    case IcnsCodec.SMALL_SIZE:
+                        suite.setSmallIcon( img );
+                        break;
+                    case IcnsCodec.LARGE_SIZE:
+                        suite.setLargeIcon( img );
+                        break;
+                    case IcnsCodec.HUGE_SIZE:
+                        suite.setHugeIcon( img );
+                        break;
+                    case IcnsCodec.THUMBNAIL_SIZE:
+                        suite.setThumbnailIcon( img );
+                        break;
+                }
+            }
+            for( int i = 0; i < IcnsCodec.PNG_TYPES.length; i++ ) {
+                CompletableFuture<Object[]> entry = entries.get( IcnsCodec.PNG_SIZES[i] );
+                if( entry != null ) {
+                    suite.setPngIcon( IcnsCodec.PNG_TYPES[i], (byte[])entry.join()[1] );
+                }
+            }
+        } catch( CompletionException ex ) {
+            Throwable cause = ex.getCause();
+            if( cause instanceof UncheckedIOException ) {
+                throw ((UncheckedIOException)cause).getCause();
+            }
+            throw ex;
+        }
+        try( FileOutputStream fos = new FileOutputStream( file ) ) {
+            new IcnsCodec().encode( suite, fos );
+        }
+    }
+
+    /**
+     * Get an image with the given size for an icns file. This is a source image with this size or the scaled best
+     * matching source image.
+     *
+     * @param images the decoded source images
+     * @param pngs the not decoded source PNG files with its size
+     * @param decoded the already decoded PNG files
+     * @param size the needed size
+     * @return the image
+     */
+    private static BufferedImage getIcnsImage( List<BufferedImage> images, Map<Integer, byte[]> pngs, Map<Integer, BufferedImage> decoded, int size ) {
+        BufferedImage best = null;
+        int bestPng = 0;
+        int min = Integer.MAX_VALUE;
+        for( BufferedImage img : images ) {
+            int p = getScore( Math.min( img.getWidth(), img.getHeight() ), size );
+            if( p < min ) {
+                min = p;
+                best = img;
+            }
+        }
+        for( int pngSize : pngs.keySet() ) {
+            int p = getScore( pngSize, size );
+            if( p < min ) {
+                min = p;
+                bestPng = pngSize;
+            }
+        }
+        if( bestPng > 0 ) {
+            best = decoded.computeIfAbsent( bestPng, key -> {
+                try {
+                    return ImageIO.read( new ByteArrayInputStream( pngs.get( key ) ) );
+                } catch( IOException ex ) {
+                    throw new UncheckedIOException( ex );
+                }
+            } );
+        }
+        if( best.getWidth() == size && best.getHeight() == size ) {
+            return best;
+        }
+        return ImageScaler.scale( best, size, size );
+    }
+
+    /**
+     * Get the size of a square PNG image from its header without decoding.
+     *
+     * @param png the content of the PNG file
+     * @return the size or 0 if the data are not a PNG image or the image is not square
+     */
+    private static int getPngSize( byte[] png ) {
+        if( png.length < 24 || (png[0] & 0xFF) != 0x89 || !"PNG".equals( new String( png, 1, 3, StandardCharsets.US_ASCII ) ) || !"IHDR".equals( new String( png, 12, 4, StandardCharsets.US_ASCII ) ) ) {
+            return 0;
+        }
+        int width = (png[16] & 0xFF) << 24 | (png[17] & 0xFF) << 16 | (png[18] & 0xFF) << 8 | (png[19] & 0xFF);
+        int height = (png[20] & 0xFF) << 24 | (png[21] & 0xFF) << 16 | (png[22] & 0xFF) << 8 | (png[23] & 0xFF);
+        return width == height && width > 0 ? width : 0;
+    }
+
+    /**
+     * Rate a source image size for scaling to the target size. Smaller values are better. Larger sources are preferred
+     * to smaller sources.
+     *
+     * @param sourceSize the size of the source image
+     * @param size the target size
+     * @return the rating
+     */
+    private static int getScore( int sourceSize, int size ) {
+        int diff = sourceSize - size;
+        return diff < 0 ? 10000 - diff : diff;
     }
 
     /**
@@ -157,8 +330,7 @@ public class ImageFactory {
         BufferedImage best = null;
         int min = Integer.MAX_VALUE;
         for( BufferedImage img : images ) {
-            int diff = Math.min( img.getWidth(), img.getHeight() ) - size;
-            int p = diff < 0 ? 10000 - diff : diff;
+            int p = getScore( Math.min( img.getWidth(), img.getHeight() ), size );
             if( p < min ) {
                 min = p;
                 best = img;
@@ -167,6 +339,6 @@ public class ImageFactory {
         if( best == null ) {
             return null;
         }
-        return ImageUtil.scaleImage( best, size, size );
+        return ImageScaler.scale( best, size, size );
     }
 }
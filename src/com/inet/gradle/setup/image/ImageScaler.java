@@ -0,0 +1,290 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.image;
+
+import java.awt.image.BufferedImage;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Resample images on the ARGB pixel arrays with separable filters and premultiplied alpha. The image is scaled first
+ * horizontally and then vertically with a Lanczos filter. Large reductions are first reduced with a box filter to the
+ * double target size. The rows of large images are processed in parallel in the common ForkJoinPool.
+ *
+ * @author Volker Berlin
+ */
+class ImageScaler {
+
+    /**
+     * Images with less pixels are processed in the current thread.
+     */
+    private static final int   PARALLEL_THRESHOLD = 64 * 1024;
+
+    private static final float LANCZOS_SUPPORT    = 3;
+
+    private static final float BOX_SUPPORT        = 0.5f;
+
+    /**
+     * Create a scaled copy of the image.
+     *
+     * @param src the source image
+     * @param width the width of the new image
+     * @param height the height of the new image
+     * @return the new image of type TYPE_INT_ARGB
+     */
+    static BufferedImage scale( BufferedImage src, int width, int height ) {
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        int[] argb;
+        if( src.getType() == BufferedImage.TYPE_INT_ARGB ) {
+            argb = (int[])src.getRaster().getDataElements( 0, 0, srcWidth, srcHeight, null );
+        } else {
+            argb = src.getRGB( 0, 0, srcWidth, srcHeight, null, 0, srcWidth );
+        }
+
+        // the first horizontal pass reads the source pixels directly to save the memory of a full float copy
+        float[] pixels;
+        int w = srcWidth;
+        if( w >= 4 * width ) {
+            pixels = scaleX( argb, null, w, srcHeight, 2 * width, true );
+            w = 2 * width;
+        } else if( w != width ) {
+            pixels = scaleX( argb, null, w, srcHeight, width, false );
+            w = width;
+        } else {
+            pixels = new float[argb.length * 4];
+            premultiply( argb, 0, argb.length, pixels );
+        }
+        if( w != width ) {
+            pixels = scaleX( null, pixels, w, srcHeight, width, false );
+        }
+        int h = srcHeight;
+        if( h >= 4 * height ) {
+            pixels = scaleY( pixels, width, h, 2 * height, true );
+            h = 2 * height;
+        }
+        if( h != height ) {
+            pixels = scaleY( pixels, width, h, height, false );
+        }
+
+        BufferedImage img = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+        img.setRGB( 0, 0, width, height, unpremultiply( pixels ), 0, width );
+        return img;
+    }
+
+    /**
+     * Scale the rows of the image. The source are the ARGB pixels or the premultiplied pixels.
+     *
+     * @param argb the ARGB pixels or null
+     * @param pixels the premultiplied pixels with 4 values per pixel or null
+     * @param width the current width
+     * @param height the height
+     * @param newWidth the new width
+     * @param box true for a box filter, false for a Lanczos filter
+     * @return the new pixels
+     */
+    private static float[] scaleX( int[] argb, float[] pixels, int width, int height, int newWidth, boolean box ) {
+        Weights weights = new Weights( width, newWidth, box );
+        float[] result = new float[newWidth * height * 4];
+        forEachRow( height, width * height, y -> {
+            float[] row = pixels;
+            int srcRow = y * width;
+            if( argb != null ) {
+                row = new float[width * 4];
+                premultiply( argb, srcRow, width, row );
+                srcRow = 0;
+            }
+            int dst = y * newWidth * 4;
+            for( int x = 0; x < newWidth; x++ ) {
+                int[] index = weights.index[x];
+                float[] weight = weights.weight[x];
+                float a = 0, r = 0, g = 0, b = 0;
+                for( int i = 0; i < index.length; i++ ) {
+                    int src = (srcRow + index[i]) * 4;
+                    float f = weight[i];
+                    a += row[src] * f;
+                    r += row[src + 1] * f;
+                    g += row[src + 2] * f;
+                    b += row[src + 3] * f;
+                }
+                result[dst++] = a;
+                result[dst++] = r;
+                result[dst++] = g;
+                result[dst++] = b;
+            }
+        } );
+        return result;
+    }
+
+    /**
+     * Scale the columns of the image.
+     *
+     * @param pixels the premultiplied pixels with 4 values per pixel
+     * @param width the width
+     * @param height the current height
+     * @param newHeight the new height
+     * @param box true for a box filter, false for a Lanczos filter
+     * @return the new pixels
+     */
+    private static float[] scaleY( float[] pixels, int width, int height, int newHeight, boolean box ) {
+        Weights weights = new Weights( height, newHeight, box );
+        int rowLength = width * 4;
+        float[] result = new float[rowLength * newHeight];
+        forEachRow( newHeight, width * height, y -> {
+            int[] index = weights.index[y];
+            float[] weight = weights.weight[y];
+            int dst = y * rowLength;
+            for( int i = 0; i < index.length; i++ ) {
+                int src = index[i] * rowLength;
+                float f = weight[i];
+                for( int x = 0; x < rowLength; x++ ) {
+                    result[dst + x] += pixels[src + x] * f;
+                }
+            }
+        } );
+        return result;
+    }
+
+    /**
+     * Call the action for every row. Large images are processed in parallel.
+     *
+     * @param rows the count of rows
+     * @param pixels the count of source pixels
+     * @param action the action for a row
+     */
+    private static void forEachRow( int rows, int pixels, IntConsumer action ) {
+        IntStream stream = IntStream.range( 0, rows );
+        if( pixels >= PARALLEL_THRESHOLD ) {
+            stream = stream.parallel();
+        }
+        stream.forEach( action );
+    }
+
+    /**
+     * Convert ARGB values to premultiplied float values.
+     *
+     * @param argb the pixels
+     * @param offset the offset of the first pixel
+     * @param length the count of pixels
+     * @param pixels receive 4 values per pixel in the order alpha, red, green, blue
+     */
+    private static void premultiply( int[] argb, int offset, int length, float[] pixels ) {
+        for( int i = offset, p = 0; i < offset + length; i++ ) {
+            int value = argb[i];
+            float alpha = value >>> 24;
+            float factor = alpha / 255;
+            pixels[p++] = alpha;
+            pixels[p++] = ((value >> 16) & 0xFF) * factor;
+            pixels[p++] = ((value >> 8) & 0xFF) * factor;
+            pixels[p++] = (value & 0xFF) * factor;
+        }
+    }
+
+    /**
+     * Convert premultiplied float values to ARGB values. The overshoot of the Lanczos filter is clamped.
+     *
+     * @param pixels 4 values per pixel in the order alpha, red, green, blue
+     * @return the ARGB pixels
+     */
+    private static int[] unpremultiply( float[] pixels ) {
+        int[] argb = new int[pixels.length / 4];
+        for( int i = 0, p = 0; i < argb.length; i++, p += 4 ) {
+            int alpha = clamp( pixels[p] );
+            if( alpha == 0 ) {
+                continue;
+            }
+            float factor = 255f / pixels[p];
+            argb[i] = alpha << 24 | clamp( pixels[p + 1] * factor ) << 16 | clamp( pixels[p + 2] * factor ) << 8 | clamp( pixels[p + 3] * factor );
+        }
+        return argb;
+    }
+
+    /**
+     * Round and clamp a value to the range 0 - 255.
+     *
+     * @param value the value
+     * @return the byte value
+     */
+    private static int clamp( float value ) {
+        int i = Math.round( value );
+        return i < 0 ? 0 : i > 255 ? 255 : i;
+    }
+
+    /**
+     * The precalculated filter weights of one dimension. The weights of every target pixel are normalized to 1. Source
+     * indexes outside the image are clamped to the border.
+     */
+    private static class Weights {
+
+        private final int[][]   index;
+
+        private final float[][] weight;
+
+        /**
+         * Calculate the weights.
+         *
+         * @param length the source length
+         * @param newLength the target length
+         * @param box true for a box filter, false for a Lanczos filter
+         */
+        private Weights( int length, int newLength, boolean box ) {
+            index = new int[newLength][];
+            weight = new float[newLength][];
+            float scale = (float)length / newLength;
+            float filterScale = Math.max( scale, 1 );
+            float radius = (box ? BOX_SUPPORT : LANCZOS_SUPPORT) * filterScale;
+            for( int i = 0; i < newLength; i++ ) {
+                float center = (i + 0.5f) * scale - 0.5f;
+                int left = (int)Math.ceil( center - radius );
+                int right = (int)Math.floor( center + radius );
+                int[] indexes = new int[right - left + 1];
+                float[] weights = new float[indexes.length];
+                float sum = 0;
+                for( int j = left; j <= right; j++ ) {
+                    float x = (j - center) / filterScale;
+                    float w = box ? (x >= -BOX_SUPPORT && x < BOX_SUPPORT ? 1 : 0) : lanczos( x );
+                    indexes[j - left] = Math.min( Math.max( j, 0 ), length - 1 );
+                    weights[j - left] = w;
+                    sum += w;
+                }
+                if( sum != 0 ) {
+                    for( int j = 0; j < weights.length; j++ ) {
+                        weights[j] /= sum;
+                    }
+                }
+                index[i] = indexes;
+                weight[i] = weights;
+            }
+        }
+
+        /**
+         * The Lanczos kernel with 3 lobes.
+         *
+         * @param x the distance from the center
+         * @return the weight
+         */
+        private static float lanczos( float x ) {
+            if( x == 0 ) {
+                return 1;
+            }
+            if( x <= -LANCZOS_SUPPORT || x >= LANCZOS_SUPPORT ) {
+                return 0;
+            }
+            double px = Math.PI * x;
+            return (float)(LANCZOS_SUPPORT * Math.sin( px ) * Math.sin( px / LANCZOS_SUPPORT ) / (px * px));
+        }
+    }
+}
@@ -36,6 +36,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 class IOSupport {
     public static final int LONG_INT_SIZE = 4;
@@ -61,6 +62,14 @@ class IOSupport {
         }
     }
 
+    public static void writeLiteralLongInt(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes();
+        buffer.put(bytes, 0, Math.min(LONG_INT_SIZE, bytes.length));
+        for (int i = bytes.length; i < LONG_INT_SIZE; i++) {
+            buffer.put((byte)' ');
+        }
+    }
+
     public static int readLongInt(InputStream inputStream) throws IOException {
         byte[] data = new byte[LONG_INT_SIZE];
         readFully(inputStream, data);
@@ -89,7 +98,10 @@ class IOSupport {
     }
 
     public static void readFully(InputStream inputStream, byte b[]) throws IOException {
-        int nbBytesToRead = b.length;
+        readFully(inputStream, b, b.length);
+    }
+
+    public static void readFully(InputStream inputStream, byte b[], int nbBytesToRead) throws IOException {
 
         int nbBytesRead = 0;
         while (nbBytesRead < nbBytesToRead) {
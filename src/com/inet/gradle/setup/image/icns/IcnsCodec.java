@@ -36,12 +36,12 @@ import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Map;
 
 import javax.imageio.ImageIO;
 
@@ -70,51 +70,68 @@ public class IcnsCodec {
     private static final String THUMBNAIL_8_BIT_MASK = "t8mk";
     public static final int THUMBNAIL_SIZE = 128;
 
+    /**
+     * The types of the PNG encoded icons, the @2x types have the doubled pixel size.
+     */
+    public static final String[] PNG_TYPES = { "ic11", "ic12", "ic07", "ic13", "ic08", "ic14", "ic09", "ic10" };
+    /**
+     * The pixel sizes of the PNG_TYPES.
+     */
+    public static final int[] PNG_SIZES = { 32, 64, 128, 256, 256, 512, 512, 1024 };
+
+    // Reusable buffers for the icons of one encode or decode call, an instance is not thread safe
+    private int[] pixels = new int[0];
+    private byte[] channel = new byte[0];
+    private byte[] elementData = new byte[0];
+
     public void encode(IconSuite suite, OutputStream outputStream) throws IOException {
-        byte[] small = encode32bitIcon(suite.getSmallIcon(), SMALL_32_BIT_RGB, SMALL_8_BIT_MASK);
-        byte[] large = encode32bitIcon(suite.getLargeIcon(), LARGE_32_BIT_RGB, LARGE_8_BIT_MASK);
-        byte[] huge = encode32bitIcon(suite.getHugeIcon(), HUGE_32_BIT_RGB, HUGE_8_BIT_MASK);
-        byte[] thumbnail = encode32bitIcon(suite.getThumbnailIcon(), THUMBNAIL_32_BIT_RGB, IOSupport.LONG_INT_SIZE, THUMBNAIL_8_BIT_MASK);
-        byte[] icsBW = encodeIcsBW(suite);
-        byte[] icnBW = encodeIcnBW(suite);
-
-        int totalSize = icsBW.length + icnBW.length + small.length + huge.length + large.length + thumbnail.length;
-
-        DataOutputStream stream = new DataOutputStream(outputStream);
-
-        IOSupport.writeLiteralLongInt(stream, ICNS);
-        IOSupport.writeLongInt(stream, totalSize + 2 * IOSupport.LONG_INT_SIZE);
-
-        stream.write(icsBW);
-        stream.write(small);
-        stream.write(icnBW);
-        stream.write(large);
-        stream.write(huge);
-        stream.write(thumbnail);
-    }
+        // The whole file is packed into one buffer with the maximum possible size
+        int capacity = 2 * IOSupport.LONG_INT_SIZE;
+        capacity += 2 * IOSupport.LONG_INT_SIZE + ICS_BW_SIZE * ICS_BW_SIZE / 8;
+        capacity += 2 * IOSupport.LONG_INT_SIZE + 2 * ICN_BW_SIZE * ICN_BW_SIZE / 8;
+        capacity += max32bitIconSize(suite.getSmallIcon(), 0);
+        capacity += max32bitIconSize(suite.getLargeIcon(), 0);
+        capacity += max32bitIconSize(suite.getHugeIcon(), 0);
+        capacity += max32bitIconSize(suite.getThumbnailIcon(), IOSupport.LONG_INT_SIZE);
+        for (byte[] png : suite.getPngIcons().values()) {
+            capacity += png.length + 2 * IOSupport.LONG_INT_SIZE;
+        }
+        ByteBuffer out = ByteBuffer.allocate(capacity);
+
+        IOSupport.writeLiteralLongInt(out, ICNS);
+        out.putInt(0); // total size, set at the end
+
+        encodeIcsBW(suite, out);
+        encode32bitIcon(suite.getSmallIcon(), SMALL_32_BIT_RGB, 0, SMALL_8_BIT_MASK, out);
+        encodeIcnBW(suite, out);
+        encode32bitIcon(suite.getLargeIcon(), LARGE_32_BIT_RGB, 0, LARGE_8_BIT_MASK, out);
+        encode32bitIcon(suite.getHugeIcon(), HUGE_32_BIT_RGB, 0, HUGE_8_BIT_MASK, out);
+        encode32bitIcon(suite.getThumbnailIcon(), THUMBNAIL_32_BIT_RGB, IOSupport.LONG_INT_SIZE, THUMBNAIL_8_BIT_MASK, out);
+        // The PNG data are written unchanged
+        for (Map.Entry<String, byte[]> png : suite.getPngIcons().entrySet()) {
+            IOSupport.writeLiteralLongInt(out, png.getKey());
+            out.putInt(png.getValue().length + 2 * IOSupport.LONG_INT_SIZE);
+            out.put(png.getValue());
+        }
 
-    private byte[] encodeIcsBW(IconSuite suite) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.putInt(IOSupport.LONG_INT_SIZE, out.position());
+        outputStream.write(out.array(), 0, out.position());
+    }
 
+    private void encodeIcsBW(IconSuite suite, ByteBuffer out) {
         byte[] data = encodeAsBWData(suite, ICS_BW_SIZE, ICS_BW_SIZE);
         IOSupport.writeLiteralLongInt(out, ICS_BW);
-        IOSupport.writeLongInt(out, data.length + 2 * IOSupport.LONG_INT_SIZE);
-        out.write(data);
-
-        return out.toByteArray();
+        out.putInt(data.length + 2 * IOSupport.LONG_INT_SIZE);
+        out.put(data);
     }
 
-    private byte[] encodeIcnBW(IconSuite suite) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-
+    private void encodeIcnBW(IconSuite suite, ByteBuffer out) {
         byte[] data = encodeAsBWData(suite, ICN_BW_SIZE, ICN_BW_SIZE);
         IOSupport.writeLiteralLongInt(out, ICN_BW);
-        IOSupport.writeLongInt(out, 2 * data.length + 2 * IOSupport.LONG_INT_SIZE);
-        out.write(data);
+        out.putInt(2 * data.length + 2 * IOSupport.LONG_INT_SIZE);
+        out.put(data);
         // Reuse the pixel data for the mask
-        out.write(data);
-
-        return out.toByteArray();
+        out.put(data);
     }
 
     private byte[] encodeAsBWData(IconSuite suite, int width, int height) {
@@ -128,7 +145,7 @@ public class IcnsCodec {
         graphics.drawImage(icon, 0, 0, width, height, 0, 0, icon.getWidth(), icon.getHeight(), null);
         graphics.dispose();
 
-        DataBufferByte dataBuffer = ((DataBufferByte) scaledImage.getData().getDataBuffer());
+        DataBufferByte dataBuffer = ((DataBufferByte) scaledImage.getRaster().getDataBuffer());
         byte[] data = dataBuffer.getData();
 
         assert data.length == (width * height / 8) : "Incorrect data size [actual:" + data.length + ",expected:" + (width * height / 8) + "]";
@@ -136,60 +153,54 @@ public class IcnsCodec {
         return data;
     }
 
-    private byte[] encode32bitIcon(BufferedImage image, String rgbHeader, String maskHeader) throws IOException {
-        return encode32bitIcon(image, rgbHeader, 0, maskHeader);
+    private static int max32bitIconSize(BufferedImage image, int rgbPrefixSize) {
+        if (image == null) {
+            return 0;
+        }
+        int count = image.getWidth() * image.getHeight();
+        return 4 * IOSupport.LONG_INT_SIZE + rgbPrefixSize + 3 * RunLengthEncoding.maxPackedSize(count) + count;
     }
 
-    private byte[] encode32bitIcon(BufferedImage image, String rgbHeader, int rgbPrefixSize, String maskHeader) throws IOException {
+    private void encode32bitIcon(BufferedImage image, String rgbHeader, int rgbPrefixSize, String maskHeader, ByteBuffer out) {
         if (image == null) {
-            return new byte[0];
+            return;
         }
 
         int width = image.getWidth();
         int height = image.getHeight();
-        byte[] bytesR = new byte[width * height];
-        byte[] bytesG = new byte[width * height];
-        byte[] bytesB = new byte[width * height];
-        byte[] mask = new byte[width * height];
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = image.getRGB(x, y);
-                byte a = (byte) ((pixel & 0xFF000000) >> 24);
-                byte r = (byte) ((pixel & 0x00FF0000) >> 16);
-                byte g = (byte) ((pixel & 0x0000FF00) >> 8);
-                byte b = (byte) ((pixel & 0x000000FF));
-
-                int pixelOffset = (y * width) + x;
-                mask[pixelOffset] = a;
-                bytesR[pixelOffset] = r;
-                bytesG[pixelOffset] = g;
-                bytesB[pixelOffset] = b;
-            }
+        int count = width * height;
+        if (pixels.length < count) {
+            pixels = new int[count];
+            channel = new byte[count];
+        }
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            image.getRaster().getDataElements(0, 0, width, height, pixels);
+        } else {
+            image.getRGB(0, 0, width, height, pixels, 0, width);
         }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-
-        byte[] packedR = RunLengthEncoding.packIconData(bytesR);
-        byte[] packedG = RunLengthEncoding.packIconData(bytesG);
-        byte[] packedB = RunLengthEncoding.packIconData(bytesB);
-        int packedLength = packedR.length + packedG.length + packedB.length;
-        int resourceSize = rgbPrefixSize + packedLength + 2 * IOSupport.LONG_INT_SIZE;
-
+        int start = out.position();
         IOSupport.writeLiteralLongInt(out, rgbHeader);
-        IOSupport.writeLongInt(out, resourceSize);
+        out.putInt(0); // resource size, set after packing
         // The rgbPrefixSize allows the unknown value at the beginning of
         // the thumbnail icons to be added.
-        out.write(new byte[rgbPrefixSize]);
-        out.write(packedR);
-        out.write(packedG);
-        out.write(packedB);
+        for (int i = 0; i < rgbPrefixSize; i++) {
+            out.put((byte)0);
+        }
+        // pack the red, green and blue channel directly into the output
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            for (int i = 0; i < count; i++) {
+                channel[i] = (byte)(pixels[i] >> shift);
+            }
+            out.position(RunLengthEncoding.packIconData(channel, count, out.array(), out.position()));
+        }
+        out.putInt(start + IOSupport.LONG_INT_SIZE, out.position() - start);
 
         IOSupport.writeLiteralLongInt(out, maskHeader);
-        IOSupport.writeLongInt(out, mask.length + 2 * IOSupport.LONG_INT_SIZE);
-        out.write(mask);
-
-        return out.toByteArray();
+        out.putInt(count + 2 * IOSupport.LONG_INT_SIZE);
+        for (int i = 0; i < count; i++) {
+            out.put((byte)(pixels[i] >>> 24));
+        }
     }
 
     /**
@@ -288,48 +299,33 @@ public class IcnsCodec {
             int elementSize = IOSupport.readLongInt(inputStream);
             int elementDataSize = elementSize - (2 * IOSupport.LONG_INT_SIZE);
 
+            if (elementData.length < elementDataSize) {
+                elementData = new byte[elementDataSize];
+            }
+            IOSupport.readFully(inputStream, elementData, elementDataSize);
+
             if (elementType.equals(SMALL_32_BIT_RGB)) {
-                byte[] elementData = new byte[elementDataSize];
-                IOSupport.readFully(inputStream, elementData);
-                small = decode32bitIcon(elementData, small, SMALL_SIZE);
+                small = decode32bitIcon(elementData, 0, elementDataSize, small, SMALL_SIZE);
             } else if (elementType.equals(LARGE_32_BIT_RGB)) {
-                byte[] elementData = new byte[elementDataSize];
-                IOSupport.readFully(inputStream, elementData);
-                large = decode32bitIcon(elementData, large, LARGE_SIZE);
+                large = decode32bitIcon(elementData, 0, elementDataSize, large, LARGE_SIZE);
             } else if (elementType.equals(HUGE_32_BIT_RGB)) {
-                byte[] elementData = new byte[elementDataSize];
-                IOSupport.readFully(inputStream, elementData);
-                huge = decode32bitIcon(elementData, huge, HUGE_SIZE);
+                huge = decode32bitIcon(elementData, 0, elementDataSize, huge, HUGE_SIZE);
             } else if (elementType.equals(THUMBNAIL_32_BIT_RGB)) {
                 // The thumbnail icons contain an extra 4 bytes which
                 // always seem to be set to 0. I don't know what this
                 // data means, so for now simply skip it.
-                IOSupport.skip(inputStream, IOSupport.LONG_INT_SIZE);
-
-                byte[] elementData = new byte[elementDataSize - IOSupport.LONG_INT_SIZE];
-                IOSupport.readFully(inputStream, elementData);
-                thumb = decode32bitIcon(elementData, thumb, THUMBNAIL_SIZE);
+                thumb = decode32bitIcon(elementData, IOSupport.LONG_INT_SIZE, elementDataSize - IOSupport.LONG_INT_SIZE, thumb, THUMBNAIL_SIZE);
             } else if (elementType.equals(SMALL_8_BIT_MASK)) {
-                byte[] elementData = new byte[elementDataSize];
-                IOSupport.readFully(inputStream, elementData);
-                small = decode8bitMask(elementData, small, SMALL_SIZE);
+                small = decode8bitMask(elementData, elementDataSize, small, SMALL_SIZE);
             } else if (elementType.equals(LARGE_8_BIT_MASK)) {
-                byte[] elementData = new byte[elementDataSize];
-                IOSupport.readFully(inputStream, elementData);
-                large = decode8bitMask(elementData, large, LARGE_SIZE);
+                large = decode8bitMask(elementData, elementDataSize, large, LARGE_SIZE);
             } else if (elementType.equals(HUGE_8_BIT_MASK)) {
-                byte[] elementData = new byte[elementDataSize];
-                IOSupport.readFully(inputStream, elementData);
-                huge = decode8bitMask(elementData, huge, HUGE_SIZE);
+                huge = decode8bitMask(elementData, elementDataSize, huge, HUGE_SIZE);
             } else if (elementType.equals(THUMBNAIL_8_BIT_MASK)) {
-                byte[] elementData = new byte[elementDataSize];
-                IOSupport.readFully(inputStream, elementData);
-                thumb = decode8bitMask(elementData, thumb, THUMBNAIL_SIZE);
+                thumb = decode8bitMask(elementData, elementDataSize, thumb, THUMBNAIL_SIZE);
             } else {
                 // for all other formats we try if it is a PNG format that can be read with ImageIO
-                byte[] elementData = new byte[elementDataSize];
-                IOSupport.readFully(inputStream, elementData);
-                BufferedImage img = ImageIO.read( new ByteArrayInputStream(elementData) );
+                BufferedImage img = ImageIO.read( new ByteArrayInputStream(elementData, 0, elementDataSize) );
                 if( img != null ) {
                     images.add( img );
                 }
@@ -361,16 +357,8 @@ public class IcnsCodec {
         return image;
     }
 
-    private int[] decode32bitIcon(byte[] packedData, int[] destination, int size) {
+    private int[] decode32bitIcon(byte[] packedData, int offset, int length, int[] destination, int size) {
         int nbPixels = size * size;
-        byte[] unpackedData;
-
-        if (packedData.length == nbPixels * 4) {
-            unpackedData = packedData;
-        } else {
-            unpackedData = new byte[nbPixels * 3];
-            RunLengthEncoding.unpackIconData(packedData, unpackedData);
-        }
 
         int[] pixels;
         if (destination == null) {
@@ -385,21 +373,25 @@ public class IcnsCodec {
 
         assert pixels.length == size * size : "Incorrect pixel buffer size";
 
-        int unpackedIndex = 0;
-        for (int i = 0; i < pixels.length; i++) {
-            pixels[i] |= (unpackedData[unpackedIndex++] & 0xFF) << 16;
-        }
-        for (int i = 0; i < pixels.length; i++) {
-            pixels[i] |= (unpackedData[unpackedIndex++] & 0xFF) << 8;
-        }
-        for (int i = 0; i < pixels.length; i++) {
-            pixels[i] |= (unpackedData[unpackedIndex++] & 0xFF);
+        if (length == nbPixels * 4) {
+            int unpackedIndex = offset;
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] |= (packedData[unpackedIndex++] & 0xFF) << 16;
+            }
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] |= (packedData[unpackedIndex++] & 0xFF) << 8;
+            }
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] |= (packedData[unpackedIndex++] & 0xFF);
+            }
+        } else {
+            RunLengthEncoding.unpackIconData(packedData, offset, length, pixels);
         }
 
         return pixels;
     }
 
-    private int[] decode8bitMask(byte[] data, int[] destination, int size) {
+    private int[] decode8bitMask(byte[] data, int length, int[] destination, int size) {
         int[] pixels;
         int arraySize = size * size;
         if (destination == null) {
@@ -409,7 +401,7 @@ public class IcnsCodec {
         }
 
         assert pixels.length == arraySize : "Incorrect pixel buffer size [actual:" + pixels.length + ",expected:" + arraySize + "]";
-        assert data.length == arraySize : "Incorrect data buffer size [actual:" + data.length + ",expected:" + arraySize + "]";
+        assert length == arraySize : "Incorrect data buffer size [actual:" + length + ",expected:" + arraySize + "]";
 
         for (int i = 0; i < pixels.length; i++) {
             // Clear old alpha value
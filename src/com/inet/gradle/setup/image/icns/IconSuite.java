@@ -33,6 +33,9 @@ POSSIBILITY OF SUCH DAMAGE.
 package com.inet.gradle.setup.image.icns;
 
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class IconSuite {
     private static final int SMALL_INDEX = 0;
@@ -42,6 +45,8 @@ public class IconSuite {
 
     private BufferedImage[] icons = new BufferedImage[4];
 
+    private Map<String, byte[]> pngIcons = new LinkedHashMap<>();
+
     /**
      * Returns the icon that mathces the given dimensions the closest.
      */
@@ -135,6 +140,28 @@ public class IconSuite {
         icons[SMALL_INDEX] = smallIcon;
     }
 
+    /**
+     * Returns the PNG encoded icons with its type in the order of setting.
+     */
+    public Map<String, byte[]> getPngIcons() {
+        return pngIcons;
+    }
+
+    /**
+     * Sets a PNG encoded icon. The type must be one of IcnsCodec.PNG_TYPES and the PNG data must have the matching
+     * size. The data are written unchanged.
+     */
+    public void setPngIcon(String type, byte[] png) {
+        if (!Arrays.asList(IcnsCodec.PNG_TYPES).contains(type)) {
+            throw new IllegalArgumentException("Unknown icon type: " + type);
+        }
+        if (png == null) {
+            pngIcons.remove(type);
+        } else {
+            pngIcons.put(type, png);
+        }
+    }
+
     private void verifyIcon(BufferedImage icon, int size) {
         if (icon != null) {
             if (icon.getWidth() != size || icon.getHeight() != size) {
@@ -63,6 +63,48 @@ class RunLengthEncoding {
         }
     }
 
+    /**
+     * Decompresses the red, green and blue channels of a 32-bit icon resource directly into the pixels without an
+     * intermediate buffer. The channel values are combined with the existing pixel values.
+     * @param packedData buffer with the compressed data
+     * @param offset the start of the compressed data in the buffer
+     * @param length the length of the compressed data
+     * @param pixels the ARGB pixels
+     * @see #packIconData(byte[], int, byte[], int)
+     */
+    public static void unpackIconData(byte[] packedData, int offset, int length, int[] pixels) {
+        int in = offset;
+        int end = offset + length;
+        int pixel = 0;
+        int shift = 16;
+
+        while (in < end && shift >= 0) {
+            int header = packedData[in++] & 0xFF;
+            boolean literal = (header & 0x80) == 0;
+            int count = literal ? header + 1 : header - 125;
+            int data = literal ? 0 : packedData[in++] & 0xFF;
+            for (int i = 0; i < count && shift >= 0; i++) {
+                if (literal) {
+                    data = packedData[in++] & 0xFF;
+                }
+                pixels[pixel++] |= data << shift;
+                if (pixel == pixels.length) {
+                    pixel = 0;
+                    shift -= 8;
+                }
+            }
+        }
+    }
+
+    /**
+     * The maximum size of the compressed data.
+     * @param length the length of the uncompressed data
+     * @return the needed buffer size for {@link #packIconData(byte[], int, byte[], int)}
+     */
+    public static int maxPackedSize(int length) {
+        return length + (length + 128) / 128;
+    }
+
     /**
      * Compresses data using the PackBits variant used in icon resources.
      * 32-bit icon resources use an undocumented run length compression scheme that is not
@@ -76,7 +118,7 @@ class RunLengthEncoding {
      * it should be repeated (header value - 125) times.
      */
     public static byte[] packIconData(byte[] unpackedData) {
-        byte[] resultBuffer = new byte[unpackedData.length + (unpackedData.length + 128) / 128];
+        byte[] resultBuffer = new byte[maxPackedSize(unpackedData.length)];
         int resultSize = RunLengthEncoding.packIconData(unpackedData, resultBuffer);
 
         byte[] packedData = new byte[resultSize];
@@ -89,10 +131,24 @@ class RunLengthEncoding {
      * @see #packIconData(byte[])
      */
     public static int packIconData(byte[] unpackedData, byte[] packedData) {
+        return packIconData(unpackedData, unpackedData.length, packedData, 0);
+    }
+
+    /**
+     * Compresses data using the PackBits variant used in icon resources into a caller-supplied buffer. No memory is
+     * allocated, so the buffers can be reused for multiple icons.
+     * @param unpackedData buffer with the uncompressed data starting at index 0
+     * @param length the length of the uncompressed data
+     * @param packedData the target buffer with space for {@link #maxPackedSize(int)} bytes after the offset
+     * @param offset the start position in the target buffer
+     * @return the position after the last written byte
+     * @see #packIconData(byte[])
+     */
+    public static int packIconData(byte[] unpackedData, int length, byte[] packedData, int offset) {
         int in = 0;
-        int out = 0;
+        int out = offset;
 
-        while (in < unpackedData.length) {
+        while (in < length) {
             int literalStart = in;
             byte data = unpackedData[in++];
 
@@ -100,7 +156,7 @@ class RunLengthEncoding {
             // Stop if 3 or more consecutive bytes are equal or EOF is reached
             int nbBytesRead = 1;
             int nbRepeatedBytes = 0;
-            while(in < unpackedData.length && nbBytesRead < 128 && nbRepeatedBytes < 3) {
+            while(in < length && nbBytesRead < 128 && nbRepeatedBytes < 3) {
                 byte nextData = unpackedData[in++];
                 if (nextData == data) {
                     if (nbRepeatedBytes == 0) {
@@ -132,7 +188,7 @@ class RunLengthEncoding {
             }
 
             // Read up to 130 consecutive bytes that are equal
-            while(in < unpackedData.length && unpackedData[in] == data && nbRepeatedBytes < 130) {
+            while(in < length && unpackedData[in] == data && nbRepeatedBytes < 130) {
                 nbRepeatedBytes++;
                 in++;
             }
@@ -13,10 +13,18 @@ import java.awt.image.BufferedImage;
 import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
 
+import javax.imageio.ImageIO;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import com.inet.gradle.setup.image.image4j.codec.bmp.BMPEncoder;
 import com.inet.gradle.setup.image.image4j.codec.bmp.InfoHeader;
@@ -29,6 +37,14 @@ import com.inet.gradle.setup.image.image4j.util.ConvertUtil;
  */
 public class ICOEncoder {
 
+  /**
+   * The minimum width or height of images which are compressed as PNG by {@link #writeCompressed(List, java.io.OutputStream)}.
+   */
+  public static final int PNG_MIN_SIZE = 256;
+
+  /** Idle PNG writers for reuse */
+  private static final Queue<ImageWriter> PNG_WRITERS = new ConcurrentLinkedQueue<ImageWriter>();
+
   /** Creates a new instance of ICOEncoder */
   private ICOEncoder() {
   }
@@ -147,87 +163,92 @@ public class ICOEncoder {
 
     int count = images.size();
 
+    //convert and encode all images in parallel
+    byte[][] data = new byte[count][];
+    IconEntry[] entries = new IconEntry[count];
+    try {
+      IntStream.range(0, count).parallel().forEach(i -> {
+        try {
+          BufferedImage img = images.get(i);
+          int b = bpp == null ? -1 : bpp[i];
+          boolean c = compress != null && compress[i];
+          //convert image
+          BufferedImage imgc = b == -1 ? img : convert(img, b);
+          //create info header
+          InfoHeader ih = BMPEncoder.createInfoHeader(imgc);
+          //create icon entry
+          entries[i] = createIconEntry(ih);
+          data[i] = c ? encodePNG(imgc) : encodeBMP(img, imgc, ih);
+          entries[i].iSizeInBytes = data[i].length;
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+      });
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+
     //file header 6
     writeFileHeader(count, ICOConstants.TYPE_ICON, out);
 
     //file offset where images start
     int fileOffset = 6 + count * 16;
 
-    List<InfoHeader> infoHeaders = new java.util.ArrayList<InfoHeader>(count);
-
-    List<BufferedImage> converted = new java.util.ArrayList<BufferedImage>(count);
-
-    List<byte[]> compressedImages = null;
-    if (compress != null) {
-      compressedImages = new java.util.ArrayList<byte[]>(count);
-    }
-
-    javax.imageio.ImageWriter pngWriter = null;
-
     //icon entries 16 * count
     for (int i = 0; i < count; i++) {
-      BufferedImage img = images.get(i);
-      int b = bpp == null ? -1 : bpp[i];
-      //convert image
-      BufferedImage imgc = b == -1 ? img : convert(img, b);
-      converted.add(imgc);
-      //create info header
-      InfoHeader ih = BMPEncoder.createInfoHeader(imgc);
-      //create icon entry
-      IconEntry e = createIconEntry(ih);
-
-      if (compress != null) {
-        if (compress[i]) {
-          if (pngWriter == null) {
-            pngWriter = getPNGImageWriter();            
-          }
-          byte[] compressedImage = encodePNG(pngWriter, imgc);
-          compressedImages.add(compressedImage);
-          e.iSizeInBytes = compressedImage.length;
-        } else {
-          compressedImages.add(null);
-        }
-      }
-
-      ih.iHeight *= 2;
-
+      IconEntry e = entries[i];
       e.iFileOffset = fileOffset;
       fileOffset += e.iSizeInBytes;
-
       e.write(out);
-
-      infoHeaders.add(ih);
     }
 
     //images
     for (int i = 0; i < count; i++) {
-      BufferedImage img = images.get(i);
-      BufferedImage imgc = converted.get(i);
-
-      if (compress == null || !compress[i]) {
-
-        //info header
-        InfoHeader ih = infoHeaders.get(i);
-        ih.write(out);
-        //color map
-        if (ih.sBitCount <= 8) {
-          IndexColorModel icm = (IndexColorModel) imgc.getColorModel();
-          BMPEncoder.writeColorMap(icm, out);
-        }
-        //xor bitmap
-        writeXorBitmap(imgc, ih, out);
-        //and bitmap
-        writeAndBitmap(img, out);
-
-      }
-      else {
-        byte[] compressedImage = compressedImages.get(i);
-        out.write(compressedImage);
-      }
+      out.write(data[i]);
+    }
+  }
 
-      //javax.imageio.ImageIO.write(imgc, "png", new java.io.File("test_"+i+".png"));
+  /**
+   * Encodes and outputs a list of images in ICO format without colour depth conversion. Images with a width or height of
+   * {@link #PNG_MIN_SIZE} pixels or more are compressed as PNG, smaller images are stored as bitmap for compatibility
+   * with old Windows versions.
+   * @param images List of images to encode, which will be output in the order supplied in the list.
+   * @param os The output to which the encoded images will be written.
+   * @throws java.io.IOException if an error occurred.
+   */
+  public static void writeCompressed(List<BufferedImage> images, java.io.OutputStream os) throws IOException {
+    boolean[] compress = new boolean[images.size()];
+    for (int i = 0; i < compress.length; i++) {
+      BufferedImage img = images.get(i);
+      compress[i] = img.getWidth() >= PNG_MIN_SIZE || img.getHeight() >= PNG_MIN_SIZE;
     }
+    write(images, null, compress, os);
+  }
 
+  /**
+   * Encodes an image as bitmap entry with info header, colour map, <em>XOR</em> bitmap and <em>AND</em> bitmap.
+   * @param img the source image for the <em>AND</em> bitmap
+   * @param imgc the converted image
+   * @param ih the info header of the converted image, the height is doubled
+   * @return the encoded entry
+   * @throws java.io.IOException if an error occurs
+   */
+  private static byte[] encodeBMP(BufferedImage img, BufferedImage imgc, InfoHeader ih) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    LittleEndianOutputStream out = new LittleEndianOutputStream(bout);
+    ih.iHeight *= 2;
+    //info header
+    ih.write(out);
+    //color map
+    if (ih.sBitCount <= 8) {
+      IndexColorModel icm = (IndexColorModel) imgc.getColorModel();
+      BMPEncoder.writeColorMap(icm, out);
+    }
+    //xor bitmap
+    writeXorBitmap(imgc, ih, out);
+    //and bitmap
+    writeAndBitmap(img, out);
+    return bout.toByteArray();
   }
 
   /**
@@ -427,28 +448,30 @@ public class ICOEncoder {
   }
 
   /**
-   * @since 0.6
-   */ 
-  private static javax.imageio.ImageWriter getPNGImageWriter() {
-    javax.imageio.ImageWriter ret = null;
-    java.util.Iterator<javax.imageio.ImageWriter> itr = javax.imageio.ImageIO.getImageWritersByFormatName("png");
-    if (itr.hasNext()) {
-      ret = itr.next();
-    }
-    return ret;
-  }
-
-  /**
+   * Encodes an image as PNG with a writer from the pool. The writers are reused because the lookup and creation of a
+   * writer is expensive. A writer is never used by more than one thread at the same time.
    * @since 0.6
    */
-  private static byte[] encodePNG(ImageWriter pngWriter, BufferedImage img) throws IOException {
-    java.io.ByteArrayOutputStream bout = new java.io.ByteArrayOutputStream();
-    javax.imageio.stream.ImageOutputStream output = javax.imageio.ImageIO.createImageOutputStream(bout);
-    pngWriter.setOutput(output);
-    pngWriter.write(img);
-    bout.flush();
-    byte[] ret = bout.toByteArray();
-    return ret;
+  private static byte[] encodePNG(BufferedImage img) throws IOException {
+    ImageWriter pngWriter = PNG_WRITERS.poll();
+    if (pngWriter == null) {
+      java.util.Iterator<ImageWriter> itr = ImageIO.getImageWritersByFormatName("png");
+      if (!itr.hasNext()) {
+        throw new IOException("No PNG image writer found");
+      }
+      pngWriter = itr.next();
+    }
+    try {
+      ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      try (ImageOutputStream output = new MemoryCacheImageOutputStream(bout)) {
+        pngWriter.setOutput(output);
+        pngWriter.write(img);
+      }
+      return bout.toByteArray();
+    } finally {
+      pngWriter.reset();
+      PNG_WRITERS.offer(pngWriter);
+    }
   }
 
 }
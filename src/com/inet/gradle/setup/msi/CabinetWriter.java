@@ -0,0 +1,428 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * Writer for Microsoft Cabinet files (MS-CAB) with MSZIP compression. The files are split into multiple folders that
+ * are compressed on multiple threads. Every folder is written to a temporary file first because the header needs the
+ * count of data blocks of all folders. The names of the files in the cabinet are the IDs of the File table like light
+ * create it.
+ *
+ * @author Volker Berlin
+ */
+class CabinetWriter {
+
+    private static final int     BLOCK_SIZE      = 32768;
+
+    private static final int     MAX_FILES       = 0xFFFF;
+
+    private static final long    MAX_FOLDER_SIZE = 0xFFFFL * BLOCK_SIZE;
+
+    private static final long    MIN_FOLDER_SIZE = 1024 * 1024;
+
+    private static final long    MAX_CAB_SIZE    = 0xFFFFFFFFL;
+
+    private static final int     TYPE_MSZIP      = 1;
+
+    private static final int     ATTRIB_ARCHIVE  = 0x20;
+
+    private static final int     ATTRIB_UTF      = 0x80;
+
+    private final List<CabFile>  files           = new ArrayList<>();
+
+    private final int            level;
+
+    private final int            threads;
+
+    private long                 size;
+
+    /**
+     * Create a new writer.
+     *
+     * @param level the compression level 0 - 9 or -1 for the default level
+     * @param threads the count of compressing threads, 0 or less for the count of available processors
+     */
+    CabinetWriter( int level, int threads ) {
+        this.level = level;
+        this.threads = threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    /**
+     * Add a file. The files are saved in the order of the calls.
+     *
+     * @param name the name in the cabinet
+     * @param source the source file
+     * @throws IOException if the file can not be added to a cabinet
+     */
+    void addFile( String name, File source ) throws IOException {
+        long length = source.length();
+        if( length > MAX_FOLDER_SIZE ) {
+            throw new IOException( "The file '" + source + "' is to large for a cabinet." );
+        }
+        if( files.size() == MAX_FILES ) {
+            throw new IOException( "A cabinet can not contain more as " + MAX_FILES + " files." );
+        }
+        files.add( new CabFile( name, source, length, source.lastModified() ) );
+        size += length;
+    }
+
+    /**
+     * Write the cabinet.
+     *
+     * @param cabinet the target file
+     * @param tempDir directory for the temporary folder data
+     * @throws IOException if an I/O error occurs
+     */
+    void write( File cabinet, File tempDir ) throws IOException {
+        List<List<CabFile>> folders = splitFolders();
+        List<Folder> results = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool( Math.min( threads, Math.max( 1, folders.size() ) ) );
+        try {
+            List<Future<Folder>> futures = new ArrayList<>();
+            for( int i = 0; i < folders.size(); i++ ) {
+                List<CabFile> folderFiles = folders.get( i );
+                File data = new File( tempDir, "cabfolder" + i + ".tmp" );
+                futures.add( pool.submit( () -> compressFolder( folderFiles, data ) ) );
+            }
+            for( Future<Folder> future : futures ) {
+                results.add( future.get() );
+            }
+            writeCabinet( cabinet, folders, results );
+        } catch( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( ex );
+        } catch( ExecutionException ex ) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException)cause : new IOException( cause );
+        } finally {
+            pool.shutdownNow();
+            for( int i = 0; i < folders.size(); i++ ) {
+                Files.deleteIfExists( new File( tempDir, "cabfolder" + i + ".tmp" ).toPath() );
+            }
+        }
+    }
+
+    /**
+     * Split the files into folders of nearly the same size so that all threads has work. A file is never split.
+     *
+     * @return the files of every folder
+     */
+    private List<List<CabFile>> splitFolders() {
+        long folderSize = Math.min( MAX_FOLDER_SIZE, Math.max( MIN_FOLDER_SIZE, size / (threads * 4L) + 1 ) );
+        List<List<CabFile>> folders = new ArrayList<>();
+        List<CabFile> folder = new ArrayList<>();
+        long current = 0;
+        for( CabFile file : files ) {
+            if( !folder.isEmpty() && (current + file.length > folderSize) ) {
+                folders.add( folder );
+                folder = new ArrayList<>();
+                current = 0;
+            }
+            folder.add( file );
+            current += file.length;
+        }
+        if( !folder.isEmpty() || folders.isEmpty() ) {
+            folders.add( folder );
+        }
+        return folders;
+    }
+
+    /**
+     * Compress the files of a folder into CFDATA blocks of 32 KB uncompressed data. Every block is a complete deflate
+     * stream with the prefix "CK". The previous block is used as dictionary like the MSZIP decompressors expect it.
+     *
+     * @param folderFiles the files of the folder
+     * @param data the temporary file for the CFDATA blocks
+     * @return the description of the folder
+     * @throws IOException if an I/O error occurs
+     */
+    private Folder compressFolder( List<CabFile> folderFiles, File data ) throws IOException {
+        Folder folder = new Folder( data );
+        byte[] block = new byte[BLOCK_SIZE];
+        byte[] dictionary = new byte[BLOCK_SIZE];
+        byte[] compressed = new byte[BLOCK_SIZE + 1024];
+        int count = 0;
+        int dictionaryLength = 0;
+        Deflater deflater = new Deflater( level, true );
+        try( OutputStream out = new BufferedOutputStream( Files.newOutputStream( data.toPath() ), 64 * 1024 ) ) {
+            for( CabFile file : folderFiles ) {
+                long remaining = file.length;
+                try( InputStream input = Files.newInputStream( file.source.toPath() ) ) {
+                    while( remaining > 0 ) {
+                        int read = input.read( block, count, (int)Math.min( BLOCK_SIZE - count, remaining ) );
+                        if( read < 0 ) {
+                            throw new IOException( "The file '" + file.source + "' was changed while creating the cabinet." );
+                        }
+                        count += read;
+                        remaining -= read;
+                        if( count == BLOCK_SIZE ) {
+                            writeBlock( out, folder, deflater, block, count, dictionary, dictionaryLength, compressed );
+                            byte[] swap = dictionary;
+                            dictionary = block;
+                            block = swap;
+                            dictionaryLength = count;
+                            count = 0;
+                        }
+                    }
+                }
+            }
+            if( count > 0 || folder.blocks == 0 ) {
+                writeBlock( out, folder, deflater, block, count, dictionary, dictionaryLength, compressed );
+            }
+        } finally {
+            deflater.end();
+        }
+        return folder;
+    }
+
+    /**
+     * Compress and write a single CFDATA block.
+     *
+     * @param out the target
+     * @param folder the folder description that count the blocks
+     * @param deflater the deflater
+     * @param block the uncompressed data
+     * @param count the size of the uncompressed data
+     * @param dictionary the previous block
+     * @param dictionaryLength the size of the previous block, 0 for the first block
+     * @param compressed a buffer for the compressed data
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeBlock( OutputStream out, Folder folder, Deflater deflater, byte[] block, int count, byte[] dictionary, int dictionaryLength, byte[] compressed ) throws IOException {
+        if( folder.blocks == 0xFFFF ) {
+            throw new IOException( "To many data blocks in a cabinet folder." );
+        }
+        deflater.reset();
+        if( dictionaryLength > 0 ) {
+            deflater.setDictionary( dictionary, 0, dictionaryLength );
+        }
+        deflater.setInput( block, 0, count );
+        deflater.finish();
+        compressed[0] = 'C';
+        compressed[1] = 'K';
+        int length = 2;
+        while( !deflater.finished() ) {
+            if( length == compressed.length ) {
+                throw new IOException( "Compressed data block is to large." ); // can not occur, deflate fall back to stored blocks
+            }
+            length += deflater.deflate( compressed, length, compressed.length - length );
+        }
+
+        byte[] header = new byte[8];
+        putShort( header, 4, length );
+        putShort( header, 6, count );
+        int checksum = checksum( header, 4, 4, checksum( compressed, 0, length, 0 ) );
+        putInt( header, 0, checksum );
+        out.write( header );
+        out.write( compressed, 0, length );
+        folder.blocks++;
+        folder.dataSize += header.length + length;
+    }
+
+    /**
+     * Write the header and the data of all folders.
+     *
+     * @param cabinet the target file
+     * @param folders the files of every folder
+     * @param results the compressed folders
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeCabinet( File cabinet, List<List<CabFile>> folders, List<Folder> results ) throws IOException {
+        List<byte[]> names = new ArrayList<>( files.size() );
+        long filesSize = 0;
+        for( CabFile file : files ) {
+            byte[] name = file.name.getBytes( StandardCharsets.UTF_8 );
+            names.add( name );
+            filesSize += 16 + name.length + 1;
+        }
+        long filesOffset = 36 + 8L * folders.size();
+        long dataOffset = filesOffset + filesSize;
+        long cabSize = dataOffset;
+        for( Folder folder : results ) {
+            cabSize += folder.dataSize;
+        }
+        if( cabSize > MAX_CAB_SIZE ) {
+            throw new IOException( "The cabinet is larger as 4 GB." );
+        }
+
+        try( OutputStream out = new BufferedOutputStream( Files.newOutputStream( cabinet.toPath() ), 64 * 1024 ) ) {
+            byte[] header = new byte[36];
+            header[0] = 'M';
+            header[1] = 'S';
+            header[2] = 'C';
+            header[3] = 'F';
+            putInt( header, 8, (int)cabSize );
+            putInt( header, 16, (int)filesOffset );
+            header[24] = 3; // version minor
+            header[25] = 1; // version major
+            putShort( header, 26, folders.size() );
+            putShort( header, 28, files.size() );
+            putShort( header, 32, (int)(System.currentTimeMillis() & 0xFFFF) ); // set ID
+            out.write( header );
+
+            long offset = dataOffset;
+            for( Folder folder : results ) {
+                byte[] entry = new byte[8];
+                putInt( entry, 0, (int)offset );
+                putShort( entry, 4, folder.blocks );
+                putShort( entry, 6, TYPE_MSZIP );
+                out.write( entry );
+                offset += folder.dataSize;
+            }
+
+            int fileIndex = 0;
+            for( int i = 0; i < folders.size(); i++ ) {
+                long folderOffset = 0;
+                for( CabFile file : folders.get( i ) ) {
+                    byte[] name = names.get( fileIndex++ );
+                    byte[] entry = new byte[16];
+                    putInt( entry, 0, (int)file.length );
+                    putInt( entry, 4, (int)folderOffset );
+                    putShort( entry, 8, i );
+                    LocalDateTime time = LocalDateTime.ofInstant( Instant.ofEpochMilli( file.lastModified ), ZoneId.systemDefault() );
+                    if( time.getYear() < 1980 ) {
+                        time = LocalDateTime.of( 1980, 1, 1, 0, 0 );
+                    }
+                    putShort( entry, 10, (time.getYear() - 1980) << 9 | time.getMonthValue() << 5 | time.getDayOfMonth() );
+                    putShort( entry, 12, time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() / 2 );
+                    putShort( entry, 14, ATTRIB_ARCHIVE | (name.length == file.name.length() ? 0 : ATTRIB_UTF) );
+                    out.write( entry );
+                    out.write( name );
+                    out.write( 0 );
+                    folderOffset += file.length;
+                }
+            }
+
+            for( Folder folder : results ) {
+                Files.copy( folder.data.toPath(), out );
+            }
+        }
+    }
+
+    /**
+     * The checksum of a CFDATA block.
+     *
+     * @param data the data
+     * @param offset the offset in the data
+     * @param length the length of the data
+     * @param seed the start value
+     * @return the checksum
+     */
+    static int checksum( byte[] data, int offset, int length, int seed ) {
+        int checksum = seed;
+        int end = offset + (length & ~3);
+        for( int i = offset; i < end; i += 4 ) {
+            checksum ^= (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF) << 16 | (data[i + 3] & 0xFF) << 24;
+        }
+        // the first of the remaining bytes is the most significant
+        int value = 0;
+        for( int i = end; i < offset + length; i++ ) {
+            value = value << 8 | (data[i] & 0xFF);
+        }
+        return checksum ^ value;
+    }
+
+    /**
+     * Write a 16 bit value in little endian.
+     *
+     * @param data the target
+     * @param offset the offset
+     * @param value the value
+     */
+    private static void putShort( byte[] data, int offset, int value ) {
+        data[offset] = (byte)value;
+        data[offset + 1] = (byte)(value >> 8);
+    }
+
+    /**
+     * Write a 32 bit value in little endian.
+     *
+     * @param data the target
+     * @param offset the offset
+     * @param value the value
+     */
+    private static void putInt( byte[] data, int offset, int value ) {
+        putShort( data, offset, value );
+        putShort( data, offset + 2, value >> 16 );
+    }
+
+    /**
+     * A file in the cabinet.
+     */
+    private static class CabFile {
+
+        private final String name;
+
+        private final File   source;
+
+        private final long   length;
+
+        private final long   lastModified;
+
+        /**
+         * Create a new entry.
+         *
+         * @param name the name in the cabinet
+         * @param source the source file
+         * @param length the size of the file
+         * @param lastModified the modified time in milliseconds
+         */
+        private CabFile( String name, File source, long length, long lastModified ) {
+            this.name = name;
+            this.source = source;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * A compressed folder.
+     */
+    private static class Folder {
+
+        private final File data;
+
+        private int        blocks;
+
+        private long       dataSize;
+
+        /**
+         * Create a new folder.
+         *
+         * @param data the temporary file with the CFDATA blocks
+         */
+        private Folder( File data ) {
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,844 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Reader and writer for OLE compound files (MS-CFB) like *.msi and *.mst files. The file is read on opening only for
+ * its structure. The data of the streams are read on request or copied on saving. Saving write a new file of version 3
+ * with 512 byte sectors, the source file must not be the target file.
+ *
+ * @author Volker Berlin
+ */
+class CompoundFile implements Closeable {
+
+    private static final long SIGNATURE          = 0xE11AB1A1E011CFD0L;
+
+    private static final int  FREESECT           = 0xFFFFFFFF;
+
+    private static final int  ENDOFCHAIN         = 0xFFFFFFFE;
+
+    private static final int  FATSECT            = 0xFFFFFFFD;
+
+    private static final int  DIFSECT            = 0xFFFFFFFC;
+
+    private static final int  NOSTREAM           = 0xFFFFFFFF;
+
+    private static final int  HEADER_DIFAT       = 109;
+
+    private static final int  DIR_ENTRY_SIZE     = 128;
+
+    private static final int  SECTOR_SIZE        = 512;
+
+    private static final int  MINI_SECTOR_SIZE   = 64;
+
+    private static final int  MINI_STREAM_CUTOFF = 4096;
+
+    private static final int  TYPE_STORAGE       = 1;
+
+    private static final int  TYPE_STREAM        = 2;
+
+    private static final int  TYPE_ROOT          = 5;
+
+    private final File        file;
+
+    private final FileChannel channel;
+
+    private final int         sectorSize;
+
+    private final int         miniStreamCutoff;
+
+    private final int[]       fat;
+
+    private final int[]       miniFat;
+
+    private final int[]       miniStreamSectors;
+
+    private final Entry       root;
+
+    /**
+     * Open a compound file.
+     *
+     * @param file the file
+     * @throws IOException if an I/O error occurs or the file is not a compound file
+     */
+    CompoundFile( File file ) throws IOException {
+        this.file = file;
+        channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+        try {
+            ByteBuffer header = read( 0, SECTOR_SIZE );
+            if( header.getLong( 0 ) != SIGNATURE ) {
+                throw new IOException( "No compound file: " + file );
+            }
+            int shift = header.getShort( 0x1E );
+            if( shift != 9 && shift != 12 ) {
+                throw new IOException( "Unsupported sector size 2^" + shift + ": " + file );
+            }
+            sectorSize = 1 << shift;
+            miniStreamCutoff = header.getInt( 0x38 );
+
+            // the sectors of the FAT are listed in the header and in the DIFAT chain
+            int fatCount = header.getInt( 0x2C );
+            int[] fatSectors = new int[fatCount];
+            for( int i = 0; i < Math.min( fatCount, HEADER_DIFAT ); i++ ) {
+                fatSectors[i] = header.getInt( 0x4C + i * 4 );
+            }
+            int difat = header.getInt( 0x44 );
+            int perDifat = sectorSize / 4 - 1;
+            for( int i = HEADER_DIFAT; i < fatCount; i += perDifat ) {
+                ByteBuffer sector = readSector( difat );
+                for( int k = 0; k < perDifat && i + k < fatCount; k++ ) {
+                    fatSectors[i + k] = sector.getInt( k * 4 );
+                }
+                difat = sector.getInt( perDifat * 4 );
+            }
+            fat = new int[fatCount * sectorSize / 4];
+            for( int i = 0; i < fatCount; i++ ) {
+                readSector( fatSectors[i] ).asIntBuffer().get( fat, i * sectorSize / 4, sectorSize / 4 );
+            }
+
+            int[] miniFatSectors = chain( header.getInt( 0x3C ) );
+            miniFat = new int[miniFatSectors.length * sectorSize / 4];
+            for( int i = 0; i < miniFatSectors.length; i++ ) {
+                readSector( miniFatSectors[i] ).asIntBuffer().get( miniFat, i * sectorSize / 4, sectorSize / 4 );
+            }
+
+            // the directory
+            int[] dirSectors = chain( header.getInt( 0x30 ) );
+            ByteBuffer dir = ByteBuffer.allocate( dirSectors.length * sectorSize ).order( ByteOrder.LITTLE_ENDIAN );
+            for( int sector : dirSectors ) {
+                dir.put( readSector( sector ) );
+            }
+            int count = dir.capacity() / DIR_ENTRY_SIZE;
+            if( count == 0 || dir.get( 0x42 ) != TYPE_ROOT ) {
+                throw new IOException( "Missing root entry: " + file );
+            }
+            root = readEntry( dir, 0 );
+            miniStreamSectors = chain( root.start );
+            readChildren( dir, root, dir.getInt( 0x4C ), new BitSet( count ) );
+        } catch( IOException | RuntimeException ex ) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the root storage.
+     *
+     * @return the root
+     */
+    Entry getRoot() {
+        return root;
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Read the bytes at a position of the file.
+     *
+     * @param position the position in the file
+     * @param length the count of bytes
+     * @return the bytes in little endian order
+     * @throws IOException if an I/O error occurs
+     */
+    private ByteBuffer read( long position, int length ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( length ).order( ByteOrder.LITTLE_ENDIAN );
+        while( buffer.hasRemaining() ) {
+            if( channel.read( buffer, position + buffer.position() ) < 0 ) {
+                throw new IOException( "Unexpected end of file: " + file );
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Read a sector.
+     *
+     * @param sector the sector number
+     * @return the bytes of the sector
+     * @throws IOException if an I/O error occurs
+     */
+    private ByteBuffer readSector( int sector ) throws IOException {
+        return read( (sector + 1L) * sectorSize, sectorSize );
+    }
+
+    /**
+     * Get the sector chain that start with the given sector.
+     *
+     * @param start the first sector or ENDOFCHAIN
+     * @return the sectors
+     * @throws IOException if the chain is damaged
+     */
+    private int[] chain( int start ) throws IOException {
+        return chain( fat, start );
+    }
+
+    /**
+     * Follow a chain in an allocation table.
+     *
+     * @param table the FAT or the MiniFAT
+     * @param start the first sector or ENDOFCHAIN
+     * @return the sectors
+     * @throws IOException if the chain is damaged
+     */
+    private int[] chain( int[] table, int start ) throws IOException {
+        int[] sectors = new int[16];
+        int count = 0;
+        for( int sector = start; sector != ENDOFCHAIN; sector = table[sector] ) {
+            if( sector < 0 || sector >= table.length || count >= table.length ) {
+                throw new IOException( "Damaged sector chain: " + file );
+            }
+            if( count == sectors.length ) {
+                sectors = Arrays.copyOf( sectors, count * 2 );
+            }
+            sectors[count++] = sector;
+        }
+        return Arrays.copyOf( sectors, count );
+    }
+
+    /**
+     * Read a directory entry.
+     *
+     * @param dir the directory
+     * @param id the ID of the entry
+     * @return the entry
+     */
+    private Entry readEntry( ByteBuffer dir, int id ) {
+        int offset = id * DIR_ENTRY_SIZE;
+        int nameLength = Math.max( 0, Math.min( 64, dir.getShort( offset + 0x40 ) ) - 2 );
+        byte[] name = new byte[nameLength];
+        dir.position( offset );
+        dir.get( name );
+        Entry entry = new Entry( new String( name, StandardCharsets.UTF_16LE ), dir.get( offset + 0x42 ) );
+        dir.position( offset + 0x50 );
+        dir.get( entry.classId );
+        entry.stateBits = dir.getInt( offset + 0x60 );
+        entry.created = dir.getLong( offset + 0x64 );
+        entry.modified = dir.getLong( offset + 0x6C );
+        entry.start = dir.getInt( offset + 0x74 );
+        entry.size = sectorSize == SECTOR_SIZE ? dir.getInt( offset + 0x78 ) & 0xFFFFFFFFL : dir.getLong( offset + 0x78 );
+        entry.source = this;
+        return entry;
+    }
+
+    /**
+     * Read the children of a storage. The children are saved as red black tree of siblings.
+     *
+     * @param dir the directory
+     * @param parent the storage
+     * @param id the ID of the current node in the tree of siblings
+     * @param visited the already read entries to detect loops
+     * @throws IOException if the directory is damaged
+     */
+    private void readChildren( ByteBuffer dir, Entry parent, int id, BitSet visited ) throws IOException {
+        if( id == NOSTREAM ) {
+            return;
+        }
+        if( id < 0 || id * DIR_ENTRY_SIZE >= dir.capacity() || visited.get( id ) ) {
+            throw new IOException( "Damaged directory: " + file );
+        }
+        visited.set( id );
+        int offset = id * DIR_ENTRY_SIZE;
+        readChildren( dir, parent, dir.getInt( offset + 0x44 ), visited );
+        Entry entry = readEntry( dir, id );
+        if( entry.type == TYPE_STORAGE || entry.type == TYPE_STREAM ) {
+            parent.children.add( entry );
+            if( entry.type == TYPE_STORAGE ) {
+                readChildren( dir, entry, dir.getInt( offset + 0x4C ), visited );
+            }
+        }
+        readChildren( dir, parent, dir.getInt( offset + 0x48 ), visited );
+    }
+
+    /**
+     * Read the data of a stream of this file.
+     *
+     * @param entry the stream
+     * @return the data
+     * @throws IOException if an I/O error occurs
+     */
+    private byte[] readStream( Entry entry ) throws IOException {
+        if( entry.size > Integer.MAX_VALUE ) {
+            throw new IOException( "Stream '" + entry.name + "' is to large: " + file );
+        }
+        byte[] data = new byte[(int)entry.size];
+        if( entry.size < miniStreamCutoff ) {
+            int[] sectors = chain( miniFat, entry.size == 0 ? ENDOFCHAIN : entry.start );
+            for( int i = 0, pos = 0; pos < data.length; i++, pos += MINI_SECTOR_SIZE ) {
+                if( i >= sectors.length ) {
+                    throw new IOException( "Damaged stream '" + entry.name + "': " + file );
+                }
+                long offset = (long)sectors[i] * MINI_SECTOR_SIZE;
+                int sector = miniStreamSectors[(int)(offset / sectorSize)];
+                ByteBuffer buffer = read( (sector + 1L) * sectorSize + offset % sectorSize, Math.min( MINI_SECTOR_SIZE, data.length - pos ) );
+                buffer.get( data, pos, buffer.remaining() );
+            }
+        } else {
+            ByteBuffer buffer = ByteBuffer.wrap( data );
+            copyStream( entry, buffer, null );
+        }
+        return data;
+    }
+
+    /**
+     * Copy a stream that is not saved in the mini stream. Consecutive sectors are read as one block.
+     *
+     * @param entry the stream
+     * @param buffer the target buffer, must be large enough for the stream or for one block if out is set
+     * @param out optional target stream
+     * @throws IOException if an I/O error occurs
+     */
+    private void copyStream( Entry entry, ByteBuffer buffer, OutputStream out ) throws IOException {
+        int[] sectors = chain( entry.start );
+        if( (long)sectors.length * sectorSize < entry.size ) {
+            throw new IOException( "Damaged stream '" + entry.name + "': " + file );
+        }
+        long remaining = entry.size;
+        int blockSectors = out == null ? sectors.length : buffer.capacity() / sectorSize;
+        for( int i = 0; remaining > 0; ) {
+            int first = sectors[i];
+            int count = 1;
+            while( i + count < sectors.length && count < blockSectors && sectors[i + count] == first + count && (long)count * sectorSize < remaining ) {
+                count++;
+            }
+            int length = (int)Math.min( remaining, (long)count * sectorSize );
+            if( out != null ) {
+                buffer.clear();
+            }
+            buffer.limit( buffer.position() + length );
+            long position = (first + 1L) * sectorSize;
+            while( buffer.hasRemaining() ) {
+                int read = channel.read( buffer, position );
+                if( read < 0 ) {
+                    throw new IOException( "Unexpected end of file: " + file );
+                }
+                position += read;
+            }
+            if( out != null ) {
+                out.write( buffer.array(), 0, length );
+            }
+            remaining -= length;
+            i += count;
+        }
+    }
+
+    /**
+     * Save the tree of entries as new compound file. The streams of the own and other opened compound files are copied.
+     *
+     * @param target the new file, must not be any of the sources
+     * @throws IOException if an I/O error occurs
+     */
+    void save( File target ) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        root.id = 0;
+        entries.add( root );
+        assignIDs( root, entries );
+
+        // the layout of the mini stream
+        int miniSectors = 0;
+        long largeSectors = 0;
+        for( Entry entry : entries ) {
+            if( entry.type == TYPE_STREAM ) {
+                long size = entry.length();
+                if( size >= 0xFFFFFFFFL ) {
+                    throw new IOException( "Stream '" + entry.name + "' is to large." );
+                }
+                if( size < MINI_STREAM_CUTOFF ) {
+                    entry.newStart = size == 0 ? ENDOFCHAIN : miniSectors;
+                    miniSectors += (size + MINI_SECTOR_SIZE - 1) / MINI_SECTOR_SIZE;
+                } else {
+                    largeSectors += (size + SECTOR_SIZE - 1) / SECTOR_SIZE;
+                }
+            }
+        }
+        int intsPerSector = SECTOR_SIZE / 4;
+        int dirSectors = (entries.size() * DIR_ENTRY_SIZE + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        int miniFatSectors = (miniSectors + intsPerSector - 1) / intsPerSector;
+        int miniStreamSectors = (miniSectors * MINI_SECTOR_SIZE + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        long dataSectors = dirSectors + miniFatSectors + miniStreamSectors + largeSectors;
+
+        // the FAT must also describe its own sectors and the sectors of the DIFAT
+        int fatSectors = 1;
+        int difatSectors;
+        while( true ) {
+            difatSectors = fatSectors <= HEADER_DIFAT ? 0 : (fatSectors - HEADER_DIFAT + intsPerSector - 2) / (intsPerSector - 1);
+            long needed = (dataSectors + fatSectors + difatSectors + intsPerSector - 1) / intsPerSector;
+            if( needed <= fatSectors ) {
+                break;
+            }
+            if( needed > Integer.MAX_VALUE / intsPerSector ) {
+                throw new IOException( "Compound file is to large." );
+            }
+            fatSectors = (int)needed;
+        }
+
+        // the sectors: FAT, DIFAT, directory, MiniFAT, mini stream and the other streams
+        int[] newFat = new int[fatSectors * intsPerSector];
+        Arrays.fill( newFat, FREESECT );
+        int next = 0;
+        for( int i = 0; i < fatSectors; i++ ) {
+            newFat[next++] = FATSECT;
+        }
+        int difatStart = difatSectors == 0 ? ENDOFCHAIN : next;
+        for( int i = 0; i < difatSectors; i++ ) {
+            newFat[next++] = DIFSECT;
+        }
+        int dirStart = next;
+        next = allocate( newFat, next, dirSectors );
+        int miniFatStart = miniFatSectors == 0 ? ENDOFCHAIN : next;
+        next = allocate( newFat, next, miniFatSectors );
+        root.newStart = miniStreamSectors == 0 ? ENDOFCHAIN : next;
+        next = allocate( newFat, next, miniStreamSectors );
+        for( Entry entry : entries ) {
+            if( entry.type == TYPE_STREAM && entry.length() >= MINI_STREAM_CUTOFF ) {
+                entry.newStart = next;
+                next = allocate( newFat, next, (int)((entry.length() + SECTOR_SIZE - 1) / SECTOR_SIZE) );
+            }
+        }
+
+        try( OutputStream out = new BufferedOutputStream( Files.newOutputStream( target.toPath() ), 64 * 1024 ) ) {
+            ByteBuffer header = newSector();
+            header.putLong( 0, SIGNATURE );
+            header.putShort( 0x18, (short)0x3E );
+            header.putShort( 0x1A, (short)3 );
+            header.putShort( 0x1C, (short)0xFFFE );
+            header.putShort( 0x1E, (short)9 );
+            header.putShort( 0x20, (short)6 );
+            header.putInt( 0x2C, fatSectors );
+            header.putInt( 0x30, dirStart );
+            header.putInt( 0x38, MINI_STREAM_CUTOFF );
+            header.putInt( 0x3C, miniFatStart );
+            header.putInt( 0x40, miniFatSectors );
+            header.putInt( 0x44, difatStart );
+            header.putInt( 0x48, difatSectors );
+            for( int i = 0; i < HEADER_DIFAT; i++ ) {
+                header.putInt( 0x4C + i * 4, i < fatSectors ? i : FREESECT );
+            }
+            out.write( header.array() );
+
+            writeInts( out, newFat, newFat.length );
+
+            for( int i = 0, fatSector = HEADER_DIFAT; i < difatSectors; i++ ) {
+                ByteBuffer sector = newSector();
+                for( int k = 0; k < intsPerSector - 1; k++, fatSector++ ) {
+                    sector.putInt( fatSector < fatSectors ? fatSector : FREESECT );
+                }
+                sector.putInt( i + 1 < difatSectors ? difatStart + i + 1 : ENDOFCHAIN );
+                out.write( sector.array() );
+            }
+
+            ByteBuffer dir = ByteBuffer.allocate( dirSectors * SECTOR_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+            for( int i = 0; i < dirSectors * SECTOR_SIZE / DIR_ENTRY_SIZE; i++ ) {
+                writeEntry( dir, i < entries.size() ? entries.get( i ) : null, miniSectors );
+            }
+            out.write( dir.array() );
+
+            int[] newMiniFat = new int[miniFatSectors * intsPerSector];
+            Arrays.fill( newMiniFat, FREESECT );
+            for( Entry entry : entries ) {
+                if( entry.type == TYPE_STREAM && entry.length() < MINI_STREAM_CUTOFF ) {
+                    allocate( newMiniFat, entry.newStart, (int)((entry.length() + MINI_SECTOR_SIZE - 1) / MINI_SECTOR_SIZE) );
+                }
+            }
+            writeInts( out, newMiniFat, newMiniFat.length );
+
+            long written = 0;
+            for( Entry entry : entries ) {
+                if( entry.type == TYPE_STREAM && entry.length() < MINI_STREAM_CUTOFF ) {
+                    byte[] data = entry.getData();
+                    out.write( data );
+                    int padding = (MINI_SECTOR_SIZE - data.length % MINI_SECTOR_SIZE) % MINI_SECTOR_SIZE;
+                    out.write( new byte[padding] );
+                    written += data.length + padding;
+                }
+            }
+            out.write( new byte[(int)((SECTOR_SIZE - written % SECTOR_SIZE) % SECTOR_SIZE)] );
+
+            ByteBuffer buffer = ByteBuffer.allocate( 1024 * 1024 );
+            for( Entry entry : entries ) {
+                if( entry.type == TYPE_STREAM && entry.length() >= MINI_STREAM_CUTOFF ) {
+                    if( entry.data != null ) {
+                        out.write( entry.data );
+                    } else {
+                        entry.source.copyStream( entry, buffer, out );
+                    }
+                    out.write( new byte[(int)((SECTOR_SIZE - entry.length() % SECTOR_SIZE) % SECTOR_SIZE)] );
+                }
+            }
+        }
+    }
+
+    /**
+     * Assign the directory IDs to the children of a storage and build the tree of siblings. The tree is balanced. The
+     * nodes on the lowest level are red if this level is not complete, all other nodes are black. This is a valid red
+     * black tree.
+     *
+     * @param storage the storage
+     * @param entries the list of all entries in the order of the IDs
+     */
+    private static void assignIDs( Entry storage, List<Entry> entries ) {
+        Entry[] children = storage.children.toArray( new Entry[storage.children.size()] );
+        Arrays.sort( children, ( a, b ) -> compareNames( a.name, b.name ) );
+        for( Entry child : children ) {
+            child.id = entries.size();
+            entries.add( child );
+        }
+        int depth = 32 - Integer.numberOfLeadingZeros( children.length ); // count of levels
+        boolean complete = children.length == (1 << depth) - 1;
+        storage.child = buildTree( children, 0, children.length, 1, complete ? -1 : depth );
+        for( Entry child : children ) {
+            if( child.type == TYPE_STORAGE ) {
+                assignIDs( child, entries );
+            } else {
+                child.child = NOSTREAM;
+            }
+        }
+    }
+
+    /**
+     * Build the tree of siblings from the sorted children.
+     *
+     * @param children the sorted children
+     * @param from the first index of the sub tree
+     * @param to the index after the sub tree
+     * @param level the level of the node, the root is level 1
+     * @param redLevel the level of the red nodes
+     * @return the ID of the node or NOSTREAM
+     */
+    private static int buildTree( Entry[] children, int from, int to, int level, int redLevel ) {
+        if( from >= to ) {
+            return NOSTREAM;
+        }
+        int middle = (from + to) >>> 1;
+        Entry node = children[middle];
+        node.left = buildTree( children, from, middle, level + 1, redLevel );
+        node.right = buildTree( children, middle + 1, to, level + 1, redLevel );
+        node.red = level == redLevel;
+        return node.id;
+    }
+
+    /**
+     * Compare names in the order of the compound file format. Shorter names are first, names with equal length are
+     * compared by the upper case characters.
+     *
+     * @param a the first name
+     * @param b the second name
+     * @return the compare result
+     */
+    static int compareNames( String a, String b ) {
+        if( a.length() != b.length() ) {
+            return a.length() - b.length();
+        }
+        for( int i = 0; i < a.length(); i++ ) {
+            int diff = Character.toUpperCase( a.charAt( i ) ) - Character.toUpperCase( b.charAt( i ) );
+            if( diff != 0 ) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Allocate consecutive sectors in an allocation table.
+     *
+     * @param table the FAT or MiniFAT
+     * @param start the first sector
+     * @param count the count of sectors
+     * @return the sector after the chain
+     */
+    private static int allocate( int[] table, int start, int count ) {
+        for( int i = 0; i < count; i++ ) {
+            table[start + i] = i + 1 < count ? start + i + 1 : ENDOFCHAIN;
+        }
+        return start + count;
+    }
+
+    /**
+     * Create an empty sector.
+     *
+     * @return the buffer
+     */
+    private static ByteBuffer newSector() {
+        return ByteBuffer.allocate( SECTOR_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * Write an allocation table.
+     *
+     * @param out the target
+     * @param values the values
+     * @param length the count of values, a multiple of the values per sector
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeInts( OutputStream out, int[] values, int length ) throws IOException {
+        ByteBuffer sector = newSector();
+        for( int i = 0; i < length; i += SECTOR_SIZE / 4 ) {
+            sector.clear();
+            sector.asIntBuffer().put( values, i, SECTOR_SIZE / 4 );
+            out.write( sector.array() );
+        }
+    }
+
+    /**
+     * Write a directory entry.
+     *
+     * @param dir the target
+     * @param entry the entry or null for an unused entry
+     * @param miniSectors the count of sectors in the mini stream
+     */
+    private static void writeEntry( ByteBuffer dir, Entry entry, int miniSectors ) {
+        int offset = dir.position();
+        if( entry == null ) {
+            dir.putInt( offset + 0x44, NOSTREAM );
+            dir.putInt( offset + 0x48, NOSTREAM );
+            dir.putInt( offset + 0x4C, NOSTREAM );
+        } else {
+            byte[] name = entry.name.getBytes( StandardCharsets.UTF_16LE );
+            dir.put( name );
+            dir.putShort( offset + 0x40, (short)(name.length + 2) );
+            dir.put( offset + 0x42, (byte)entry.type );
+            dir.put( offset + 0x43, (byte)(entry.red ? 0 : 1) );
+            dir.putInt( offset + 0x44, entry.type == TYPE_ROOT ? NOSTREAM : entry.left );
+            dir.putInt( offset + 0x48, entry.type == TYPE_ROOT ? NOSTREAM : entry.right );
+            dir.putInt( offset + 0x4C, entry.child );
+            dir.position( offset + 0x50 );
+            dir.put( entry.classId );
+            dir.putInt( offset + 0x60, entry.stateBits );
+            dir.putLong( offset + 0x64, entry.created );
+            dir.putLong( offset + 0x6C, entry.modified );
+            switch( entry.type ) {
+                case TYPE_ROOT:
+                    dir.putInt( offset + 0x74, entry.newStart );
+                    dir.putLong( offset + 0x78, (long)miniSectors * MINI_SECTOR_SIZE );
+                    break;
+                case TYPE_STREAM:
+                    dir.putInt( offset + 0x74, entry.newStart );
+                    dir.putLong( offset + 0x78, entry.length() );
+                    break;
+                default:
+                    // storages have no data
+            }
+        }
+        dir.position( offset + DIR_ENTRY_SIZE );
+    }
+
+    /**
+     * A storage or a stream of a compound file.
+     */
+    static class Entry {
+
+        private final String      name;
+
+        private final int         type;
+
+        private final byte[]      classId  = new byte[16];
+
+        private final List<Entry> children = new ArrayList<>();
+
+        private int               stateBits;
+
+        private long              created;
+
+        private long              modified;
+
+        private int               start;
+
+        private long              size;
+
+        private CompoundFile      source;
+
+        private byte[]            data;
+
+        // the values of the current save operation
+        private int               id;
+
+        private int               left;
+
+        private int               right;
+
+        private int               child;
+
+        private int               newStart;
+
+        private boolean           red;
+
+        /**
+         * Create a new entry.
+         *
+         * @param name the name, not longer as 31 characters
+         * @param type the type of the entry
+         */
+        private Entry( String name, int type ) {
+            if( name.length() > 31 ) {
+                throw new IllegalArgumentException( "Name is to long: " + name );
+            }
+            this.name = name;
+            this.type = type;
+        }
+
+        /**
+         * Get the name.
+         *
+         * @return the name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * If this is a storage or the root.
+         *
+         * @return true, if it can have children
+         */
+        boolean isStorage() {
+            return type != TYPE_STREAM;
+        }
+
+        /**
+         * Get the class ID of the storage.
+         *
+         * @return the 16 bytes of the CLSID
+         */
+        byte[] getClassId() {
+            return classId.clone();
+        }
+
+        /**
+         * Set the class ID of the storage.
+         *
+         * @param classId the 16 bytes of the CLSID
+         */
+        void setClassId( byte[] classId ) {
+            System.arraycopy( classId, 0, this.classId, 0, 16 );
+        }
+
+        /**
+         * Get the children of a storage.
+         *
+         * @return the children
+         */
+        List<Entry> getChildren() {
+            return children;
+        }
+
+        /**
+         * Get a child of a storage.
+         *
+         * @param childName the name of the child
+         * @return the child or null if not exists
+         */
+        Entry getChild( String childName ) {
+            for( Entry entry : children ) {
+                if( compareNames( entry.name, childName ) == 0 ) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Add an entry to this storage. An entry with the same name is replaced. The entry can be from another opened
+         * compound file.
+         *
+         * @param entry the new child
+         */
+        void add( Entry entry ) {
+            children.remove( getChild( entry.name ) );
+            children.add( entry );
+        }
+
+        /**
+         * Add a new empty storage.
+         *
+         * @param storageName the name of the storage
+         * @return the new storage
+         */
+        Entry addStorage( String storageName ) {
+            Entry storage = new Entry( storageName, TYPE_STORAGE );
+            add( storage );
+            return storage;
+        }
+
+        /**
+         * Add a new stream.
+         *
+         * @param streamName the name of the stream
+         * @param bytes the data
+         * @return the new stream
+         */
+        Entry addStream( String streamName, byte[] bytes ) {
+            Entry stream = new Entry( streamName, TYPE_STREAM );
+            stream.data = bytes;
+            add( stream );
+            return stream;
+        }
+
+        /**
+         * Get the data of a stream.
+         *
+         * @return the data
+         * @throws IOException if an I/O error occurs
+         */
+        byte[] getData() throws IOException {
+            if( data != null ) {
+                return data;
+            }
+            return source.readStream( this );
+        }
+
+        /**
+         * Replace the data of a stream.
+         *
+         * @param bytes the new data
+         */
+        void setData( byte[] bytes ) {
+            data = bytes;
+        }
+
+        /**
+         * The size of the stream data.
+         *
+         * @return the size
+         */
+        private long length() {
+            return data != null ? data.length : size;
+        }
+    }
+}
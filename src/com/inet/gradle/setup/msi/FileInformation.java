@@ -0,0 +1,404 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * The values of the File and MsiFileHash tables that light.exe otherwise read from every file: the size, the version
+ * and languages of the version resource of a PE file and the MD5 hash of an unversioned file. Like the Windows
+ * Installer only unversioned files are hashed.
+ *
+ * @author Volker Berlin
+ */
+class FileInformation {
+
+    private static final int RT_VERSION       = 16;
+
+    private static final int FIXED_FILE_INFO  = 0xFEEF04BD;
+
+    private static final int MAX_VERSION_SIZE = 64 * 1024;
+
+    private final long       size;
+
+    private String           version;
+
+    private String           language;
+
+    private int[]            hash;
+
+    /**
+     * Create the information of a file.
+     *
+     * @param size the file size
+     */
+    private FileInformation( long size ) {
+        this.size = size;
+    }
+
+    /**
+     * Read the information of a file in the background.
+     *
+     * @param file the file
+     * @param executor the executor for the reading
+     * @return the future information
+     */
+    static Future<FileInformation> readAsync( File file, Executor executor ) {
+        return CompletableFuture.supplyAsync( () -> {
+            try {
+                return read( file );
+            } catch( IOException ex ) {
+                throw new UncheckedIOException( ex );
+            }
+        }, executor );
+    }
+
+    /**
+     * Read the information of a file.
+     *
+     * @param file the file
+     * @return the information
+     * @throws IOException if an I/O error occurs
+     */
+    static FileInformation read( File file ) throws IOException {
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            FileInformation info = new FileInformation( channel.size() );
+            try {
+                info.readVersion( channel );
+            } catch( IOException | RuntimeException ex ) {
+                // a damaged PE file is handled like an unversioned file
+                info.version = null;
+                info.language = null;
+            }
+            if( info.version == null ) {
+                info.hash = hash( channel );
+            }
+            return info;
+        }
+    }
+
+    /**
+     * The size of the file.
+     *
+     * @return the size in bytes
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * The file version from the version resource.
+     *
+     * @return the version or null for an unversioned file
+     */
+    String getVersion() {
+        return version;
+    }
+
+    /**
+     * The languages of the version resource.
+     *
+     * @return comma separated language IDs or null
+     */
+    String getLanguage() {
+        return language;
+    }
+
+    /**
+     * The hash of an unversioned file like MsiGetFileHash calculate it.
+     *
+     * @return the 4 parts of the MD5 hash or null for a versioned file
+     */
+    int[] getHash() {
+        return hash;
+    }
+
+    /**
+     * Calculate the MD5 hash of the file. The 16 bytes of the digest are 4 little endian integers.
+     *
+     * @param channel the file
+     * @return the 4 parts of the hash
+     * @throws IOException if an I/O error occurs
+     */
+    private static int[] hash( FileChannel channel ) throws IOException {
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance( "MD5" );
+        } catch( NoSuchAlgorithmException ex ) {
+            throw new IOException( ex );
+        }
+        ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+        long position = 0;
+        int count;
+        while( (count = channel.read( buffer, position )) > 0 ) {
+            position += count;
+            buffer.flip();
+            md5.update( buffer );
+            buffer.clear();
+        }
+        ByteBuffer digest = ByteBuffer.wrap( md5.digest() ).order( ByteOrder.LITTLE_ENDIAN );
+        return new int[] { digest.getInt(), digest.getInt(), digest.getInt(), digest.getInt() };
+    }
+
+    /**
+     * Read the version resource if the file is a PE file.
+     *
+     * @param channel the file
+     * @throws IOException if an I/O error occurs
+     */
+    private void readVersion( FileChannel channel ) throws IOException {
+        if( size < 0x40 ) {
+            return;
+        }
+        ByteBuffer dos = read( channel, 0, 0x40 );
+        if( dos.getShort( 0 ) != 0x5A4D ) { // MZ
+            return;
+        }
+        long peOffset = dos.getInt( 0x3C ) & 0xFFFFFFFFL;
+        if( peOffset + 24 > size ) {
+            return;
+        }
+        ByteBuffer coff = read( channel, peOffset, 24 );
+        if( coff.getInt( 0 ) != 0x00004550 ) { // PE\0\0
+            return;
+        }
+        int sections = coff.getShort( 6 ) & 0xFFFF;
+        int optionalSize = coff.getShort( 20 ) & 0xFFFF;
+        if( optionalSize < 2 ) {
+            return;
+        }
+        ByteBuffer optional = read( channel, peOffset + 24, optionalSize );
+        int dirOffset;
+        switch( optional.getShort( 0 ) ) {
+            case 0x10B: // PE32
+                dirOffset = 96;
+                break;
+            case 0x20B: // PE32+
+                dirOffset = 112;
+                break;
+            default:
+                return;
+        }
+        if( dirOffset + 24 > optionalSize || optional.getInt( dirOffset - 4 ) <= 2 ) {
+            return; // no resource directory
+        }
+        long resourceRva = optional.getInt( dirOffset + 16 ) & 0xFFFFFFFFL;
+        if( resourceRva == 0 ) {
+            return;
+        }
+        ByteBuffer sectionTable = read( channel, peOffset + 24 + optionalSize, sections * 40 );
+        long resourceOffset = toFileOffset( sectionTable, sections, resourceRva );
+        if( resourceOffset < 0 ) {
+            return;
+        }
+
+        // type, name and language of the first version resource
+        long typeDir = findEntry( channel, resourceOffset, resourceOffset, RT_VERSION );
+        if( typeDir < 0 ) {
+            return;
+        }
+        long nameDir = findEntry( channel, resourceOffset, typeDir, -1 );
+        if( nameDir < 0 ) {
+            return;
+        }
+        long dataEntry = findEntry( channel, resourceOffset, nameDir, -1 );
+        if( dataEntry < 0 ) {
+            return;
+        }
+        ByteBuffer entry = read( channel, dataEntry, 16 );
+        long dataOffset = toFileOffset( sectionTable, sections, entry.getInt( 0 ) & 0xFFFFFFFFL );
+        int dataSize = entry.getInt( 4 );
+        if( dataOffset < 0 || dataSize < 92 || dataSize > MAX_VERSION_SIZE ) {
+            return;
+        }
+        parseVersionInfo( read( channel, dataOffset, dataSize ) );
+    }
+
+    /**
+     * Parse a VS_VERSIONINFO structure.
+     *
+     * @param data the resource data
+     */
+    private void parseVersionInfo( ByteBuffer data ) {
+        int length = Math.min( data.getShort( 0 ) & 0xFFFF, data.limit() );
+        int valueLength = data.getShort( 2 ) & 0xFFFF;
+        int value = align( 6 + keyLength( data, 6, length ) );
+        if( valueLength < 52 || value + 52 > length || data.getInt( value ) != FIXED_FILE_INFO ) {
+            return;
+        }
+        int ms = data.getInt( value + 8 );
+        int ls = data.getInt( value + 12 );
+        version = (ms >>> 16) + "." + (ms & 0xFFFF) + "." + (ls >>> 16) + "." + (ls & 0xFFFF);
+
+        // the languages from VarFileInfo\Translation
+        Set<Integer> languages = new LinkedHashSet<>();
+        for( int child = align( value + valueLength ); child + 6 < length; ) {
+            int childLength = data.getShort( child ) & 0xFFFF;
+            if( childLength == 0 ) {
+                break;
+            }
+            if( "VarFileInfo".equals( key( data, child + 6, length ) ) ) {
+                int end = Math.min( child + childLength, length );
+                for( int var = align( child + 6 + keyLength( data, child + 6, end ) ); var + 6 < end; ) {
+                    int varLength = data.getShort( var ) & 0xFFFF;
+                    int varValueLength = data.getShort( var + 2 ) & 0xFFFF;
+                    if( varLength == 0 ) {
+                        break;
+                    }
+                    if( "Translation".equals( key( data, var + 6, end ) ) ) {
+                        int pos = align( var + 6 + keyLength( data, var + 6, end ) );
+                        for( int i = 0; i + 4 <= varValueLength && pos + i + 4 <= end; i += 4 ) {
+                            languages.add( data.getShort( pos + i ) & 0xFFFF );
+                        }
+                    }
+                    var = align( var + varLength );
+                }
+            }
+            child = align( child + childLength );
+        }
+        if( !languages.isEmpty() ) {
+            StringBuilder builder = new StringBuilder();
+            for( Integer lang : languages ) {
+                if( builder.length() > 0 ) {
+                    builder.append( ',' );
+                }
+                builder.append( lang );
+            }
+            language = builder.toString();
+        }
+    }
+
+    /**
+     * Find an entry in a resource directory.
+     *
+     * @param channel the file
+     * @param resourceOffset the file offset of the resource section
+     * @param dirOffset the file offset of the directory
+     * @param id the ID of the entry or -1 for the first entry
+     * @return the file offset of the sub directory or data entry, -1 if not found
+     * @throws IOException if an I/O error occurs
+     */
+    private static long findEntry( FileChannel channel, long resourceOffset, long dirOffset, int id ) throws IOException {
+        ByteBuffer dir = read( channel, dirOffset, 16 );
+        int count = (dir.getShort( 12 ) & 0xFFFF) + (dir.getShort( 14 ) & 0xFFFF);
+        ByteBuffer entries = read( channel, dirOffset + 16, count * 8 );
+        for( int i = 0; i < count; i++ ) {
+            int name = entries.getInt( i * 8 );
+            if( id < 0 || name == id ) {
+                return resourceOffset + (entries.getInt( i * 8 + 4 ) & 0x7FFFFFFF);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Convert a relative virtual address to a file offset.
+     *
+     * @param sectionTable the section table
+     * @param sections the count of sections
+     * @param rva the address
+     * @return the file offset or -1 if the address is not in a section
+     */
+    private static long toFileOffset( ByteBuffer sectionTable, int sections, long rva ) {
+        for( int i = 0; i < sections; i++ ) {
+            long virtualSize = sectionTable.getInt( i * 40 + 8 ) & 0xFFFFFFFFL;
+            long virtualAddress = sectionTable.getInt( i * 40 + 12 ) & 0xFFFFFFFFL;
+            long rawSize = sectionTable.getInt( i * 40 + 16 ) & 0xFFFFFFFFL;
+            long rawPointer = sectionTable.getInt( i * 40 + 20 ) & 0xFFFFFFFFL;
+            if( rva >= virtualAddress && rva < virtualAddress + Math.max( virtualSize, rawSize ) ) {
+                return rawPointer + rva - virtualAddress;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read bytes of the file.
+     *
+     * @param channel the file
+     * @param position the position
+     * @param length the count of bytes
+     * @return the bytes in little endian order
+     * @throws IOException if an I/O error occurs or the file is to short
+     */
+    private static ByteBuffer read( FileChannel channel, long position, int length ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( length ).order( ByteOrder.LITTLE_ENDIAN );
+        while( buffer.hasRemaining() ) {
+            if( channel.read( buffer, position + buffer.position() ) < 0 ) {
+                throw new IOException( "Unexpected end of file" );
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * The byte length of a zero terminated UTF-16 key including the terminator.
+     *
+     * @param data the data
+     * @param offset the start of the key
+     * @param end the end of the structure
+     * @return the length
+     */
+    private static int keyLength( ByteBuffer data, int offset, int end ) {
+        int pos = offset;
+        while( pos + 2 <= end && data.getShort( pos ) != 0 ) {
+            pos += 2;
+        }
+        return pos + 2 - offset;
+    }
+
+    /**
+     * Read a zero terminated UTF-16 key.
+     *
+     * @param data the data
+     * @param offset the start of the key
+     * @param end the end of the structure
+     * @return the key
+     */
+    private static String key( ByteBuffer data, int offset, int end ) {
+        int length = Math.max( 0, Math.min( keyLength( data, offset, end ) - 2, end - offset ) );
+        byte[] bytes = new byte[length];
+        for( int i = 0; i < length; i++ ) {
+            bytes[i] = data.get( offset + i );
+        }
+        return new String( bytes, StandardCharsets.UTF_16LE );
+    }
+
+    /**
+     * Align an offset to 4 bytes.
+     *
+     * @param offset the offset
+     * @return the aligned offset
+     */
+    private static int align( int offset ) {
+        return (offset + 3) & ~3;
+    }
+}
@@ -16,6 +16,9 @@
 package com.inet.gradle.setup.msi;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.w3c.dom.Element;
 
@@ -23,13 +26,20 @@ import com.inet.gradle.setup.SetupBuilder;
 import com.inet.gradle.setup.util.XmlFileBuilder;
 
 /**
- * Create a XML configuration file for lauch4j.
+ * Create a XML configuration file for lauch4j. The icon, the version information and the manifest are not part of the
+ * configuration. They are patched into the created launcher with the {@link PeResourceEditor}. So the output of
+ * Launch4j depends only on the configuration file and can be cached.
  *
  * @author Volker
  */
 class Launch4jConfig extends XmlFileBuilder<Msi> {
 
-    private Launch4j launch;
+    /**
+     * The file name of the launcher that Launch4j create, relative to the configuration file.
+     */
+    static final String STUB = "launch4j.exe";
+
+    private Launch4j    launch;
 
     /**
      * Create an instance.
@@ -37,20 +47,20 @@ class Launch4jConfig extends XmlFileBuilder<Msi> {
      * @param launch the launch description
      * @param task current task
      * @param setup the SetupBuilder
+     * @param buildDir the working directory of this launcher
      * @throws Exception if any error occur
      */
-    Launch4jConfig( Launch4j launch, Msi task, SetupBuilder setup ) throws Exception {
-        super( task, setup, File.createTempFile( "launch4j", ".xml", task.getTemporaryDir() ), task.getTemporaryDir(), null );
+    Launch4jConfig( Launch4j launch, Msi task, SetupBuilder setup, File buildDir ) throws Exception {
+        super( task, setup, new File( buildDir, "launch4j.xml" ), buildDir, null );
         this.launch = launch;
     }
 
     /**
      * Create the XML file.
      *
-     * @return the created file
-     * @throws Exception if an error occurs on reading the image files
+     * @return the file of the final launcher
      */
-    File build() throws Exception {
+    File build() {
         String exe = launch.getExecutable();
         if( exe == null ) {
             throw new RuntimeException( "No executable set for launch4j." );
@@ -71,16 +81,10 @@ class Launch4jConfig extends XmlFileBuilder<Msi> {
         if( !args.isEmpty() ) {
             getOrCreateChild( launch4jConfig, "cmdLine" ).setTextContent( args );
         }
-        getOrCreateChild( launch4jConfig, "outfile" ).setTextContent( outfile.getAbsolutePath() );
+        getOrCreateChild( launch4jConfig, "outfile" ).setTextContent( STUB );
         getOrCreateChild( launch4jConfig, "errTitle" ).setTextContent( launch.getDisplayName() );
         getOrCreateChild( launch4jConfig, "chdir" ).setTextContent( "." );
 
-        //        <manifest>hd.manifest</manifest>
-        File ico = launch.getIconForType( buildDir, "ico" );
-        if ( ico != null ) {
-            getOrCreateChild( launch4jConfig, "icon" ).setTextContent( ico.getAbsolutePath() );
-        }
-
         Element jre = getOrCreateChild( launch4jConfig, "jre" );
         Object bundleJRE = setup.getBundleJre();
         if( bundleJRE != null ) {
@@ -103,29 +107,46 @@ class Launch4jConfig extends XmlFileBuilder<Msi> {
             getOrCreateChild( jre, "opt", argument, true );
         }
 
-        Element versionInfo = getOrCreateChild( launch4jConfig, "versionInfo" );
-        getOrCreateChild( versionInfo, "fileVersion" ).setTextContent( normalizeVersionNumber( task.getVersion() ) );
-        getOrCreateChild( versionInfo, "txtFileVersion" ).setTextContent( task.getVersion() );
-        getOrCreateChild( versionInfo, "productVersion" ).setTextContent( normalizeVersionNumber( task.getVersion() ) );
-        getOrCreateChild( versionInfo, "txtProductVersion" ).setTextContent( task.getVersion() );
-        getOrCreateChild( versionInfo, "fileDescription" ).setTextContent( launch.getDescription() );
-        getOrCreateChild( versionInfo, "productName" ).setTextContent( setup.getApplication() );
-        getOrCreateChild( versionInfo, "companyName" ).setTextContent( setup.getVendor() );
-        getOrCreateChild( versionInfo, "copyright" ).setTextContent( setup.getCopyright() );
-
-        getOrCreateChild( versionInfo, "originalFilename" ).setTextContent( exe );
+        return outfile;
+    }
+
+    /**
+     * Add the icon, the version information and the manifest to the launcher that was created by Launch4j.
+     *
+     * @param stub the launcher of Launch4j, will not be changed
+     * @param outfile the final launcher
+     * @throws Exception if an error occurs on reading the image files or the launcher
+     */
+    void patchResources( File stub, File outfile ) throws Exception {
+        PeResourceEditor editor = new PeResourceEditor( stub );
+
+        File ico = launch.getIconForType( buildDir, "ico" );
+        if ( ico != null ) {
+            editor.setIcon( Files.readAllBytes( ico.toPath() ) );
+        }
+
+        String exe = outfile.getName();
+        Map<String, String> versionInfo = new LinkedHashMap<>();
+        versionInfo.put( "FileVersion", task.getVersion() );
+        versionInfo.put( "ProductVersion", task.getVersion() );
+        versionInfo.put( "FileDescription", launch.getDescription() );
+        versionInfo.put( "ProductName", setup.getApplication() );
+        versionInfo.put( "CompanyName", setup.getVendor() );
+        versionInfo.put( "LegalCopyright", setup.getCopyright() );
+        versionInfo.put( "OriginalFilename", exe );
         int idx = exe.lastIndexOf( '.' );
         if( idx > 0 ) {
             exe = exe.substring( 0, idx );
         }
-        getOrCreateChild( versionInfo, "internalName" ).setTextContent( exe );
+        versionInfo.put( "InternalName", exe );
+        editor.setVersionInfo( normalizeVersionNumber( task.getVersion() ), normalizeVersionNumber( task.getVersion() ), versionInfo );
 
-        Launch4jManifest manifest = new Launch4jManifest( launch, task, setup );
+        Launch4jManifest manifest = new Launch4jManifest( launch, task, setup, buildDir );
         manifest.build();
         manifest.save();
-        getOrCreateChild( launch4jConfig, "manifest" ).setTextContent( manifest.xmlFile.getAbsolutePath() );
+        editor.setResource( PeResourceEditor.RT_MANIFEST, 1, Files.readAllBytes( manifest.xmlFile.toPath() ) );
 
-        return outfile;
+        editor.save( outfile );
     }
 
     /**
@@ -15,13 +15,18 @@
  */
 package com.inet.gradle.setup.msi;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
@@ -29,16 +34,69 @@ import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.dsl.DependencyHandler;
 
 import com.inet.gradle.setup.SetupBuilder;
+import com.inet.gradle.setup.util.ContentCache;
 import com.inet.gradle.setup.util.ResourceUtils;
 
 /**
- * Create the Lauch4j programs if there any configured.
+ * Create the Lauch4j programs if there any configured. The toolchain is extracted only once per Launch4j version into
+ * the build cache. The launchers of Launch4j are cached per configuration, icon and version information are patched
+ * in Java. Multiple launchers can be created at the same time.
  *
  * @author Volker
  */
 public class Launch4jCreator {
 
-    private URLClassLoader lauch4jClassLoader;
+    private static final ConcurrentHashMap<String, Object> STUB_LOCKS = new ConcurrentHashMap<>();
+
+    private final ContentCache                             cache;
+
+    private final Set<File>                                toolchainFiles;
+
+    private final String                                   toolchainKey;
+
+    private final URL[]                                    toolchain;
+
+    /**
+     * Extract the Launch4j toolchain.
+     *
+     * @param task the task
+     * @param setup the SetupBuilder
+     * @param toolchainFiles the files of the toolchain, see {@link #resolveToolchain(Project)}
+     * @throws IOException if any error occur
+     */
+    Launch4jCreator( Msi task, SetupBuilder setup, Set<File> toolchainFiles ) throws IOException {
+        cache = setup.getBuildCache( "launch4j" );
+        this.toolchainFiles = toolchainFiles;
+        File libDir;
+        if( cache == null ) {
+            toolchainKey = null;
+            libDir = new File( task.getTemporaryDir(), "launch4jlib" );
+            libDir.mkdirs();
+            extract( toolchainFiles, libDir );
+        } else {
+            // the key is calculated from the content of the artifacts, a republished artifact must be extracted again
+            ArrayList<Object> keys = new ArrayList<>();
+            for( File file : toolchainFiles ) {
+                try( InputStream input = Files.newInputStream( file.toPath() ) ) {
+                    keys.add( ContentCache.key( input, file.getName() ) );
+                }
+            }
+            toolchainKey = ContentCache.key( new ByteArrayInputStream( new byte[0] ), keys.toArray() );
+            try( Closeable lock = cache.lockShared() ) {
+                libDir = getToolchainDir();
+            }
+            cache.evict();
+        }
+
+        ArrayList<URL> urls = new ArrayList<>();
+        for( File file : toolchainFiles ) {
+            String name = file.getName();
+            if( name.endsWith( ".jar" ) && !name.contains( "-workdir-" ) ) {
+                urls.add( new File( libDir, name ).toURI().toURL() );
+            }
+        }
+        toolchain = urls.toArray( new URL[urls.size()] );
+    }
 
     /**
      * Create a single Lauch4j launcher.
@@ -46,85 +104,133 @@ public class Launch4jCreator {
      * @param launch the launch description
      * @param task the task
      * @param setup the SetupBuilder
+     * @param workDir the working directory for this launcher
      * @return the file to the created exe.
      * @throws Exception if any error occur
      */
-    File create( Launch4j launch, Msi task, SetupBuilder setup ) throws Exception {
-        Launch4jConfig config = new Launch4jConfig( launch, task, setup );
+    File create( Launch4j launch, Msi task, SetupBuilder setup, File workDir ) throws Exception {
+        workDir.mkdirs();
+        Launch4jConfig config = new Launch4jConfig( launch, task, setup, workDir );
         File outfile = config.build();
         config.save();
 
-        Class<?> clazz = Class.forName( "net.sf.launch4j.Main", true, getClassLoader( task.getProject(), task.getTemporaryDir() ) );
-        String[] args = { config.xmlFile.getAbsolutePath() };
-        clazz.getMethod( "main", String[].class ).invoke( null, (Object)args );
+        if( cache == null ) {
+            config.patchResources( runLaunch4j( config ), outfile );
+            return outfile;
+        }
 
-        if( !outfile.exists() ) {
-            throw new GradleException( "Launch4j failed. " );
+        String key;
+        try( InputStream input = Files.newInputStream( config.xmlFile.toPath() ) ) {
+            key = ContentCache.key( input, toolchainKey );
+        }
+        // the cached toolchain and stub can not be evicted by another build or Gradle daemon while they are used
+        try( Closeable lock = cache.lockShared() ) {
+            File stub;
+            synchronized( STUB_LOCKS.computeIfAbsent( key, k -> new Object() ) ) { // run Launch4j only once per configuration
+                stub = cache.get( key );
+                if( stub == null ) {
+                    getToolchainDir(); // extract it again if it was evicted since the constructor
+                    File created = runLaunch4j( config );
+                    File temp = cache.createFile( key );
+                    Files.copy( created.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                    stub = cache.commit( key, temp );
+                }
+            }
+            config.patchResources( stub, outfile );
         }
+        cache.evict();
         return outfile;
     }
 
     /**
-     * Download the lauch4j and create a classloader
+     * Run Launch4j with a configuration. Every call use its own ClassLoader because Launch4j hold its configuration in
+     * static fields.
+     *
+     * @param config the saved configuration
+     * @return the created launcher without icon, version information and manifest
+     * @throws Exception if any error occur
+     */
+    private File runLaunch4j( Launch4jConfig config ) throws Exception {
+        try( URLClassLoader loader = new URLClassLoader( toolchain, getClass().getClassLoader() ) ) {
+            Class<?> clazz = Class.forName( "net.sf.launch4j.Main", true, loader );
+            String[] args = { config.xmlFile.getAbsolutePath() };
+            clazz.getMethod( "main", String[].class ).invoke( null, (Object)args );
+        }
+
+        File stub = new File( config.xmlFile.getParentFile(), Launch4jConfig.STUB );
+        if( !stub.exists() ) {
+            throw new GradleException( "Launch4j failed. " );
+        }
+        return stub;
+    }
+
+    /**
+     * Resolve the artifacts of lauch4j. This must be called on the task thread because it resolve a configuration.
      *
      * @param project current project
-     * @param buildDir current temp directory
-     * @return the ClassLoader for lauch4j
-     * @throws IOException if any error occur
+     * @return the files
      */
-    private ClassLoader getClassLoader( Project project, File buildDir ) throws IOException {
-        if( lauch4jClassLoader == null ) {
-            String configName = "setupLaunch4j";
-            Configuration config = project.getConfigurations().findByName( configName );
-            if( config == null ) {
-                config = project.getConfigurations().create( configName );
-                config.setVisible( false );
-                config.setTransitive( false );
-                DependencyHandler dependencies = project.getDependencies();
-                dependencies.add( configName, "net.sf.launch4j:launch4j:3.12" );
-                dependencies.add( configName, "net.sf.launch4j:launch4j:3.12:workdir-win32" );
-                dependencies.add( configName, "com.thoughtworks.xstream:xstream:1.4.11.1" );
-            }
+    static Set<File> resolveToolchain( Project project ) {
+        String configName = "setupLaunch4j";
+        Configuration config = project.getConfigurations().findByName( configName );
+        if( config == null ) {
+            config = project.getConfigurations().create( configName );
+            config.setVisible( false );
+            config.setTransitive( false );
+            DependencyHandler dependencies = project.getDependencies();
+            dependencies.add( configName, "net.sf.launch4j:launch4j:3.12" );
+            dependencies.add( configName, "net.sf.launch4j:launch4j:3.12:workdir-win32" );
+            dependencies.add( configName, "com.thoughtworks.xstream:xstream:1.4.11.1" );
+        }
+        return config.getFiles();
+    }
 
-            ArrayList<URL> urls = new ArrayList<>();
-            File libDir = new File( buildDir, "launch4jlib" );
-            libDir.mkdirs();
-            for( File file : config.getFiles() ) {
-                String name = file.getName();
-                if( name.endsWith( ".jar" ) ) {
-                    //https://github.com/TheBoegl/gradle-launch4j/blob/develop/src/main/groovy/edu/sc/seis/launch4j/Launch4jPlugin.groovy
-                    if( name.contains( "-workdir-" ) ) {
-                        name = name.substring( 0, name.length() - 4 ); // remove ".jar"
-                        //binary files must be extracted
-                        final String internalName = name;
-                        ResourceUtils.unZipIt(file, libDir, (entryName) -> {
-                            if( entryName.startsWith( internalName ) ) {
-                                entryName = entryName.substring( internalName.length() + 1 );
-                            }
-                            return entryName;
-                        });
-
-                    } else {
-                        File target = new File( libDir, file.getName() );
-                        Files.copy( file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
-                        urls.add( target.toURI().toURL() );
-                    }
-                }
-            }
-            lauch4jClassLoader = new URLClassLoader( urls.toArray( new URL[urls.size()] ), getClass().getClassLoader() );
+    /**
+     * Get the extracted toolchain from the build cache. It is extracted into the cache if needed. The caller must hold
+     * the shared lock of the cache.
+     *
+     * @return the directory of the toolchain
+     * @throws IOException if any error occur
+     */
+    private File getToolchainDir() throws IOException {
+        File libDir = cache.get( toolchainKey );
+        if( libDir == null ) {
+            File temp = cache.createDirectory( toolchainKey );
+            extract( toolchainFiles, temp );
+            libDir = cache.commit( toolchainKey, temp );
         }
-        return lauch4jClassLoader;
+        return libDir;
     }
 
     /**
-     * Close the ClassLoader
+     * Copy the jar files and extract the binary files of the work directory. Launch4j find the binaries relative to its
+     * jar file.
      *
+     * @param files the files of the configuration
+     * @param libDir the target directory
      * @throws IOException if any error occur
      */
-    void close() throws IOException {
-        if( lauch4jClassLoader != null ) {
-            lauch4jClassLoader.close();
-            lauch4jClassLoader = null;
+    private static void extract( Set<File> files, File libDir ) throws IOException {
+        for( File file : files ) {
+            String name = file.getName();
+            if( name.endsWith( ".jar" ) ) {
+                //https://github.com/TheBoegl/gradle-launch4j/blob/develop/src/main/groovy/edu/sc/seis/launch4j/Launch4jPlugin.groovy
+                if( name.contains( "-workdir-" ) ) {
+                    name = name.substring( 0, name.length() - 4 ); // remove ".jar"
+                    //binary files must be extracted
+                    final String internalName = name;
+                    ResourceUtils.unZipIt(file, libDir, (entryName) -> {
+                        if( entryName.startsWith( internalName ) ) {
+                            entryName = entryName.substring( internalName.length() + 1 );
+                        }
+                        return entryName;
+                    });
+
+                } else {
+                    File target = new File( libDir, file.getName() );
+                    Files.copy( file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                }
+            }
         }
     }
 }
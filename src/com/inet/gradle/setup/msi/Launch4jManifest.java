@@ -38,10 +38,11 @@ class Launch4jManifest extends XmlFileBuilder<Msi> {
      * @param launch the launch description
      * @param task current task
      * @param setup the SetupBuilder
+     * @param buildDir the working directory of this launcher
      * @throws Exception if any error occur
      */
-    Launch4jManifest( Launch4j launch, Msi task, SetupBuilder setup ) throws Exception {
-        super( task, setup, File.createTempFile( "launch4j", ".manifest", task.getTemporaryDir() ), task.getTemporaryDir(), null );
+    Launch4jManifest( Launch4j launch, Msi task, SetupBuilder setup, File buildDir ) throws Exception {
+        super( task, setup, File.createTempFile( "launch4j", ".manifest", buildDir ), buildDir, null );
         this.launch = launch;
     }
 
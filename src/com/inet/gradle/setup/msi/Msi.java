@@ -26,8 +26,6 @@ import java.util.Collections;
 import java.util.List;
 
 import org.gradle.api.GradleException;
-import org.gradle.api.internal.file.CopyActionProcessingStreamAction;
-import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.util.ConfigureUtil;
 
 import com.inet.gradle.setup.abstracts.AbstractSetupTask;
@@ -71,6 +69,10 @@ public class Msi extends AbstractSetupTask {
 
     private boolean                    skipValidation = false;
 
+    private int                        compressionThreads;
+
+    private MsiBuilder                 builder;
+
     /**
      * Create a new instance.
      */
@@ -78,6 +80,16 @@ public class Msi extends AbstractSetupTask {
         super( "msi" );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void prepareBuild() {
+        super.prepareBuild();
+        builder = new MsiBuilder( this, getSetupBuilder(), getFileResolver() );
+        builder.prepare();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -101,16 +113,7 @@ public class Msi extends AbstractSetupTask {
             throw new GradleException( "Could not extract required ressources.", e );
         }
 
-        ProjectInternal project = (ProjectInternal)getProject();
-        new MsiBuilder( this, getSetupBuilder(), project.getFileResolver() ).build();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    protected void processFiles( CopyActionProcessingStreamAction action ) {
-        super.processFiles( action );
+        builder.build();
     }
 
     /**
@@ -175,7 +178,7 @@ public class Msi extends AbstractSetupTask {
      */
     public File getBannerBmp() {
         if( bannerBmp != null ) {
-            return getProject().file( bannerBmp );
+            return getFileResolver().resolve( bannerBmp );
         }
         return null;
     }
@@ -196,7 +199,7 @@ public class Msi extends AbstractSetupTask {
      */
     public File getDialogBmp() {
         if( dialogBmp != null ) {
-            return getProject().file( dialogBmp );
+            return getFileResolver().resolve( dialogBmp );
         }
         return null;
     }
@@ -236,7 +239,7 @@ public class Msi extends AbstractSetupTask {
      */
     public URL getWxsTemplate() throws MalformedURLException {
         if( wxsTemplate != null ) {
-            return getProject().file( wxsTemplate ).toURI().toURL();
+            return getFileResolver().resolve( wxsTemplate ).toURI().toURL();
         }
         return getClass().getResource( "template.wxs" );
     }
@@ -373,7 +376,7 @@ public class Msi extends AbstractSetupTask {
      */
     public URL getMultiInstanceScript() throws MalformedURLException {
         if( multiInstanceScript != null ) {
-            return getProject().file( multiInstanceScript ).toURI().toURL();
+            return getFileResolver().resolve( multiInstanceScript ).toURI().toURL();
         }
         return getClass().getResource( "MultiInstance.vbs" );
     }
@@ -532,4 +535,23 @@ public class Msi extends AbstractSetupTask {
     public void setSkipValidation( boolean skipValidation ) {
         this.skipValidation = skipValidation;
     }
+
+    /**
+     * Returns the count of threads that compress the cabinet of the payload.
+     *
+     * @return the count of threads, 0 for the count of available processors
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Set the count of threads that compress the cabinet of the payload in parallel. The default is the count of
+     * available processors.
+     *
+     * @param compressionThreads the count of threads, 0 for the count of available processors
+     */
+    public void setCompressionThreads( int compressionThreads ) {
+        this.compressionThreads = compressionThreads;
+    }
 }
\ No newline at end of file
@@ -17,24 +17,27 @@ package com.inet.gradle.setup.msi;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 
 import org.gradle.api.GradleException;
-import org.gradle.api.file.CopySpec;
 import org.gradle.api.internal.file.FileResolver;
 
 import com.inet.gradle.setup.SetupBuilder;
 import com.inet.gradle.setup.abstracts.AbstractBuilder;
 import com.inet.gradle.setup.util.ResourceUtils;
 
-import groovy.lang.Closure;
-
 /**
  * Build a MSI setup for Windows.
  *
@@ -42,7 +45,15 @@ import groovy.lang.Closure;
  */
 class MsiBuilder extends AbstractBuilder<Msi,SetupBuilder> {
 
-    private SetupBuilder setup;
+    private SetupBuilder       setup;
+
+    private File               signToolExe;
+
+    private File               cabinetCache;
+
+    private Map<String, int[]> fileHashes;
+
+    private Set<File>          launch4jToolchain;
 
     /**
      * Create a new instance
@@ -56,54 +67,76 @@ class MsiBuilder extends AbstractBuilder<Msi,SetupBuilder> {
         this.setup = setup;
     }
 
+    /**
+     * Resolve the Launch4j toolchain. This must be called on the task thread because it resolve a configuration.
+     */
+    void prepare() {
+        if( task.getLaunch4js().size() > 0 ) {
+            launch4jToolchain = Launch4jCreator.resolveToolchain( task.getProject() );
+        }
+    }
+
     /**
      * Build the MSI installer.
      */
     void build() {
         try {
 
-            File wxsFile = getWxsFile();
-            URL template = task.getWxsTemplate();
-            new WxsFileBuilder( task, setup, wxsFile, buildDir, template, false ).build();
-            template = wxsFile.toURI().toURL();
-
             buildLauch4j();
-            candle();
-
-            ResourceUtils.extract( getClass(), "sdk/MsiTran.exe", buildDir );
-            ResourceUtils.extract( getClass(), "sdk/wilangid.vbs", buildDir );
-            ResourceUtils.extract( getClass(), "sdk/wisubstg.vbs", buildDir );
 
+            // one model for the msi with all files and for the msi files of the language transforms without files
             List<MsiLanguages> languages = task.getLanguages();
-            String[] languageResources = getLanguageResources();
+            File wxsFile = getWxsFile();
+            File languageWxsFile = languages.size() > 1 ? new File( buildDir, setup.getArchiveName() + "_languages.wxs" ) : null;
+            WxsFileBuilder wxsBuilder = new WxsFileBuilder( task, setup, wxsFile, buildDir, task.getWxsTemplate() );
+            wxsBuilder.build( languageWxsFile );
+            if( wxsBuilder.isFileInformationComplete() && task.getExternals().isEmpty() ) {
+                fileHashes = wxsBuilder.getFileHashes(); // light does not need to read the files again
+            }
+            Future<File> cabinet = async( () -> prebuildCabinet( wxsFile ) );
+            candle( wxsFile, languageWxsFile );
 
-            File mui = light( languages.get( 0 ), languageResources );
-            HashMap<MsiLanguages, File> translations = new HashMap<>();
-            for( int i = 1; i < languages.size(); i++ ) {
-                MsiLanguages language = languages.get( i );
-                File file = light( language, languageResources );
-                patchLangID( file, language );
-                File mst = msitran( mui, file, language );
-                translations.put( language, mst );
+            String[] languageResources = getLanguageResources();
+            Map<String, File> translations = new LinkedHashMap<>(); // the order of the package languages
+            if( languageWxsFile != null ) {
+                ResourceUtils.extract( getClass(), "sdk/MsiTran.exe", buildDir );
+                File mui = light( languages.get( 0 ), languageResources, languageWxsFile );
+                for( int i = 1; i < languages.size(); i++ ) {
+                    MsiLanguages language = languages.get( i );
+                    File file = light( language, languageResources, languageWxsFile );
+                    patchLangID( file, language );
+                    File mst = msitran( mui, file, language );
+                    translations.put( language.getLangID(), mst );
+                }
             }
 
             // Now create a msi with all files
-            new WxsFileBuilder( task, setup, wxsFile, buildDir, template, true ).build();
-            candle();
-            mui = light( languages.get( 0 ), languageResources );
-
-            // Add the translations to the msi with all files
-            StringBuilder langIDs = new StringBuilder( languages.get( 0 ).getLangID() );
-            for( Entry<MsiLanguages, File> entry : translations.entrySet() ) {
-                MsiLanguages language = entry.getKey();
-                File mst = entry.getValue();
-                addTranslation( mui, mst, language );
-                langIDs.append( ',' ).append( language.getLangID() );
+            awaitAsync();
+            cabinetCache = cabinet.get();
+            File mui = light( languages.get( 0 ), languageResources, wxsFile );
+
+            // Add the translations and the hashes of the unversioned files to the msi with all files
+            if( !translations.isEmpty() || (fileHashes != null && !fileHashes.isEmpty()) ) {
+                try( MsiDatabase database = new MsiDatabase( mui ) ) {
+                    if( !translations.isEmpty() ) {
+                        database.addLanguageTransforms( languages.get( 0 ).getLangID(), translations );
+                    }
+                    if( fileHashes != null && !fileHashes.isEmpty() ) {
+                        database.addFileHashes( fileHashes );
+                    }
+                    database.save();
+                }
+                for( File mst : translations.values() ) {
+                    mst.delete(); // after adding the mst file we does not need it anymore
+                }
             }
-            patchLangID( mui, langIDs.toString() );
 
-            // signing and moving the final msi file
-            signTool( mui );
+            // signing and moving the final msi file, the msi file is not cached because it has a new package code on every build
+            SignToolBatch signer = createSignToolBatch();
+            if( signer != null ) {
+                signer.add( mui, false );
+                signer.sign();
+            }
             Files.move( mui.toPath(), task.getSetupFile().toPath(), StandardCopyOption.REPLACE_EXISTING );
         } catch( RuntimeException ex ) {
             throw ex;
@@ -133,25 +166,35 @@ class MsiBuilder extends AbstractBuilder<Msi,SetupBuilder> {
     }
 
     /**
-     * Create the lauch4j starter if there was set some and add it to the sources.
+     * Create the lauch4j starter if there was set some and add it to the sources. The starters are created in parallel,
+     * every in its own working directory, and signed with a single call of the sign tool.
      *
      * @throws Exception if any error occur
      */
     private void buildLauch4j() throws Exception {
         if( task.getLaunch4js().size() > 0 ) {
-            Launch4jCreator creator = new Launch4jCreator();
-            for( Launch4j launch : task.getLaunch4js() ) {
-                File file = creator.create( launch, task, setup );
-                signTool( file );
-                CopySpec copySpec = task.getProject().copySpec( (Closure<CopySpec>)null );
-                task.with( copySpec );
-                copySpec.from( file );
-                String workDir = launch.getWorkDir();
-                if( workDir != null && !workDir.isEmpty() ) {
-                    copySpec.into( workDir );
+            Launch4jCreator creator = new Launch4jCreator( task, setup, launch4jToolchain );
+            List<Launch4j> launchs = task.getLaunch4js();
+            List<Future<File>> files = new ArrayList<>();
+            for( int i = 0; i < launchs.size(); i++ ) {
+                Launch4j launch = launchs.get( i );
+                File workDir = new File( buildDir, "launch4j/" + i );
+                files.add( async( () -> creator.create( launch, task, setup, workDir ) ) );
+            }
+            awaitAsync();
+
+            SignToolBatch signer = createSignToolBatch();
+            for( int i = 0; i < launchs.size(); i++ ) {
+                Launch4j launch = launchs.get( i );
+                File file = files.get( i ).get();
+                if( signer != null ) {
+                    signer.add( file, true );
                 }
+                task.addGeneratedFile( file, launch.getWorkDir() );
+            }
+            if( signer != null ) {
+                signer.sign();
             }
-            creator.close();
         }
     }
 
@@ -167,16 +210,22 @@ class MsiBuilder extends AbstractBuilder<Msi,SetupBuilder> {
     }
 
     /**
-     * Call the candle.exe tool.
+     * Call the candle.exe tool. All *.wxs files are compiled with a single call.
+     *
+     * @param wxsFiles the generated *.wxs files, null values are ignored
      */
-    private void candle() {
+    private void candle( File... wxsFiles ) {
         ArrayList<String> parameters = new ArrayList<>();
         parameters.add( "-nologo" );
         parameters.add( "-arch" );
         parameters.add( task.getArch() );
         parameters.add( "-out" );
         parameters.add( buildDir.getAbsolutePath() + '\\' );
-        parameters.add( getWxsFile().getAbsolutePath() );
+        for( File wxsFile : wxsFiles ) {
+            if( wxsFile != null ) {
+                parameters.add( wxsFile.getAbsolutePath() );
+            }
+        }
         for(File external : task.getExternals()){
             parameters.add( external.getAbsolutePath() );
         }
@@ -191,9 +240,10 @@ class MsiBuilder extends AbstractBuilder<Msi,SetupBuilder> {
      *
      * @param language the target language
      * @param languageResources the language resource files
+     * @param wxsFile the compiled *.wxs file that should be linked
      * @return the generated msi file
      */
-    private File light( MsiLanguages language, String[] languageResources ) {
+    private File light( MsiLanguages language, String[] languageResources, File wxsFile ) {
         File out = new File( buildDir, setup.getArchiveName() + '_' + language.getCulture() + ".msi" );
         ArrayList<String> parameters = new ArrayList<>();
         parameters.add( "-nologo" );
@@ -226,47 +276,126 @@ class MsiBuilder extends AbstractBuilder<Msi,SetupBuilder> {
             parameters.add( "-sval" );
         }
 
-        parameters.add( "*.wixobj" );
+        // the size, version, language and hash of the files are already set in the wxs file
+        if( fileHashes != null ) {
+            parameters.add( "-sh" );
+        }
+
+        // light.exe verify the files of the cabinet and create it self if it does not match
+        if( cabinetCache != null ) {
+            parameters.add( "-cc" );
+            parameters.add( cabinetCache.getAbsolutePath() );
+            parameters.add( "-reusecab" );
+        }
+
+        parameters.add( getWixObject( wxsFile ).getAbsolutePath() );
+        for( File external : task.getExternals() ) {
+            parameters.add( getWixObject( external ).getAbsolutePath() );
+        }
         callWixTool( "light.exe", parameters );
         return out;
     }
 
     /**
-     * Change the language ID of a *.msi file.
+     * Get the object file that candle.exe create for a source file.
      *
-     * @param file a msi file
-     * @param language the target language
+     * @param wxsFile the source file
+     * @return the *.wixobj file in the build directory
      */
-    private void patchLangID( File file, MsiLanguages language ) {
-        ArrayList<String> parameters = new ArrayList<>();
-        parameters.add( "cscript" );
-        parameters.add( "//Nologo" );
-        parameters.add( new File( buildDir, "sdk/wilangid.vbs" ).getAbsolutePath() );
-        parameters.add( file.getAbsolutePath() );
-        parameters.add( "Product" );
-        parameters.add( language.getLangID() );
-        exec( parameters );
+    private File getWixObject( File wxsFile ) {
+        String name = wxsFile.getName();
+        int idx = name.lastIndexOf( '.' );
+        return new File( buildDir, (idx > 0 ? name.substring( 0, idx ) : name) + ".wixobj" );
     }
 
     /**
-     * Set all languages IDs for which translations was added.
+     * Create the cabinet of the payload with multiple threads. light.exe reuse it from the cabinet cache if the names,
+     * the order, the sizes and the timestamps of the files match. Setups with multiple media or files that are not
+     * compressed are left to light.exe.
      *
-     * @param mui the multilingual user interface (MUI) installer file
-     * @param langIDs a comma separated list of languages IDs
+     * @param wxsFile the wxs file with all files
+     * @return the cabinet cache directory or null if light.exe should create the cabinet
      */
-    private void patchLangID( File mui, String langIDs ) {
-        ArrayList<String> parameters = new ArrayList<>();
-        parameters.add( "cscript" );
-        parameters.add( "//Nologo" );
-        parameters.add( new File( buildDir, "sdk/wilangid.vbs" ).getAbsolutePath() );
-        parameters.add( mui.getAbsolutePath() );
-        parameters.add( "Package" );
-        parameters.add( langIDs );
-        exec( parameters );
+    private File prebuildCabinet( File wxsFile ) {
+        try {
+            if( !task.getExternals().isEmpty() ) {
+                return null; // the externals can contain more files
+            }
+            CabinetWriter cabinet = new CabinetWriter( -1, task.getCompressionThreads() );
+            String cabinetName = null;
+            int mediaCount = 0;
+            int fileCount = 0;
+            try( InputStream input = Files.newInputStream( wxsFile.toPath() ) ) {
+                XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader( input );
+                while( reader.hasNext() ) {
+                    if( reader.next() != XMLStreamConstants.START_ELEMENT || !"http://schemas.microsoft.com/wix/2006/wi".equals( reader.getNamespaceURI() ) ) {
+                        continue;
+                    }
+                    switch( reader.getLocalName() ) {
+                        case "Package":
+                            if( !"yes".equals( reader.getAttributeValue( null, "Compressed" ) ) ) {
+                                return null;
+                            }
+                            break;
+                        case "Media":
+                            mediaCount++;
+                            cabinetName = reader.getAttributeValue( null, "Cabinet" );
+                            if( !"1".equals( reader.getAttributeValue( null, "Id" ) ) ) {
+                                return null;
+                            }
+                            break;
+                        case "File":
+                            String id = reader.getAttributeValue( null, "Id" );
+                            String source = reader.getAttributeValue( null, "Source" );
+                            String diskId = reader.getAttributeValue( null, "DiskId" );
+                            if( id == null || source == null || "no".equals( reader.getAttributeValue( null, "Compressed" ) ) || (diskId != null && !"1".equals( diskId )) ) {
+                                return null;
+                            }
+                            File file = new File( source );
+                            if( !file.isAbsolute() || !file.isFile() ) {
+                                return null;
+                            }
+                            cabinet.addFile( id, file );
+                            fileCount++;
+                            break;
+                        case "Merge":
+                            return null;
+                        default:
+                    }
+                }
+                reader.close();
+            }
+            if( mediaCount != 1 || cabinetName == null || fileCount == 0 ) {
+                return null;
+            }
+            File cache = new File( buildDir, "cabcache" );
+            cache.mkdirs();
+            cabinet.write( new File( cache, cabinetName ), buildDir );
+            return cache;
+        } catch( Exception ex ) {
+            task.getLogger().warn( "\tThe cabinet will be created by light.exe: " + ex );
+            return null;
+        }
+    }
+
+    /**
+     * Change the language ID of a *.msi file.
+     *
+     * @param file a msi file
+     * @param language the target language
+     * @throws IOException If any I/O error occur on patching the file
+     */
+    private void patchLangID( File file, MsiLanguages language ) throws IOException {
+        try( MsiDatabase database = new MsiDatabase( file ) ) {
+            database.setProductLanguage( language.getLangID() );
+            database.save();
+        }
     }
 
     /**
-     * Call the msitran.exe tool and create a transform file (*.mst).
+     * Call the msitran.exe tool and create a transform file (*.mst). The transform is a diff of all tables and streams
+     * and is not generated in-process; only the language patch and the embedding of the transform are done with
+     * {@link MsiDatabase}.
      *
      * @param mui the multilingual user interface (MUI) installer file
      * @param file the current msi file
@@ -287,87 +416,21 @@ class MsiBuilder extends AbstractBuilder<Msi,SetupBuilder> {
     }
 
     /**
-     * Add a transform file to the msi file
-     * @param mui the multilingual user interface (MUI) installer file
-     * @param mst the transform file
-     * @param language current language
-     */
-    private void addTranslation( File mui, File mst, MsiLanguages language ) {
-        ArrayList<String> parameters = new ArrayList<>();
-        parameters.add( "cscript" );
-        parameters.add( "//Nologo" );
-        parameters.add( new File( buildDir, "sdk/wisubstg.vbs" ).getAbsolutePath() );
-        parameters.add( mui.getAbsolutePath() );
-        parameters.add( mst.getAbsolutePath() );
-        parameters.add( language.getLangID() );
-        exec( parameters );
-        mst.delete(); // after adding the mst file we does not need it anymore
-    }
-
-    /**
-     * Sign a file if the needed information are set.
+     * Create a batch for signing files if the needed information are set.
      *
-     * @param file file to sign
+     * @return the batch or null if there are no sign information
      * @throws IOException If any I/O error occur on loading of the sign tool
      */
-    private void signTool( File file ) throws IOException {
+    private SignToolBatch createSignToolBatch() throws IOException {
         SignTool sign = task.getSignTool();
         if( sign == null ) {
-            return; // no sign information set
-        }
-        String tool = ResourceUtils.extract( getClass(), "sdk/signtool.exe", buildDir ).getAbsolutePath();
-
-        // signing the file
-        ArrayList<String> parameters = new ArrayList<>();
-        parameters.add( tool );
-        parameters.add( "sign" );
-        if( sign.getCertificate() != null ) {
-            parameters.add( "/f" );
-            parameters.add( task.getProject().file( sign.getCertificate() ).getAbsolutePath() );
-        }
-        if( sign.getPassword() != null ) {
-            parameters.add( "/p" );
-            parameters.add( sign.getPassword() );
+            return null; // no sign information set
         }
-        if( sign.getSha1() != null ) {
-            parameters.add( "/sha1" );
-            parameters.add( sign.getSha1() );
-        }
-
-        parameters.add( "/d" ); // http://stackoverflow.com/questions/4315840/the-uac-prompt-shows-a-temporary-random-program-name-for-msi-can-the-correct-na
-        parameters.add( setup.getApplication() );
-
-        parameters.add( file.getAbsolutePath() );
-        exec( parameters );
-
-        // timestamp the signing
-        List<String> servers = sign.getTimestamp();
-        if( servers != null ) {
-            RuntimeException allEx = null;
-            for( String server : servers ) {
-                parameters = new ArrayList<>();
-                parameters.add( tool );
-                parameters.add( "timestamp" );
-                parameters.add( "/t" );
-                parameters.add( server );
-                parameters.add( file.getAbsolutePath() );
-                try {
-                    exec( parameters );
-                    allEx = null;
-                    break; // timestamp is ok, if no exception occur
-                } catch( RuntimeException ex ) {
-                    if( allEx == null ) {
-                        allEx = ex;
-                    } else {
-                        allEx.addSuppressed( ex );
-                    }
-                    task.getProject().getLogger().lifecycle( "Timestamp failed: " + ex );
-                }
-            }
-            if( allEx != null ) {
-                throw allEx;
-            }
+        if( signToolExe == null ) {
+            signToolExe = ResourceUtils.extract( getClass(), "sdk/signtool.exe", buildDir );
         }
+        File certificate = sign.getCertificate() == null ? null : fileResolver.resolve( sign.getCertificate() );
+        return new SignToolBatch( sign, signToolExe.getAbsolutePath(), certificate, setup.getApplication(), setup.getBuildCache( "signtool" ), buildDir, this::exec, task.getLogger() );
     }
 
     /**
@@ -0,0 +1,573 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import com.inet.gradle.setup.msi.CompoundFile.Entry;
+
+/**
+ * Direct access to the storage of a Windows Installer database without the Windows Installer API. It replace the
+ * scripts wilangid.vbs and wisubstg.vbs of the Windows SDK. Only the few changes that are needed for a multilingual
+ * setup are supported: the languages of the package, the ProductLanguage property and embedded language transforms.
+ * Additionally the MsiFileHash table can be filled because WiX can not author it.
+ *
+ * @author Volker Berlin
+ */
+class MsiDatabase implements Closeable {
+
+    private static final String      SUMMARY_INFORMATION = "\u0005SummaryInformation";
+
+    private static final int         PID_TEMPLATE        = 7;
+
+    private static final int         VT_LPSTR            = 30;
+
+    private final File               file;
+
+    private final CompoundFile       storage;
+
+    private final List<CompoundFile> transforms          = new ArrayList<>();
+
+    /**
+     * Open a database.
+     *
+     * @param file the *.msi file
+     * @throws IOException if an I/O error occurs
+     */
+    MsiDatabase( File file ) throws IOException {
+        this.file = file;
+        this.storage = new CompoundFile( file );
+    }
+
+    /**
+     * Set the languages of the package in the summary information. The first is the base language, the other are the
+     * languages of the embedded transforms. Equals to "wilangid.vbs Package".
+     *
+     * @param langIDs a comma separated list of language IDs
+     * @throws IOException if an I/O error occurs
+     */
+    void setPackageLanguages( String langIDs ) throws IOException {
+        Entry summary = storage.getRoot().getChild( SUMMARY_INFORMATION );
+        if( summary == null ) {
+            throw new IOException( "Missing summary information: " + file );
+        }
+        ByteBuffer data = ByteBuffer.wrap( summary.getData() ).order( ByteOrder.LITTLE_ENDIAN );
+        if( data.getInt( 24 ) != 1 ) {
+            throw new IOException( "Unsupported count of property sets in the summary information: " + file );
+        }
+        int section = data.getInt( 44 );
+        int sectionSize = data.getInt( section );
+        int count = data.getInt( section + 4 );
+        int[] ids = new int[count];
+        int[] offsets = new int[count];
+        for( int i = 0; i < count; i++ ) {
+            ids[i] = data.getInt( section + 8 + i * 8 );
+            offsets[i] = data.getInt( section + 12 + i * 8 );
+        }
+
+        // the values of the properties, the length is the distance to the next value
+        int[] sorted = offsets.clone();
+        Arrays.sort( sorted );
+        List<byte[]> values = new ArrayList<>();
+        int templateIdx = -1;
+        for( int i = 0; i < count; i++ ) {
+            int end = sectionSize;
+            int next = Arrays.binarySearch( sorted, offsets[i] ) + 1;
+            while( next < count && sorted[next] == offsets[i] ) {
+                next++;
+            }
+            if( next < count ) {
+                end = sorted[next];
+            }
+            byte[] value = new byte[end - offsets[i]];
+            data.position( section + offsets[i] );
+            data.get( value );
+            values.add( value );
+            if( ids[i] == PID_TEMPLATE ) {
+                templateIdx = i;
+            }
+        }
+
+        String platform = "";
+        if( templateIdx >= 0 ) {
+            ByteBuffer value = ByteBuffer.wrap( values.get( templateIdx ) ).order( ByteOrder.LITTLE_ENDIAN );
+            int length = Math.max( 0, Math.min( value.getInt( 4 ), value.capacity() - 8 ) );
+            String template = new String( values.get( templateIdx ), 8, length, StandardCharsets.ISO_8859_1 );
+            int idx = template.indexOf( ';' );
+            platform = idx >= 0 ? template.substring( 0, idx ) : template.replace( "\u0000", "" );
+        } else {
+            ids = Arrays.copyOf( ids, ++count );
+            ids[count - 1] = PID_TEMPLATE;
+            values.add( null );
+            templateIdx = count - 1;
+        }
+        byte[] template = (platform + ';' + langIDs + '\u0000').getBytes( StandardCharsets.ISO_8859_1 );
+        ByteBuffer value = ByteBuffer.allocate( 8 + (template.length + 3) / 4 * 4 ).order( ByteOrder.LITTLE_ENDIAN );
+        value.putInt( VT_LPSTR ).putInt( template.length ).put( template );
+        values.set( templateIdx, value.array() );
+
+        // write the section new
+        int newSectionSize = 8 + count * 8;
+        for( byte[] bytes : values ) {
+            newSectionSize += bytes.length;
+        }
+        ByteBuffer newData = ByteBuffer.allocate( section + newSectionSize ).order( ByteOrder.LITTLE_ENDIAN );
+        newData.put( summary.getData(), 0, section );
+        newData.putInt( newSectionSize ).putInt( count );
+        int offset = 8 + count * 8;
+        for( int i = 0; i < count; i++ ) {
+            newData.putInt( ids[i] ).putInt( offset );
+            offset += values.get( i ).length;
+        }
+        for( byte[] bytes : values ) {
+            newData.put( bytes );
+        }
+        summary.setData( newData.array() );
+    }
+
+    /**
+     * Set the value of the ProductLanguage in the Property table. Equals to "wilangid.vbs Product".
+     *
+     * @param langID the language ID
+     * @throws IOException if an I/O error occurs
+     */
+    void setProductLanguage( String langID ) throws IOException {
+        StringPool pool = new StringPool();
+        Entry table = getStream( encodeName( "Property", true ) );
+        byte[] data = table.getData();
+        int width = pool.longRefs ? 3 : 2;
+        int rows = data.length / (2 * width);
+        int key = pool.find( "ProductLanguage".getBytes( StandardCharsets.US_ASCII ) );
+        for( int row = 0; row < rows; row++ ) {
+            if( key > 0 && readRef( data, row * width, width ) == key ) {
+                // the table is saved column by column, the Value column follow the Property column
+                int offset = (rows + row) * width;
+                int oldValue = readRef( data, offset, width );
+                writeRef( data, offset, width, pool.add( langID.getBytes( StandardCharsets.US_ASCII ) ) );
+                pool.release( oldValue );
+                table.setData( data );
+                pool.save();
+                return;
+            }
+        }
+        throw new IOException( "Missing property ProductLanguage: " + file );
+    }
+
+    /**
+     * Add rows to the MsiFileHash table. The table must already exist, for example with an EnsureTable element. Files
+     * that already have a row are not changed. The rows are sorted by the primary key.
+     *
+     * @param hashes the 4 parts of the MD5 hash for every file ID
+     * @throws IOException if an I/O error occurs
+     */
+    void addFileHashes( Map<String, int[]> hashes ) throws IOException {
+        StringPool pool = new StringPool();
+        int width = pool.longRefs ? 3 : 2;
+        byte[] tables = getStream( encodeName( "_Tables", true ) ).getData();
+        int tableName = pool.find( "MsiFileHash".getBytes( StandardCharsets.US_ASCII ) );
+        boolean exists = false;
+        for( int i = 0; tableName > 0 && i + width <= tables.length; i += width ) {
+            exists |= readRef( tables, i, width ) == tableName;
+        }
+        if( !exists ) {
+            throw new IOException( "Missing table MsiFileHash: " + file );
+        }
+
+        // the columns: File_ (string), Options (i2), HashPart1 - HashPart4 (i4)
+        String streamName = encodeName( "MsiFileHash", true );
+        Entry table = storage.getRoot().getChild( streamName );
+        byte[] data = table == null ? new byte[0] : table.getData();
+        int oldCount = data.length / (width + 2 + 16);
+        TreeMap<Integer, int[]> rows = new TreeMap<>();
+        for( int row = 0; row < oldCount; row++ ) {
+            int[] values = new int[5];
+            values[0] = readRef( data, oldCount * width + row * 2, 2 );
+            for( int k = 0; k < 4; k++ ) {
+                values[k + 1] = readRef( data, oldCount * (width + 2) + (k * oldCount + row) * 4, 4 );
+            }
+            rows.put( readRef( data, row * width, width ), values );
+        }
+        for( Map.Entry<String, int[]> hash : hashes.entrySet() ) {
+            byte[] fileID = hash.getKey().getBytes( StandardCharsets.US_ASCII );
+            int id = pool.find( fileID );
+            if( id > 0 && rows.containsKey( id ) ) {
+                continue;
+            }
+            int[] values = new int[5];
+            values[0] = 0x8000; // Options 0, integers are saved with an offset
+            for( int k = 0; k < 4; k++ ) {
+                values[k + 1] = hash.getValue()[k] ^ 0x80000000;
+            }
+            rows.put( pool.add( fileID ), values );
+        }
+
+        int count = rows.size();
+        data = new byte[count * (width + 2 + 16)];
+        int row = 0;
+        for( Map.Entry<Integer, int[]> entry : rows.entrySet() ) {
+            int[] values = entry.getValue();
+            writeRef( data, row * width, width, entry.getKey() );
+            writeRef( data, count * width + row * 2, 2, values[0] );
+            for( int k = 0; k < 4; k++ ) {
+                writeRef( data, count * (width + 2) + (k * count + row) * 4, 4, values[k + 1] );
+            }
+            row++;
+        }
+        if( table == null ) {
+            storage.getRoot().addStream( streamName, data );
+        } else {
+            table.setData( data );
+        }
+        pool.save();
+    }
+
+    /**
+     * Embed a transform as substorage. Equals to "wisubstg.vbs". The transform file must not be deleted before saving.
+     *
+     * @param name the name of the substorage, typical the language ID
+     * @param mst the transform file
+     * @throws IOException if an I/O error occurs
+     */
+    void addTransform( String name, File mst ) throws IOException {
+        CompoundFile transform = new CompoundFile( mst );
+        transforms.add( transform );
+        Entry substorage = storage.getRoot().addStorage( name );
+        substorage.setClassId( transform.getRoot().getClassId() );
+        for( Entry entry : transform.getRoot().getChildren() ) {
+            substorage.add( entry );
+        }
+    }
+
+    /**
+     * Embed the transforms of the languages of a multilingual setup and set the languages of the package. The language
+     * of the database is the first package language, the other languages follow in the order of the map.
+     *
+     * @param baseLangID the language ID of this database
+     * @param transforms the transform files by language ID, the language ID is also the name of the substorage
+     * @throws IOException if an I/O error occurs
+     */
+    void addLanguageTransforms( String baseLangID, Map<String, File> transforms ) throws IOException {
+        StringBuilder langIDs = new StringBuilder( baseLangID );
+        for( Map.Entry<String, File> transform : transforms.entrySet() ) {
+            addTransform( transform.getKey(), transform.getValue() );
+            langIDs.append( ',' ).append( transform.getKey() );
+        }
+        setPackageLanguages( langIDs.toString() );
+    }
+
+    /**
+     * Save the changes. The database is written to a temporary file that replace the original file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void save() throws IOException {
+        File temp = File.createTempFile( "msi", ".tmp", file.getAbsoluteFile().getParentFile() );
+        try {
+            storage.save( temp );
+            close();
+            Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        } finally {
+            Files.deleteIfExists( temp.toPath() );
+        }
+    }
+
+    /**
+     * Close the database and all added transforms.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        storage.close();
+        for( CompoundFile transform : transforms ) {
+            transform.close();
+        }
+    }
+
+    /**
+     * Get a stream of the root storage.
+     *
+     * @param name the encoded name
+     * @return the stream
+     * @throws IOException if the stream not exists
+     */
+    private Entry getStream( String name ) throws IOException {
+        Entry entry = storage.getRoot().getChild( name );
+        if( entry == null || entry.isStorage() ) {
+            throw new IOException( "Missing stream " + decodeName( name ) + ": " + file );
+        }
+        return entry;
+    }
+
+    /**
+     * Encode the name of a stream like the Windows Installer. Two characters of the alphabet [0-9A-Za-z._] are saved in
+     * one character.
+     *
+     * @param name the name
+     * @param table true, for the stream of a table
+     * @return the encoded name
+     */
+    static String encodeName( String name, boolean table ) {
+        StringBuilder builder = new StringBuilder();
+        if( table ) {
+            builder.append( (char)0x4840 );
+        }
+        for( int i = 0; i < name.length(); i++ ) {
+            int ch = toBase64( name.charAt( i ) );
+            if( ch < 0 ) {
+                builder.append( name.charAt( i ) );
+            } else if( i + 1 < name.length() && toBase64( name.charAt( i + 1 ) ) >= 0 ) {
+                builder.append( (char)(0x3800 + ch + (toBase64( name.charAt( ++i ) ) << 6)) );
+            } else {
+                builder.append( (char)(0x4800 + ch) );
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Decode the name of a stream for messages.
+     *
+     * @param name the encoded name
+     * @return the readable name
+     */
+    private static String decodeName( String name ) {
+        String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz._";
+        StringBuilder builder = new StringBuilder();
+        for( int i = 0; i < name.length(); i++ ) {
+            char ch = name.charAt( i );
+            if( ch >= 0x3800 && ch < 0x4800 ) {
+                builder.append( alphabet.charAt( (ch - 0x3800) & 0x3F ) ).append( alphabet.charAt( (ch - 0x3800) >> 6 ) );
+            } else if( ch >= 0x4800 && ch < 0x4840 ) {
+                builder.append( alphabet.charAt( ch - 0x4800 ) );
+            } else if( ch != 0x4840 ) {
+                builder.append( ch );
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The index of a character in the alphabet of stream names.
+     *
+     * @param ch the character
+     * @return the index or -1
+     */
+    private static int toBase64( char ch ) {
+        if( ch >= '0' && ch <= '9' ) {
+            return ch - '0';
+        }
+        if( ch >= 'A' && ch <= 'Z' ) {
+            return ch - 'A' + 10;
+        }
+        if( ch >= 'a' && ch <= 'z' ) {
+            return ch - 'a' + 36;
+        }
+        if( ch == '.' ) {
+            return 62;
+        }
+        if( ch == '_' ) {
+            return 63;
+        }
+        return -1;
+    }
+
+    /**
+     * Read a string reference or an integer of a table.
+     *
+     * @param data the table data
+     * @param offset the offset
+     * @param width 2, 3 or 4 bytes
+     * @return the raw value
+     */
+    private static int readRef( byte[] data, int offset, int width ) {
+        int value = 0;
+        for( int i = 0; i < width; i++ ) {
+            value |= (data[offset + i] & 0xFF) << (i * 8);
+        }
+        return value;
+    }
+
+    /**
+     * Write a string reference or an integer of a table.
+     *
+     * @param data the table data
+     * @param offset the offset
+     * @param width 2, 3 or 4 bytes
+     * @param value the raw value
+     */
+    private static void writeRef( byte[] data, int offset, int width, int value ) {
+        for( int i = 0; i < width; i++ ) {
+            data[offset + i] = (byte)(value >> (i * 8));
+        }
+    }
+
+    /**
+     * The shared strings of all tables. The stream _StringPool contains the length and the reference count of every
+     * string, the stream _StringData contains the bytes in the codepage of the database. The ID of a string is its
+     * index, the ID 0 is the null string.
+     */
+    private class StringPool {
+
+        private final Entry                    poolStream;
+
+        private final Entry                    dataStream;
+
+        private final int                      header;
+
+        private final boolean                  longRefs;
+
+        private final List<byte[]>             strings = new ArrayList<>();
+
+        private final List<Integer>            refs    = new ArrayList<>();
+
+        private final Map<ByteBuffer, Integer> ids     = new HashMap<>();
+
+        private final PriorityQueue<Integer>   free    = new PriorityQueue<>();
+
+        /**
+         * Read the string pool.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        private StringPool() throws IOException {
+            poolStream = getStream( encodeName( "_StringPool", true ) );
+            dataStream = getStream( encodeName( "_StringData", true ) );
+            ByteBuffer pool = ByteBuffer.wrap( poolStream.getData() ).order( ByteOrder.LITTLE_ENDIAN );
+            byte[] data = dataStream.getData();
+            header = pool.getInt( 0 );
+            longRefs = (header & 0x80000000) != 0;
+            strings.add( null );
+            refs.add( 0 );
+            int offset = 0;
+            for( int i = 4; i + 4 <= pool.capacity(); i += 4 ) {
+                int length = pool.getShort( i ) & 0xFFFF;
+                int count = pool.getShort( i + 2 ) & 0xFFFF;
+                if( length == 0 && count != 0 && i + 8 <= pool.capacity() ) {
+                    // strings with 64K and more use two entries
+                    i += 4;
+                    length = pool.getInt( i );
+                }
+                if( length == 0 && count == 0 ) {
+                    free.add( strings.size() );
+                    strings.add( null );
+                } else {
+                    if( offset + length > data.length ) {
+                        throw new IOException( "Damaged string pool: " + file );
+                    }
+                    byte[] value = Arrays.copyOfRange( data, offset, offset + length );
+                    ids.putIfAbsent( ByteBuffer.wrap( value ), strings.size() );
+                    strings.add( value );
+                    offset += length;
+                }
+                refs.add( count );
+            }
+        }
+
+        /**
+         * Find a string.
+         *
+         * @param value the bytes of the string
+         * @return the ID or 0 if not found
+         */
+        private int find( byte[] value ) {
+            Integer id = ids.get( ByteBuffer.wrap( value ) );
+            return id == null ? 0 : id;
+        }
+
+        /**
+         * Add a reference to a string. The string is added to the pool if needed.
+         *
+         * @param value the bytes of the string
+         * @return the ID
+         * @throws IOException if the references of the tables are to small for a new string
+         */
+        private int add( byte[] value ) throws IOException {
+            int id = find( value );
+            if( id == 0 ) {
+                Integer freeId = free.poll(); // reuse the lowest free entry
+                if( freeId == null ) {
+                    id = strings.size();
+                    if( id > 0xFFFF && !longRefs ) {
+                        throw new IOException( "String pool is full: " + file );
+                    }
+                    strings.add( value );
+                    refs.add( 0 );
+                } else {
+                    id = freeId;
+                    strings.set( id, value );
+                }
+                ids.put( ByteBuffer.wrap( value ), id );
+            }
+            refs.set( id, refs.get( id ) + 1 );
+            return id;
+        }
+
+        /**
+         * Remove a reference to a string. A string without references is removed.
+         *
+         * @param id the ID
+         */
+        private void release( int id ) {
+            if( id > 0 && refs.get( id ) > 0 ) {
+                refs.set( id, refs.get( id ) - 1 );
+                if( refs.get( id ) == 0 ) {
+                    ids.remove( ByteBuffer.wrap( strings.get( id ) ), id );
+                    strings.set( id, null );
+                    free.add( id );
+                }
+            }
+        }
+
+        /**
+         * Write the string pool back to its streams.
+         */
+        private void save() {
+            ByteBuffer pool = ByteBuffer.allocate( strings.size() * 8 ).order( ByteOrder.LITTLE_ENDIAN );
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            pool.putInt( header );
+            for( int i = 1; i < strings.size(); i++ ) {
+                byte[] value = strings.get( i );
+                if( value == null ) {
+                    pool.putInt( 0 );
+                } else if( value.length > 0xFFFF ) {
+                    pool.putShort( (short)0 ).putShort( refs.get( i ).shortValue() ).putInt( value.length );
+                    data.write( value, 0, value.length );
+                } else {
+                    pool.putShort( (short)value.length ).putShort( refs.get( i ).shortValue() );
+                    data.write( value, 0, value.length );
+                }
+            }
+            poolStream.setData( Arrays.copyOf( pool.array(), pool.position() ) );
+            dataStream.setData( data.toByteArray() );
+        }
+    }
+}
@@ -56,7 +56,7 @@ public class MsiLocalizedResource {
 
         File input;
         if( !(resource instanceof File) ) {
-            input = setup.getProject().file( resource );
+            input = setup.getFileResolver().resolve( resource );
         } else {
             input = (File)resource;
         }
@@ -0,0 +1,601 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Edit the resources of a Windows executable (PE/COFF) without the native resource compiler and linker. The resource
+ * section is parsed into a tree of type, name and language and written completely new on saving. If the resource
+ * section is the last section then it is replaced else a new section is appended. A signature is removed because it is
+ * invalid after the change.
+ *
+ * @author Volker Berlin
+ */
+class PeResourceEditor {
+
+    static final int                                                         RT_ICON       = 3;
+
+    static final int                                                         RT_GROUP_ICON = 14;
+
+    static final int                                                         RT_VERSION    = 16;
+
+    static final int                                                         RT_MANIFEST   = 24;
+
+    /**
+     * Named entries are sorted before the ID entries.
+     */
+    private static final Comparator<Object>                                  NAME_ORDER    = ( a, b ) -> {
+        if( a instanceof String ) {
+            return b instanceof String ? ((String)a).compareTo( (String)b ) : -1;
+        }
+        return b instanceof String ? 1 : Integer.compareUnsigned( (Integer)a, (Integer)b );
+    };
+
+    private final byte[]                                                     data;
+
+    private final int                                                        optionalHeader;
+
+    private final int                                                        dataDirectories;
+
+    private final int                                                        sectionHeaders;
+
+    private final int                                                        resourceSection;
+
+    private final TreeMap<Object, TreeMap<Object, TreeMap<Integer, byte[]>>> resources     = new TreeMap<>( NAME_ORDER );
+
+    /**
+     * Parse the resources of an executable.
+     *
+     * @param file the executable
+     * @throws IOException if an I/O error occurs or the file is not a valid executable
+     */
+    PeResourceEditor( File file ) throws IOException {
+        this( Files.readAllBytes( file.toPath() ) );
+    }
+
+    /**
+     * Parse the resources of an executable.
+     *
+     * @param data the content of the executable
+     * @throws IOException if the data is not a valid executable
+     */
+    PeResourceEditor( byte[] data ) throws IOException {
+        this.data = data;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap( data ).order( ByteOrder.LITTLE_ENDIAN );
+            int pe = buffer.getInt( 0x3C );
+            if( buffer.getShort( 0 ) != 0x5A4D || buffer.getInt( pe ) != 0x4550 ) {
+                throw new IOException( "Not a Windows executable" );
+            }
+            optionalHeader = pe + 24;
+            boolean pe32plus = buffer.getShort( optionalHeader ) == 0x20B;
+            int directoryCount = buffer.getInt( optionalHeader + (pe32plus ? 108 : 92) );
+            dataDirectories = optionalHeader + (pe32plus ? 112 : 96);
+            if( directoryCount < 5 ) {
+                throw new IOException( "Missing data directories" );
+            }
+            sectionHeaders = optionalHeader + (buffer.getShort( pe + 20 ) & 0xFFFF);
+
+            int rva = buffer.getInt( dataDirectories + 2 * 8 );
+            int sectionIdx = -1;
+            for( int i = 0; rva != 0 && i < getSectionCount(); i++ ) {
+                int section = sectionHeaders + i * 40;
+                int virtualAddress = buffer.getInt( section + 12 );
+                if( rva >= virtualAddress && rva < virtualAddress + Math.max( buffer.getInt( section + 8 ), buffer.getInt( section + 16 ) ) ) {
+                    sectionIdx = i;
+                    int start = buffer.getInt( section + 20 ) + rva - virtualAddress;
+                    int delta = buffer.getInt( section + 20 ) - virtualAddress; // from RVA to file offset
+                    ByteBuffer dup = buffer.duplicate();
+                    dup.position( start );
+                    ByteBuffer rsrc = dup.slice().order( ByteOrder.LITTLE_ENDIAN );
+                    readDirectory( rsrc, delta, 0, 0, null, null );
+                    break;
+                }
+            }
+            resourceSection = sectionIdx;
+        } catch( IndexOutOfBoundsException | ClassCastException ex ) {
+            throw new IOException( "Damaged Windows executable", ex );
+        }
+    }
+
+    /**
+     * Read a directory of the resource tree recursively.
+     *
+     * @param rsrc the resource section, starting with the root directory
+     * @param delta the difference between an RVA and the file offset
+     * @param offset the offset of the directory
+     * @param level 0 for types, 1 for names and 2 for languages
+     * @param type the type of the parent or null
+     * @param name the name of the parent or null
+     */
+    private void readDirectory( ByteBuffer rsrc, int delta, int offset, int level, Object type, Object name ) {
+        int count = (rsrc.getShort( offset + 12 ) & 0xFFFF) + (rsrc.getShort( offset + 14 ) & 0xFFFF);
+        for( int i = 0; i < count; i++ ) {
+            int entry = offset + 16 + i * 8;
+            int nameValue = rsrc.getInt( entry );
+            int target = rsrc.getInt( entry + 4 );
+            Object key;
+            if( nameValue < 0 ) {
+                int strOffset = nameValue & 0x7FFFFFFF;
+                char[] chars = new char[rsrc.getShort( strOffset ) & 0xFFFF];
+                for( int c = 0; c < chars.length; c++ ) {
+                    chars[c] = rsrc.getChar( strOffset + 2 + 2 * c );
+                }
+                key = new String( chars );
+            } else {
+                key = nameValue;
+            }
+            if( target < 0 ) {
+                if( level < 2 ) {
+                    readDirectory( rsrc, delta, target & 0x7FFFFFFF, level + 1, level == 0 ? key : type, level == 1 ? key : name );
+                }
+            } else if( level == 2 && key instanceof Integer ) {
+                int start = rsrc.getInt( target ) + delta;
+                int end = start + rsrc.getInt( target + 4 );
+                if( start < 0 || end < start || end > data.length ) {
+                    throw new IndexOutOfBoundsException( "Resource data outside of the file" );
+                }
+                byte[] bytes = Arrays.copyOfRange( data, start, end );
+                getNames( type ).computeIfAbsent( name, k -> new TreeMap<>() ).put( (Integer)key, bytes );
+            }
+        }
+    }
+
+    /**
+     * Get the count of sections.
+     *
+     * @return the count
+     */
+    private int getSectionCount() {
+        return ((data[optionalHeader - 18] & 0xFF) | (data[optionalHeader - 17] & 0xFF) << 8);
+    }
+
+    /**
+     * Get the names of a resource type.
+     *
+     * @param type the type
+     * @return the names with its languages
+     */
+    private TreeMap<Object, TreeMap<Integer, byte[]>> getNames( Object type ) {
+        return resources.computeIfAbsent( type, k -> new TreeMap<>( NAME_ORDER ) );
+    }
+
+    /**
+     * Get the data of a resource in any language.
+     *
+     * @param type the type, an Integer or a String
+     * @param name the name, an Integer or a String
+     * @return the data or null if not exists
+     */
+    byte[] getResource( Object type, Object name ) {
+        TreeMap<Object, TreeMap<Integer, byte[]>> names = resources.get( type );
+        TreeMap<Integer, byte[]> languages = names == null ? null : names.get( name );
+        return languages == null || languages.isEmpty() ? null : languages.firstEntry().getValue();
+    }
+
+    /**
+     * Set the data of a resource. The data of all existing languages are replaced. If the resource not exists then it
+     * is added as language neutral.
+     *
+     * @param type the type, an Integer or a String
+     * @param name the name, an Integer or a String
+     * @param bytes the new data
+     */
+    void setResource( Object type, Object name, byte[] bytes ) {
+        TreeMap<Integer, byte[]> languages = getNames( type ).computeIfAbsent( name, k -> new TreeMap<>() );
+        if( languages.isEmpty() ) {
+            languages.put( 0, bytes );
+        } else {
+            languages.replaceAll( ( language, old ) -> bytes );
+        }
+    }
+
+    /**
+     * Replace the first icon group, or add a group with the ID 1, with the images of an *.ico file.
+     *
+     * @param ico the content of an *.ico file
+     * @throws IOException if the ico data are invalid
+     */
+    void setIcon( byte[] ico ) throws IOException {
+        ByteBuffer input = ByteBuffer.wrap( ico ).order( ByteOrder.LITTLE_ENDIAN );
+        int count;
+        try {
+            if( input.getShort( 2 ) != 1 ) {
+                throw new IOException( "Not an ico file" );
+            }
+            count = input.getShort( 4 ) & 0xFFFF;
+            input.get( 6 + count * 16 - 1 );
+        } catch( IndexOutOfBoundsException ex ) {
+            throw new IOException( "Damaged ico file", ex );
+        }
+
+        // remove the images of the old group
+        TreeMap<Object, TreeMap<Integer, byte[]>> groups = getNames( RT_GROUP_ICON );
+        TreeMap<Object, TreeMap<Integer, byte[]>> icons = getNames( RT_ICON );
+        Object groupName = groups.isEmpty() ? 1 : groups.firstKey();
+        byte[] oldGroup = getResource( RT_GROUP_ICON, groupName );
+        if( oldGroup != null ) {
+            ByteBuffer group = ByteBuffer.wrap( oldGroup ).order( ByteOrder.LITTLE_ENDIAN );
+            for( int i = 0; 6 + i * 14 + 14 <= oldGroup.length && i < (group.getShort( 4 ) & 0xFFFF); i++ ) {
+                icons.remove( group.getShort( 6 + i * 14 + 12 ) & 0xFFFF );
+            }
+        }
+
+        ByteBuffer group = ByteBuffer.allocate( 6 + count * 14 ).order( ByteOrder.LITTLE_ENDIAN );
+        group.putShort( (short)0 ).putShort( (short)1 ).putShort( (short)count );
+        int id = 1;
+        for( int i = 0; i < count; i++ ) {
+            int entry = 6 + i * 16;
+            int size = input.getInt( entry + 8 );
+            int offset = input.getInt( entry + 12 );
+            if( size < 0 || offset < 0 || offset + size > ico.length ) {
+                throw new IOException( "Damaged ico file" );
+            }
+            while( icons.containsKey( id ) ) {
+                id++;
+            }
+            setResource( RT_ICON, id, Arrays.copyOfRange( ico, offset, offset + size ) );
+            group.put( ico, entry, 12 ).putShort( (short)id );
+        }
+        setResource( RT_GROUP_ICON, groupName, group.array() );
+    }
+
+    /**
+     * Set the version resource with the ID 1. The string values are saved for US English in the Unicode codepage.
+     *
+     * @param fileVersion the binary file version in the format x.x.x.x
+     * @param productVersion the binary product version in the format x.x.x.x
+     * @param strings the string values like FileDescription, ProductName or CompanyName. Null values are ignored.
+     */
+    void setVersionInfo( String fileVersion, String productVersion, Map<String, String> strings ) {
+        ByteBuffer fixed = ByteBuffer.allocate( 52 ).order( ByteOrder.LITTLE_ENDIAN );
+        fixed.putInt( 0xFEEF04BD ); // signature
+        fixed.putInt( 0x00010000 ); // structure version
+        putVersion( fixed, fileVersion );
+        putVersion( fixed, productVersion );
+        fixed.putInt( 0x3F ); // file flags mask
+        fixed.putInt( 0 ); // file flags
+        fixed.putInt( 0x00040004 ); // VOS_NT_WINDOWS32
+        fixed.putInt( 1 ); // VFT_APP
+
+        List<byte[]> values = new ArrayList<>();
+        for( Map.Entry<String, String> entry : strings.entrySet() ) {
+            if( entry.getValue() != null ) {
+                values.add( versionBlock( entry.getKey(), (entry.getValue() + '\u0000').getBytes( StandardCharsets.UTF_16LE ), entry.getValue().length() + 1, 1 ) );
+            }
+        }
+        byte[] stringTable = versionBlock( "040904B0", new byte[0], 0, 1, values.toArray( new byte[values.size()][] ) );
+        byte[] stringFileInfo = versionBlock( "StringFileInfo", new byte[0], 0, 1, stringTable );
+        byte[] translation = versionBlock( "Translation", new byte[] { 0x09, 0x04, (byte)0xB0, 0x04 }, 4, 0 );
+        byte[] varFileInfo = versionBlock( "VarFileInfo", new byte[0], 0, 1, translation );
+        setResource( RT_VERSION, 1, versionBlock( "VS_VERSION_INFO", fixed.array(), 52, 0, stringFileInfo, varFileInfo ) );
+    }
+
+    /**
+     * Write a version in the format x.x.x.x as 2 integers.
+     *
+     * @param buffer the target
+     * @param version the version
+     */
+    private static void putVersion( ByteBuffer buffer, String version ) {
+        String[] parts = Launch4jConfig.normalizeVersionNumber( version ).split( "[.]" );
+        int[] digits = new int[4];
+        for( int i = 0; i < 4; i++ ) {
+            digits[i] = Integer.parseInt( parts[i] ) & 0xFFFF;
+        }
+        buffer.putInt( digits[0] << 16 | digits[1] );
+        buffer.putInt( digits[2] << 16 | digits[3] );
+    }
+
+    /**
+     * Create a block of a version resource. The children are aligned to 32 bit.
+     *
+     * @param key the key
+     * @param value the value
+     * @param valueLength the length of the value, in characters for text values
+     * @param type 1 for text data, 0 for binary data
+     * @param children the child blocks
+     * @return the block
+     */
+    private static byte[] versionBlock( String key, byte[] value, int valueLength, int type, byte[]... children ) {
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        block.write( new byte[] { 0, 0, (byte)valueLength, (byte)(valueLength >> 8), (byte)type, 0 }, 0, 6 );
+        byte[] keyBytes = (key + '\u0000').getBytes( StandardCharsets.UTF_16LE );
+        block.write( keyBytes, 0, keyBytes.length );
+        pad( block );
+        block.write( value, 0, value.length );
+        for( byte[] child : children ) {
+            pad( block );
+            block.write( child, 0, child.length );
+        }
+        byte[] bytes = block.toByteArray();
+        bytes[0] = (byte)bytes.length;
+        bytes[1] = (byte)(bytes.length >> 8);
+        return bytes;
+    }
+
+    /**
+     * Pad a stream to 32 bit alignment.
+     *
+     * @param stream the stream
+     */
+    private static void pad( ByteArrayOutputStream stream ) {
+        while( stream.size() % 4 != 0 ) {
+            stream.write( 0 );
+        }
+    }
+
+    /**
+     * Write the executable with the changed resources.
+     *
+     * @param file the target file
+     * @throws IOException if an I/O error occurs or there is no space for an additional section header
+     */
+    void save( File file ) throws IOException {
+        byte[] input = data.clone(); // the headers are changed
+        ByteBuffer buffer = ByteBuffer.wrap( input ).order( ByteOrder.LITTLE_ENDIAN );
+        int sectionAlignment = buffer.getInt( optionalHeader + 32 );
+        int fileAlignment = buffer.getInt( optionalHeader + 36 );
+        int sectionCount = getSectionCount();
+
+        // the end of the sections in memory and in the file
+        int imageEnd = 0;
+        int rawEnd = 0;
+        int lastVirtual = -1;
+        int lastRaw = -1;
+        for( int i = 0; i < sectionCount; i++ ) {
+            int section = sectionHeaders + i * 40;
+            int virtualEnd = buffer.getInt( section + 12 ) + Math.max( buffer.getInt( section + 8 ), buffer.getInt( section + 16 ) );
+            if( virtualEnd > imageEnd ) {
+                imageEnd = virtualEnd;
+                lastVirtual = i;
+            }
+            int end = buffer.getInt( section + 20 ) + buffer.getInt( section + 16 );
+            if( end > rawEnd ) {
+                rawEnd = end;
+                lastRaw = i;
+            }
+        }
+        // the overlay after the sections without the signature
+        int certificates = buffer.getInt( dataDirectories + 4 * 8 );
+        int overlayEnd = certificates >= rawEnd && certificates < input.length ? certificates : input.length;
+
+        int section;
+        int oldRawSize;
+        if( resourceSection >= 0 && resourceSection == lastVirtual && resourceSection == lastRaw ) {
+            section = sectionHeaders + resourceSection * 40;
+            oldRawSize = buffer.getInt( section + 16 );
+        } else {
+            section = sectionHeaders + sectionCount * 40;
+            for( int i = 0; i < sectionCount; i++ ) {
+                int pointer = buffer.getInt( sectionHeaders + i * 40 + 20 );
+                if( pointer > 0 && pointer < section + 40 ) {
+                    throw new IOException( "No space for an additional section header" );
+                }
+            }
+            if( section + 40 > buffer.getInt( optionalHeader + 60 ) ) {
+                throw new IOException( "No space for an additional section header" );
+            }
+            oldRawSize = 0;
+            System.arraycopy( ".rsrc\u0000\u0000\u0000".getBytes( StandardCharsets.US_ASCII ), 0, input, section, 8 );
+            buffer.putInt( section + 12, align( imageEnd, sectionAlignment ) );
+            buffer.putInt( section + 20, align( rawEnd, fileAlignment ) );
+            buffer.putInt( section + 24, 0 );
+            buffer.putInt( section + 28, 0 );
+            buffer.putInt( section + 32, 0 );
+            buffer.putInt( section + 36, 0x40000040 ); // IMAGE_SCN_CNT_INITIALIZED_DATA | IMAGE_SCN_MEM_READ
+            buffer.putShort( optionalHeader - 18, (short)(sectionCount + 1) );
+        }
+        int virtualAddress = buffer.getInt( section + 12 );
+        int pointer = buffer.getInt( section + 20 );
+        byte[] rsrc = buildResourceSection( virtualAddress );
+        int rawSize = align( rsrc.length, fileAlignment );
+
+        buffer.putInt( section + 8, rsrc.length );
+        buffer.putInt( section + 16, rawSize );
+        buffer.putInt( optionalHeader + 8, buffer.getInt( optionalHeader + 8 ) + rawSize - oldRawSize ); // SizeOfInitializedData
+        buffer.putInt( optionalHeader + 56, align( virtualAddress + rsrc.length, sectionAlignment ) ); // SizeOfImage
+        buffer.putInt( dataDirectories + 2 * 8, virtualAddress );
+        buffer.putInt( dataDirectories + 2 * 8 + 4, rsrc.length );
+        buffer.putInt( dataDirectories + 4 * 8, 0 );
+        buffer.putInt( dataDirectories + 4 * 8 + 4, 0 );
+
+        int overlayStart = Math.min( rawEnd, overlayEnd );
+        byte[] output = new byte[pointer + rawSize + overlayEnd - overlayStart];
+        System.arraycopy( input, 0, output, 0, Math.min( pointer, rawEnd ) );
+        System.arraycopy( rsrc, 0, output, pointer, rsrc.length );
+        System.arraycopy( input, overlayStart, output, pointer + rawSize, overlayEnd - overlayStart );
+
+        ByteBuffer result = ByteBuffer.wrap( output ).order( ByteOrder.LITTLE_ENDIAN );
+        if( result.getInt( optionalHeader + 64 ) != 0 ) {
+            result.putInt( optionalHeader + 64, checksum( result ) );
+        }
+        Files.write( file.toPath(), output );
+    }
+
+    /**
+     * Create the content of the resource section.
+     *
+     * @param virtualAddress the RVA of the section
+     * @return the section data
+     */
+    private byte[] buildResourceSection( int virtualAddress ) {
+        resources.values().removeIf( names -> {
+            names.values().removeIf( TreeMap::isEmpty );
+            return names.isEmpty();
+        } );
+
+        // calculate the layout: directories, data entries, strings and data
+        int directories = 16 + resources.size() * 8;
+        int leafs = 0;
+        int strings = 0;
+        for( Map.Entry<Object, TreeMap<Object, TreeMap<Integer, byte[]>>> type : resources.entrySet() ) {
+            directories += 16 + type.getValue().size() * 8;
+            strings += stringSize( type.getKey() );
+            for( Map.Entry<Object, TreeMap<Integer, byte[]>> name : type.getValue().entrySet() ) {
+                directories += 16 + name.getValue().size() * 8;
+                strings += stringSize( name.getKey() );
+                leafs += name.getValue().size();
+            }
+        }
+        int stringStart = directories + leafs * 16;
+        int dataStart = align( stringStart + strings, 8 );
+        int size = dataStart;
+        for( TreeMap<Object, TreeMap<Integer, byte[]>> names : resources.values() ) {
+            for( TreeMap<Integer, byte[]> languages : names.values() ) {
+                for( byte[] bytes : languages.values() ) {
+                    size = align( size + bytes.length, 8 );
+                }
+            }
+        }
+
+        ByteBuffer rsrc = ByteBuffer.allocate( size ).order( ByteOrder.LITTLE_ENDIAN );
+        int[] next = { 16 + resources.size() * 8, directories, stringStart, dataStart }; // directory, leaf, string, data
+        writeDirectory( rsrc, 0, resources.keySet() );
+        int typeEntry = 16;
+        for( Map.Entry<Object, TreeMap<Object, TreeMap<Integer, byte[]>>> type : resources.entrySet() ) {
+            int typeDir = next[0];
+            next[0] += 16 + type.getValue().size() * 8;
+            writeEntry( rsrc, typeEntry, type.getKey(), typeDir | 0x80000000, next );
+            typeEntry += 8;
+            writeDirectory( rsrc, typeDir, type.getValue().keySet() );
+            int nameEntry = typeDir + 16;
+            for( Map.Entry<Object, TreeMap<Integer, byte[]>> name : type.getValue().entrySet() ) {
+                int nameDir = next[0];
+                next[0] += 16 + name.getValue().size() * 8;
+                writeEntry( rsrc, nameEntry, name.getKey(), nameDir | 0x80000000, next );
+                nameEntry += 8;
+                writeDirectory( rsrc, nameDir, name.getValue().keySet() );
+                int languageEntry = nameDir + 16;
+                for( Map.Entry<Integer, byte[]> language : name.getValue().entrySet() ) {
+                    byte[] bytes = language.getValue();
+                    int leaf = next[1];
+                    next[1] += 16;
+                    writeEntry( rsrc, languageEntry, language.getKey(), leaf, next );
+                    languageEntry += 8;
+                    rsrc.putInt( leaf, virtualAddress + next[3] );
+                    rsrc.putInt( leaf + 4, bytes.length );
+                    ByteBuffer target = rsrc.duplicate();
+                    target.position( next[3] );
+                    target.put( bytes );
+                    next[3] = align( next[3] + bytes.length, 8 );
+                }
+            }
+        }
+        return rsrc.array();
+    }
+
+    /**
+     * Write the header of a directory.
+     *
+     * @param rsrc the resource section
+     * @param offset the offset of the directory
+     * @param keys the keys of the entries
+     */
+    private static void writeDirectory( ByteBuffer rsrc, int offset, Iterable<?> keys ) {
+        int named = 0;
+        int ids = 0;
+        for( Object key : keys ) {
+            if( key instanceof String ) {
+                named++;
+            } else {
+                ids++;
+            }
+        }
+        rsrc.putShort( offset + 12, (short)named );
+        rsrc.putShort( offset + 14, (short)ids );
+    }
+
+    /**
+     * Write a directory entry. A string name is written to the string area.
+     *
+     * @param rsrc the resource section
+     * @param offset the offset of the entry
+     * @param key the Integer ID or the String name
+     * @param target the offset of the sub directory with the high bit or of the data entry
+     * @param next the next free offsets, the string offset is on index 2
+     */
+    private static void writeEntry( ByteBuffer rsrc, int offset, Object key, int target, int[] next ) {
+        if( key instanceof String ) {
+            String str = (String)key;
+            rsrc.putInt( offset, next[2] | 0x80000000 );
+            rsrc.putShort( next[2], (short)str.length() );
+            for( int i = 0; i < str.length(); i++ ) {
+                rsrc.putChar( next[2] + 2 + 2 * i, str.charAt( i ) );
+            }
+            next[2] += stringSize( key );
+        } else {
+            rsrc.putInt( offset, (Integer)key );
+        }
+        rsrc.putInt( offset + 4, target );
+    }
+
+    /**
+     * The size of a name in the string area.
+     *
+     * @param key the Integer ID or the String name
+     * @return the size, 0 for IDs
+     */
+    private static int stringSize( Object key ) {
+        return key instanceof String ? 2 + 2 * ((String)key).length() : 0;
+    }
+
+    /**
+     * Align a value.
+     *
+     * @param value the value
+     * @param alignment the alignment, a power of 2
+     * @return the aligned value
+     */
+    private static int align( int value, int alignment ) {
+        return (value + alignment - 1) & -alignment;
+    }
+
+    /**
+     * Calculate the checksum of the executable like CheckSumMappedFile.
+     *
+     * @param file the executable with the changed headers
+     * @return the checksum
+     */
+    private int checksum( ByteBuffer file ) {
+        int checksumOffset = optionalHeader + 64;
+        long sum = 0;
+        int length = file.limit();
+        for( int i = 0; i < length; i += 2 ) {
+            if( i == checksumOffset || i == checksumOffset + 2 ) {
+                continue;
+            }
+            int value = i + 1 < length ? file.getShort( i ) & 0xFFFF : file.get( i ) & 0xFF;
+            sum += value;
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        sum = (sum & 0xFFFF) + (sum >>> 16);
+        return (int)(sum + length);
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.initialization.DefaultBuildCancellationToken;
+
+import com.inet.gradle.setup.util.ContentCache;
+
+/**
+ * Sign multiple files with a single call of signtool.exe. The timestamp servers are requested in parallel and the first
+ * success is used, the other requests are aborted. The signed files are saved in the build cache so that unchanged files are not signed again.
+ *
+ * @author Volker Berlin
+ */
+class SignToolBatch {
+
+    private final SignTool                                              sign;
+
+    private final String                                                tool;
+
+    private final File                                                  certificate;
+
+    private final String                                                description;
+
+    private final ContentCache                                          cache;
+
+    private final File                                                  tempDir;
+
+    private final BiConsumer<ArrayList<String>, BuildCancellationToken> exec;
+
+    private final Logger                                                logger;
+
+    private final Map<File, String>                                     files = new LinkedHashMap<>();
+
+    /**
+     * Create a new batch.
+     *
+     * @param sign the sign settings
+     * @param tool the path of signtool.exe
+     * @param certificate the certificate file or null
+     * @param description the description of the signed content
+     * @param cache the build cache or null if disabled
+     * @param tempDir directory for the temporary copies of the timestamp requests
+     * @param exec execute signtool.exe with the given command line, the process must be destroyed if the token is
+     *            canceled
+     * @param logger the logger
+     */
+    SignToolBatch( SignTool sign, String tool, File certificate, String description, ContentCache cache, File tempDir, BiConsumer<ArrayList<String>, BuildCancellationToken> exec, Logger logger ) {
+        this.sign = sign;
+        this.tool = tool;
+        this.certificate = certificate;
+        this.description = description;
+        this.cache = cache;
+        this.tempDir = tempDir;
+        this.exec = exec;
+        this.logger = logger;
+    }
+
+    /**
+     * Add a file that should be signed on the next call of {@link #sign()}.
+     *
+     * @param file the file
+     * @param cacheable true, if the signed file should be saved in the build cache. This make only sense for files that
+     *            are created reproducible.
+     */
+    void add( File file, boolean cacheable ) {
+        files.put( file, cacheable ? "" : null );
+    }
+
+    /**
+     * Sign and timestamp all added files. Files with a cached signature are copied from the cache.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void sign() throws IOException {
+        List<File> pending = new ArrayList<>();
+        for( Map.Entry<File, String> entry : files.entrySet() ) {
+            File file = entry.getKey();
+            if( cache != null && entry.getValue() != null ) {
+                String key;
+                try( InputStream input = Files.newInputStream( file.toPath() ) ) {
+                    key = ContentCache.key( input, certificate, certificate == null ? 0 : certificate.lastModified(), sign.getSha1(), description, sign.getTimestamp() != null );
+                }
+                try( Closeable lock = cache.lockShared() ) {
+                    File cached = cache.get( key );
+                    if( cached != null ) {
+                        logger.lifecycle( "\tSigned file is taken from the build cache: " + file.getName() );
+                        Files.copy( cached.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                        continue;
+                    }
+                }
+                entry.setValue( key );
+            }
+            pending.add( file );
+        }
+        if( pending.isEmpty() ) {
+            files.clear();
+            return;
+        }
+
+        // signing all files at once
+        ArrayList<String> parameters = new ArrayList<>();
+        parameters.add( tool );
+        parameters.add( "sign" );
+        if( certificate != null ) {
+            parameters.add( "/f" );
+            parameters.add( certificate.getAbsolutePath() );
+        }
+        if( sign.getPassword() != null ) {
+            parameters.add( "/p" );
+            parameters.add( sign.getPassword() );
+        }
+        if( sign.getSha1() != null ) {
+            parameters.add( "/sha1" );
+            parameters.add( sign.getSha1() );
+        }
+
+        parameters.add( "/d" ); // http://stackoverflow.com/questions/4315840/the-uac-prompt-shows-a-temporary-random-program-name-for-msi-can-the-correct-na
+        parameters.add( description );
+
+        for( File file : pending ) {
+            parameters.add( file.getAbsolutePath() );
+        }
+        exec.accept( parameters, new DefaultBuildCancellationToken() );
+
+        timestamp( pending );
+
+        if( cache != null ) {
+            boolean added = false;
+            for( File file : pending ) {
+                String key = files.get( file );
+                if( key != null && !key.isEmpty() ) {
+                    File temp = cache.createFile( key );
+                    Files.copy( file.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                    cache.commit( key, temp );
+                    added = true;
+                }
+            }
+            if( added ) {
+                cache.evict();
+            }
+        }
+        files.clear();
+    }
+
+    /**
+     * Timestamp the signed files. With a single server the files are changed directly. With multiple servers every
+     * request works on its own copy of the files and the copies of the first success replace the files. The requests
+     * that are still running are aborted and the method returns after they have ended.
+     *
+     * @param pending the signed files
+     * @throws IOException if an I/O error occurs
+     */
+    private void timestamp( List<File> pending ) throws IOException {
+        List<String> servers = sign.getTimestamp();
+        if( servers == null || servers.isEmpty() ) {
+            return;
+        }
+        if( servers.size() == 1 ) {
+            exec.accept( timestampParameters( servers.get( 0 ), pending ), new DefaultBuildCancellationToken() );
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( servers.size(), runnable -> {
+            Thread thread = new Thread( runnable, "SetupBuilder timestamp" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        DefaultBuildCancellationToken cancellation = new DefaultBuildCancellationToken();
+        try {
+            CompletionService<List<File>> requests = new ExecutorCompletionService<>( executor );
+            for( int i = 0; i < servers.size(); i++ ) {
+                String server = servers.get( i );
+                File dir = new File( tempDir, "timestamp" + i );
+                requests.submit( () -> {
+                    List<File> copies = new ArrayList<>();
+                    for( int j = 0; j < pending.size(); j++ ) {
+                        File file = pending.get( j );
+                        File copy = new File( dir, j + "_" + file.getName() );
+                        copy.getParentFile().mkdirs();
+                        Files.copy( file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                        copies.add( copy );
+                    }
+                    exec.accept( timestampParameters( server, copies ), cancellation );
+                    return copies;
+                } );
+            }
+
+            RuntimeException allEx = null;
+            for( int i = 0; i < servers.size(); i++ ) {
+                try {
+                    List<File> copies = requests.take().get();
+                    for( int j = 0; j < pending.size(); j++ ) {
+                        Files.move( copies.get( j ).toPath(), pending.get( j ).toPath(), StandardCopyOption.REPLACE_EXISTING );
+                    }
+                    return; // timestamp is ok, if no exception occur
+                } catch( ExecutionException ex ) {
+                    Throwable cause = ex.getCause();
+                    RuntimeException runtimeEx = cause instanceof RuntimeException ? (RuntimeException)cause : new RuntimeException( cause );
+                    if( allEx == null ) {
+                        allEx = runtimeEx;
+                    } else {
+                        allEx.addSuppressed( runtimeEx );
+                    }
+                    logger.lifecycle( "Timestamp failed: " + cause );
+                } catch( InterruptedException ex ) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException( ex );
+                }
+            }
+            throw allEx;
+        } finally {
+            // the losing requests must not run in the background and must not write the copies of the next call
+            cancellation.cancel();
+            executor.shutdown();
+            try {
+                executor.awaitTermination( 1, TimeUnit.MINUTES );
+            } catch( InterruptedException ex ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Create the command line for a timestamp request.
+     *
+     * @param server the URL of the timestamp server
+     * @param targets the files
+     * @return the command line
+     */
+    private ArrayList<String> timestampParameters( String server, List<File> targets ) {
+        ArrayList<String> parameters = new ArrayList<>();
+        parameters.add( tool );
+        parameters.add( "timestamp" );
+        parameters.add( "/t" );
+        parameters.add( server );
+        for( File file : targets ) {
+            parameters.add( file.getAbsolutePath() );
+        }
+        return parameters;
+    }
+}
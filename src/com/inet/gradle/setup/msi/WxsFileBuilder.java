@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -31,11 +32,17 @@ import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -45,12 +52,12 @@ import javax.swing.text.EditorKit;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamWriter;
 
 import com.inet.gradle.setup.util.Strings;
 import org.gradle.api.GradleException;
-import org.gradle.api.internal.file.CopyActionProcessingStreamAction;
-import org.gradle.api.internal.file.copy.FileCopyDetailsInternal;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 import com.inet.gradle.setup.SetupBuilder;
 import com.inet.gradle.setup.abstracts.DesktopStarter;
@@ -68,27 +75,51 @@ import com.inet.gradle.setup.util.XmlFileBuilder;
  */
 class WxsFileBuilder extends XmlFileBuilder<Msi> {
 
-    private static final String     ICON_ID = "icon.ico";
+    private static final String                      ICON_ID = "icon.ico";
 
-    private Set<String>             components = new LinkedHashSet<>();
+    private Set<String>                              components = new LinkedHashSet<>();
 
-    private HashMap<String, String> ids        = new HashMap<>();
+    private HashMap<String, String>                  ids        = new HashMap<>();
 
-    private String                  jvmDll;
+    private Set<String>                              withFiles  = new HashSet<>();
 
-    private String                  javaDir;
+    private HashMap<String, Future<FileInformation>> fileInfos  = new HashMap<>();
 
-    private boolean                 isAddFiles;
+    private HashMap<String, int[]>                   fileHashes = new HashMap<>();
+
+    /**
+     * Read the information of the payload files in the background while the DOM is built.
+     */
+    private ExecutorService                          fileInfoExecutor;
+
+    private String                                   jvmDll;
+
+    private String                                   javaDir;
+
+    /**
+     * If the File elements of the payload are written. The msi files for the language transforms are build without.
+     */
+    private boolean                                  writeFiles;
+
+    /**
+     * The File elements of the payload that are not part of the DOM.
+     */
+    private WxsFileSpool                             fileSpool;
 
     /**
      * The product node in the XML.
      */
-    private Element                 product;
+    private Element                                  product;
 
     /**
      * Reference to INSTALLDIR
      */
-    private Element                 installDir;
+    private Element                                  installDir;
+
+    /**
+     * The directory tree below INSTALLDIR.
+     */
+    private DirectoryNode                            rootDirectory;
 
     /**
      * Create a new instance.
@@ -97,21 +128,54 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
      * @param wxsFile the file name
      * @param buildDir the temporary directory of the task
      * @param template a template file
-     * @param addFiles if files should be added in this phase
      * @throws Exception if any error occur
      */
-    WxsFileBuilder( Msi msi, SetupBuilder setup, File wxsFile, File buildDir, URL template, boolean addFiles ) throws Exception {
+    WxsFileBuilder( Msi msi, SetupBuilder setup, File wxsFile, File buildDir, URL template ) throws Exception {
         super( msi, setup, wxsFile, buildDir, template );
-        this.isAddFiles = addFiles;
     }
 
     /**
-     * Create *.wxs file based on the settings in the task.
+     * Create *.wxs file based on the settings in the task. Optional a second *.wxs file without the files of the payload
+     * is written from the same DOM. It is used for the msi files of the language transforms. Because both files are
+     * created from the same DOM they have the same product code and component GUIDs.
      *
+     * @param languageWxsFile the *.wxs file without payload or null if not needed
      * @throws ParserConfigurationException
      * @throws Exception if any error occur
      */
-    void build() throws Exception {
+    void build( File languageWxsFile ) throws Exception {
+        fileSpool = new WxsFileSpool( buildDir );
+        int threads = setup.getMaxProcesses();
+        if( threads <= 0 ) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        fileInfoExecutor = Executors.newFixedThreadPool( threads, runnable -> {
+            Thread thread = new Thread( runnable, "SetupBuilder file information " + task.getName() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        try {
+            buildDocument();
+            writeFiles = true;
+            saveStreaming();
+            if( languageWxsFile != null ) {
+                writeFiles = false;
+                saveStreaming( languageWxsFile );
+            }
+        } finally {
+            fileInfoExecutor.shutdownNow();
+            fileInfoExecutor = null;
+            fileSpool.close();
+            fileSpool = null;
+        }
+    }
+
+    /**
+     * Create the DOM of the *.wxs file. The File elements of the payload are only spooled.
+     *
+     * @throws Exception if any error occur
+     */
+    private void buildDocument() throws Exception {
         // Wix node
         Element wix = getOrCreateChild( doc, "Wix", true );
         wix.setAttributeNS( "http://www.w3.org/2000/xmlns/", "xmlns", "http://schemas.microsoft.com/wix/2006/wi" );
@@ -155,26 +219,20 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
 
         //Files
         installDir = getOrCreateChildById( product, "DirectoryRef", "INSTALLDIR" );
-        task.processFiles( new CopyActionProcessingStreamAction() {
-            @Override
-            public void processFile( FileCopyDetailsInternal details ) {
-                try {
-                    if( !details.isDirectory() ) {
-                        String[] segments = details.getRelativePath().getSegments();
-                        File file;
-                        try {
-                            file = details.getFile();
-                        } catch( UnsupportedOperationException ex ) {
-                            // if there is set an filter then we need to copy it
-                            File buildDir = task.getTemporaryDir();
-                            file = new File( buildDir, details.getRelativePath().getPathString() );
-                            details.copyTo( file );
-                        }
-                        addFile( file, segments );
+        rootDirectory = new DirectoryNode( installDir, "", "" );
+        task.processEntries( "", entry -> {
+            try {
+                if( !entry.isDirectory() ) {
+                    File file = entry.getSourceFile();
+                    if( file == null ) {
+                        // if there is set an filter then we need to copy it
+                        file = new File( task.getTemporaryDir(), entry.getRelativePath() );
+                        entry.copyTo( file );
                     }
-                } catch( Exception ex ) {
-                    throw new GradleException( "Can't add file: " + details, ex );
+                    addFile( file, entry.getSegments() );
                 }
+            } catch( Exception ex ) {
+                throw new GradleException( "Can't add file: " + entry, ex );
             }
         } );
 
@@ -198,7 +256,125 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
             getOrCreateChildById( feature, "ComponentRef", compID );
         }
 
-        save();
+        // the hashes of the unversioned files are added after light.exe
+        getOrCreateChildById( product, "EnsureTable", "MsiFileHash" );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean hasStreamedChildren( Element element ) {
+        return fileSpool != null && "Component".equals( element.getNodeName() ) && fileSpool.size( element.getAttribute( "Id" ) ) > 0;
+    }
+
+    /**
+     * Skip the components that reference files of the payload if the files are not written.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isSkipped( Element element ) {
+        if( writeFiles ) {
+            return false;
+        }
+        String name = element.getNodeName();
+        return ("Component".equals( name ) || "ComponentRef".equals( name )) && withFiles.contains( element.getAttribute( "Id" ) );
+    }
+
+    /**
+     * Write the spooled File elements of a component. Without files a component only create its folder.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    protected void writeStreamedChildren( Element element, XMLStreamWriter writer, int depth ) throws Exception {
+        if( !writeFiles ) {
+            if( getChildByKeyValue( element, "CreateFolder", null, null ) == null ) {
+                newLine( writer, depth );
+                writer.writeEmptyElement( "CreateFolder" );
+            }
+            return;
+        }
+        String compID = element.getAttribute( "Id" );
+        int count = fileSpool.size( compID );
+        for( int i = 0; i < count; i++ ) {
+            String[] file = fileSpool.read( compID, i );
+            newLine( writer, depth );
+            writer.writeEmptyElement( "File" );
+            writer.writeAttribute( "Id", file[0] );
+            writer.writeAttribute( "Name", file[2] );
+            writer.writeAttribute( "Source", file[1] );
+            FileInformation info;
+            try {
+                info = fileInfos.get( file[0] ).get();
+            } catch( ExecutionException ex ) {
+                throw new GradleException( "Can't read file: " + file[1], ex.getCause() );
+            }
+            writeFileInformation( file[0], info, writer::writeAttribute );
+        }
+    }
+
+    /**
+     * Write the values of a file that light.exe otherwise read self. The hash of an unversioned file can not be set in
+     * the *.wxs file and is collected for the MsiFileHash table.
+     *
+     * @param id the ID of the File element
+     * @param info the information of the file
+     * @param writer the target of the attributes
+     * @throws Exception if any error occur
+     */
+    private void writeFileInformation( String id, FileInformation info, AttributeWriter writer ) throws Exception {
+        writer.write( "DefaultSize", Long.toString( info.getSize() ) );
+        if( info.getVersion() != null ) {
+            writer.write( "DefaultVersion", info.getVersion() );
+        }
+        if( info.getLanguage() != null ) {
+            writer.write( "DefaultLanguage", info.getLanguage() );
+        }
+        if( info.getHash() != null ) {
+            fileHashes.put( id, info.getHash() );
+        }
+    }
+
+    /**
+     * If every File element has the size, version and language of its file. Then light.exe does not need to read the
+     * files and can be called with -sh.
+     *
+     * @return true, if no File element without this information exists
+     */
+    boolean isFileInformationComplete() {
+        NodeList files = doc.getElementsByTagName( "File" );
+        for( int i = 0; i < files.getLength(); i++ ) {
+            if( !((Element)files.item( i )).hasAttribute( "DefaultSize" ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The MD5 hashes of all unversioned files for the MsiFileHash table. Only valid after {@link #build(File)}.
+     *
+     * @return the 4 parts of the hash for every file ID
+     */
+    Map<String, int[]> getFileHashes() {
+        return fileHashes;
+    }
+
+    /**
+     * Target for the attributes of a File element.
+     */
+    private interface AttributeWriter {
+
+        /**
+         * Write an attribute.
+         *
+         * @param name the name
+         * @param value the value
+         * @throws Exception if any error occur
+         */
+        void write( String name, String value ) throws Exception;
     }
 
     /**
@@ -324,13 +500,33 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
      * @return the directory node
      */
     private Element getDirectory( String[] segments, int length ) {
-        Element parent = installDir;
+        return getDirectoryNode( segments, length ).element;
+    }
+
+    /**
+     * Get or create a node of the directory tree. The node caches the directory node in the XML and its IDs. A path
+     * that was already used is a single walk of the tree.
+     *
+     * @param segments the segments of the path in the target. The last segment contains the file name.
+     * @param length the used length from the segments
+     * @return the node of the directory tree
+     */
+    private DirectoryNode getDirectoryNode( String[] segments, int length ) {
+        DirectoryNode node = rootDirectory;
         for( int i = 0; i < length; i++ ) {
             String seg = segments[i];
-            parent = getOrCreateChildById( parent, "Directory", id( segments, i + 1 ) );
-            addAttributeIfNotExists( parent, "Name", seg );
+            DirectoryNode child = node.children.get( seg );
+            if( child == null ) {
+                String path = i == 0 ? seg : node.path + '\\' + seg;
+                String id = id( path );
+                Element dir = getOrCreateChildById( node.element, "Directory", id );
+                addAttributeIfNotExists( dir, "Name", seg );
+                child = new DirectoryNode( dir, path, id );
+                node.children.put( seg, child );
+            }
+            node = child;
         }
-        return parent;
+        return node;
     }
 
     /**
@@ -357,18 +553,23 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
      * @param segments the segments of the path in the target. The last segment contains the file name.
      */
     private String addFile( File file, String[] segments ) {
-        Element parent = getDirectory( segments );
-
-        String pathID = id( segments, segments.length - 1 );
-        String compID = id( ( pathID.length() > 0 ? pathID : "root" ) + "_Comp");
+        DirectoryNode dir = getDirectoryNode( segments, segments.length - 1 );
 
-        Element component = getComponent( parent, compID );
+        String pathID = dir.id;
+        if( dir.component == null ) {
+            dir.compID = id( ( pathID.length() > 0 ? pathID : "root" ) + "_Comp");
+            dir.component = getComponent( dir.element, dir.compID );
+        }
+        String compID = dir.compID;
+        Element component = dir.component;
 
         String name = segments[segments.length - 1];
-        String id = addFile( component, file, segments, isAddFiles );
+        String id = spoolFile( component, compID, file, segments );
 
         // Debug Output of files that will be added
-        task.getProject().getLogger().debug( "\t\tadding file: '" +file.toString() + "' '" + name + "' '" + id + "' '" + pathID + "' '" + compID + "' '" + String.join( "%", segments ) + "'" );
+        if( task.getLogger().isDebugEnabled() ) {
+            task.getLogger().debug( "\t\tadding file: '" +file.toString() + "' '" + name + "' '" + id + "' '" + pathID + "' '" + compID + "' '" + String.join( "%", segments ) + "'" );
+        }
 
         // save the jvm.dll position
         if( name.equals( "jvm.dll" ) ) {
@@ -385,24 +586,45 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
     }
 
     /**
-     * Add a file.
+     * Add a file to the DOM.
      *
      * @param component the parent component node
      * @param file the source file
-     * @param pathID an ID of the parent path
-     * @param name the target file name
-     * @param isAddFiles if the file should added or not. On creating the multi language translations the files will not
-     *            added to improve the performance.
+     * @param segments the segments of the path in the target. The last segment contains the file name.
      */
-    private String addFile( Element component, File file, String[] segments, boolean isAddFiles ) {
+    private String addFile( Element component, File file, String[] segments ) {
         String name = segments[segments.length-1];
         String id = id( segments, segments.length );
-        if( isAddFiles ) {
-            Element fileEl = getOrCreateChildById( component, "File", id );
-            addAttributeIfNotExists( fileEl, "Source", file.getAbsolutePath() );
-            addAttributeIfNotExists( fileEl, "Name", name );
-        } else {
-            getOrCreateChild( component, "CreateFolder" );
+        Element fileEl = getOrCreateChildById( component, "File", id );
+        addAttributeIfNotExists( fileEl, "Source", file.getAbsolutePath() );
+        addAttributeIfNotExists( fileEl, "Name", name );
+        try {
+            writeFileInformation( id, FileInformation.read( file ), ( key, value ) -> addAttributeIfNotExists( fileEl, key, value ) );
+        } catch( Exception ex ) {
+            throw new GradleException( "Can't read file: " + file, ex );
+        }
+        return id;
+    }
+
+    /**
+     * Add a file of the payload. The File element is not added to the DOM but written on saving.
+     *
+     * @param component the parent component node
+     * @param compID the ID of the component
+     * @param file the source file
+     * @param segments the segments of the path in the target. The last segment contains the file name.
+     * @return the ID of the file
+     */
+    private String spoolFile( Element component, String compID, File file, String[] segments ) {
+        String id = id( segments, segments.length );
+        if( getChildByKeyValue( component, "File", "Id", id ) != null ) {
+            return addFile( component, file, segments ); // already in the template
+        }
+        try {
+            fileSpool.add( compID, id, file.getAbsolutePath(), segments[segments.length - 1] );
+            fileInfos.computeIfAbsent( id, key -> FileInformation.readAsync( file, fileInfoExecutor ) );
+        } catch( IOException ex ) {
+            throw new UncheckedIOException( ex );
         }
         return id;
     }
@@ -435,7 +657,7 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
         }
         File jreDir;
         try {
-            jreDir = task.getProject().file( jre );
+            jreDir = setup.getFileResolver().resolve( jre );
         } catch( Exception e ) {
             jreDir = null;
         }
@@ -465,7 +687,7 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
             }
         }
 
-        task.getProject().getLogger().lifecycle( "\tbundle jre: " + jreDir );
+        task.getLogger().lifecycle( "\tbundle jre: " + jreDir );
 
         int baseLength = jreDir.getAbsolutePath().length();
         javaDir = setup.getBundleJreTarget().replace( '/', '\\' );
@@ -505,7 +727,7 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
         }
         if( jreDir.getName().startsWith( "jdk" ) && !new File( jreDir, "jre" ).isDirectory() ) {
             //starting with java 11, the jdk no longer has a subdirectory "jre"
-            task.getProject().getLogger().lifecycle( "JDK without JRE is skipped: " + jreDir + "\tIf you want embedded this JDK you must set the path directly." );
+            task.getLogger().lifecycle( "JDK without JRE is skipped: " + jreDir + "\tIf you want embedded this JDK you must set the path directly." );
             return false;
         }
         return true;
@@ -684,7 +906,7 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
             String[] segments = segments( exe );
             Element directory = getDirectory( segments );
             Element component = getComponent( directory, id );
-            addFile( component, prunsrv, segments, true );
+            addFile( component, prunsrv, segments );
 
             // install the windows service
             Element install = getOrCreateChildById( component, "ServiceInstall", id + "_install" );
@@ -773,7 +995,7 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
 
             // Add the prunmgr.exe and change it name dynamically to the service name. Dynamically is important for multiple instances.
             String target = name.replace( '[', '_' ).replace( ']', '_' );
-            addFile( component, prunmgr, segments( id + "GUI\\" + target + ".exe"), true );
+            addFile( component, prunmgr, segments( id + "GUI\\" + target + ".exe") );
             renameFileIfDynamic( id, subdir, target + ".exe", name + ".exe" );
 
             // delete log files on uninstall
@@ -964,45 +1186,44 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
      * @throws IOException if any IOException occur
      */
     private void registerFileExtension( DesktopStarter starter, CommandLine cmd ) throws IOException {
-        if( isAddFiles ) {
-            for( DocumentType docType : starter.getDocumentType() ) {
-                for( String fileExtension : docType.getFileExtension() ) {
-                    if( fileExtension.startsWith( "." ) ) {
-                        fileExtension = fileExtension.substring( 1 );
-                    }
-                    String pID = id( setup.getAppIdentifier() + "." + fileExtension );
-                    Element component = getComponent( installDir, pID + "_file_extension" );
-                    getOrCreateChild( component, "CreateFolder" );
-                    Element progID = getOrCreateChildById( component, "ProgId", pID );
-                    if( !docType.getName().isEmpty() ) {
-                        addAttributeIfNotExists( progID, "Description", docType.getName() );
-                    }
-
-                    File iconFile = starter.getIconForType( buildDir, "ico" );
-                    if( iconFile != null ) {
-                        String iconID = addFile( iconFile, new String[] { iconFile.getName() } );
-                        addAttributeIfNotExists( progID, "Icon", iconID );
-                    }
-                    Element extension = getOrCreateChildById( progID, "Extension", fileExtension );
-                    addAttributeIfNotExists( extension, "ContentType", docType.getMimetype() );
-                    Element verb = getOrCreateChildById( extension, "Verb", "open" );
-                    Element reg = addRegistryKey( component, "HKCR", id(pID + "\\shell\\open"), pID + "\\shell\\open" );
-                    addRegistryValue( reg, "FriendlyAppName", "string", setup.getApplication() );
-                    String targetFile = cmd.relativTarget;
-                    if( targetFile.startsWith( "[INSTALLDIR]" ) ) {
-                        targetFile = targetFile.substring( "[INSTALLDIR]".length() ); // for the id we need to cut the [INSTALLDIR]. For java command there is ever a directory
-                    }
-                    String[] segments = segments( targetFile );
-                    addAttributeIfNotExists( verb, "TargetFile", id( segments, segments.length ) );
+        for( DocumentType docType : starter.getDocumentType() ) {
+            for( String fileExtension : docType.getFileExtension() ) {
+                if( fileExtension.startsWith( "." ) ) {
+                    fileExtension = fileExtension.substring( 1 );
+                }
+                String pID = id( setup.getAppIdentifier() + "." + fileExtension );
+                withFiles.add( pID + "_file_extension" ); // the ProgId reference the files
+                Element component = getComponent( installDir, pID + "_file_extension" );
+                getOrCreateChild( component, "CreateFolder" );
+                Element progID = getOrCreateChildById( component, "ProgId", pID );
+                if( !docType.getName().isEmpty() ) {
+                    addAttributeIfNotExists( progID, "Description", docType.getName() );
+                }
 
-                    // add the file parameter if not in the command already
-                    String arguments = cmd.arguments;
-                    if ( !arguments.contains( "%1" ) ) {
-                        arguments += " \"%1\"";
-                    }
+                File iconFile = starter.getIconForType( buildDir, "ico" );
+                if( iconFile != null ) {
+                    String iconID = addFile( iconFile, new String[] { iconFile.getName() } );
+                    addAttributeIfNotExists( progID, "Icon", iconID );
+                }
+                Element extension = getOrCreateChildById( progID, "Extension", fileExtension );
+                addAttributeIfNotExists( extension, "ContentType", docType.getMimetype() );
+                Element verb = getOrCreateChildById( extension, "Verb", "open" );
+                Element reg = addRegistryKey( component, "HKCR", id(pID + "\\shell\\open"), pID + "\\shell\\open" );
+                addRegistryValue( reg, "FriendlyAppName", "string", setup.getApplication() );
+                String targetFile = cmd.relativTarget;
+                if( targetFile.startsWith( "[INSTALLDIR]" ) ) {
+                    targetFile = targetFile.substring( "[INSTALLDIR]".length() ); // for the id we need to cut the [INSTALLDIR]. For java command there is ever a directory
+                }
+                String[] segments = segments( targetFile );
+                addAttributeIfNotExists( verb, "TargetFile", id( segments, segments.length ) );
 
-                    addAttributeIfNotExists( verb, "Argument", arguments );
+                // add the file parameter if not in the command already
+                String arguments = cmd.arguments;
+                if ( !arguments.contains( "%1" ) ) {
+                    arguments += " \"%1\"";
                 }
+
+                addAttributeIfNotExists( verb, "Argument", arguments );
             }
         }
     }
@@ -1523,4 +1744,35 @@ class WxsFileBuilder extends XmlFileBuilder<Msi> {
             }
         } while( true );
     }
+
+    /**
+     * A directory below INSTALLDIR with its cached XML nodes and IDs.
+     */
+    private static class DirectoryNode {
+
+        private final Element                        element;
+
+        private final String                         path;
+
+        private final String                         id;
+
+        private final HashMap<String, DirectoryNode> children = new HashMap<>();
+
+        private String                               compID;
+
+        private Element                              component;
+
+        /**
+         * Create a new node.
+         *
+         * @param element the Directory node in the XML
+         * @param path the path of the directory with backslashes
+         * @param id the ID of the directory
+         */
+        private DirectoryNode( Element element, String path, String id ) {
+            this.element = element;
+            this.path = path;
+            this.id = id;
+        }
+    }
 }
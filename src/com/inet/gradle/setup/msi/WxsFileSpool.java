@@ -0,0 +1,199 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Temporary storage for the File elements of the payload. The elements are not added to the DOM of the wxs file. The
+ * records are written to a temporary file and only its offsets are hold per component. On saving the wxs file the
+ * File elements are read back and streamed into its components. This hold the heap usage small for setups with many
+ * files.
+ *
+ * @author Volker Berlin
+ */
+class WxsFileSpool implements Closeable {
+
+    private final File                file;
+
+    private final DataOutputStream    output;
+
+    private final Map<String, long[]> offsets = new HashMap<>();
+
+    private final Set<String>         ids     = new HashSet<>();
+
+    private long                      position;
+
+    private RandomAccessFile          input;
+
+    private final byte[]              buffer  = new byte[8 * 1024];
+
+    private long                      bufferStart;
+
+    private int                       bufferLength;
+
+    private long                      readPosition;
+
+    /**
+     * Create a new spool.
+     *
+     * @param buildDir the directory for the temporary file
+     * @throws IOException if an I/O error occurs
+     */
+    WxsFileSpool( File buildDir ) throws IOException {
+        buildDir.mkdirs();
+        file = File.createTempFile( "wxsfiles", ".tmp", buildDir );
+        output = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( file.toPath() ), 64 * 1024 ) );
+    }
+
+    /**
+     * Add a File element to a component. If there is already a file with the same ID then nothing occur.
+     *
+     * @param compID the ID of the component
+     * @param id the ID of the file
+     * @param source the source path
+     * @param name the target file name
+     * @throws IOException if an I/O error occurs
+     */
+    void add( String compID, String id, String source, String name ) throws IOException {
+        if( !ids.add( id ) ) {
+            return;
+        }
+        long[] list = offsets.get( compID );
+        if( list == null ) {
+            list = new long[4];
+            offsets.put( compID, list );
+        } else if( list[0] + 1 == list.length ) {
+            list = Arrays.copyOf( list, list.length * 2 );
+            offsets.put( compID, list );
+        }
+        list[(int)++list[0]] = position; // the first value is the count
+        writeString( id );
+        writeString( source );
+        writeString( name );
+    }
+
+    /**
+     * The count of File elements of a component.
+     *
+     * @param compID the ID of the component
+     * @return the count
+     */
+    int size( String compID ) {
+        long[] list = offsets.get( compID );
+        return list == null ? 0 : (int)list[0];
+    }
+
+    /**
+     * Read a File element of a component. All files must be added before.
+     *
+     * @param compID the ID of the component
+     * @param index the index of the file, starting with 0
+     * @return the ID, the source and the name of the file
+     * @throws IOException if an I/O error occurs
+     */
+    String[] read( String compID, int index ) throws IOException {
+        if( input == null ) {
+            output.close();
+            input = new RandomAccessFile( file, "r" );
+        }
+        readPosition = offsets.get( compID )[index + 1];
+        return new String[] { readString(), readString(), readString() };
+    }
+
+    /**
+     * Delete the temporary file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            output.close();
+            if( input != null ) {
+                input.close();
+            }
+        } finally {
+            Files.deleteIfExists( file.toPath() );
+        }
+    }
+
+    /**
+     * Write a string with its length.
+     *
+     * @param str the string
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeString( String str ) throws IOException {
+        byte[] bytes = str.getBytes( StandardCharsets.UTF_8 );
+        output.writeInt( bytes.length );
+        output.write( bytes );
+        position += 4 + bytes.length;
+    }
+
+    /**
+     * Read a string with its length.
+     *
+     * @return the string
+     * @throws IOException if an I/O error occurs
+     */
+    private String readString() throws IOException {
+        byte[] length = readBytes( 4 );
+        byte[] bytes = readBytes( (length[0] & 0xFF) << 24 | (length[1] & 0xFF) << 16 | (length[2] & 0xFF) << 8 | (length[3] & 0xFF) );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Read bytes at the current read position. The files of a component are typically stored one after the other and
+     * so the bytes are read in blocks.
+     *
+     * @param length the count of bytes
+     * @return the bytes
+     * @throws IOException if an I/O error occurs
+     */
+    private byte[] readBytes( int length ) throws IOException {
+        byte[] bytes = new byte[length];
+        int count = 0;
+        while( count < length ) {
+            if( readPosition < bufferStart || readPosition >= bufferStart + bufferLength ) {
+                input.seek( readPosition );
+                bufferStart = readPosition;
+                bufferLength = Math.max( 0, input.read( buffer ) );
+                if( bufferLength == 0 ) {
+                    throw new IOException( "Unexpected end of file: " + file );
+                }
+            }
+            int offset = (int)(readPosition - bufferStart);
+            int size = Math.min( length - count, bufferLength - offset );
+            System.arraycopy( buffer, offset, bytes, count, size );
+            count += size;
+            readPosition += size;
+        }
+        return bytes;
+    }
+}
@@ -46,6 +46,10 @@ public abstract class Unix extends AbstractUnixSetupTask {
 
     private Object bundleJre;
 
+    private int compressionLevel = -1;
+
+    private int compressionThreads;
+
     public Unix( String format ) {
         super( format );
     }
@@ -174,7 +178,7 @@ public abstract class Unix extends AbstractUnixSetupTask {
      */
     public File getDefaultServiceFile() {
         if( defaultServiceFile != null ) {
-            return getProject().file( defaultServiceFile );
+            return getFileResolver().resolve( defaultServiceFile );
         }
         return null;
     }
@@ -237,10 +241,10 @@ public abstract class Unix extends AbstractUnixSetupTask {
 
         File jreDir = null;
         try {
-            jreDir = getProject().file( jre );
+            jreDir = getFileResolver().resolve( jre );
         } catch( Exception e ) {
             // Will keep going though!
-            getProject().getLogger().error( "bundleJre version '" + jre + "' can not be resolved to a Java Runtime Directory which is required for embedding!" );
+            getLogger().error( "bundleJre version '" + jre + "' can not be resolved to a Java Runtime Directory which is required for embedding!" );
         }
         return jreDir;
     }
@@ -254,4 +258,44 @@ public abstract class Unix extends AbstractUnixSetupTask {
     public void setBundleJre( Object bundleJre ) {
         this.bundleJre = bundleJre;
     }
+
+    /**
+     * Returns the compression level of the package payload.
+     *
+     * @return the level 0 - 9 or -1 for the default of the package format
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Set the compression level of the package payload. A lower level is faster but produce larger packages.
+     *
+     * @param compressionLevel the level 0 - 9 or -1 for the default of the package format
+     */
+    public void setCompressionLevel( int compressionLevel ) {
+        if( compressionLevel < -1 || compressionLevel > 9 ) {
+            throw new IllegalArgumentException( "The compression level must be between 0 and 9: " + compressionLevel );
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns the count of threads that compress the package payload.
+     *
+     * @return the count of threads, 0 for the count of available processors
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Set the count of threads that compress the package payload in parallel. The default is the count of
+     * available processors.
+     *
+     * @param compressionThreads the count of threads, 0 for the count of available processors
+     */
+    public void setCompressionThreads( int compressionThreads ) {
+        this.compressionThreads = compressionThreads;
+    }
 }
@@ -1,13 +1,17 @@
 package com.inet.gradle.setup.unix;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.HashSet;
+import java.util.Properties;
 import java.util.Set;
 
 import org.gradle.api.GradleException;
@@ -17,6 +21,7 @@ import org.gradle.api.internal.file.FileResolver;
 import com.inet.gradle.setup.SetupBuilder;
 import com.inet.gradle.setup.abstracts.AbstractBuilder;
 import com.inet.gradle.setup.abstracts.AbstractSetupBuilder;
+import com.inet.gradle.setup.util.ContentCache;
 import com.inet.gradle.setup.util.ResourceUtils;
 
 public abstract class UnixBuilder<T extends Unix, S extends AbstractSetupBuilder> extends AbstractBuilder<T, S> {
@@ -27,6 +32,8 @@ public abstract class UnixBuilder<T extends Unix, S extends AbstractSetupBuilder
 
     protected String       javaMainExecutable = "/usr" + javaCommandSuffix; // Default Java Location
 
+    private File           bundleJreDir;
+
     /**
      * Create a new instance
      *
@@ -40,79 +47,176 @@ public abstract class UnixBuilder<T extends Unix, S extends AbstractSetupBuilder
     }
 
     /**
-     * Check for the bundled JRE and add it
-     * @param filesPath the destination to put the jre at
+     * Check for the bundled JRE and resolve it. This must be called on the task thread because archives are extracted
+     * with the project. Archives are extracted only once into the build cache and linked into the staging directory
+     * of the task, that the build does not hold the lock of the cache.
      * @throws IOException an exception
      */
-    protected void addBundleJre( File filesPath ) throws IOException {
+    public void prepareBundleJre() throws IOException {
         File jreDir = task.getBundleJre();
         if( jreDir == null ) {
-            task.getProject().getLogger().lifecycle( "\tNo JRE for bundling set." );
             return;
         }
 
-        // Check if this is the JRE or JDK - usually the jdk has a jre folder
-        File jreTarget = new File( filesPath, setup.getBundleJreTarget() ); // jre or something. This is the final destination
-
         if ( jreDir.isDirectory() ) {
 
+            // Check if this is the JRE or JDK - usually the jdk has a jre folder
             File jdkCheck = new File( jreDir, "jre" );
             if ( jdkCheck.isDirectory() ) {
                 jreDir = jdkCheck;
             }
 
             checkForBinJava( jreDir);
-            task.getProject().getLogger().lifecycle( "\tJRE is set and will be copied from: '" + jreDir.getAbsolutePath() + "' to' " + jreTarget.getAbsolutePath() + "'" );
-            ResourceUtils.copy( jreDir, jreTarget );
+            bundleJreDir = jreDir;
         } else if ( jreDir.isFile() ) {
-            // Check for Archive ... usually a tgz/tar.gz
-            FileTree tree = null;
-            if ( jreDir.getName().endsWith( ".zip" ) ) {
-                tree = setup.getProject().zipTree( jreDir );
-            } else if ( jreDir.getName().endsWith( ".tar.gz" ) || jreDir.getName().endsWith( ".tgz" ) ) {
-                tree = setup.getProject().tarTree( jreDir );
+            File staged = new File( task.getStagingDir(), "bundleJre" );
+            if( staged.exists() ) {
+                ResourceUtils.deleteDirectory( staged.toPath() );
+            }
+            ContentCache cache = setup.getBuildCache( "jre" );
+            if( cache != null ) {
+                // the cached JRE can not be evicted by another build or Gradle daemon until it is linked
+                try( Closeable lock = cache.lockShared() ) {
+                    linkBundleJre( extractBundleJre( jreDir, cache, null ), staged );
+                }
+                cache.evict();
+                bundleJreDir = staged;
             } else {
-                throw new GradleException( "Unsupported content set as Java Runtime, please use .zip, .tar.gz or .tgz - or a Directory '" + jreDir + "'" );
+                bundleJreDir = extractBundleJre( jreDir, null, staged );
             }
+        } else {
+            throw new GradleException( "Unsupported content set as Java Runtime '" + jreDir + "'" );
+        }
+    }
 
-            
-            FileTree sourceTree = tree;
-            File javaCopy = new File(setup.getProject().getBuildDir() + "/java_copy"); 
+    /**
+     * Add the bundled JRE that was resolved with {@link #prepareBundleJre()}. The JRE files are hard linked into the
+     * destination if possible.
+     * @param filesPath the destination to put the jre at
+     * @throws IOException an exception
+     */
+    protected void addBundleJre( File filesPath ) throws IOException {
+        if( bundleJreDir == null ) {
+            task.getLogger().lifecycle( "\tNo JRE for bundling set." );
+            return;
+        }
+
+        File jreTarget = new File( filesPath, setup.getBundleJreTarget() ); // jre or something. This is the final destination
+        linkBundleJre( bundleJreDir, jreTarget );
+
+        javaMainExecutable = String.join( "/", task.getInstallationRoot(), setup.getBundleJreTarget(), javaCommandSuffix ).replaceAll( "\\/+", "\\/" );
+        task.getLogger().lifecycle( "\tUpdated the Java Executable Path to: '" + javaMainExecutable + "'" );
+    }
+
+    /**
+     * Link the JRE files into the destination.
+     *
+     * @param jreDir the JRE directory
+     * @param jreTarget the final destination
+     * @throws IOException if an I/O error occurs
+     */
+    private void linkBundleJre( File jreDir, File jreTarget ) throws IOException {
+        task.getLogger().lifecycle( "\tJRE is set and will be linked from: '" + jreDir.getAbsolutePath() + "' to' " + jreTarget.getAbsolutePath() + "'" );
+        ResourceUtils.link( jreDir, jreTarget );
+    }
+
+    /**
+     * Extract a JRE archive. The extracted JRE is saved in the build cache with the checksum of the archive as key. That
+     * the archive must only be extracted and checked once for all tasks and builds.
+     *
+     * @param archive a zip, tar.gz or tgz file
+     * @param cache the build cache or null if disabled, the caller must hold the shared lock
+     * @param javaCopy the target directory if the build cache is disabled
+     * @return the root directory of the extracted JRE
+     * @throws IOException if an I/O error occurs
+     */
+    private File extractBundleJre( File archive, ContentCache cache, File javaCopy ) throws IOException {
+        // Check for Archive ... usually a tgz/tar.gz
+        FileTree tree = null;
+        if ( archive.getName().endsWith( ".zip" ) ) {
+            tree = setup.getProject().zipTree( archive );
+        } else if ( archive.getName().endsWith( ".tar.gz" ) || archive.getName().endsWith( ".tgz" ) ) {
+            tree = setup.getProject().tarTree( archive );
+        } else {
+            throw new GradleException( "Unsupported content set as Java Runtime, please use .zip, .tar.gz or .tgz - or a Directory '" + archive + "'" );
+        }
+        FileTree sourceTree = tree;
+
+        if( cache == null ) {
             setup.getProject().copy( spec -> {
                 spec.from( sourceTree );
                 spec.into( javaCopy );
-            } );  
-            
-            File[] files = javaCopy.listFiles();
-            if (files != null && files.length == 1 ) { // only one directory! Move it up!
-                Files.move( files[0].toPath(), jreTarget.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
-            } else {
-                Files.move( javaCopy.toPath(), jreTarget.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
-            }
-            checkForBinJava( jreTarget );
+            } );
+            File jreDir = getArchiveRoot( javaCopy );
+            checkForBinJava( jreDir );
+            return jreDir;
+        }
 
-        } else {
-            throw new GradleException( "Unsupported content set as Java Runtime '" + jreDir + "'" );
+        String key;
+        try( InputStream input = new FileInputStream( archive ) ) {
+            key = ContentCache.key( input, archive.getName() );
+        }
+        File cached = cache.get( key );
+        if( cached != null ) {
+            task.getLogger().lifecycle( "\tJRE is taken from the build cache: '" + cached + "'" );
+            return getArchiveRoot( cached );
         }
+        // extracted into a unique temporary directory, a parallel build can extract the same JRE
+        File extracted = cache.createDirectory( key );
+        setup.getProject().copy( spec -> {
+            spec.from( sourceTree );
+            spec.into( extracted );
+        } );
+        checkForBinJava( getArchiveRoot( extracted ) );
+        cached = cache.commit( key, extracted );
+        return getArchiveRoot( cached );
+    }
 
-        javaMainExecutable = String.join( "/", task.getInstallationRoot(), setup.getBundleJreTarget(), javaCommandSuffix ).replaceAll( "\\/+", "\\/" );
-        task.getProject().getLogger().lifecycle( "\tUpdated the Java Executable Path to: '" + javaMainExecutable + "'" );
+    /**
+     * Get the root directory of an extracted archive. If the archive contains only one directory then this is the
+     * root.
+     *
+     * @param dir the directory with the extracted archive
+     * @return the root
+     */
+    private static File getArchiveRoot( File dir ) {
+        File[] files = dir.listFiles();
+        if( files != null && files.length == 1 && files[0].isDirectory() ) { // only one directory! Move it up!
+            return files[0];
+        }
+        return dir;
     }
 
     /**
+     * Check that the JRE contains the java command. The version is read from the "release" file of the JRE, or of the
+     * JDK if it is the jre folder of a JDK, without starting the Java VM.
      *
-     * @param jreDir
+     * @param jreDir the JRE directory
      */
     private void checkForBinJava( File jreDir ) {
         File javaCommand = new File( jreDir, javaCommandSuffix);
-        String javaVersion = exec( "sh", "-c", javaCommand.getAbsolutePath() + " -version 2>&1 | awk -F '\"' '/version/ {print $2}'" );
-        if( javaVersion.length() == 0 ) {
+        if( !javaCommand.isFile() ) {
             throw new GradleException( "Java - Command '" + javaCommandSuffix + "' not found in '" + jreDir + "'" );
         }
-
+        File release = new File( jreDir, "release" );
+        if( !release.isFile() && "jre".equals( jreDir.getName() ) ) {
+            release = new File( jreDir.getParentFile(), "release" ); // jre folder of a JDK
+        }
+        String javaVersion = null;
+        if( release.isFile() ) {
+            Properties props = new Properties();
+            try( InputStream input = new FileInputStream( release ) ) {
+                props.load( input );
+            } catch( IOException ex ) {
+                throw new GradleException( "Can not read the release file of the Java Runtime '" + release + "'", ex );
+            }
+            javaVersion = props.getProperty( "JAVA_VERSION" );
+        }
+        if( javaVersion != null ) {
+            task.getLogger().lifecycle( "\tJRE version: " + javaVersion.replace( "\"", "" ) );
+        }
     }
 
-
     /**
      * Changes the permissions of all directories recursively inside the specified path to 755.
      *
@@ -132,29 +236,27 @@ public abstract class UnixBuilder<T extends Unix, S extends AbstractSetupBuilder
     }
 
     /**
-     * Changes the permissions of all files recursively inside the specified path to 644.
+     * Copy all files of the task to the specified path and set the permissions in the same pass. Directories and shell
+     * scripts get 755, all other files 644.
      *
      * @param path
-     *            the path
-     * @throws IOException
-     *             on I/O failures
+     *            the target path
      */
-    protected void changeFilePermissionsTo644( File path ) throws IOException {
-        if ( path == null ) { return; }
-        for( File file : path.listFiles() ) {
-            if( file.isDirectory() ) {
-                changeFilePermissionsTo644( file );
+    protected void copyTo( File path ) {
+        task.processEntries( "", entry -> {
+            File file = new File( path, entry.getRelativePath() );
+            if( entry.isDirectory() ) {
+                file.mkdirs();
             } else {
-                if( file.getName().endsWith( ".sh" ) ) {
-                    setPermissions( file, true );
-                } else {
-                    setPermissions( file, false );
+                file.getParentFile().mkdirs();
+                try( InputStream input = entry.open() ) {
+                    Files.copy( input, file.toPath(), StandardCopyOption.REPLACE_EXISTING );
                 }
             }
-        }
+            setPermissions( file, entry.getMode() == 0755 );
+        } );
     }
 
-
     /**
      * Sets the permissions of the specified file, either to 644 (non-executable) or 755 (executable).
      *
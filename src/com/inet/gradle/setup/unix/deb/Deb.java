@@ -15,7 +15,9 @@
  */
 package com.inet.gradle.setup.unix.deb;
 
-import org.gradle.api.internal.project.ProjectInternal;
+import java.io.IOException;
+
+import org.gradle.api.GradleException;
 
 import com.inet.gradle.setup.unix.Unix;
 
@@ -40,17 +42,32 @@ public class Deb extends Unix {
 
     private String  changes;
 
+    private DebBuilder builder;
+
     public Deb() {
         super( "deb" );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void prepareBuild() {
+        super.prepareBuild();
+        builder = new DebBuilder( this, getSetupBuilder(), getFileResolver() );
+        try {
+            builder.prepareBundleJre();
+        } catch( IOException ex ) {
+            throw new GradleException( "Can not prepare the bundled Java Runtime.", ex );
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void build() {
-        ProjectInternal project = (ProjectInternal)getProject();
-        new DebBuilder( this, getSetupBuilder(), project.getFileResolver() ).build();
+        builder.build();
     }
 
     public String getPriority() {
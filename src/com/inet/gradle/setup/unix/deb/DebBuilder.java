@@ -30,10 +30,11 @@ import com.inet.gradle.setup.Template;
 import com.inet.gradle.setup.abstracts.DesktopStarter;
 import com.inet.gradle.setup.abstracts.DocumentType;
 import com.inet.gradle.setup.abstracts.LocalizedResource;
+import com.inet.gradle.setup.abstracts.PackageEntry;
 import com.inet.gradle.setup.abstracts.Service;
 import com.inet.gradle.setup.unix.UnixBuilder;
 import com.inet.gradle.setup.unix.deb.DebControlFileBuilder.Script;
-import com.inet.gradle.setup.util.Logging;
+import com.inet.gradle.setup.util.ContentCache;
 
 public class DebBuilder extends UnixBuilder<Deb, SetupBuilder> {
 
@@ -60,10 +61,8 @@ public class DebBuilder extends UnixBuilder<Deb, SetupBuilder> {
      */
     public void build() {
         try {
+            // the files of the task are streamed directly into the package, only generated files are created in the buildDir
             File filesPath = new File( buildDir, task.getInstallationRoot() );
-            task.copyTo( filesPath );
-
-            changeFilePermissionsTo644( filesPath );
 
             // Add a bundled java vm if required. Will update the variable to indicate the java-main program
             addBundleJre( filesPath );
@@ -144,12 +143,8 @@ public class DebBuilder extends UnixBuilder<Deb, SetupBuilder> {
             documentBuilder = new DebDocumentFileBuilder( super.task, setup, new File( buildDir, "/usr/share/doc/" + setup.getAppIdentifier() ) );
             documentBuilder.build();
 
-            changeDirectoryPermissionsTo755( buildDir );
-
             createDebianPackage();
 
-            checkDebianPackage();
-
         } catch( RuntimeException ex ) {
             throw ex;
         } catch( Exception ex ) {
@@ -492,25 +487,24 @@ public class DebBuilder extends UnixBuilder<Deb, SetupBuilder> {
     }
 
     /**
-     * execute the command to generate the Debian package
+     * Write the Debian package. The control file is created with a placeholder for the installed size. In parallel mode
+     * the package is written by a work item, except the package should be checked with lintian.
+     *
+     * @throws IOException if an I/O error occurs
      */
-    private void createDebianPackage() {
-        try {
-        ArrayList<String> command = new ArrayList<>();
-        command.add( "fakeroot" );
-        command.add( "dpkg-deb" );
-        command.add( "--build" );
-        command.add( buildDir.getAbsolutePath() );
-        command.add( task.getSetupFile().getPath() );
-        exec( command );
-        } catch( Throwable e ) {
-            Logging.syserr( "Error. Control File was:" );
-            try {
-                Logging.syserr( String.join( "\n", Files.readAllLines( new File(buildDir.getAbsolutePath(), "DEBIAN/control" ).toPath() ) ) );
-            } catch( IOException e1 ) {
-                e1.printStackTrace();
-            }
-            throw e;
+    private void createDebianPackage() throws IOException {
+        controlBuilder.createControlFile();
+        int level = task.getCompressionLevel() < 0 ? 9 : task.getCompressionLevel(); // 9 is the default of dpkg-deb for gzip
+        String installationRoot = task.getInstallationRoot();
+        ContentCache cache = setup.getBuildCache( "deb" );
+        if( task.isParallel() && !task.shouldCheckPackage() ) {
+            List<PackageEntry> entries = new ArrayList<>();
+            task.processEntries( installationRoot, entries::add );
+            task.setPackageJob( new DebPackageJob( task.getSetupFile(), buildDir, level, task.getCompressionThreads(), installationRoot, cache, entries ) );
+        } else {
+            DebPackageJob job = new DebPackageJob( task.getSetupFile(), buildDir, level, task.getCompressionThreads(), installationRoot, cache, null );
+            job.write( action -> task.processEntries( installationRoot, action ) );
+            checkDebianPackage();
         }
     }
 }
@@ -82,13 +82,18 @@ class DebControlFileBuilder {
     }
 
     /**
-     * Create the configuration files for the Debian package based on the settings in the task.
+     * Create the configuration files for the Debian package based on the settings in the task. The control file is
+     * created with {@link #createControlFile()} before the package is written.
      *
      * @throws Exception
      */
     void build() throws Exception {
+        if( !buildDir.exists() ) {
+            buildDir.mkdirs();
+        } else if( !buildDir.isDirectory() ) {
+            throw new IllegalArgumentException( "The buildDir parameter must be a directory!" );
+        }
 
-        createControlFile();
         createConfFilesFile();
         createScripts();
     }
@@ -98,13 +103,7 @@ class DebControlFileBuilder {
      *
      * @throws IOException if something could not be written to the file
      */
-    private void createControlFile() throws IOException {
-        if( !buildDir.exists() ) {
-            buildDir.mkdirs();
-        } else if( !buildDir.isDirectory() ) {
-            throw new IllegalArgumentException( "The buildDir parameter must be a directory!" );
-        }
-
+    void createControlFile() throws IOException {
         FileOutputStream fileoutput = null;
         OutputStreamWriter controlWriter = null;
 
@@ -231,7 +230,8 @@ class DebControlFileBuilder {
     }
 
     /**
-     * Write the installation size to the file. If no size is specified it will count the size of all files it has to install and round it to full megabytes.
+     * Write the installation size to the file. If no size is specified then a placeholder is written that is replaced
+     * with the size of all files in kilobytes after the data archive is written.
      *
      * @param controlWriter the writer for the file
      * @throws IOException if the was an error while writing to the file
@@ -240,19 +240,7 @@ class DebControlFileBuilder {
 
         String installSize = deb.getInstallSize();
         if( installSize == null || installSize.length() == 0 ) {
-            long fileSize = 0;
-            for( File file : deb.getSetupSource().getFiles() ) {
-                if( file.isFile() ) {
-                    fileSize = fileSize + file.length();
-                }
-            }
-            for( File file : deb.getSource().getFiles() ) {
-                if( file.isFile() ) {
-                    fileSize = fileSize + file.length();
-                }
-            }
-
-            installSize = String.valueOf( fileSize / 1024 ); // Size wird in KB angegeben und nicht in Bytes
+            installSize = DebPackageJob.INSTALLED_SIZE;
 
         }
         controlWriter.write( "Installed-Size: " + installSize + NEWLINE );
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.deb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.gradle.api.logging.Logger;
+
+import com.inet.gradle.setup.abstracts.PackageEntry;
+import com.inet.gradle.setup.abstracts.PackageJob;
+import com.inet.gradle.setup.util.ContentCache;
+import com.inet.gradle.setup.util.Logging;
+
+/**
+ * Write the Debian package from the generated files in the build directory and the entries of the task. The control
+ * file is created before by the builder, only the installed size is set after the data archive is written.
+ *
+ * @author Volker Berlin
+ */
+class DebPackageJob implements PackageJob {
+
+    private static final long          serialVersionUID = 1L;
+
+    /**
+     * The placeholder for the size of the installed files in the control file.
+     */
+    static final String                INSTALLED_SIZE   = "{installedSize}";
+
+    private static final Logger        LOGGER           = org.gradle.api.logging.Logging.getLogger( DebPackageJob.class );
+
+    private final File                 setupFile;
+
+    private final File                 buildDir;
+
+    private final int                  level;
+
+    private final int                  threads;
+
+    private final String               installationRoot;
+
+    private final File                 cacheDir;
+
+    private final long                 cacheSize;
+
+    private final List<PackageEntry>   entries;
+
+    /**
+     * Create a new job.
+     *
+     * @param setupFile the resulting package file
+     * @param buildDir the directory with the generated files, the control files are in the sub directory DEBIAN
+     * @param level the gzip compression level of the data archive
+     * @param threads the count of compressing threads, 0 for all available processors
+     * @param installationRoot the installation root of the entries
+     * @param cache the build cache or null
+     * @param entries the staged entries of the task for {@link #run()}, or null if the entries are streamed
+     */
+    DebPackageJob( File setupFile, File buildDir, int level, int threads, String installationRoot, ContentCache cache, List<PackageEntry> entries ) {
+        this.setupFile = setupFile;
+        this.buildDir = buildDir;
+        this.level = level;
+        this.threads = threads;
+        this.installationRoot = installationRoot;
+        this.cacheDir = cache == null ? null : cache.getDirectory();
+        this.cacheSize = cache == null ? 0 : cache.getMaxSize();
+        this.entries = entries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() throws IOException {
+        write( action -> {
+            for( PackageEntry entry : entries ) {
+                action.process( entry );
+            }
+        } );
+    }
+
+    /**
+     * Write the package. The generated files in the buildDir are added first that they replace files of the task with
+     * the same path.
+     *
+     * @param taskEntries the entries of the task
+     * @throws IOException if an I/O error occurs
+     */
+    void write( Entries taskEntries ) throws IOException {
+        File controlDir = new File( buildDir, "DEBIAN" );
+        Path control = new File( controlDir, "control" ).toPath();
+        try( DebPackageWriter writer = new DebPackageWriter( setupFile, buildDir, level, threads ) ) {
+            ContentCache cache = cacheDir == null ? null : new ContentCache( cacheDir, cacheSize );
+            writer.setCache( cache );
+            writer.getData().writeDirectory( installationRoot, 0755, System.currentTimeMillis() );
+            writer.addDirectory( buildDir, controlDir );
+            taskEntries.forEach( writer::addEntry );
+            for( String duplicate : writer.getData().getDuplicates() ) {
+                LOGGER.warn( "\tDuplicate entry is ignored: " + duplicate );
+            }
+            String content = new String( Files.readAllBytes( control ), StandardCharsets.UTF_8 );
+            content = content.replace( INSTALLED_SIZE, String.valueOf( writer.getManifest().getSize() / 1024 ) ); // in kilobytes
+            Files.write( control, content.getBytes( StandardCharsets.UTF_8 ) );
+            writer.finish( controlDir );
+            if( cache != null ) {
+                cache.evict();
+                LOGGER.lifecycle( "\tBuild cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses" );
+            }
+        } catch( Throwable e ) {
+            Logging.syserr( "Error. Control File was:" );
+            try {
+                Logging.syserr( String.join( "\n", Files.readAllLines( control ) ) );
+            } catch( IOException e1 ) {
+                e1.printStackTrace();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.deb;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import com.inet.gradle.setup.abstracts.PackageEntry;
+import com.inet.gradle.setup.abstracts.PackageManifest;
+import com.inet.gradle.setup.util.ContentCache;
+import com.inet.gradle.setup.util.ParallelGZIPOutputStream;
+
+/**
+ * Writer for a Debian binary package without the need of dpkg-deb and fakeroot. The package is an "ar" archive with
+ * the members debian-binary, control.tar.gz and data.tar.gz. The data archive is streamed in a temporary file because
+ * dpkg requires that the control archive is the first one and the control data can depend on the data. All entries of
+ * the data archive are recorded in a manifest from which the md5sums control file is created.
+ *
+ * @author Volker Berlin
+ */
+class DebPackageWriter implements Closeable {
+
+    /**
+     * Smaller files are compressed together with its neighbors, because separate gzip members would reduce the
+     * compression ratio.
+     */
+    private static final long              CACHE_MIN_SIZE = 256 * 1024;
+
+    private final File                     debFile;
+
+    private final File                     dataFile;
+
+    private final TarArchiveWriter         data;
+
+    private final ParallelGZIPOutputStream compressor;
+
+    private final int                      level;
+
+    private final PackageManifest          manifest       = new PackageManifest();
+
+    private final long                     created        = System.currentTimeMillis();
+
+    private ContentCache                   cache;
+
+    /**
+     * Create a new package writer.
+     *
+     * @param debFile the resulting package file
+     * @param tempDir directory for the temporary data archive
+     * @param level the gzip compression level of the data archive
+     * @param threads the count of compressing threads, 0 for all available processors
+     * @throws IOException if an I/O error occurs
+     */
+    DebPackageWriter( File debFile, File tempDir, int level, int threads ) throws IOException {
+        this.debFile = debFile;
+        this.dataFile = new File( tempDir, "data.tar.gz" );
+        this.level = level;
+        this.compressor = new ParallelGZIPOutputStream( new BufferedOutputStream( new FileOutputStream( dataFile ), 64 * 1024 ), level, threads );
+        this.data = new TarArchiveWriter( compressor, manifest );
+        data.writeDirectory( "", 0755, created );
+    }
+
+    /**
+     * The writer for the data archive. Its entries are installed in the file system.
+     *
+     * @return the data archive
+     */
+    TarArchiveWriter getData() {
+        return data;
+    }
+
+    /**
+     * The manifest of the data archive. It is complete after all entries are added.
+     *
+     * @return the manifest
+     */
+    PackageManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Set a cache for the compressed content of large files. The content of a cached file is compressed as separate
+     * gzip members which can be reused by the next build if the file was not changed.
+     *
+     * @param cache the cache or null
+     */
+    void setCache( ContentCache cache ) {
+        this.cache = cache;
+    }
+
+    /**
+     * Add a file or directory of the task to the data archive.
+     *
+     * @param entry the entry
+     * @throws IOException if an I/O error occurs
+     */
+    void addEntry( PackageEntry entry ) throws IOException {
+        if( entry.isDirectory() ) {
+            data.writeDirectory( entry.getTargetPath(), entry.getMode(), entry.getLastModified() );
+        } else if( cache != null && entry.getSize() >= CACHE_MIN_SIZE ) {
+            addCachedEntry( entry );
+        } else {
+            try( InputStream input = entry.open() ) {
+                data.writeFile( entry.getTargetPath(), entry.getMode(), entry.getSize(), entry.getLastModified(), input );
+            }
+        }
+    }
+
+    /**
+     * Add a file whose compressed content is taken from the cache or is added to the cache.
+     *
+     * @param entry the entry
+     * @throws IOException if an I/O error occurs
+     */
+    private void addCachedEntry( PackageEntry entry ) throws IOException {
+        if( !data.writeFileHeader( entry.getTargetPath(), entry.getMode(), entry.getSize(), entry.getLastModified() ) ) {
+            return;
+        }
+        String key;
+        try( InputStream input = data.track( entry.getTargetPath(), entry.getMode(), entry.open() ) ) {
+            key = ContentCache.key( input, entry.getTargetPath(), entry.getMode(), entry.getSize(), level );
+        }
+        try( Closeable lock = cache.lockShared() ) {
+            File cached = cache.get( key );
+            if( cached != null ) {
+                try( InputStream members = new FileInputStream( cached ) ) {
+                    compressor.writeMembers( members );
+                }
+                return;
+            }
+        }
+        File temp = cache.createFile( key );
+        try( OutputStream capture = new BufferedOutputStream( new FileOutputStream( temp ) ) ) {
+            compressor.startCapture( capture );
+            try( InputStream input = entry.open() ) {
+                byte[] buffer = new byte[64 * 1024];
+                long remaining = entry.getSize();
+                while( remaining > 0 ) {
+                    int count = input.read( buffer, 0, (int)Math.min( buffer.length, remaining ) );
+                    if( count < 0 ) {
+                        throw new IOException( "Unexpected end of stream for '" + entry + "', missing " + remaining + " bytes" );
+                    }
+                    compressor.write( buffer, 0, count );
+                    remaining -= count;
+                }
+            }
+            compressor.write( TarArchiveWriter.getPadding( entry.getSize() ) );
+            compressor.endCapture();
+        }
+        cache.commit( key, temp );
+    }
+
+    /**
+     * Add the content of a directory recursively to the data archive. Directories get the mode 755. Files get the mode
+     * 755 if the owner executable flag is set else 644. Symbolic links are preserved.
+     *
+     * @param root the root directory, its content is added relative to the archive root
+     * @param exclude a sub directory of the root that should not be added
+     * @throws IOException if an I/O error occurs
+     */
+    void addDirectory( File root, File exclude ) throws IOException {
+        Set<Path> excludes = new HashSet<>();
+        excludes.add( exclude.toPath() );
+        excludes.add( dataFile.toPath() );
+        addDirectory( data, root.toPath(), excludes );
+    }
+
+    /**
+     * Write the package file. The data archive will be finished and the temporary file removed. The md5sums file is
+     * added to the control archive.
+     *
+     * @param controlDir the directory with the control files like control, conffiles, postinst
+     * @throws IOException if an I/O error occurs
+     */
+    void finish( File controlDir ) throws IOException {
+        data.close();
+
+        ByteArrayOutputStream control = new ByteArrayOutputStream();
+        try( TarArchiveWriter controlTar = new TarArchiveWriter( new GZIPOutputStream( control ) ) ) {
+            controlTar.writeDirectory( "", 0755, created );
+            addDirectory( controlTar, controlDir.toPath(), Collections.emptySet() );
+            byte[] md5sums = createMd5sums();
+            controlTar.writeFile( "md5sums", 0644, md5sums.length, created, new ByteArrayInputStream( md5sums ) );
+        }
+
+        debFile.getParentFile().mkdirs();
+        try( OutputStream out = new BufferedOutputStream( new FileOutputStream( debFile ), 64 * 1024 ) ) {
+            out.write( "!<arch>\n".getBytes( StandardCharsets.US_ASCII ) );
+            byte[] version = "2.0\n".getBytes( StandardCharsets.US_ASCII );
+            writeArHeader( out, "debian-binary", version.length );
+            out.write( version );
+
+            writeArHeader( out, "control.tar.gz", control.size() );
+            control.writeTo( out );
+            if( (control.size() & 1) != 0 ) {
+                out.write( '\n' );
+            }
+
+            long dataSize = dataFile.length();
+            writeArHeader( out, "data.tar.gz", dataSize );
+            Files.copy( dataFile.toPath(), out );
+            if( (dataSize & 1) != 0 ) {
+                out.write( '\n' );
+            }
+        } finally {
+            Files.deleteIfExists( dataFile.toPath() );
+        }
+    }
+
+    /**
+     * Create the content of the md5sums file with the MD5 of all files in the data archive.
+     *
+     * @return the content
+     */
+    private byte[] createMd5sums() {
+        StringBuilder md5sums = new StringBuilder();
+        for( PackageManifest.Entry entry : manifest.getEntries() ) {
+            if( entry.isFile() ) {
+                md5sums.append( entry.getMd5() ).append( "  " ).append( entry.getPath().substring( 1 ) ).append( '\n' );
+            }
+        }
+        return md5sums.toString().getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Close the data archive if not already done and remove the temporary file. Used on errors.
+     */
+    @Override
+    public void close() throws IOException {
+        data.close();
+        Files.deleteIfExists( dataFile.toPath() );
+    }
+
+    /**
+     * Write the header of an ar member.
+     *
+     * @param out the target
+     * @param name the name of the member
+     * @param size the size of the member
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeArHeader( OutputStream out, String name, long size ) throws IOException {
+        StringBuilder header = new StringBuilder( 60 );
+        appendField( header, name, 16 );
+        appendField( header, String.valueOf( created / 1000 ), 12 );
+        appendField( header, "0", 6 );
+        appendField( header, "0", 6 );
+        appendField( header, "100644", 8 );
+        appendField( header, String.valueOf( size ), 10 );
+        header.append( "`\n" );
+        out.write( header.toString().getBytes( StandardCharsets.US_ASCII ) );
+    }
+
+    /**
+     * Append a space padded field.
+     *
+     * @param header the header
+     * @param value the value
+     * @param length the length of the field
+     */
+    private static void appendField( StringBuilder header, String value, int length ) {
+        header.append( value );
+        for( int i = value.length(); i < length; i++ ) {
+            header.append( ' ' );
+        }
+    }
+
+    /**
+     * Add the content of a directory recursively to a tar archive.
+     *
+     * @param tar the archive
+     * @param root the root directory
+     * @param excludes excluded files and directories
+     * @throws IOException if an I/O error occurs
+     */
+    private static void addDirectory( TarArchiveWriter tar, Path root, Set<Path> excludes ) throws IOException {
+        try( Stream<Path> list = Files.list( root ) ) {
+            for( Path child : (Iterable<Path>)list.sorted()::iterator ) {
+                if( !excludes.contains( child ) ) {
+                    addPath( tar, child, child.getFileName().toString(), excludes );
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a single path and the children of a directory.
+     *
+     * @param tar the archive
+     * @param path the file or directory
+     * @param name the name in the archive
+     * @param excludes excluded files and directories
+     * @throws IOException if an I/O error occurs
+     */
+    private static void addPath( TarArchiveWriter tar, Path path, String name, Set<Path> excludes ) throws IOException {
+        long lastModified = Files.getLastModifiedTime( path, LinkOption.NOFOLLOW_LINKS ).toMillis();
+        if( Files.isSymbolicLink( path ) ) {
+            tar.writeSymlink( name, Files.readSymbolicLink( path ).toString(), lastModified );
+        } else if( Files.isDirectory( path ) ) {
+            tar.writeDirectory( name, 0755, lastModified );
+            try( Stream<Path> list = Files.list( path ) ) {
+                for( Path child : (Iterable<Path>)list.sorted()::iterator ) {
+                    if( !excludes.contains( child ) ) {
+                        addPath( tar, child, name + '/' + child.getFileName(), excludes );
+                    }
+                }
+            }
+        } else {
+            int mode = isExecutable( path ) ? 0755 : 0644;
+            try( InputStream input = Files.newInputStream( path ) ) {
+                tar.writeFile( name, mode, Files.size( path ), lastModified, input );
+            }
+        }
+    }
+
+    /**
+     * Check if the owner executable flag is set.
+     *
+     * @param path the file
+     * @return true, if executable
+     * @throws IOException if an I/O error occurs
+     */
+    private static boolean isExecutable( Path path ) throws IOException {
+        try {
+            return Files.getPosixFilePermissions( path ).contains( PosixFilePermission.OWNER_EXECUTE );
+        } catch( UnsupportedOperationException e ) {
+            return Files.isExecutable( path );
+        }
+    }
+}
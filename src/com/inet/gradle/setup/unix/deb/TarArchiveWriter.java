@@ -0,0 +1,431 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.deb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.inet.gradle.setup.abstracts.PackageManifest;
+
+/**
+ * Minimal writer for tar archives in the format that is expected by dpkg. All entries are owned by root:root. The
+ * entries are written with the "./" prefix like dpkg-deb does it. Missing parent directories are added automatically.
+ * Names that do not fit in the ustar header are written with a GNU long name entry. If a manifest is set then all
+ * entries are recorded in it. The first entry of a path wins, later files and links with the same path are skipped and
+ * reported with {@link #getDuplicates()}.
+ *
+ * @author Volker Berlin
+ */
+class TarArchiveWriter implements Closeable {
+
+    private static final int      BLOCK_SIZE     = 512;
+
+    private static final long     MAX_OCTAL_SIZE = 077777777777L;
+
+    private static final char     TYPE_FILE      = '0';
+
+    private static final char     TYPE_SYMLINK   = '2';
+
+    private static final char     TYPE_DIRECTORY = '5';
+
+    private static final char     TYPE_LONGNAME  = 'L';
+
+    private static final char     TYPE_LONGLINK  = 'K';
+
+    private final OutputStream    output;
+
+    private final PackageManifest manifest;
+
+    private final byte[]          buffer         = new byte[64 * 1024];
+
+    private final Set<String>     entries        = new HashSet<>();
+
+    private final List<String>    duplicates     = new ArrayList<>();
+
+    private boolean               closed;
+
+    /**
+     * Create a new tar writer.
+     *
+     * @param output the target stream, typically a compressing stream
+     */
+    TarArchiveWriter( OutputStream output ) {
+        this( output, null );
+    }
+
+    /**
+     * Create a new tar writer that record its entries.
+     *
+     * @param output the target stream, typically a compressing stream
+     * @param manifest the manifest for the entries or null
+     */
+    TarArchiveWriter( OutputStream output, PackageManifest manifest ) {
+        this.output = output;
+        this.manifest = manifest;
+    }
+
+    /**
+     * Add a directory entry. If the directory was already added then nothing occur.
+     *
+     * @param path the path inside the archive
+     * @param mode the unix permissions
+     * @param lastModified the modified time in milliseconds
+     * @throws IOException if an I/O error occurs
+     */
+    void writeDirectory( String path, int mode, long lastModified ) throws IOException {
+        String name = normalize( path, true );
+        if( !entries.add( name ) ) {
+            return;
+        }
+        writeParents( name, lastModified );
+        writeHeader( name, TYPE_DIRECTORY, mode, 0, lastModified, null );
+        if( manifest != null && name.length() > 2 ) {
+            manifest.addDirectory( getTargetPath( name ), mode );
+        }
+    }
+
+    /**
+     * Add a file entry with the content of the stream.
+     *
+     * @param path the path inside the archive
+     * @param mode the unix permissions
+     * @param size the count of bytes that the stream must deliver
+     * @param lastModified the modified time in milliseconds
+     * @param input the content
+     * @throws IOException if an I/O error occurs or the stream has not the expected size
+     */
+    void writeFile( String path, int mode, long size, long lastModified, InputStream input ) throws IOException {
+        if( !writeFileHeader( path, mode, size, lastModified ) ) {
+            return;
+        }
+        try( InputStream content = track( path, mode, input ) ) {
+            long remaining = size;
+            while( remaining > 0 ) {
+                int count = content.read( buffer, 0, (int)Math.min( buffer.length, remaining ) );
+                if( count < 0 ) {
+                    throw new IOException( "Unexpected end of stream for '" + path + "', missing " + remaining + " bytes" );
+                }
+                output.write( buffer, 0, count );
+                remaining -= count;
+            }
+        }
+        pad( size );
+    }
+
+    /**
+     * Record a file in the manifest. The file is recorded with the data that is read from the returned stream until it
+     * is closed. This is used for files whose content is written with {@link #writeFileHeader(String, int, long, long)}.
+     *
+     * @param path the path inside the archive
+     * @param mode the unix permissions
+     * @param input the content
+     * @return the stream that must be read and closed, or the input itself if there is no manifest
+     */
+    InputStream track( String path, int mode, InputStream input ) {
+        return manifest == null ? input : manifest.addFile( getTargetPath( normalize( path, false ) ), mode, input );
+    }
+
+    /**
+     * Add the header of a file entry. The caller must write the content and the padding with
+     * {@link #getPadding(long)} to the underlying stream.
+     *
+     * @param path the path inside the archive
+     * @param mode the unix permissions
+     * @param size the size of the content
+     * @param lastModified the modified time in milliseconds
+     * @return false, if the there is already an entry with this path and nothing was written
+     * @throws IOException if an I/O error occurs
+     */
+    boolean writeFileHeader( String path, int mode, long size, long lastModified ) throws IOException {
+        String name = normalize( path, false );
+        if( !entries.add( name ) ) {
+            duplicates.add( name );
+            return false;
+        }
+        writeParents( name, lastModified );
+        writeHeader( name, TYPE_FILE, mode, size, lastModified, null );
+        return true;
+    }
+
+    /**
+     * Get the zeros that fill the last block of a file content.
+     *
+     * @param size the size of the content
+     * @return the padding, can be empty
+     */
+    static byte[] getPadding( long size ) {
+        int rest = (int)(size % BLOCK_SIZE);
+        return new byte[rest > 0 ? BLOCK_SIZE - rest : 0];
+    }
+
+    /**
+     * Add a symbolic link.
+     *
+     * @param path the path inside the archive
+     * @param target the link target
+     * @param lastModified the modified time in milliseconds
+     * @throws IOException if an I/O error occurs
+     */
+    void writeSymlink( String path, String target, long lastModified ) throws IOException {
+        String name = normalize( path, false );
+        if( !entries.add( name ) ) {
+            duplicates.add( name );
+            return;
+        }
+        writeParents( name, lastModified );
+        writeHeader( name, TYPE_SYMLINK, 0777, 0, lastModified, target );
+        if( manifest != null ) {
+            manifest.addSymlink( getTargetPath( name ), target );
+        }
+    }
+
+    /**
+     * The paths of the files and links that were skipped because there was already an entry with the same path.
+     *
+     * @return the normalized names, can be empty
+     */
+    List<String> getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Write the end of archive marker. The underlying stream is not closed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException {
+        output.write( new byte[BLOCK_SIZE * 2] );
+        output.flush();
+    }
+
+    /**
+     * Finish the archive and close the underlying stream. Further calls have no effect.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if( closed ) {
+            return;
+        }
+        closed = true;
+        try {
+            finish();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Convert the path in the notation of dpkg, "./" as root and directories with a trailing slash.
+     *
+     * @param path the path
+     * @param directory true, for directories
+     * @return the normalized name
+     */
+    private static String normalize( String path, boolean directory ) {
+        String name = path.replace( '\\', '/' ).replaceAll( "/+", "/" );
+        while( name.startsWith( "./" ) ) {
+            name = name.substring( 2 );
+        }
+        while( name.startsWith( "/" ) ) {
+            name = name.substring( 1 );
+        }
+        if( directory && !name.isEmpty() && !name.endsWith( "/" ) ) {
+            name += '/';
+        }
+        return "./" + name;
+    }
+
+    /**
+     * Convert a normalized name into the absolute path on the target system.
+     *
+     * @param name the normalized name
+     * @return the path without trailing slash
+     */
+    private static String getTargetPath( String name ) {
+        return name.substring( 1, name.endsWith( "/" ) ? name.length() - 1 : name.length() );
+    }
+
+    /**
+     * Write entries for all parent directories that was not written yet.
+     *
+     * @param name the normalized name of the current entry
+     * @param lastModified the modified time in milliseconds
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeParents( String name, long lastModified ) throws IOException {
+        int idx = name.endsWith( "/" ) ? name.length() - 1 : name.length();
+        idx = name.lastIndexOf( '/', idx - 1 );
+        if( idx <= 0 ) {
+            return;
+        }
+        String parent = name.substring( 0, idx + 1 );
+        if( entries.add( parent ) ) {
+            writeParents( parent, lastModified );
+            writeHeader( parent, TYPE_DIRECTORY, 0755, 0, lastModified, null );
+            if( manifest != null ) {
+                manifest.addDirectory( getTargetPath( parent ), 0755 );
+            }
+        }
+    }
+
+    /**
+     * Write a header block and if required the GNU long name blocks.
+     *
+     * @param name the normalized name
+     * @param type the entry type
+     * @param mode the unix permissions
+     * @param size the size of the data
+     * @param lastModified the modified time in milliseconds
+     * @param linkName the target of a link or null
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeHeader( String name, char type, int mode, long size, long lastModified, String linkName ) throws IOException {
+        byte[] nameBytes = name.getBytes( StandardCharsets.UTF_8 );
+        byte[] linkBytes = linkName == null ? new byte[0] : linkName.getBytes( StandardCharsets.UTF_8 );
+        if( nameBytes.length > 100 ) {
+            writeLongName( TYPE_LONGNAME, nameBytes );
+        }
+        if( linkBytes.length > 100 ) {
+            writeLongName( TYPE_LONGLINK, linkBytes );
+        }
+
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy( nameBytes, 0, header, 0, Math.min( 100, nameBytes.length ) );
+        putOctal( header, 100, 8, mode & 07777 );
+        putOctal( header, 108, 8, 0 ); // uid
+        putOctal( header, 116, 8, 0 ); // gid
+        putSize( header, 124, size );
+        putOctal( header, 136, 12, Math.max( 0, lastModified / 1000 ) );
+        header[156] = (byte)type;
+        System.arraycopy( linkBytes, 0, header, 157, Math.min( 100, linkBytes.length ) );
+        putString( header, 257, "ustar  " ); // GNU magic like dpkg-deb
+        putString( header, 265, "root" );
+        putString( header, 297, "root" );
+        writeChecksum( header );
+        output.write( header );
+    }
+
+    /**
+     * Write a GNU long name pseudo entry.
+     *
+     * @param type the type of the long name, name or link
+     * @param value the long value
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeLongName( char type, byte[] value ) throws IOException {
+        byte[] header = new byte[BLOCK_SIZE];
+        putString( header, 0, "././@LongLink" );
+        putOctal( header, 100, 8, 0 );
+        putOctal( header, 108, 8, 0 );
+        putOctal( header, 116, 8, 0 );
+        putSize( header, 124, value.length + 1 );
+        putOctal( header, 136, 12, 0 );
+        header[156] = (byte)type;
+        putString( header, 257, "ustar  " );
+        putString( header, 265, "root" );
+        putString( header, 297, "root" );
+        writeChecksum( header );
+        output.write( header );
+        output.write( value );
+        output.write( 0 );
+        pad( value.length + 1 );
+    }
+
+    /**
+     * Fill the current block with zeros.
+     *
+     * @param size the size of the data written in the current entry
+     * @throws IOException if an I/O error occurs
+     */
+    private void pad( long size ) throws IOException {
+        output.write( getPadding( size ) );
+    }
+
+    /**
+     * Write a zero terminated octal number.
+     *
+     * @param header the header block
+     * @param offset the offset of the field
+     * @param length the length of the field
+     * @param value the value
+     */
+    private static void putOctal( byte[] header, int offset, int length, long value ) {
+        String str = Long.toOctalString( value );
+        int digits = length - 1;
+        for( int i = 0; i < digits; i++ ) {
+            int idx = str.length() - digits + i;
+            header[offset + i] = (byte)(idx < 0 ? '0' : str.charAt( idx ));
+        }
+        header[offset + digits] = 0;
+    }
+
+    /**
+     * Write the size field. Large sizes are written with the GNU base-256 encoding.
+     *
+     * @param header the header block
+     * @param offset the offset of the field
+     * @param size the size
+     */
+    private static void putSize( byte[] header, int offset, long size ) {
+        if( size <= MAX_OCTAL_SIZE ) {
+            putOctal( header, offset, 12, size );
+        } else {
+            header[offset] = (byte)0x80;
+            for( int i = 11; i > 3; i-- ) {
+                header[offset + i] = (byte)size;
+                size >>>= 8;
+            }
+        }
+    }
+
+    /**
+     * Write an ASCII string into the header.
+     *
+     * @param header the header block
+     * @param offset the offset of the field
+     * @param value the value
+     */
+    private static void putString( byte[] header, int offset, String value ) {
+        byte[] bytes = value.getBytes( StandardCharsets.US_ASCII );
+        System.arraycopy( bytes, 0, header, offset, bytes.length );
+    }
+
+    /**
+     * Calculate and write the header checksum.
+     *
+     * @param header the header block
+     */
+    private static void writeChecksum( byte[] header ) {
+        for( int i = 148; i < 156; i++ ) {
+            header[i] = ' ';
+        }
+        long sum = 0;
+        for( byte b : header ) {
+            sum += b & 0xFF;
+        }
+        putOctal( header, 148, 7, sum );
+        header[155] = ' ';
+    }
+}
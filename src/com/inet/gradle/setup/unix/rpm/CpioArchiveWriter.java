@@ -0,0 +1,337 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.rpm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.inet.gradle.setup.abstracts.PackageManifest;
+
+/**
+ * Minimal writer for cpio archives in the "new ASCII" format (070701) that rpm use for its payload. All entries are
+ * owned by root:root and written with the "./" prefix. Parent directories are not added automatically because a rpm
+ * package should not own the system directories. All entries are recorded in the manifest. The first entry of a path
+ * wins, later files and links with the same path are skipped and reported with {@link #getDuplicates()}.
+ *
+ * @author Volker Berlin
+ */
+class CpioArchiveWriter implements Closeable {
+
+    private static final String       MAGIC          = "070701";
+
+    private static final String       TRAILER        = "TRAILER!!!";
+
+    private static final int          TYPE_FILE      = 0100000;
+
+    private static final int          TYPE_SYMLINK   = 0120000;
+
+    private static final int          TYPE_DIRECTORY = 040000;
+
+    private static final long         MAX_SIZE       = 0xFFFFFFFFL;
+
+    private final OutputStream        output;
+
+    private final PackageManifest     manifest;
+
+    private final byte[]              buffer         = new byte[64 * 1024];
+
+    private final Map<String, Record> records        = new HashMap<>();
+
+    private final List<String>        duplicates     = new ArrayList<>();
+
+    private long                      size;
+
+    private boolean                   closed;
+
+    /**
+     * Create a new cpio writer.
+     *
+     * @param output the target stream, typically a compressing stream
+     * @param manifest the manifest for the entries
+     */
+    CpioArchiveWriter( OutputStream output, PackageManifest manifest ) {
+        this.output = output;
+        this.manifest = manifest;
+    }
+
+    /**
+     * Add a directory entry. If the directory was already added then nothing occur.
+     *
+     * @param path the absolute path on the target system
+     * @param mode the unix permissions
+     * @param lastModified the modified time in milliseconds
+     * @throws IOException if an I/O error occurs
+     */
+    void writeDirectory( String path, int mode, long lastModified ) throws IOException {
+        String name = normalize( path );
+        Record record = add( name, lastModified );
+        if( record == null ) {
+            return;
+        }
+        writeHeader( '.' + name, record.inode, TYPE_DIRECTORY | mode, 2, 0, lastModified );
+        manifest.addDirectory( name, mode );
+    }
+
+    /**
+     * Add a file entry with the content of the stream.
+     *
+     * @param path the absolute path on the target system
+     * @param mode the unix permissions
+     * @param length the count of bytes that the stream must deliver
+     * @param lastModified the modified time in milliseconds
+     * @param input the content
+     * @throws IOException if an I/O error occurs or the stream has not the expected size
+     */
+    void writeFile( String path, int mode, long length, long lastModified, InputStream input ) throws IOException {
+        String name = normalize( path );
+        if( length > MAX_SIZE ) {
+            throw new IOException( "The file '" + name + "' is larger as 4 GB and can not be added to the rpm payload." );
+        }
+        Record record = add( name, lastModified );
+        if( record == null ) {
+            duplicates.add( name );
+            return;
+        }
+        writeHeader( '.' + name, record.inode, TYPE_FILE | mode, 1, length, lastModified );
+        try( InputStream content = manifest.addFile( name, mode, input ) ) {
+            long remaining = length;
+            while( remaining > 0 ) {
+                int count = content.read( buffer, 0, (int)Math.min( buffer.length, remaining ) );
+                if( count < 0 ) {
+                    throw new IOException( "Unexpected end of stream for '" + name + "', missing " + remaining + " bytes" );
+                }
+                write( buffer, count );
+                remaining -= count;
+            }
+        }
+        pad();
+    }
+
+    /**
+     * Add a symbolic link.
+     *
+     * @param path the absolute path on the target system
+     * @param target the link target
+     * @param lastModified the modified time in milliseconds
+     * @throws IOException if an I/O error occurs
+     */
+    void writeSymlink( String path, String target, long lastModified ) throws IOException {
+        String name = normalize( path );
+        Record record = add( name, lastModified );
+        if( record == null ) {
+            duplicates.add( name );
+            return;
+        }
+        byte[] link = target.getBytes( StandardCharsets.UTF_8 );
+        writeHeader( '.' + name, record.inode, TYPE_SYMLINK | 0777, 1, link.length, lastModified );
+        write( link, link.length );
+        pad();
+        manifest.addSymlink( name, target );
+    }
+
+    /**
+     * The inode number of an entry in the archive.
+     *
+     * @param path the absolute path on the target system
+     * @return the inode
+     */
+    int getInode( String path ) {
+        return records.get( path ).inode;
+    }
+
+    /**
+     * The modified time of an entry in the archive.
+     *
+     * @param path the absolute path on the target system
+     * @return the time in seconds
+     */
+    int getLastModified( String path ) {
+        return records.get( path ).lastModified;
+    }
+
+    /**
+     * The paths of the files and links that were skipped because there was already an entry with the same path.
+     *
+     * @return the normalized paths, can be empty
+     */
+    List<String> getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * The uncompressed size of the archive.
+     *
+     * @return the count of written bytes
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Write the trailer entry and close the underlying stream. Further calls have no effect.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if( closed ) {
+            return;
+        }
+        closed = true;
+        try {
+            writeHeader( TRAILER, 0, 0, 1, 0, 0 );
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Convert the path into an absolute path with slashes.
+     *
+     * @param path the path
+     * @return the normalized path without trailing slash
+     */
+    static String normalize( String path ) {
+        String name = path.replace( '\\', '/' ).replaceAll( "/+", "/" );
+        while( name.startsWith( "./" ) ) {
+            name = name.substring( 1 );
+        }
+        if( !name.startsWith( "/" ) ) {
+            name = '/' + name;
+        }
+        if( name.length() > 1 && name.endsWith( "/" ) ) {
+            name = name.substring( 0, name.length() - 1 );
+        }
+        return name;
+    }
+
+    /**
+     * Register a new entry.
+     *
+     * @param name the normalized path
+     * @param lastModified the modified time in milliseconds
+     * @return the new record or null if there is already an entry with this path
+     */
+    private Record add( String name, long lastModified ) {
+        if( records.containsKey( name ) ) {
+            return null;
+        }
+        Record record = new Record( records.size() + 1, (int)(lastModified / 1000) );
+        records.put( name, record );
+        return record;
+    }
+
+    /**
+     * Write the header of an entry with its name.
+     *
+     * @param name the name in the archive
+     * @param inode the inode number
+     * @param mode the file type and the unix permissions
+     * @param links the count of links
+     * @param length the size of the data
+     * @param lastModified the modified time in milliseconds
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeHeader( String name, int inode, int mode, int links, long length, long lastModified ) throws IOException {
+        byte[] nameBytes = name.getBytes( StandardCharsets.UTF_8 );
+        StringBuilder header = new StringBuilder( 110 );
+        header.append( MAGIC );
+        appendHex( header, inode );
+        appendHex( header, mode );
+        appendHex( header, 0 ); // uid
+        appendHex( header, 0 ); // gid
+        appendHex( header, links );
+        appendHex( header, lastModified / 1000 );
+        appendHex( header, length );
+        appendHex( header, 0 ); // dev major
+        appendHex( header, 0 ); // dev minor
+        appendHex( header, 0 ); // rdev major
+        appendHex( header, 0 ); // rdev minor
+        appendHex( header, nameBytes.length + 1 );
+        appendHex( header, 0 ); // check
+        byte[] bytes = header.toString().getBytes( StandardCharsets.US_ASCII );
+        write( bytes, bytes.length );
+        write( nameBytes, nameBytes.length );
+        write( new byte[1], 1 );
+        pad();
+    }
+
+    /**
+     * Append a value as 8 hex digits.
+     *
+     * @param header the header
+     * @param value the value
+     */
+    private static void appendHex( StringBuilder header, long value ) {
+        String hex = Long.toHexString( value );
+        for( int i = hex.length(); i < 8; i++ ) {
+            header.append( '0' );
+        }
+        header.append( hex );
+    }
+
+    /**
+     * Write data and count it.
+     *
+     * @param data the data
+     * @param length the count of bytes
+     * @throws IOException if an I/O error occurs
+     */
+    private void write( byte[] data, int length ) throws IOException {
+        output.write( data, 0, length );
+        size += length;
+    }
+
+    /**
+     * Fill with zeros to the next 4 byte boundary.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void pad() throws IOException {
+        int rest = (int)(size % 4);
+        if( rest > 0 ) {
+            write( new byte[4 - rest], 4 - rest );
+        }
+    }
+
+    /**
+     * The data of an entry that is needed for the rpm header.
+     */
+    private static class Record {
+
+        private final int inode;
+
+        private final int lastModified;
+
+        /**
+         * Create a new record.
+         *
+         * @param inode the inode number
+         * @param lastModified the modified time in seconds
+         */
+        private Record( int inode, int lastModified ) {
+            this.inode = inode;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -15,9 +15,10 @@
  */
 package com.inet.gradle.setup.unix.rpm;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
-import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.GradleException;
 
 import com.inet.gradle.setup.unix.Unix;
 
@@ -46,6 +47,8 @@ public class Rpm extends Unix {
 
     private ArrayList<String> clean              = new ArrayList<String>();
 
+    private RpmBuilder        builder;
+
 
     /**
      * the default constructor
@@ -54,13 +57,26 @@ public class Rpm extends Unix {
         super( "rpm" );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void prepareBuild() {
+        super.prepareBuild();
+        builder = new RpmBuilder( this, getSetupBuilder(), getFileResolver() );
+        try {
+            builder.prepareBundleJre();
+        } catch( IOException ex ) {
+            throw new GradleException( "Can not prepare the bundled Java Runtime.", ex );
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void build() {
-        ProjectInternal project = (ProjectInternal)getProject();
-        new RpmBuilder( this, getSetupBuilder(), project.getFileResolver() ).build();
+        builder.build();
     }
 
     /**
@@ -20,6 +20,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiConsumer;
 
 import org.gradle.api.internal.file.FileResolver;
@@ -29,6 +30,7 @@ import com.inet.gradle.setup.Template;
 import com.inet.gradle.setup.abstracts.DesktopStarter;
 import com.inet.gradle.setup.abstracts.DocumentType;
 import com.inet.gradle.setup.abstracts.LocalizedResource;
+import com.inet.gradle.setup.abstracts.PackageEntry;
 import com.inet.gradle.setup.abstracts.Service;
 import com.inet.gradle.setup.unix.UnixBuilder;
 import com.inet.gradle.setup.util.Logging;
@@ -49,7 +51,9 @@ public class RpmBuilder extends UnixBuilder<Rpm, SetupBuilder> {
     }
 
     /**
-     * Build the RedHat package in different steps with the 'rpmbuild'.
+     * Build the RedHat package. The package is written directly with the {@link RpmPackageWriter} without a copy of the
+     * files. Only if the task use build steps of the SPEC file like prep, build, install, clean or additional spec
+     * headers then the package is build in different steps with the 'rpmbuild'.
      *
      * <dl>
      * <dt>copy files</dt>
@@ -72,9 +76,11 @@ public class RpmBuilder extends UnixBuilder<Rpm, SetupBuilder> {
             if( release == null || release.length() == 0 ) {
                 release = "1";
             }
+            boolean rpmbuild = isRpmbuildRequired();
             File filesPath = new File( buildDir.getAbsolutePath() + "/BUILD" + task.getInstallationRoot() );
-            task.copyTo( filesPath );
-            changeFilePermissionsTo644( filesPath );
+            if( rpmbuild ) {
+                copyTo( filesPath );
+            }
 
             // Add a bundled java vm if required. Will update the variable to indicate the java-main program
             addBundleJre( filesPath );
@@ -114,11 +120,15 @@ public class RpmBuilder extends UnixBuilder<Rpm, SetupBuilder> {
                 Files.copy( license.getResource().toPath(), licensetarget.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING );
             }
 
-            controlBuilder.build();
+            if( rpmbuild ) {
+                controlBuilder.build();
 
-            changeDirectoryPermissionsTo755( buildDir );
+                changeDirectoryPermissionsTo755( buildDir );
 
-            createRpmPackage();
+                createRpmPackage();
+            } else {
+                writeRpmPackage( release );
+            }
 
         } catch( RuntimeException ex ) {
             throw ex;
@@ -346,6 +356,42 @@ public class RpmBuilder extends UnixBuilder<Rpm, SetupBuilder> {
         return file;
     }
 
+    /**
+     * Check if the package must be build with 'rpmbuild' because the task use sections of the SPEC file that are
+     * executed at build time.
+     *
+     * @return true, if 'rpmbuild' is required
+     */
+    private boolean isRpmbuildRequired() {
+        return !task.getPrep().isEmpty() || !task.getBuild().isEmpty() || !task.getInstall().isEmpty() || !task.getClean().isEmpty() || !task.getSpecHeader().isEmpty();
+    }
+
+    /**
+     * Write the RPM package with the files of the task and the generated files in the BUILD directory. The generated
+     * files are added first that they replace files of the task with the same path. In parallel mode the package is
+     * written by a work item.
+     *
+     * @param release the release of the package
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeRpmPackage( String release ) throws IOException {
+        int level = task.getCompressionLevel() < 0 ? 9 : task.getCompressionLevel(); // rpmbuild use w9.gzdio for backward compatibility
+        String installationRoot = task.getInstallationRoot();
+        String leadName = setup.getAppIdentifier() + "-" + task.getVersion() + "-" + release;
+        List<PackageEntry> entries = null;
+        if( task.isParallel() ) {
+            entries = new ArrayList<>();
+            task.processEntries( installationRoot, entries::add );
+        }
+        RpmPackageJob job = new RpmPackageJob( task.getSetupFile(), buildDir, level, task.getCompressionThreads(), installationRoot, !task.isBackwardCompatible(), leadName, entries );
+        job.setHeader( controlBuilder.createHeader( job ) );
+        if( entries != null ) {
+            task.setPackageJob( job );
+        } else {
+            job.write( action -> task.processEntries( installationRoot, action ) );
+        }
+    }
+
     /**
      * execute the command to generate the RPM package
      *
@@ -19,8 +19,14 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +41,7 @@ import com.inet.gradle.setup.abstracts.LocalizedResource;
  * <br>
  * This file contains settings for the package like dependencies, architecture, description and
  * scripts and commands that are executed before, during and after the installation.
+ * The same information can also be created as binary header for the {@link RpmPackageWriter}.
  *
  * @author Stefan Heidrich
  */
@@ -161,9 +168,179 @@ class RpmControlFileBuilder {
         }
     }
 
+    /**
+     * Create the main header of the package for the {@link RpmPackageWriter}. It contains the same package information
+     * and scripts as the SPEC file. The file list is added by the writer.
+     *
+     * @param job the job that writes the package and receive the dependencies
+     * @return the header
+     * @throws IOException if a description could not be read
+     */
+    RpmHeader createHeader( RpmPackageJob job ) throws IOException {
+        String name = setup.getAppIdentifier();
+        if( name == null || name.length() == 0 ) {
+            throw new RuntimeException( "No package declared in the setup configuration." );
+        }
+        String version = rpm.getVersion();
+        if( version == null || version.length() == 0 ) {
+            throw new RuntimeException( "No version declared in the setup configuration." );
+        }
+        String summary = rpm.getSummary();
+        if( summary == null || summary.length() == 0 ) {
+            throw new RuntimeException( "No summary declared in the setup configuration." );
+        }
+        String vendor = setup.getVendor();
+        if( vendor == null || vendor.length() == 0 ) {
+            throw new RuntimeException( "No vendor declared in the setup configuration." );
+        }
+        String release = rpm.getRelease();
+        if( release == null || release.length() == 0 ) {
+            release = "1";
+        }
+        String license = rpm.getLicense();
+        if( license == null || license.length() == 0 ) {
+            license = "Restricted";
+        }
+        String section = rpm.getSection();
+        if( section == null || section.length() == 0 ) {
+            section = "Unspecified";
+        }
+
+        RpmHeader header = new RpmHeader();
+        header.addString( RpmHeader.NAME, name );
+        header.addString( RpmHeader.VERSION, version );
+        header.addString( RpmHeader.RELEASE, release );
+        header.addI18nString( RpmHeader.SUMMARY, Collections.singletonList( summary ) );
+        putDescription( header );
+        header.addInt32( RpmHeader.BUILDTIME, (int)(System.currentTimeMillis() / 1000) );
+        header.addString( RpmHeader.BUILDHOST, getHostName() );
+        header.addString( RpmHeader.VENDOR, vendor );
+        header.addString( RpmHeader.LICENSE, license );
+        header.addString( RpmHeader.PACKAGER, vendor );
+        header.addI18nString( RpmHeader.GROUP, Collections.singletonList( section ) );
+        String url = rpm.getHomepage();
+        if( url != null && url.length() > 0 ) {
+            header.addString( RpmHeader.URL, url );
+        }
+        header.addString( RpmHeader.OS, "linux" );
+        header.addString( RpmHeader.ARCH, rpm.getArchitecture() );
+        header.addString( RpmHeader.SOURCERPM, name + "-" + version + "-" + release + ".src.rpm" );
+        header.addStringArray( RpmHeader.PREFIXES, Collections.singletonList( rpm.getInstallationRoot() ) );
+        header.addStringArray( RpmHeader.PROVIDENAME, Collections.singletonList( name ) );
+        header.addInt32( RpmHeader.PROVIDEFLAGS, RpmPackageWriter.SENSE_EQUAL );
+        header.addStringArray( RpmHeader.PROVIDEVERSION, Collections.singletonList( version + "-" + release ) );
+
+        StringWriter script = new StringWriter();
+        writePre( script );
+        header.addString( RpmHeader.PREIN, script.toString() );
+        header.addString( RpmHeader.PREINPROG, "/bin/sh" );
+        script = new StringWriter();
+        writePost( script );
+        header.addString( RpmHeader.POSTIN, script.toString() );
+        header.addString( RpmHeader.POSTINPROG, "/bin/sh" );
+        script = new StringWriter();
+        writePreun( script );
+        header.addString( RpmHeader.PREUN, script.toString() );
+        header.addString( RpmHeader.PREUNPROG, "/bin/sh" );
+        script = new StringWriter();
+        writePostun( script );
+        header.addString( RpmHeader.POSTUN, script.toString() );
+        header.addString( RpmHeader.POSTUNPROG, "/bin/sh" );
+
+        job.addRequirement( "/bin/sh", RpmPackageWriter.SENSE_INTERP | RpmPackageWriter.SENSE_SCRIPT_PRE | RpmPackageWriter.SENSE_SCRIPT_POST
+                        | RpmPackageWriter.SENSE_SCRIPT_PREUN | RpmPackageWriter.SENSE_SCRIPT_POSTUN, "" );
+        putDepends( job );
+        return header;
+    }
+
+    /**
+     * Add the long descriptions to the header. The description for the default language is used for the locale "C".
+     *
+     * @param header the header
+     * @throws IOException if a description could not be read
+     */
+    private void putDescription( RpmHeader header ) throws IOException {
+        List<String> languages = new ArrayList<>();
+        List<String> descriptions = new ArrayList<>();
+        languages.add( "C" );
+        descriptions.add( "" );
+        for( LocalizedResource desc : setup.getLongDescriptions() ) {
+            String content = new String( Files.readAllBytes( desc.getResource().toPath() ), StandardCharsets.UTF_8 ).trim();
+            if( desc.getLanguage().equalsIgnoreCase( setup.getDefaultResourceLanguage() ) ) {
+                descriptions.set( 0, content );
+            } else {
+                languages.add( desc.getLanguage() );
+                descriptions.add( content );
+            }
+        }
+        header.addStringArray( RpmHeader.HEADERI18NTABLE, languages );
+        header.addI18nString( RpmHeader.DESCRIPTION, descriptions );
+    }
+
+    /**
+     * Add the dependencies of the task. The dependencies are separated with commas or spaces and can have a version
+     * with a comparison operator like "java &gt;= 1.8".
+     *
+     * @param job the job that writes the package
+     */
+    private void putDepends( RpmPackageJob job ) {
+        String depends = rpm.getDepends();
+        if( depends == null || depends.trim().length() == 0 ) {
+            return;
+        }
+        String[] tokens = depends.trim().split( "[\\s,]+" );
+        for( int i = 0; i < tokens.length; i++ ) {
+            int flags = i + 2 < tokens.length ? getSenseFlags( tokens[i + 1] ) : 0;
+            if( flags != 0 ) {
+                job.addRequirement( tokens[i], flags, tokens[i + 2] );
+                i += 2;
+            } else {
+                job.addRequirement( tokens[i], 0, "" );
+            }
+        }
+    }
+
+    /**
+     * Get the flags of a version comparison operator.
+     *
+     * @param operator the operator
+     * @return the flags or 0 if it is not an operator
+     */
+    private static int getSenseFlags( String operator ) {
+        switch( operator ) {
+            case "<":
+                return RpmPackageWriter.SENSE_LESS;
+            case "<=":
+                return RpmPackageWriter.SENSE_LESS | RpmPackageWriter.SENSE_EQUAL;
+            case "=":
+            case "==":
+                return RpmPackageWriter.SENSE_EQUAL;
+            case ">=":
+                return RpmPackageWriter.SENSE_GREATER | RpmPackageWriter.SENSE_EQUAL;
+            case ">":
+                return RpmPackageWriter.SENSE_GREATER;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Get the name of the build host.
+     *
+     * @return the name
+     */
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch( IOException ex ) {
+            return "localhost";
+        }
+    }
+
     /**
      * Insert some defines for backward compatibility with old rpm versions.
      * This could be enabled and disabled with the backwardCompatibility entry of the RPM task.
+     * An explicit compression level of the task overrides the payload compression.
      *
      * @param controlWriter the writer for the file
      * @throws IOException if the was an error while writing to the file
@@ -175,6 +352,9 @@ class RpmControlFileBuilder {
             controlWriter.write( NEWLINE + "%define _binary_filedigest_algorithm 1" + NEWLINE );
             controlWriter.write( NEWLINE + "%define _source_filedigest_algorithm 1" + NEWLINE );
         }
+        if( rpm.getCompressionLevel() >= 0 ) {
+            controlWriter.write( NEWLINE + "%define _binary_payload w" + rpm.getCompressionLevel() + ".gzdio" + NEWLINE );
+        }
     }
 
     /**
@@ -185,6 +365,16 @@ class RpmControlFileBuilder {
      */
     private void putPreun( OutputStreamWriter controlWriter ) throws IOException {
         controlWriter.write( NEWLINE + "%preun" + NEWLINE );
+        writePreun( controlWriter );
+    }
+
+    /**
+     * Write the script that get executed before the package has been removed.
+     *
+     * @param controlWriter the writer for the script
+     * @throws IOException if the was an error while writing
+     */
+    private void writePreun( Writer controlWriter ) throws IOException {
         controlWriter.write( NEWLINE + "if [ $1 -eq 0 ]; then" + NEWLINE );
         controlWriter.write( NEWLINE + "echo \"preun step\"" + NEWLINE );
 
@@ -238,6 +428,16 @@ class RpmControlFileBuilder {
      */
     private void putPre( OutputStreamWriter controlWriter ) throws IOException {
         controlWriter.write( NEWLINE + "%pre" + NEWLINE );
+        writePre( controlWriter );
+    }
+
+    /**
+     * Write the script that is executed before the package has been installed.
+     *
+     * @param controlWriter the writer for the script
+     * @throws IOException if the was an error while writing
+     */
+    private void writePre( Writer controlWriter ) throws IOException {
 
         //Set some variables to begin with
         controlWriter.write( rpm.getVariablesTemplate() + NEWLINE );
@@ -266,6 +466,16 @@ class RpmControlFileBuilder {
      */
     private void putPost( OutputStreamWriter controlWriter ) throws IOException {
         controlWriter.write( NEWLINE + "%post" + NEWLINE );
+        writePost( controlWriter );
+    }
+
+    /**
+     * Write the script that is executed after the package has been installed.
+     *
+     * @param controlWriter the writer for the script
+     * @throws IOException if the was an error while writing
+     */
+    private void writePost( Writer controlWriter ) throws IOException {
 
         //Set some variables to begin with
         controlWriter.write( rpm.getVariablesTemplate() + NEWLINE );
@@ -297,6 +507,16 @@ class RpmControlFileBuilder {
      */
     private void putPostun( OutputStreamWriter controlWriter ) throws IOException {
         controlWriter.write( NEWLINE + "%postun" + NEWLINE );
+        writePostun( controlWriter );
+    }
+
+    /**
+     * Write the script that is executed after the package has been removed.
+     *
+     * @param controlWriter the writer for the script
+     * @throws IOException if the was an error while writing
+     */
+    private void writePostun( Writer controlWriter ) throws IOException {
 
         if( rpm.getPostrm().size() > 0 || scriptMap.get( Script.POSTRMHEAD ) != null || scriptMap.get( Script.POSTRMTAIL ) != null ) {
             controlWriter.write( NEWLINE + "if [ $1 -eq 0 ]; then" + NEWLINE );
@@ -597,7 +817,7 @@ class RpmControlFileBuilder {
             try {
                 controlWriter.write( header + NEWLINE );
             } catch( IOException e ) {
-                setup.getProject().getLogger().error( e.getLocalizedMessage() );
+                rpm.getLogger().error( e.getLocalizedMessage() );
             }
         } );
     }
@@ -695,7 +915,7 @@ class RpmControlFileBuilder {
      * @param tailSection constant for the tail
      * @throws IOException in case of errors
      */
-    private void writeHeadContentTail( OutputStreamWriter controlWriter, Script headSection, ArrayList<String> bodySection, Script tailSection ) throws IOException {
+    private void writeHeadContentTail( Writer controlWriter, Script headSection, ArrayList<String> bodySection, Script tailSection ) throws IOException {
         StringBuilder head = scriptMap.get( headSection);
         if( head != null ) {
             controlWriter.write( head.toString() + NEWLINE );
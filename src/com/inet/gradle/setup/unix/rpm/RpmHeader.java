@@ -0,0 +1,385 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.rpm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A header structure of a RPM package in the version 4 format. It is used for the signature and for the main header.
+ * The entries are written sorted by tag with an immutable region like rpmbuild does it.
+ *
+ * @author Volker Berlin
+ */
+class RpmHeader implements Serializable {
+
+    private static final long         serialVersionUID    = 1L;
+
+    static final int                  HEADERSIGNATURES    = 62;
+
+    static final int                  HEADERIMMUTABLE     = 63;
+
+    static final int                  HEADERI18NTABLE     = 100;
+
+    static final int                  SIG_SHA1            = 269;
+
+    static final int                  SIG_LONGSIZE        = 270;
+
+    static final int                  SIG_LONGARCHIVESIZE = 271;
+
+    static final int                  SIG_SHA256          = 273;
+
+    static final int                  SIG_SIZE            = 1000;
+
+    static final int                  SIG_MD5             = 1004;
+
+    static final int                  SIG_PAYLOADSIZE     = 1007;
+
+    static final int                  NAME                = 1000;
+
+    static final int                  VERSION             = 1001;
+
+    static final int                  RELEASE             = 1002;
+
+    static final int                  SUMMARY             = 1004;
+
+    static final int                  DESCRIPTION         = 1005;
+
+    static final int                  BUILDTIME           = 1006;
+
+    static final int                  BUILDHOST           = 1007;
+
+    static final int                  SIZE                = 1009;
+
+    static final int                  VENDOR              = 1011;
+
+    static final int                  LICENSE             = 1014;
+
+    static final int                  PACKAGER            = 1015;
+
+    static final int                  GROUP               = 1016;
+
+    static final int                  URL                 = 1020;
+
+    static final int                  OS                  = 1021;
+
+    static final int                  ARCH                = 1022;
+
+    static final int                  PREIN               = 1023;
+
+    static final int                  POSTIN              = 1024;
+
+    static final int                  PREUN               = 1025;
+
+    static final int                  POSTUN              = 1026;
+
+    static final int                  FILESIZES           = 1028;
+
+    static final int                  FILEMODES           = 1030;
+
+    static final int                  FILERDEVS           = 1033;
+
+    static final int                  FILEMTIMES          = 1034;
+
+    static final int                  FILEDIGESTS         = 1035;
+
+    static final int                  FILELINKTOS         = 1036;
+
+    static final int                  FILEFLAGS           = 1037;
+
+    static final int                  FILEUSERNAME        = 1039;
+
+    static final int                  FILEGROUPNAME       = 1040;
+
+    static final int                  SOURCERPM           = 1044;
+
+    static final int                  PROVIDENAME         = 1047;
+
+    static final int                  REQUIREFLAGS        = 1048;
+
+    static final int                  REQUIRENAME         = 1049;
+
+    static final int                  REQUIREVERSION      = 1050;
+
+    static final int                  PREINPROG           = 1085;
+
+    static final int                  POSTINPROG          = 1086;
+
+    static final int                  PREUNPROG           = 1087;
+
+    static final int                  POSTUNPROG          = 1088;
+
+    static final int                  FILEDEVICES         = 1095;
+
+    static final int                  FILEINODES          = 1096;
+
+    static final int                  FILELANGS           = 1097;
+
+    static final int                  PREFIXES            = 1098;
+
+    static final int                  PROVIDEFLAGS        = 1112;
+
+    static final int                  PROVIDEVERSION      = 1113;
+
+    static final int                  DIRINDEXES          = 1116;
+
+    static final int                  BASENAMES           = 1117;
+
+    static final int                  DIRNAMES            = 1118;
+
+    static final int                  PAYLOADFORMAT       = 1124;
+
+    static final int                  PAYLOADCOMPRESSOR   = 1125;
+
+    static final int                  PAYLOADFLAGS        = 1126;
+
+    static final int                  LONGFILESIZES       = 5008;
+
+    static final int                  LONGSIZE            = 5009;
+
+    static final int                  FILEDIGESTALGO      = 5011;
+
+    static final int                  PAYLOADDIGEST       = 5092;
+
+    static final int                  PAYLOADDIGESTALGO   = 5093;
+
+    private static final int          TYPE_INT16          = 3;
+
+    private static final int          TYPE_INT32          = 4;
+
+    private static final int          TYPE_INT64          = 5;
+
+    private static final int          TYPE_STRING         = 6;
+
+    private static final int          TYPE_BIN            = 7;
+
+    private static final int          TYPE_STRING_ARRAY   = 8;
+
+    private static final int          TYPE_I18NSTRING     = 9;
+
+    private static final byte[]       MAGIC               = { (byte)0x8e, (byte)0xad, (byte)0xe8, 0x01, 0, 0, 0, 0 };
+
+    private final Map<Integer, Entry> entries             = new TreeMap<>();
+
+    /**
+     * Add a single string.
+     *
+     * @param tag the tag
+     * @param value the value
+     */
+    void addString( int tag, String value ) {
+        entries.put( tag, new Entry( TYPE_STRING, 1, 1, toBytes( value ) ) );
+    }
+
+    /**
+     * Add a localized string. The first value is for the default locale "C", the followings are for the languages of
+     * the {@link #HEADERI18NTABLE}.
+     *
+     * @param tag the tag
+     * @param values the values
+     */
+    void addI18nString( int tag, List<String> values ) {
+        entries.put( tag, new Entry( TYPE_I18NSTRING, values.size(), 1, toBytes( values ) ) );
+    }
+
+    /**
+     * Add a string array.
+     *
+     * @param tag the tag
+     * @param values the values
+     */
+    void addStringArray( int tag, List<String> values ) {
+        entries.put( tag, new Entry( TYPE_STRING_ARRAY, values.size(), 1, toBytes( values ) ) );
+    }
+
+    /**
+     * Add one or more 16 bit values.
+     *
+     * @param tag the tag
+     * @param values the values
+     */
+    void addInt16( int tag, short... values ) {
+        byte[] data = new byte[values.length * 2];
+        for( int i = 0; i < values.length; i++ ) {
+            data[i * 2] = (byte)(values[i] >> 8);
+            data[i * 2 + 1] = (byte)values[i];
+        }
+        entries.put( tag, new Entry( TYPE_INT16, values.length, 2, data ) );
+    }
+
+    /**
+     * Add one or more 32 bit values.
+     *
+     * @param tag the tag
+     * @param values the values
+     */
+    void addInt32( int tag, int... values ) {
+        byte[] data = new byte[values.length * 4];
+        for( int i = 0; i < values.length; i++ ) {
+            for( int b = 0; b < 4; b++ ) {
+                data[i * 4 + b] = (byte)(values[i] >> (24 - 8 * b));
+            }
+        }
+        entries.put( tag, new Entry( TYPE_INT32, values.length, 4, data ) );
+    }
+
+    /**
+     * Add one or more 64 bit values.
+     *
+     * @param tag the tag
+     * @param values the values
+     */
+    void addInt64( int tag, long... values ) {
+        byte[] data = new byte[values.length * 8];
+        for( int i = 0; i < values.length; i++ ) {
+            for( int b = 0; b < 8; b++ ) {
+                data[i * 8 + b] = (byte)(values[i] >> (56 - 8 * b));
+            }
+        }
+        entries.put( tag, new Entry( TYPE_INT64, values.length, 8, data ) );
+    }
+
+    /**
+     * Add binary data.
+     *
+     * @param tag the tag
+     * @param value the data
+     */
+    void addBinary( int tag, byte[] value ) {
+        entries.put( tag, new Entry( TYPE_BIN, value.length, 1, value ) );
+    }
+
+    /**
+     * Create the binary header structure. The first index entry is the region tag whose trailer is stored at the end
+     * of the data.
+     *
+     * @param regionTag {@link #HEADERIMMUTABLE} for the main header or {@link #HEADERSIGNATURES} for the signature
+     * @return the header
+     */
+    byte[] toByteArray( int regionTag ) {
+        int indexCount = entries.size() + 1;
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        ByteArrayOutputStream store = new ByteArrayOutputStream();
+        try {
+            DataOutputStream indexOut = new DataOutputStream( index );
+            for( Map.Entry<Integer, Entry> e : entries.entrySet() ) {
+                Entry entry = e.getValue();
+                while( store.size() % entry.alignment != 0 ) {
+                    store.write( 0 );
+                }
+                writeIndex( indexOut, e.getKey(), entry.type, store.size(), entry.count );
+                store.write( entry.data );
+            }
+
+            int trailerOffset = store.size();
+            writeIndex( new DataOutputStream( store ), regionTag, TYPE_BIN, -indexCount * 16, 16 );
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream( 16 + indexCount * 16 + store.size() );
+            DataOutputStream out = new DataOutputStream( header );
+            out.write( MAGIC );
+            out.writeInt( indexCount );
+            out.writeInt( store.size() );
+            writeIndex( out, regionTag, TYPE_BIN, trailerOffset, 16 );
+            index.writeTo( out );
+            store.writeTo( out );
+            return header.toByteArray();
+        } catch( IOException ex ) {
+            throw new IllegalStateException( ex ); // can not occur with byte array streams
+        }
+    }
+
+    /**
+     * Write a single index entry.
+     *
+     * @param out the target
+     * @param tag the tag
+     * @param type the data type
+     * @param offset the offset in the data store
+     * @param count the count of values
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeIndex( DataOutputStream out, int tag, int type, int offset, int count ) throws IOException {
+        out.writeInt( tag );
+        out.writeInt( type );
+        out.writeInt( offset );
+        out.writeInt( count );
+    }
+
+    /**
+     * Convert a string into its zero terminated UTF-8 form.
+     *
+     * @param value the string
+     * @return the bytes
+     */
+    private static byte[] toBytes( String value ) {
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        byte[] data = new byte[bytes.length + 1];
+        System.arraycopy( bytes, 0, data, 0, bytes.length );
+        return data;
+    }
+
+    /**
+     * Convert multiple strings into its zero terminated UTF-8 form.
+     *
+     * @param values the strings
+     * @return the bytes
+     */
+    private static byte[] toBytes( List<String> values ) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for( String value : values ) {
+            byte[] bytes = toBytes( value );
+            data.write( bytes, 0, bytes.length );
+        }
+        return data.toByteArray();
+    }
+
+    /**
+     * The data of a single tag.
+     */
+    private static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int    type;
+
+        private final int    count;
+
+        private final int    alignment;
+
+        private final byte[] data;
+
+        /**
+         * Create a new entry.
+         *
+         * @param type the data type
+         * @param count the count of values
+         * @param alignment the required alignment in the data store
+         * @param data the data in network byte order
+         */
+        private Entry( int type, int count, int alignment, byte[] data ) {
+            this.type = type;
+            this.count = count;
+            this.alignment = alignment;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.rpm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import com.inet.gradle.setup.abstracts.PackageEntry;
+import com.inet.gradle.setup.abstracts.PackageJob;
+
+/**
+ * Write the RPM package from the generated files in the BUILD directory and the entries of the task. The main header
+ * and the dependencies are created before by the builder, only the file list is added by the writer.
+ *
+ * @author Volker Berlin
+ */
+class RpmPackageJob implements PackageJob {
+
+    private static final long          serialVersionUID = 1L;
+
+    private static final Logger        LOGGER           = Logging.getLogger( RpmPackageJob.class );
+
+    private final File                 setupFile;
+
+    private final File                 buildDir;
+
+    private final int                  level;
+
+    private final int                  threads;
+
+    private final String               installationRoot;
+
+    private final boolean              sha256;
+
+    private final String               leadName;
+
+    private final List<PackageEntry>   entries;
+
+    private final ArrayList<String>    requireNames     = new ArrayList<>();
+
+    private final ArrayList<Integer>   requireFlags     = new ArrayList<>();
+
+    private final ArrayList<String>    requireVersions  = new ArrayList<>();
+
+    private RpmHeader                  header;
+
+    /**
+     * Create a new job.
+     *
+     * @param setupFile the resulting package file
+     * @param buildDir the directory for the temporary payload, the generated files are in the sub directory BUILD
+     * @param level the gzip compression level of the payload
+     * @param threads the count of compressing threads, 0 for all available processors
+     * @param installationRoot the directory of the application, only directories below it are owned by the package
+     * @param sha256 true, for SHA-256 file digests; false, for MD5 file digests that old rpm versions can verify
+     * @param leadName the name of the package with version and release for the lead
+     * @param entries the staged entries of the task for {@link #run()}, or null if the entries are streamed
+     */
+    RpmPackageJob( File setupFile, File buildDir, int level, int threads, String installationRoot, boolean sha256, String leadName, List<PackageEntry> entries ) {
+        this.setupFile = setupFile;
+        this.buildDir = buildDir;
+        this.level = level;
+        this.threads = threads;
+        this.installationRoot = installationRoot;
+        this.sha256 = sha256;
+        this.leadName = leadName;
+        this.entries = entries;
+    }
+
+    /**
+     * Set the main header of the package.
+     *
+     * @param header the header with the package information and the scripts
+     */
+    void setHeader( RpmHeader header ) {
+        this.header = header;
+    }
+
+    /**
+     * Add a dependency of the package.
+     *
+     * @param name the name of the required package, capability or file
+     * @param flags the comparison flags like {@link RpmPackageWriter#SENSE_EQUAL}, 0 for any version
+     * @param version the version or an empty string
+     */
+    void addRequirement( String name, int flags, String version ) {
+        requireNames.add( name );
+        requireFlags.add( flags );
+        requireVersions.add( version );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() throws IOException {
+        write( action -> {
+            for( PackageEntry entry : entries ) {
+                action.process( entry );
+            }
+        } );
+    }
+
+    /**
+     * Write the package. The generated files in the BUILD directory are added first that they replace files of the
+     * task with the same path.
+     *
+     * @param taskEntries the entries of the task
+     * @throws IOException if an I/O error occurs
+     */
+    void write( Entries taskEntries ) throws IOException {
+        try( RpmPackageWriter writer = new RpmPackageWriter( setupFile, buildDir, level, threads, installationRoot, sha256 ) ) {
+            File generated = new File( buildDir, "BUILD" );
+            if( generated.isDirectory() ) {
+                writer.addDirectory( generated );
+            }
+            taskEntries.forEach( writer::addEntry );
+            for( String duplicate : writer.getDuplicates() ) {
+                LOGGER.warn( "\tDuplicate entry is ignored: " + duplicate );
+            }
+            for( int i = 0; i < requireNames.size(); i++ ) {
+                writer.addRequirement( requireNames.get( i ), requireFlags.get( i ), requireVersions.get( i ) );
+            }
+            writer.finish( header, leadName );
+        }
+    }
+}
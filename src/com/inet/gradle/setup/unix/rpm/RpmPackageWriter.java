@@ -0,0 +1,426 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.rpm;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.inet.gradle.setup.abstracts.PackageEntry;
+import com.inet.gradle.setup.abstracts.PackageManifest;
+import com.inet.gradle.setup.util.ParallelGZIPOutputStream;
+import com.inet.gradle.setup.util.Strings;
+
+/**
+ * Writer for a RedHat binary package without the need of rpmbuild. The package consists of the lead, the signature
+ * header, the main header and the gzip compressed cpio payload. The payload is streamed in a temporary file because
+ * the headers contain the digests and sizes of the payload. The files are read only once, there is no copy into a
+ * BUILDROOT directory.
+ *
+ * @author Volker Berlin
+ */
+class RpmPackageWriter implements Closeable {
+
+    static final int                       SENSE_LESS          = 0x02;
+
+    static final int                       SENSE_GREATER       = 0x04;
+
+    static final int                       SENSE_EQUAL         = 0x08;
+
+    static final int                       SENSE_INTERP        = 0x100;
+
+    static final int                       SENSE_SCRIPT_PRE    = 0x200;
+
+    static final int                       SENSE_SCRIPT_POST   = 0x400;
+
+    static final int                       SENSE_SCRIPT_PREUN  = 0x800;
+
+    static final int                       SENSE_SCRIPT_POSTUN = 0x1000;
+
+    private static final int               SENSE_RPMLIB        = 0x1000000;
+
+    private static final int               DIGEST_MD5          = 1;
+
+    private static final int               DIGEST_SHA256       = 8;
+
+    private final File                     rpmFile;
+
+    private final File                     payloadFile;
+
+    private final CpioArchiveWriter        payload;
+
+    private final MessageDigest            payloadDigest       = createDigest( "SHA-256" );
+
+    private final String                   installationRoot;
+
+    private final boolean                  sha256;
+
+    private final int                      level;
+
+    private final PackageManifest          manifest            = new PackageManifest();
+
+    private final List<String>             requireNames        = new ArrayList<>();
+
+    private final List<Integer>            requireFlags        = new ArrayList<>();
+
+    private final List<String>             requireVersions     = new ArrayList<>();
+
+    private final long                     created             = System.currentTimeMillis();
+
+    /**
+     * Create a new package writer.
+     *
+     * @param rpmFile the resulting package file
+     * @param tempDir directory for the temporary payload
+     * @param level the gzip compression level of the payload
+     * @param threads the count of compressing threads, 0 for all available processors
+     * @param installationRoot the directory of the application, only directories below it are owned by the package
+     * @param sha256 true, for SHA-256 file digests; false, for MD5 file digests that old rpm versions can verify
+     * @throws IOException if an I/O error occurs
+     */
+    RpmPackageWriter( File rpmFile, File tempDir, int level, int threads, String installationRoot, boolean sha256 ) throws IOException {
+        this.rpmFile = rpmFile;
+        this.payloadFile = new File( tempDir, "payload.cpio.gz" );
+        this.level = level;
+        this.installationRoot = CpioArchiveWriter.normalize( installationRoot );
+        this.sha256 = sha256;
+        tempDir.mkdirs();
+        OutputStream file = new DigestOutputStream( new BufferedOutputStream( new FileOutputStream( payloadFile ), 64 * 1024 ), payloadDigest );
+        this.payload = new CpioArchiveWriter( new ParallelGZIPOutputStream( file, level, threads ), manifest );
+        payload.writeDirectory( this.installationRoot, 0755, created );
+    }
+
+    /**
+     * The manifest of the payload. It is complete after all entries are added.
+     *
+     * @return the manifest
+     */
+    PackageManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * The paths of the files and links that were skipped because there was already an entry with the same path.
+     *
+     * @return the paths, can be empty
+     */
+    List<String> getDuplicates() {
+        return payload.getDuplicates();
+    }
+
+    /**
+     * Add a dependency of the package.
+     *
+     * @param name the name of the required package, capability or file
+     * @param flags the comparison flags like {@link #SENSE_EQUAL}, 0 for any version
+     * @param version the version or an empty string
+     */
+    void addRequirement( String name, int flags, String version ) {
+        requireNames.add( name );
+        requireFlags.add( flags );
+        requireVersions.add( version );
+    }
+
+    /**
+     * Add a file or directory of the task to the payload.
+     *
+     * @param entry the entry
+     * @throws IOException if an I/O error occurs
+     */
+    void addEntry( PackageEntry entry ) throws IOException {
+        if( entry.isDirectory() ) {
+            payload.writeDirectory( entry.getTargetPath(), entry.getMode(), entry.getLastModified() );
+        } else {
+            try( InputStream input = entry.open() ) {
+                payload.writeFile( entry.getTargetPath(), entry.getMode(), entry.getSize(), entry.getLastModified(), input );
+            }
+        }
+    }
+
+    /**
+     * Add the content of a directory recursively to the payload. Files get the mode 755 if the owner executable flag
+     * is set else 644. Symbolic links are preserved. Directories are only added if they are inside of the
+     * installation root, the other directories are created by rpm if needed and are not owned by the package.
+     *
+     * @param root the root directory, its content is added relative to the file system root
+     * @throws IOException if an I/O error occurs
+     */
+    void addDirectory( File root ) throws IOException {
+        addChildren( root.toPath(), "" );
+    }
+
+    /**
+     * Write the package file. The payload will be finished and the temporary file removed.
+     *
+     * @param header the main header with the package information and the scripts, the file list is added
+     * @param leadName the name of the package with version and release for the lead
+     * @throws IOException if an I/O error occurs
+     */
+    void finish( RpmHeader header, String leadName ) throws IOException {
+        try {
+            payload.close();
+            addFiles( header );
+            addRequirement( "rpmlib(CompressedFileNames)", SENSE_LESS | SENSE_EQUAL | SENSE_RPMLIB, "3.0.4-1" );
+            addRequirement( "rpmlib(PayloadFilesHavePrefix)", SENSE_LESS | SENSE_EQUAL | SENSE_RPMLIB, "4.0-1" );
+            if( sha256 ) {
+                addRequirement( "rpmlib(FileDigests)", SENSE_LESS | SENSE_EQUAL | SENSE_RPMLIB, "4.6.0-1" );
+            }
+            header.addStringArray( RpmHeader.REQUIRENAME, requireNames );
+            header.addInt32( RpmHeader.REQUIREFLAGS, requireFlags.stream().mapToInt( Integer::intValue ).toArray() );
+            header.addStringArray( RpmHeader.REQUIREVERSION, requireVersions );
+            header.addString( RpmHeader.PAYLOADFORMAT, "cpio" );
+            header.addString( RpmHeader.PAYLOADCOMPRESSOR, "gzip" );
+            header.addString( RpmHeader.PAYLOADFLAGS, String.valueOf( level ) );
+            header.addStringArray( RpmHeader.PAYLOADDIGEST, Arrays.asList( Strings.toHex( payloadDigest.digest() ) ) );
+            header.addInt32( RpmHeader.PAYLOADDIGESTALGO, DIGEST_SHA256 );
+            byte[] main = header.toByteArray( RpmHeader.HEADERIMMUTABLE );
+
+            // the MD5 of the signature is calculated over the main header and the payload
+            MessageDigest md5 = createDigest( "MD5" );
+            md5.update( main );
+            try( InputStream input = Files.newInputStream( payloadFile.toPath() ) ) {
+                byte[] buffer = new byte[64 * 1024];
+                int count;
+                while( (count = input.read( buffer )) > 0 ) {
+                    md5.update( buffer, 0, count );
+                }
+            }
+
+            RpmHeader signature = new RpmHeader();
+            long size = main.length + payloadFile.length();
+            if( size > 0xFFFFFFFFL ) {
+                signature.addInt64( RpmHeader.SIG_LONGSIZE, size );
+            } else {
+                signature.addInt32( RpmHeader.SIG_SIZE, (int)size );
+            }
+            if( payload.getSize() > 0xFFFFFFFFL ) {
+                signature.addInt64( RpmHeader.SIG_LONGARCHIVESIZE, payload.getSize() );
+            } else {
+                signature.addInt32( RpmHeader.SIG_PAYLOADSIZE, (int)payload.getSize() );
+            }
+            signature.addBinary( RpmHeader.SIG_MD5, md5.digest() );
+            signature.addString( RpmHeader.SIG_SHA1, Strings.toHex( createDigest( "SHA-1" ).digest( main ) ) );
+            signature.addString( RpmHeader.SIG_SHA256, Strings.toHex( createDigest( "SHA-256" ).digest( main ) ) );
+            byte[] sig = signature.toByteArray( RpmHeader.HEADERSIGNATURES );
+
+            rpmFile.getParentFile().mkdirs();
+            try( OutputStream out = new BufferedOutputStream( new FileOutputStream( rpmFile ), 64 * 1024 ) ) {
+                out.write( createLead( leadName ) );
+                out.write( sig );
+                out.write( new byte[(8 - sig.length % 8) % 8] );
+                out.write( main );
+                Files.copy( payloadFile.toPath(), out );
+            }
+        } finally {
+            Files.deleteIfExists( payloadFile.toPath() );
+        }
+    }
+
+    /**
+     * Close the payload if not already done and remove the temporary file. Used on errors.
+     */
+    @Override
+    public void close() throws IOException {
+        payload.close();
+        Files.deleteIfExists( payloadFile.toPath() );
+    }
+
+    /**
+     * Add the file list of the payload to the header. The files are sorted by its path like rpm expects it.
+     *
+     * @param header the main header
+     */
+    private void addFiles( RpmHeader header ) {
+        List<PackageManifest.Entry> entries = new ArrayList<>( manifest.getEntries() );
+        entries.sort( Comparator.comparing( PackageManifest.Entry::getPath ) );
+        int count = entries.size();
+
+        long[] sizes = new long[count];
+        short[] modes = new short[count];
+        int[] mtimes = new int[count];
+        int[] flags = new int[count];
+        int[] devices = new int[count];
+        int[] inodes = new int[count];
+        int[] dirIndexes = new int[count];
+        List<String> digests = new ArrayList<>();
+        List<String> linkTos = new ArrayList<>();
+        List<String> owners = new ArrayList<>();
+        List<String> langs = new ArrayList<>();
+        List<String> baseNames = new ArrayList<>();
+        List<String> dirNames = new ArrayList<>();
+        Map<String, Integer> dirIndex = new HashMap<>();
+        long totalSize = 0;
+
+        for( int i = 0; i < count; i++ ) {
+            PackageManifest.Entry entry = entries.get( i );
+            String path = entry.getPath();
+            int mode = entry.getMode();
+            if( entry.isDirectory() ) {
+                mode |= 040000;
+            } else if( entry.isSymlink() ) {
+                mode |= 0120000;
+                sizes[i] = entry.getLinkTarget().getBytes( StandardCharsets.UTF_8 ).length;
+            } else {
+                mode |= 0100000;
+                sizes[i] = entry.getSize();
+            }
+            totalSize += sizes[i];
+            modes[i] = (short)mode;
+            mtimes[i] = payload.getLastModified( path );
+            devices[i] = 1;
+            inodes[i] = payload.getInode( path );
+            digests.add( entry.isFile() ? (sha256 ? entry.getSha256() : entry.getMd5()) : "" );
+            linkTos.add( entry.isSymlink() ? entry.getLinkTarget() : "" );
+            owners.add( "root" );
+            langs.add( "" );
+
+            int idx = path.lastIndexOf( '/' );
+            String dirName = path.substring( 0, idx + 1 );
+            baseNames.add( path.substring( idx + 1 ) );
+            Integer dir = dirIndex.get( dirName );
+            if( dir == null ) {
+                dir = dirNames.size();
+                dirIndex.put( dirName, dir );
+                dirNames.add( dirName );
+            }
+            dirIndexes[i] = dir;
+        }
+
+        if( totalSize > 0xFFFFFFFFL ) {
+            header.addInt64( RpmHeader.LONGSIZE, totalSize );
+            header.addInt64( RpmHeader.LONGFILESIZES, sizes );
+        } else {
+            int[] intSizes = new int[count];
+            for( int i = 0; i < count; i++ ) {
+                intSizes[i] = (int)sizes[i];
+            }
+            header.addInt32( RpmHeader.SIZE, (int)totalSize );
+            header.addInt32( RpmHeader.FILESIZES, intSizes );
+        }
+        header.addInt16( RpmHeader.FILEMODES, modes );
+        header.addInt16( RpmHeader.FILERDEVS, new short[count] );
+        header.addInt32( RpmHeader.FILEMTIMES, mtimes );
+        header.addStringArray( RpmHeader.FILEDIGESTS, digests );
+        header.addStringArray( RpmHeader.FILELINKTOS, linkTos );
+        header.addInt32( RpmHeader.FILEFLAGS, flags );
+        header.addStringArray( RpmHeader.FILEUSERNAME, owners );
+        header.addStringArray( RpmHeader.FILEGROUPNAME, owners );
+        header.addInt32( RpmHeader.FILEDEVICES, devices );
+        header.addInt32( RpmHeader.FILEINODES, inodes );
+        header.addStringArray( RpmHeader.FILELANGS, langs );
+        header.addInt32( RpmHeader.DIRINDEXES, dirIndexes );
+        header.addStringArray( RpmHeader.BASENAMES, baseNames );
+        header.addStringArray( RpmHeader.DIRNAMES, dirNames );
+        header.addInt32( RpmHeader.FILEDIGESTALGO, sha256 ? DIGEST_SHA256 : DIGEST_MD5 );
+    }
+
+    /**
+     * Create the lead, the legacy 96 byte header at the start of every rpm file.
+     *
+     * @param name the name of the package
+     * @return the lead
+     */
+    private static byte[] createLead( String name ) {
+        ByteBuffer lead = ByteBuffer.allocate( 96 );
+        lead.put( new byte[] { (byte)0xed, (byte)0xab, (byte)0xee, (byte)0xdb, 3, 0 } );
+        lead.putShort( (short)0 ); // binary package
+        lead.putShort( (short)1 ); // architecture number, not evaluated by rpm
+        byte[] bytes = name.getBytes( StandardCharsets.UTF_8 );
+        lead.put( bytes, 0, Math.min( bytes.length, 65 ) );
+        lead.position( 76 );
+        lead.putShort( (short)1 ); // Linux
+        lead.putShort( (short)5 ); // signature in header format
+        return lead.array();
+    }
+
+    /**
+     * Add the children of a directory recursively.
+     *
+     * @param dir the directory
+     * @param path the absolute target path of the directory, empty for the root
+     * @throws IOException if an I/O error occurs
+     */
+    private void addChildren( Path dir, String path ) throws IOException {
+        try( Stream<Path> list = Files.list( dir ) ) {
+            for( Path child : (Iterable<Path>)list.sorted()::iterator ) {
+                String name = path + '/' + child.getFileName();
+                long lastModified = Files.getLastModifiedTime( child, LinkOption.NOFOLLOW_LINKS ).toMillis();
+                if( Files.isSymbolicLink( child ) ) {
+                    payload.writeSymlink( name, Files.readSymbolicLink( child ).toString(), lastModified );
+                } else if( Files.isDirectory( child ) ) {
+                    if( name.equals( installationRoot ) || name.startsWith( installationRoot + '/' ) ) {
+                        payload.writeDirectory( name, 0755, lastModified );
+                    }
+                    addChildren( child, name );
+                } else {
+                    int mode = isExecutable( child ) ? 0755 : 0644;
+                    try( InputStream input = Files.newInputStream( child ) ) {
+                        payload.writeFile( name, mode, Files.size( child ), lastModified, input );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the owner executable flag is set.
+     *
+     * @param path the file
+     * @return true, if executable
+     * @throws IOException if an I/O error occurs
+     */
+    private static boolean isExecutable( Path path ) throws IOException {
+        try {
+            return Files.getPosixFilePermissions( path ).contains( PosixFilePermission.OWNER_EXECUTE );
+        } catch( UnsupportedOperationException e ) {
+            return Files.isExecutable( path );
+        }
+    }
+
+    /**
+     * Create a message digest.
+     *
+     * @param algorithm the name of the algorithm
+     * @return the digest
+     */
+    private static MessageDigest createDigest( String algorithm ) {
+        try {
+            return MessageDigest.getInstance( algorithm );
+        } catch( NoSuchAlgorithmException ex ) {
+            throw new IllegalStateException( ex ); // every Java platform must support MD5, SHA-1 and SHA-256
+        }
+    }
+}
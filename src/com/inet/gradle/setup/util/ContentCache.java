@@ -0,0 +1,436 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * A persistent, content addressed cache for generated data like compressed package content or extracted archives. The
+ * key is a SHA-256 of the input. Every entry is a file or a directory in the cache directory. The last modified time of the files is used for the LRU
+ * eviction if the cache exceeds the maximum size. The cache directory can be shared by multiple builds and Gradle
+ * daemons. New entries are written to unique temporary files and the eviction is guarded by a lock file.
+ *
+ * @author Volker Berlin
+ */
+public class ContentCache {
+
+    private static final String                   LOCK_FILE    = ".lock";
+
+    /**
+     * Temporary files of running builds are never so old, older files are left over from aborted builds.
+     */
+    private static final long                     TEMP_MAX_AGE = TimeUnit.DAYS.toMillis( 1 );
+
+    private static final Map<File, DirectoryLock> LOCKS        = new ConcurrentHashMap<>();
+
+    private final File                            directory;
+
+    private final File                            tempDir;
+
+    private final long                            maxSize;
+
+    private final DirectoryLock                   lock;
+
+    private final AtomicInteger                   hits         = new AtomicInteger();
+
+    private final AtomicInteger                   misses       = new AtomicInteger();
+
+    /**
+     * Create a new cache.
+     *
+     * @param directory the directory of the cache, will be created if needed
+     * @param maxSize the maximum size in bytes
+     */
+    public ContentCache( File directory, long maxSize ) {
+        this.directory = directory;
+        this.tempDir = new File( directory, "tmp" );
+        this.maxSize = maxSize;
+        directory.mkdirs();
+        lock = LOCKS.computeIfAbsent( directory.getAbsoluteFile(), dir -> new DirectoryLock( new File( dir, LOCK_FILE ) ) );
+    }
+
+    /**
+     * Calculate a key from the content of a stream and additional values like the target path and mode.
+     *
+     * @param input the content, will be read to the end but not closed
+     * @param values additional values that must match
+     * @return the key as hex string
+     * @throws IOException if an I/O error occurs
+     */
+    public static String key( InputStream input, Object... values ) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        int count;
+        while( (count = input.read( buffer )) > 0 ) {
+            digest.update( buffer, 0, count );
+        }
+        for( Object value : values ) {
+            digest.update( (byte)0 );
+            digest.update( String.valueOf( value ).getBytes( StandardCharsets.UTF_8 ) );
+        }
+        return Strings.toHex( digest.digest() );
+    }
+
+    /**
+     * Get the cached data for the key.
+     *
+     * @param key the key
+     * @return the file or directory with the data or null if not cached
+     */
+    public File get( String key ) {
+        File file = new File( directory, key );
+        if( file.exists() ) {
+            file.setLastModified( System.currentTimeMillis() ); // for the LRU eviction
+            hits.incrementAndGet();
+            return file;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Create a stream for new data. Every call writes to its own temporary file, so that parallel builds, also of
+     * other Gradle daemons, can create the same entry. The data is only visible if the stream was closed and
+     * {@link #commit(String, File)} was called with the returned temporary file.
+     *
+     * @param key the key
+     * @return the temporary file
+     * @throws IOException if an I/O error occurs
+     */
+    public File createFile( String key ) throws IOException {
+        Files.createDirectories( tempDir.toPath() );
+        return Files.createTempFile( tempDir.toPath(), key, ".tmp" ).toFile();
+    }
+
+    /**
+     * Create an empty directory for new data. The data is only visible if {@link #commit(String, File)} was called
+     * with the returned directory.
+     *
+     * @param key the key
+     * @return the temporary directory
+     * @throws IOException if an I/O error occurs
+     */
+    public File createDirectory( String key ) throws IOException {
+        Files.createDirectories( tempDir.toPath() );
+        return Files.createTempDirectory( tempDir.toPath(), key ).toFile();
+    }
+
+    /**
+     * Make the data of a temporary file from {@link #createFile(String)} or of a directory from
+     * {@link #createDirectory(String)} visible with an atomic move. If the entry was committed in the meantime by
+     * another build then the temporary data are removed, the content is the same because the key is equals.
+     *
+     * @param key the key
+     * @param temp the temporary file or directory
+     * @return the file or directory with the data
+     * @throws IOException if an I/O error occurs
+     */
+    public File commit( String key, File temp ) throws IOException {
+        File file = new File( directory, key );
+        try {
+            Files.move( temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE );
+        } catch( IOException ex ) {
+            if( !file.exists() ) {
+                throw ex;
+            }
+            delete( temp );
+        }
+        return file;
+    }
+
+    /**
+     * Hold a shared lock on the cache directory while cached entries are read or linked. Entries are not evicted while
+     * any build holds the shared lock, also not by other Gradle daemons. The lock must be closed in the same thread.
+     * {@link #evict()} must not be called while the current thread holds the lock.
+     *
+     * @return the lock that must be closed
+     * @throws IOException if an I/O error occurs
+     */
+    public Closeable lockShared() throws IOException {
+        return lock.lockShared();
+    }
+
+    /**
+     * Remove the least recently used entries until the cache is not larger as the maximum size. Left over temporary
+     * files of aborted builds are removed also. The eviction is skipped if the cache is currently used by another build.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void evict() throws IOException {
+        lock.tryLockExclusive( () -> {
+            File[] temps = tempDir.listFiles();
+            if( temps != null ) {
+                long oldest = System.currentTimeMillis() - TEMP_MAX_AGE;
+                for( File temp : temps ) {
+                    if( temp.lastModified() < oldest ) {
+                        delete( temp );
+                    }
+                }
+            }
+
+            File[] files = directory.listFiles( file -> !file.equals( tempDir ) && !file.getName().equals( LOCK_FILE ) );
+            if( files == null ) {
+                return;
+            }
+            Arrays.sort( files, Comparator.comparingLong( File::lastModified ).reversed() );
+            long size = 0;
+            for( File file : files ) {
+                size += size( file.toPath() );
+                if( size > maxSize ) {
+                    delete( file );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Get the directory of the cache.
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the maximum size of the cache.
+     *
+     * @return the size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the count of cache hits.
+     *
+     * @return the hits
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the count of cache misses.
+     *
+     * @return the misses
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Delete a file or a directory recursively.
+     *
+     * @param file the file or directory
+     * @throws IOException if an I/O error occurs
+     */
+    private static void delete( File file ) throws IOException {
+        if( file.isDirectory() ) {
+            ResourceUtils.deleteDirectory( file.toPath() );
+        } else {
+            file.delete();
+        }
+    }
+
+    /**
+     * Calculate the size of a file or of all files in a directory.
+     *
+     * @param path the file or directory
+     * @return the size in bytes
+     * @throws IOException if an I/O error occurs
+     */
+    private static long size( Path path ) throws IOException {
+        if( !Files.isDirectory( path, LinkOption.NOFOLLOW_LINKS ) ) {
+            return Files.size( path );
+        }
+        try( Stream<Path> files = Files.walk( path ) ) {
+            return files.filter( file -> Files.isRegularFile( file, LinkOption.NOFOLLOW_LINKS ) ).mapToLong( file -> file.toFile().length() ).sum();
+        }
+    }
+
+    /**
+     * Create a SHA-256 digest.
+     *
+     * @return the digest
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance( "SHA-256" );
+        } catch( NoSuchAlgorithmException ex ) {
+            throw new IllegalStateException( ex ); // every Java platform must support SHA-256
+        }
+    }
+
+    /**
+     * An action on the cache directory.
+     */
+    @FunctionalInterface
+    private interface Action {
+        /**
+         * Run the action.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * The lock of a cache directory. It combines a lock for the threads of this JVM with a lock on the lock file for
+     * other processes. A file lock can be hold only once per JVM, so the first shared user acquires it and the last
+     * shared user releases it.
+     */
+    private static class DirectoryLock {
+
+        private final ReentrantReadWriteLock local = new ReentrantReadWriteLock();
+
+        private final File                   file;
+
+        private int                          sharedCount;
+
+        private FileChannel                  sharedChannel;
+
+        /**
+         * Create the lock.
+         *
+         * @param file the lock file
+         */
+        private DirectoryLock( File file ) {
+            this.file = file;
+        }
+
+        /**
+         * Acquire the shared lock, wait if needed.
+         *
+         * @return the lock that must be closed in the same thread
+         * @throws IOException if an I/O error occurs
+         */
+        private Closeable lockShared() throws IOException {
+            local.readLock().lock();
+            try {
+                synchronized( this ) {
+                    if( sharedCount == 0 ) {
+                        sharedChannel = openChannel();
+                        try {
+                            lockFile( sharedChannel );
+                        } catch( IOException | RuntimeException ex ) {
+                            sharedChannel.close();
+                            throw ex;
+                        }
+                    }
+                    sharedCount++;
+                }
+            } catch( IOException | RuntimeException ex ) {
+                local.readLock().unlock();
+                throw ex;
+            }
+            return () -> {
+                try {
+                    synchronized( this ) {
+                        if( --sharedCount == 0 ) {
+                            sharedChannel.close(); // release the file lock
+                            sharedChannel = null;
+                        }
+                    }
+                } finally {
+                    local.readLock().unlock();
+                }
+            };
+        }
+
+        /**
+         * Run the action with the exclusive lock if the lock is free. This never wait to prevent dead locks with the
+         * shared lock of the current thread.
+         *
+         * @param action the action
+         * @throws IOException if an I/O error occurs
+         */
+        private void tryLockExclusive( Action action ) throws IOException {
+            if( !local.writeLock().tryLock() ) {
+                return;
+            }
+            try( FileChannel channel = openChannel() ) {
+                FileLock fileLock;
+                try {
+                    fileLock = channel.tryLock();
+                } catch( OverlappingFileLockException ex ) {
+                    return; // locked by a plugin instance of another class loader in this JVM
+                }
+                if( fileLock != null ) {
+                    action.run();
+                }
+            } finally {
+                local.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Open the lock file.
+         *
+         * @return the channel
+         * @throws IOException if an I/O error occurs
+         */
+        private FileChannel openChannel() throws IOException {
+            return FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+        }
+
+        /**
+         * Acquire a shared file lock. If a plugin instance of another class loader in this JVM holds a lock then it
+         * is retried because the file lock can not be acquired twice per JVM.
+         *
+         * @param channel the channel of the lock file
+         * @throws IOException if an I/O error occurs
+         */
+        private static void lockFile( FileChannel channel ) throws IOException {
+            while( true ) {
+                try {
+                    channel.lock( 0, Long.MAX_VALUE, true );
+                    return;
+                } catch( OverlappingFileLockException ex ) {
+                    try {
+                        Thread.sleep( 50 );
+                    } catch( InterruptedException ie ) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+            }
+        }
+    }
+}
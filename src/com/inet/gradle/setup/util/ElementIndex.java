@@ -0,0 +1,165 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.util;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Index of the child elements of DOM nodes for the lookups of the {@link XmlFileBuilder}. For every parent node and
+ * every combination of element name and key attribute there is a map from the attribute value to the first element in
+ * document order. The map is created with a single scan of the children on the first lookup and updated if the
+ * builder add a child. A found element is verified against the DOM. If it was moved or changed in the meantime then
+ * the map is scanned again.
+ *
+ * @author Volker Berlin
+ */
+class ElementIndex {
+
+    /** Value key for elements without the key attribute and for the lookup by name only. */
+    private static final String                                NO_VALUE = "\u0000";
+
+    private final Map<Node, Map<String, Map<String, Element>>> parents  = new IdentityHashMap<>();
+
+    /**
+     * Find the first child element with the given name and attribute value.
+     *
+     * @param parent the parent node
+     * @param name the tag name of the element
+     * @param key the name of the attribute or null to find the first element with the name
+     * @param value the value of the attribute, null for elements without the attribute
+     * @return the element or null if there is no such child
+     */
+    Element find( Node parent, String name, String key, String value ) {
+        Map<String, Map<String, Element>> combos = parents.computeIfAbsent( parent, p -> new HashMap<>() );
+        String combo = combo( name, key );
+        Map<String, Element> values = combos.get( combo );
+        if( values == null ) {
+            values = scan( parent, name, key );
+            combos.put( combo, values );
+        }
+        Element element = values.get( valueKey( key, value ) );
+        if( element != null && !matches( element, parent, name, key, value ) ) {
+            values = scan( parent, name, key );
+            combos.put( combo, values );
+            element = values.get( valueKey( key, value ) );
+        }
+        return element;
+    }
+
+    /**
+     * Update the index after the builder has added a child element.
+     *
+     * @param parent the parent node
+     * @param child the new child element
+     * @param key the name of the attribute that was set on creation or null
+     */
+    void added( Node parent, Element child, String key ) {
+        Map<String, Map<String, Element>> combos = parents.get( parent );
+        if( combos == null ) {
+            return; // nothing indexed for this parent yet
+        }
+        boolean first = parent.getFirstChild() == child;
+        String name = child.getNodeName();
+        String prefix = name + '\u0000';
+        for( Iterator<Map.Entry<String, Map<String, Element>>> it = combos.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Map<String, Element>> entry = it.next();
+            String combo = entry.getKey();
+            if( !combo.startsWith( prefix ) ) {
+                continue;
+            }
+            String comboKey = combo.length() == prefix.length() ? null : combo.substring( prefix.length() );
+            if( comboKey == null || comboKey.equals( key ) ) {
+                String valueKey = valueKey( comboKey, comboKey == null || !child.hasAttribute( comboKey ) ? null : child.getAttribute( comboKey ) );
+                if( first ) {
+                    entry.getValue().put( valueKey, child );
+                } else {
+                    entry.getValue().putIfAbsent( valueKey, child );
+                }
+            } else {
+                // other attributes can be set later by the caller
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Create the map for a combination of name and key with a single scan of the children.
+     *
+     * @param parent the parent node
+     * @param name the tag name of the elements
+     * @param key the name of the attribute or null
+     * @return the map from the value key to the first element
+     */
+    private static Map<String, Element> scan( Node parent, String name, String key ) {
+        Map<String, Element> values = new HashMap<>();
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( name.equals( child.getNodeName() ) ) {
+                Element element = (Element)child;
+                String value = key == null || !element.hasAttribute( key ) ? null : element.getAttribute( key );
+                values.putIfAbsent( valueKey( key, value ), element );
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Check if an element of the index still match the DOM.
+     *
+     * @param element the element
+     * @param parent the expected parent
+     * @param name the expected name
+     * @param key the name of the attribute or null
+     * @param value the expected value
+     * @return true, if it match
+     */
+    private static boolean matches( Element element, Node parent, String name, String key, String value ) {
+        if( element.getParentNode() != parent || !name.equals( element.getNodeName() ) ) {
+            return false;
+        }
+        if( key == null ) {
+            return true;
+        }
+        return value == null ? !element.hasAttribute( key ) : element.hasAttribute( key ) && value.equals( element.getAttribute( key ) );
+    }
+
+    /**
+     * The key of the map for a combination of name and key attribute.
+     *
+     * @param name the tag name
+     * @param key the name of the attribute or null
+     * @return the combination
+     */
+    private static String combo( String name, String key ) {
+        return key == null ? name + '\u0000' : name + '\u0000' + key;
+    }
+
+    /**
+     * The key of an attribute value in the map.
+     *
+     * @param key the name of the attribute or null
+     * @param value the value or null
+     * @return the value key
+     */
+    private static String valueKey( String key, String value ) {
+        return key == null || value == null ? NO_VALUE : value;
+    }
+}
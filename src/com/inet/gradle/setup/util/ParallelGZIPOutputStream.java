@@ -0,0 +1,292 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A gzip OutputStream that compress the data in independent blocks on multiple threads. Every block is written as a
+ * complete gzip member. The concatenation of gzip members is a valid gzip file (RFC 1952) that can be read by gzip,
+ * zlib, dpkg and rpm.
+ *
+ * @author Volker Berlin
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+    private static final int                BLOCK_SIZE = 1024 * 1024;
+
+    private final OutputStream              out;
+
+    private final int                       level;
+
+    private final ForkJoinPool              pool;
+
+    private final int                       maxPending;
+
+    private final ArrayDeque<Future<byte[]>> pending   = new ArrayDeque<>();
+
+    private byte[]                          block      = new byte[BLOCK_SIZE];
+
+    private int                             count;
+
+    private boolean                         hasMember;
+
+    private boolean                         closed;
+
+    private OutputStream                    capture;
+
+    /**
+     * Create a new instance.
+     *
+     * @param out the underlying stream
+     * @param level the compression level 0 - 9 or -1 for the default level
+     * @param threads the count of compressing threads, 0 or less for the count of available processors
+     */
+    public ParallelGZIPOutputStream( OutputStream out, int level, int threads ) {
+        this.out = out;
+        this.level = level;
+        if( threads <= 0 ) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        this.pool = threads > 1 ? new ForkJoinPool( threads ) : null;
+        this.maxPending = 2 * threads;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write( int b ) throws IOException {
+        block[count++] = (byte)b;
+        if( count == BLOCK_SIZE ) {
+            submitBlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+        while( len > 0 ) {
+            int size = Math.min( len, BLOCK_SIZE - count );
+            System.arraycopy( b, off, block, count, size );
+            count += size;
+            off += size;
+            len -= size;
+            if( count == BLOCK_SIZE ) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Compress the buffered data as its own member so that following data starts in a new member.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void finishMember() throws IOException {
+        if( count > 0 ) {
+            submitBlock();
+        }
+    }
+
+    /**
+     * Write the members of all following data additionally to the capture stream until {@link #endCapture()} is
+     * called. The captured members can later be inserted with {@link #writeMembers(InputStream)}.
+     *
+     * @param capture the stream that receive a copy of the compressed data
+     * @throws IOException if an I/O error occurs
+     */
+    public void startCapture( OutputStream capture ) throws IOException {
+        finishMember();
+        flush();
+        this.capture = capture;
+    }
+
+    /**
+     * End the capturing of compressed members. The capture stream is not closed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void endCapture() throws IOException {
+        finishMember();
+        flush();
+        capture = null;
+    }
+
+    /**
+     * Insert already compressed gzip members, for example from a previous capture.
+     *
+     * @param members the compressed data
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeMembers( InputStream members ) throws IOException {
+        finishMember();
+        flush();
+        byte[] buffer = new byte[64 * 1024];
+        int size;
+        while( (size = members.read( buffer )) > 0 ) {
+            out.write( buffer, 0, size );
+        }
+        hasMember = true;
+    }
+
+    /**
+     * Write all compressed blocks. The last incomplete block is not compressed because this would reduce the
+     * compression ratio.
+     */
+    @Override
+    public void flush() throws IOException {
+        while( !pending.isEmpty() ) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    /**
+     * Compress the remaining data, write all blocks and close the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if( closed ) {
+            return;
+        }
+        closed = true;
+        try {
+            if( count > 0 || !hasMember ) {
+                submitBlock();
+            }
+            flush();
+        } finally {
+            if( pool != null ) {
+                pool.shutdownNow();
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * Compress the current block in the background and write finished blocks.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = count;
+        hasMember = true;
+        if( pool == null ) {
+            writeMember( compress( data, length, level ) );
+        } else {
+            pending.add( pool.submit( () -> compress( data, length, level ) ) );
+            block = new byte[BLOCK_SIZE];
+            while( pending.size() >= maxPending || (!pending.isEmpty() && pending.peek().isDone()) ) {
+                writeNext();
+            }
+        }
+        count = 0;
+    }
+
+    /**
+     * Wait for the oldest block and write it.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeNext() throws IOException {
+        try {
+            writeMember( pending.poll().get() );
+        } catch( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( ex );
+        } catch( ExecutionException ex ) {
+            throw new IOException( ex.getCause() );
+        }
+    }
+
+    /**
+     * Write a compressed member to the output and the capture stream.
+     *
+     * @param member the member
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeMember( byte[] member ) throws IOException {
+        out.write( member );
+        if( capture != null ) {
+            capture.write( member );
+        }
+    }
+
+    /**
+     * Compress a block as a complete gzip member.
+     *
+     * @param data the data
+     * @param length the used length of the data
+     * @param level the compression level
+     * @return the gzip member
+     */
+    static byte[] compress( byte[] data, int length, int level ) {
+        ByteArrayOutputStream member = new ByteArrayOutputStream( length / 2 + 64 );
+        // header: magic, deflate, no flags, no mtime, no extra flags, unknown OS
+        member.write( 0x1f );
+        member.write( 0x8b );
+        member.write( Deflater.DEFLATED );
+        for( int i = 0; i < 6; i++ ) {
+            member.write( 0 );
+        }
+        member.write( 0xff );
+
+        Deflater deflater = new Deflater( level, true );
+        try {
+            deflater.setInput( data, 0, length );
+            deflater.finish();
+            byte[] buffer = new byte[64 * 1024];
+            while( !deflater.finished() ) {
+                int size = deflater.deflate( buffer );
+                member.write( buffer, 0, size );
+            }
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update( data, 0, length );
+        writeInt( member, (int)crc.getValue() );
+        writeInt( member, length );
+        return member.toByteArray();
+    }
+
+    /**
+     * Write an int in little endian.
+     *
+     * @param out the target
+     * @param value the value
+     */
+    private static void writeInt( ByteArrayOutputStream out, int value ) {
+        out.write( value );
+        out.write( value >> 8 );
+        out.write( value >> 16 );
+        out.write( value >> 24 );
+    }
+}
@@ -231,4 +231,47 @@ public class ResourceUtils {
             }
         }
     }
+
+    /**
+     * Recursively link the files from source to destination. Files are created as hard links which share the content
+     * with the source and require no copy of the data. If the file system does not support hard links, for example
+     * between different file systems, then the files are copied. Symbolic links are preserved.
+     *
+     * @param source the source directory
+     * @param destination the destination directory
+     * @throws IOException if an I/O error occurs
+     */
+    public static void link( File source, File destination ) throws IOException {
+        Path sourcePath = source.toPath();
+        Path destinationPath = destination.toPath();
+        Files.walkFileTree( sourcePath, new SimpleFileVisitor<Path>() {
+            private boolean copy;
+
+            @Override
+            public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs ) throws IOException {
+                Files.createDirectories( destinationPath.resolve( sourcePath.relativize( dir ) ) );
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) throws IOException {
+                Path target = destinationPath.resolve( sourcePath.relativize( file ) );
+                Files.deleteIfExists( target );
+                if( attrs.isSymbolicLink() ) {
+                    Files.createSymbolicLink( target, Files.readSymbolicLink( file ) );
+                    return FileVisitResult.CONTINUE;
+                }
+                if( !copy ) {
+                    try {
+                        Files.createLink( target, file );
+                        return FileVisitResult.CONTINUE;
+                    } catch( IOException | UnsupportedOperationException ex ) {
+                        copy = true; // no hard links possible, copy this and all following files
+                    }
+                }
+                Files.copy( file, target, StandardCopyOption.COPY_ATTRIBUTES );
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
 }
@@ -8,4 +8,12 @@ public final class Strings {
     public static String defaultString( String string, String fallback ) {
         return string != null ? string : fallback;
     }
+
+    public static String toHex( byte[] bytes ) {
+        StringBuilder hex = new StringBuilder( bytes.length * 2 );
+        for( byte b : bytes ) {
+            hex.append( Character.forDigit( (b >> 4) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return hex.toString();
+    }
 }
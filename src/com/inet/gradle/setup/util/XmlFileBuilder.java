@@ -15,20 +15,29 @@
  */
 package com.inet.gradle.setup.util;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.Objects;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 import com.inet.gradle.setup.SetupBuilder;
@@ -42,15 +51,17 @@ import com.inet.gradle.setup.abstracts.AbstractSetupTask;
  */
 public class XmlFileBuilder<T extends AbstractSetupTask> {
 
-    public final T            task;
+    public final T             task;
 
-    public final SetupBuilder setup;
+    public final SetupBuilder  setup;
 
-    public final File         xmlFile;
+    public final File          xmlFile;
 
-    public final File         buildDir;
+    public final File          buildDir;
 
-    public final Document     doc;
+    public final Document      doc;
+
+    private final ElementIndex index = new ElementIndex();
 
     public XmlFileBuilder( T task, SetupBuilder setup, File xmlFile, File buildDir, URL template ) throws Exception {
         this.task = task;
@@ -81,6 +92,185 @@ public class XmlFileBuilder<T extends AbstractSetupTask> {
 
     }
 
+    /**
+     * Save the XML file with a StAX writer. Other as {@link #save()} there is no transformer that copy the DOM and a
+     * subclass can stream additional children of an element that are not part of the DOM.
+     *
+     * @throws Exception if any error occur
+     * @see #hasStreamedChildren(Element)
+     * @see #writeStreamedChildren(Element, XMLStreamWriter, int)
+     * @see #isSkipped(Element)
+     */
+    public void saveStreaming() throws Exception {
+        saveStreaming( xmlFile );
+    }
+
+    /**
+     * Save the XML with a StAX writer to another file. This can be used to write multiple variants of the same DOM.
+     *
+     * @param file the target file
+     * @throws Exception if any error occur
+     * @see #saveStreaming()
+     */
+    public void saveStreaming( File file ) throws Exception {
+        try( OutputStream out = new BufferedOutputStream( Files.newOutputStream( file.toPath() ), 64 * 1024 ) ) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter( out, "UTF-8" );
+            writer.writeStartDocument( "UTF-8", "1.0" );
+            for( Node child = doc.getFirstChild(); child != null; child = child.getNextSibling() ) {
+                newLine( writer, 0 );
+                writeNode( writer, child, 0 );
+            }
+            newLine( writer, 0 );
+            writer.writeEndDocument();
+            writer.close();
+        }
+    }
+
+    /**
+     * If the element has additional children that are not part of the DOM.
+     *
+     * @param element the element
+     * @return true, if {@link #writeStreamedChildren(Element, XMLStreamWriter, int)} should be called
+     */
+    protected boolean hasStreamedChildren( Element element ) {
+        return false;
+    }
+
+    /**
+     * If an element of the DOM and all its children should not be written by {@link #saveStreaming()}.
+     *
+     * @param element the element
+     * @return true, if the element is omitted
+     */
+    protected boolean isSkipped( Element element ) {
+        return false;
+    }
+
+    /**
+     * Write the additional children of an element after its children from the DOM. Every child should start with
+     * {@link #newLine(XMLStreamWriter, int)}.
+     *
+     * @param element the element
+     * @param writer the writer
+     * @param depth the depth of the children
+     * @throws Exception if any error occur
+     */
+    protected void writeStreamedChildren( Element element, XMLStreamWriter writer, int depth ) throws Exception {
+        // nothing
+    }
+
+    /**
+     * Write a line break and the indentation.
+     *
+     * @param writer the writer
+     * @param depth the depth of the next node
+     * @throws XMLStreamException if any error occur
+     */
+    protected static void newLine( XMLStreamWriter writer, int depth ) throws XMLStreamException {
+        StringBuilder builder = new StringBuilder( 1 + depth * 2 ).append( '\n' );
+        for( int i = 0; i < depth; i++ ) {
+            builder.append( "  " );
+        }
+        writer.writeCharacters( builder.toString() );
+    }
+
+    /**
+     * Write a DOM node and all its children.
+     *
+     * @param writer the writer
+     * @param node the node
+     * @param depth the depth of the node
+     * @throws Exception if any error occur
+     */
+    private void writeNode( XMLStreamWriter writer, Node node, int depth ) throws Exception {
+        switch( node.getNodeType() ) {
+            case Node.ELEMENT_NODE:
+                writeElement( writer, (Element)node, depth );
+                break;
+            case Node.TEXT_NODE:
+                writer.writeCharacters( node.getNodeValue() );
+                break;
+            case Node.CDATA_SECTION_NODE:
+                String data = node.getNodeValue();
+                if( data.contains( "]]>" ) ) {
+                    writer.writeCharacters( data );
+                } else {
+                    writer.writeCData( data );
+                }
+                break;
+            case Node.COMMENT_NODE:
+                writer.writeComment( node.getNodeValue() );
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                writer.writeProcessingInstruction( node.getNodeName(), node.getNodeValue() );
+                break;
+            case Node.DOCUMENT_TYPE_NODE:
+                DocumentType docType = (DocumentType)node;
+                StringBuilder dtd = new StringBuilder( "<!DOCTYPE " ).append( docType.getName() );
+                if( docType.getPublicId() != null ) {
+                    dtd.append( " PUBLIC \"" ).append( docType.getPublicId() ).append( "\" \"" ).append( docType.getSystemId() ).append( '"' );
+                } else if( docType.getSystemId() != null ) {
+                    dtd.append( " SYSTEM \"" ).append( docType.getSystemId() ).append( '"' );
+                }
+                writer.writeDTD( dtd.append( '>' ).toString() );
+                break;
+            default:
+                // entity references are already resolved by the parser
+        }
+    }
+
+    /**
+     * Write an element. Whitespace between child nodes is replaced with the indentation. An element with text only is
+     * written in one line.
+     *
+     * @param writer the writer
+     * @param element the element
+     * @param depth the depth of the element
+     * @throws Exception if any error occur
+     */
+    private void writeElement( XMLStreamWriter writer, Element element, int depth ) throws Exception {
+        boolean streamed = hasStreamedChildren( element );
+        boolean textOnly = !streamed;
+        for( Node child = element.getFirstChild(); child != null && textOnly; child = child.getNextSibling() ) {
+            short type = child.getNodeType();
+            textOnly = type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE;
+        }
+        if( textOnly && !element.hasChildNodes() ) {
+            writer.writeEmptyElement( element.getNodeName() );
+        } else {
+            writer.writeStartElement( element.getNodeName() );
+        }
+        NamedNodeMap attributes = element.getAttributes();
+        for( int i = 0; i < attributes.getLength(); i++ ) {
+            Attr attr = (Attr)attributes.item( i );
+            writer.writeAttribute( attr.getName(), attr.getValue() );
+        }
+        if( textOnly ) {
+            if( element.hasChildNodes() ) {
+                for( Node child = element.getFirstChild(); child != null; child = child.getNextSibling() ) {
+                    writeNode( writer, child, depth + 1 );
+                }
+                writer.writeEndElement();
+            }
+            return;
+        }
+        for( Node child = element.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().trim().isEmpty() ) {
+                continue;
+            }
+            if( child.getNodeType() == Node.ELEMENT_NODE && isSkipped( (Element)child ) ) {
+                continue;
+            }
+            newLine( writer, depth + 1 );
+            writeNode( writer, child, depth + 1 );
+        }
+        if( streamed ) {
+            writeStreamedChildren( element, writer, depth + 1 );
+        }
+        newLine( writer, depth );
+        writer.writeEndElement();
+    }
+
     /**
      * Add a attribute if not exists.
      *
@@ -109,11 +299,9 @@ public class XmlFileBuilder<T extends AbstractSetupTask> {
     }
 
     public Element getOrCreateChild( Node parent, String name, boolean append ) {
-        Node first = parent.getFirstChild();
-        for( Node child = first; child != null; child = child.getNextSibling() ) {
-            if( name.equals( child.getNodeName() ) ) {
-                return (Element)child;
-            }
+        Element child = index.find( parent, name, null, null );
+        if( child != null ) {
+            return child;
         }
         return createChild( parent, name, append );
     }
@@ -149,9 +337,23 @@ public class XmlFileBuilder<T extends AbstractSetupTask> {
         } else {
             parent.insertBefore( child, first );
         }
+        index.added( parent, child, null );
         return child;
     }
 
+    /**
+     * Get a child element with an attribute value.
+     *
+     * @param parent the parent node in which we search
+     * @param name The tag name of the element
+     * @param key the name of an attribute, can't be null
+     * @param value the value, can't be null or empty
+     * @return the first matching element or null
+     */
+    public Element getChildByKeyValue( Node parent, String name, String key, String value ) {
+        return index.find( parent, name, key, value );
+    }
+
     public Element getOrCreateChildById( Node parent, String name, String id ) {
         return getOrCreateChildByKeyValue( parent, name, "Id", id, true );
     }
@@ -165,7 +367,9 @@ public class XmlFileBuilder<T extends AbstractSetupTask> {
     }
 
     /**
-     * Get or create a child element.
+     * Get or create a child element. The children are indexed, the first call for a parent, name and key scan the
+     * children and all following calls are a hash lookup. The key attribute of the returned element should not be
+     * changed.
      *
      * @param parent the parent node in which we search and create
      * @param name The tag name of the element
@@ -176,12 +380,20 @@ public class XmlFileBuilder<T extends AbstractSetupTask> {
      */
     public Element getOrCreateChildByKeyValue( Node parent, String name, String key, String value, boolean append ) {
         Node first = parent.getFirstChild();
-        for( Node child = first; child != null; child = child.getNextSibling() ) {
-            if( name.equals( child.getNodeName() ) ) {
-                if( Objects.equals( value, ((Element)child).getAttribute( key ) ) || (value == null && !((Element)child).hasAttribute( key )) ) {
-                    return (Element)child;
+        if( "".equals( value ) ) {
+            // an empty value match also elements without the attribute, this is not indexed
+            for( Node child = first; child != null; child = child.getNextSibling() ) {
+                if( name.equals( child.getNodeName() ) ) {
+                    if( Objects.equals( value, ((Element)child).getAttribute( key ) ) ) {
+                        return (Element)child;
+                    }
                 }
             }
+        } else {
+            Element child = index.find( parent, name, key, value );
+            if( child != null ) {
+                return child;
+            }
         }
         Document doc = parent.getOwnerDocument();
         Element child = doc.createElement( name );
@@ -193,6 +405,7 @@ public class XmlFileBuilder<T extends AbstractSetupTask> {
         } else {
             parent.insertBefore( child, first );
         }
+        index.added( parent, child, key );
         return child;
     }
 
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Run steps in the background and check the log order and the handling of a failed step.
+ *
+ * @author Volker Berlin
+ */
+public class AsyncStepsTest {
+
+    private final List<String> logs = Collections.synchronizedList( new ArrayList<>() );
+
+    /**
+     * Write a line into the log of the current step.
+     *
+     * @param line the line
+     */
+    private static void log( String line ) {
+        byte[] data = (line + '\n').getBytes( StandardCharsets.UTF_8 );
+        AsyncSteps.currentLog().write( data, 0, data.length );
+    }
+
+    @Test
+    public void logOrder() throws Exception {
+        AsyncSteps steps = new AsyncSteps( 3, "test", logs::add );
+        CountDownLatch last = new CountDownLatch( 1 );
+        Future<String> first = steps.submit( () -> {
+            last.await(); // finish after the last step
+            log( "first" );
+            return "a";
+        } );
+        steps.submit( () -> {
+            log( "second" );
+            return "b";
+        } );
+        Future<String> third = steps.submit( () -> {
+            log( "third" );
+            last.countDown();
+            return "c";
+        } );
+        steps.await();
+        assertEquals( Arrays.asList( "first", "second", "third" ), logs );
+        assertEquals( "a", first.get() );
+        assertEquals( "c", third.get() );
+
+        // the instance can be reused after await
+        Future<Integer> again = steps.submit( () -> 42 );
+        steps.await();
+        assertEquals( 42, (int)again.get() );
+    }
+
+    @Test
+    public void failedStep() throws Exception {
+        AsyncSteps steps = new AsyncSteps( 1, "test", logs::add );
+        IllegalStateException error = new IllegalStateException( "failed" );
+        steps.submit( () -> {
+            log( "ok" );
+            return null;
+        } );
+        Future<Object> failed = steps.submit( () -> {
+            log( "before the failure" );
+            throw error;
+        } );
+        AtomicBoolean skipped = new AtomicBoolean( true );
+        steps.submit( () -> {
+            skipped.set( false );
+            return null;
+        } );
+        try {
+            steps.await();
+            fail( "exception expected" );
+        } catch( IllegalStateException ex ) {
+            assertSame( "the original exception and not a CancellationException", error, ex );
+        }
+        assertTrue( "a step after the failure is not started", skipped.get() );
+        assertFalse( "the failed step is not canceled", failed.isCancelled() );
+        assertEquals( Arrays.asList( "ok", "before the failure" ), logs );
+
+        // the failure is reset
+        steps.submit( () -> null );
+        steps.await();
+    }
+
+    @Test
+    public void checkedException() {
+        AsyncSteps steps = new AsyncSteps( 2, "test", logs::add );
+        Exception error = new Exception( "checked" );
+        steps.submit( () -> {
+            throw error;
+        } );
+        try {
+            steps.await();
+            fail( "exception expected" );
+        } catch( RuntimeException ex ) {
+            assertSame( error, ex.getCause() );
+        }
+    }
+
+    @Test
+    public void failureWhileWaiting() throws Exception {
+        AsyncSteps steps = new AsyncSteps( 1, "test", logs::add );
+        CountDownLatch waiting = new CountDownLatch( 1 );
+        AtomicBoolean skipped = new AtomicBoolean( true );
+        Thread thread = new Thread( () -> {
+            try {
+                waiting.await();
+                Thread.sleep( 100 ); // give await() the time to block
+            } catch( InterruptedException ex ) {
+                // ignore
+            }
+        } );
+        steps.submit( () -> {
+            waiting.countDown();
+            thread.join();
+            throw new IllegalArgumentException( "late" );
+        } );
+        steps.submit( () -> {
+            skipped.set( false );
+            return null;
+        } );
+        thread.start();
+        try {
+            steps.await();
+            fail( "exception expected" );
+        } catch( IllegalArgumentException ex ) {
+            assertEquals( "late", ex.getMessage() );
+        }
+        assertTrue( "the registered step is skipped", skipped.get() );
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import java.io.File;
+
+/**
+ * Create entries for the tests of the package writers without a CopySpec.
+ *
+ * @author Volker Berlin
+ */
+public class PackageEntries {
+
+    /**
+     * Create an entry for a file.
+     *
+     * @param file the file
+     * @param directory the directory relative to the target root, null or empty for the root
+     * @param targetRoot the root in the package
+     * @return the entry
+     */
+    public static PackageEntry of( File file, String directory, String targetRoot ) {
+        return PackageEntry.generated( file, directory ).withTargetRoot( targetRoot );
+    }
+}
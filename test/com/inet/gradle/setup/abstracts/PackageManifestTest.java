@@ -0,0 +1,169 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.abstracts;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.inet.gradle.setup.util.Strings;
+
+/**
+ * Record entries in a manifest and read them back.
+ *
+ * @author Volker Berlin
+ */
+public class PackageManifestTest {
+
+    /**
+     * Calculate a digest as lower case hex string.
+     *
+     * @param algorithm the algorithm
+     * @param data the data
+     * @return the hex string
+     * @throws Exception if the algorithm is not available
+     */
+    private static String hex( String algorithm, byte[] data ) throws Exception {
+        return Strings.toHex( MessageDigest.getInstance( algorithm ).digest( data ) );
+    }
+
+    /**
+     * Read a stream to the end and close it.
+     *
+     * @param input the stream
+     * @return the read data
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] readAll( InputStream input ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try( InputStream in = input ) {
+            int b = in.read(); // single byte read
+            if( b >= 0 ) {
+                out.write( b );
+            }
+            byte[] buffer = new byte[1000];
+            int count;
+            while( (count = in.read( buffer, 0, buffer.length )) > 0 ) {
+                out.write( buffer, 0, count );
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        byte[] content = new byte[12345];
+        new Random( 5 ).nextBytes( content );
+        PackageManifest manifest = new PackageManifest();
+        manifest.addDirectory( "/opt/app", 0755 );
+        InputStream input = manifest.addFile( "/opt/app/data.bin", 0644, new ByteArrayInputStream( content ) );
+        assertEquals( "the file is added on close", 1, manifest.getEntries().size() );
+        assertArrayEquals( "the content is passed through", content, readAll( input ) );
+        input.close(); // a second close does not add the file twice
+        manifest.addSymlink( "/opt/app/link", "data.bin" );
+        readAll( manifest.addFile( "/opt/app/empty", 0755, new ByteArrayInputStream( new byte[0] ) ) );
+
+        List<PackageManifest.Entry> entries = manifest.getEntries();
+        assertEquals( 4, entries.size() );
+        assertEquals( content.length, manifest.getSize() );
+
+        PackageManifest.Entry dir = entries.get( 0 );
+        assertEquals( "/opt/app", dir.getPath() );
+        assertEquals( 0755, dir.getMode() );
+        assertTrue( dir.isDirectory() );
+        assertFalse( dir.isFile() );
+        assertNull( dir.getMd5() );
+
+        PackageManifest.Entry file = entries.get( 1 );
+        assertEquals( "/opt/app/data.bin", file.getPath() );
+        assertEquals( 0644, file.getMode() );
+        assertEquals( content.length, file.getSize() );
+        assertEquals( hex( "MD5", content ), file.getMd5() );
+        assertEquals( hex( "SHA-256", content ), file.getSha256() );
+        assertTrue( file.isFile() );
+        assertNull( file.getLinkTarget() );
+
+        PackageManifest.Entry link = entries.get( 2 );
+        assertEquals( "data.bin", link.getLinkTarget() );
+        assertEquals( 0777, link.getMode() );
+        assertTrue( link.isSymlink() );
+        assertFalse( link.isFile() );
+        assertEquals( 0, link.getSize() );
+
+        PackageManifest.Entry empty = entries.get( 3 );
+        assertEquals( hex( "MD5", new byte[0] ), empty.getMd5() );
+        assertEquals( 0, empty.getSize() );
+
+        manifest.addDirectory( "/opt/app/lib", 0755 );
+        assertEquals( "the entries are a snapshot", 4, entries.size() );
+    }
+
+    @Test
+    public void skipIsNotSupported() throws IOException {
+        PackageManifest manifest = new PackageManifest();
+        try( InputStream input = manifest.addFile( "/file", 0644, new ByteArrayInputStream( new byte[10] ) ) ) {
+            assertFalse( input.markSupported() );
+            input.skip( 5 );
+            fail( "skipped bytes would be missing in the digests" );
+        } catch( IOException ex ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parallelFiles() throws Exception {
+        PackageManifest manifest = new PackageManifest();
+        List<Thread> threads = new ArrayList<>();
+        for( int t = 0; t < 4; t++ ) {
+            int id = t;
+            threads.add( new Thread( () -> {
+                for( int i = 0; i < 100; i++ ) {
+                    try {
+                        readAll( manifest.addFile( "/t" + id + "/" + i, 0644, new ByteArrayInputStream( new byte[i] ) ) );
+                    } catch( IOException ex ) {
+                        throw new IllegalStateException( ex );
+                    }
+                }
+            } ) );
+        }
+        threads.forEach( Thread::start );
+        for( Thread thread : threads ) {
+            thread.join();
+        }
+        Set<String> paths = new HashSet<>();
+        for( PackageManifest.Entry entry : manifest.getEntries() ) {
+            paths.add( entry.getPath() );
+        }
+        assertEquals( 400, paths.size() );
+        assertEquals( 4 * (99 * 100 / 2), manifest.getSize() );
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check that the source images are decoded once and the converted files are reused.
+ *
+ * @author Volker Berlin
+ */
+public class ImageCacheTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "image" ).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Write a PNG file with a unique content. The cache is static and shared with other tests.
+     *
+     * @param name the file name
+     * @param size the width and height
+     * @return the file
+     * @throws IOException if an I/O error occurs
+     */
+    private File createPng( String name, int size ) throws IOException {
+        BufferedImage img = ImageFactoryTest.createImage( size, size );
+        img.setRGB( 0, 0, (int)System.nanoTime() );
+        File file = new File( dir, name );
+        ImageIO.write( img, "png", file );
+        return file;
+    }
+
+    @Test
+    public void read() throws IOException {
+        File png = createPng( "icon.png", 32 );
+        List<BufferedImage> images = ImageCache.read( png );
+        assertEquals( 1, images.size() );
+        assertEquals( 32, images.get( 0 ).getWidth() );
+        assertSame( "decoded only once", images, ImageCache.read( png ) );
+
+        File copy = new File( dir, "copy.png" );
+        Files.copy( png.toPath(), copy.toPath() );
+        assertSame( "the key is the content", images, ImageCache.read( copy ) );
+
+        try {
+            images.clear();
+            fail( "the shared list must not be modified" );
+        } catch( UnsupportedOperationException ex ) {
+            // expected
+        }
+
+        File ico = new File( dir, "icon.ico" );
+        ImageFactory.convert( Arrays.asList( png ), "ico", ico );
+        List<BufferedImage> icoImages = ImageCache.read( ico );
+        assertEquals( "the ico decoder is used", 1, icoImages.size() );
+        assertEquals( 32, icoImages.get( 0 ).getHeight() );
+    }
+
+    @Test
+    public void key() throws IOException {
+        File png = createPng( "icon.png", 16 );
+        File other = new File( dir, "icon.ico" );
+        Files.copy( png.toPath(), other.toPath() );
+        assertEquals( ImageCache.key( png ), ImageCache.key( png ) );
+        assertNotEquals( "the extension select the decoder", ImageCache.key( png ), ImageCache.key( other ) );
+    }
+
+    @Test
+    public void convert() throws IOException {
+        File png = createPng( "icon.png", 48 );
+        AtomicInteger calls = new AtomicInteger();
+        ImageCache.Converter converter = file -> {
+            calls.incrementAndGet();
+            Files.write( file.toPath(), new byte[] { 1, 2, (byte)calls.get() } );
+        };
+
+        File first = new File( dir, "first.ico" );
+        assertTrue( ImageCache.convert( Arrays.asList( png ), "ico", first, converter ) );
+        assertEquals( 1, calls.get() );
+
+        File second = new File( dir, "second.ico" );
+        assertTrue( ImageCache.convert( Arrays.asList( png ), "ico", second, converter ) );
+        assertEquals( "the cached output is copied", 1, calls.get() );
+        assertArrayEquals( Files.readAllBytes( first.toPath() ), Files.readAllBytes( second.toPath() ) );
+
+        assertTrue( ImageCache.convert( Arrays.asList( png ), "png16", new File( dir, "icon.png16" ), converter ) );
+        assertEquals( "other format", 2, calls.get() );
+        assertTrue( ImageCache.convert( Arrays.asList( png, png ), "ico", new File( dir, "twice.ico" ), converter ) );
+        assertEquals( "other sources", 3, calls.get() );
+    }
+
+    @Test
+    public void convertWithoutResult() throws IOException {
+        File png = createPng( "icon.png", 48 );
+        AtomicInteger calls = new AtomicInteger();
+        File target = new File( dir, "icon.png64" );
+        assertFalse( ImageCache.convert( Arrays.asList( png ), "png64", target, file -> calls.incrementAndGet() ) );
+        assertFalse( ImageCache.convert( Arrays.asList( png ), "png64", target, file -> calls.incrementAndGet() ) );
+        assertEquals( "a missing result is not cached", 2, calls.get() );
+        assertFalse( target.exists() );
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.inet.gradle.setup.image.icns.IcnsCodec;
+
+/**
+ * Convert source images into the platform formats and check the written files.
+ *
+ * @author Volker Berlin
+ */
+public class ImageFactoryTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "image" ).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Create a test image with a gradient and a transparent corner.
+     *
+     * @param width the width
+     * @param height the height
+     * @return the image
+     */
+    static BufferedImage createImage( int width, int height ) {
+        BufferedImage img = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+        for( int y = 0; y < height; y++ ) {
+            for( int x = 0; x < width; x++ ) {
+                int alpha = x < width / 4 && y < height / 4 ? 0 : 0xFF;
+                img.setRGB( x, y, alpha << 24 | (x * 255 / width) << 16 | (y * 255 / height) << 8 | 0x80 );
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Write a test image as PNG file.
+     *
+     * @param size the width and height
+     * @return the file
+     * @throws IOException if an I/O error occurs
+     */
+    private File createPng( int size ) throws IOException {
+        File file = new File( dir, "icon" + size + ".png" );
+        ImageIO.write( createImage( size, size ), "png", file );
+        return file;
+    }
+
+    /**
+     * Split an icns file into its chunks.
+     *
+     * @param file the icns file
+     * @return the data of the chunks by type in the order of the file
+     * @throws IOException if an I/O error occurs
+     */
+    private static Map<String, byte[]> readChunks( File file ) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap( Files.readAllBytes( file.toPath() ) );
+        assertEquals( "icns", type( data ) );
+        assertEquals( "file length", data.capacity(), data.getInt() );
+        Map<String, byte[]> chunks = new LinkedHashMap<>();
+        while( data.hasRemaining() ) {
+            String type = type( data );
+            byte[] chunk = new byte[data.getInt() - 8];
+            data.get( chunk );
+            assertTrue( "duplicate type " + type, chunks.put( type, chunk ) == null );
+        }
+        return chunks;
+    }
+
+    /**
+     * Read a 4 character type.
+     *
+     * @param data the buffer
+     * @return the type
+     */
+    private static String type( ByteBuffer data ) {
+        byte[] type = new byte[4];
+        data.get( type );
+        return new String( type, StandardCharsets.US_ASCII );
+    }
+
+    @Test
+    public void icnsPngPassthrough() throws IOException {
+        File png32 = createPng( 32 );
+        File png256 = createPng( 256 );
+        File png1024 = createPng( 1024 );
+        File icns = new File( dir, "icon.icns" );
+        ImageFactory.convert( Arrays.asList( png32, png256, png1024 ), "icns", icns );
+
+        Map<String, byte[]> chunks = readChunks( icns );
+        assertArrayEquals( "ic11", Files.readAllBytes( png32.toPath() ), chunks.get( "ic11" ) );
+        assertArrayEquals( "ic08", Files.readAllBytes( png256.toPath() ), chunks.get( "ic08" ) );
+        assertArrayEquals( "ic13", Files.readAllBytes( png256.toPath() ), chunks.get( "ic13" ) );
+        assertArrayEquals( "ic10", Files.readAllBytes( png1024.toPath() ), chunks.get( "ic10" ) );
+
+        // the missing sizes are scaled and encoded
+        for( int i = 0; i < IcnsCodec.PNG_TYPES.length; i++ ) {
+            byte[] png = chunks.get( IcnsCodec.PNG_TYPES[i] );
+            assertNotNull( IcnsCodec.PNG_TYPES[i], png );
+            BufferedImage img = ImageIO.read( new ByteArrayInputStream( png ) );
+            assertEquals( IcnsCodec.PNG_TYPES[i], IcnsCodec.PNG_SIZES[i], img.getWidth() );
+            assertEquals( IcnsCodec.PNG_TYPES[i], IcnsCodec.PNG_SIZES[i], img.getHeight() );
+        }
+        for( String type : new String[] { "is32", "s8mk", "il32", "l8mk", "ih32", "h8mk", "it32", "t8mk" } ) {
+            assertTrue( type, chunks.containsKey( type ) );
+        }
+
+        try( FileInputStream input = new FileInputStream( icns ) ) {
+            List<BufferedImage> images = new IcnsCodec().decode( input );
+            assertEquals( "4 classic and 8 PNG icons", 12, images.size() );
+        }
+    }
+
+    @Test
+    public void icnsNotLargerAsSource() throws IOException {
+        File png = createPng( 128 );
+        File icns = new File( dir, "icon.icns" );
+        ImageFactory.convert( Arrays.asList( png ), "icns", icns );
+
+        Map<String, byte[]> chunks = readChunks( icns );
+        assertArrayEquals( "ic07", Files.readAllBytes( png.toPath() ), chunks.get( "ic07" ) );
+        assertTrue( chunks.containsKey( "ic11" ) );
+        assertTrue( chunks.containsKey( "ic12" ) );
+        assertTrue( chunks.containsKey( "it32" ) );
+        for( String type : new String[] { "ic13", "ic08", "ic14", "ic09", "ic10" } ) {
+            assertFalse( type, chunks.containsKey( type ) );
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+/**
+ * Scale images with the Lanczos resampler.
+ *
+ * @author Volker Berlin
+ */
+public class ImageScalerTest {
+
+    /**
+     * Scale an image and check the size and the type of the result.
+     *
+     * @param src the source image
+     * @param width the new width
+     * @param height the new height
+     * @return the scaled image
+     */
+    private static BufferedImage scale( BufferedImage src, int width, int height ) {
+        BufferedImage img = ImageScaler.scale( src, width, height );
+        String msg = src.getWidth() + "x" + src.getHeight() + " -> " + width + "x" + height;
+        assertEquals( msg, width, img.getWidth() );
+        assertEquals( msg, height, img.getHeight() );
+        assertEquals( msg, BufferedImage.TYPE_INT_ARGB, img.getType() );
+        return img;
+    }
+
+    @Test
+    public void dimensions() {
+        BufferedImage src = ImageFactoryTest.createImage( 256, 256 );
+        // reduce, reduce with the box filter, enlarge, unchanged and non square sizes
+        int[][] sizes = { { 128, 128 }, { 48, 48 }, { 16, 16 }, { 1, 1 }, { 512, 512 }, { 1024, 1024 }, { 256, 256 }, { 100, 30 }, { 30, 300 }, { 256, 64 } };
+        for( int[] size : sizes ) {
+            scale( src, size[0], size[1] );
+        }
+        scale( ImageFactoryTest.createImage( 1000, 17 ), 64, 64 );
+        scale( ImageFactoryTest.createImage( 1, 1 ), 32, 32 );
+    }
+
+    @Test
+    public void largeImageInParallel() {
+        BufferedImage img = scale( ImageFactoryTest.createImage( 1024, 1024 ), 700, 700 );
+        // the gradient is preserved over all rows
+        int top = img.getRGB( 600, 0 ) >> 8 & 0xFF;
+        int bottom = img.getRGB( 600, 699 ) >> 8 & 0xFF;
+        assertTrue( top + " " + bottom, top < 10 && bottom > 245 );
+    }
+
+    @Test
+    public void solidColor() {
+        for( int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR } ) {
+            BufferedImage src = new BufferedImage( 64, 64, type );
+            for( int y = 0; y < 64; y++ ) {
+                for( int x = 0; x < 64; x++ ) {
+                    src.setRGB( x, y, 0xFF336699 );
+                }
+            }
+            for( int size : new int[] { 16, 48, 256 } ) {
+                BufferedImage img = scale( src, size, size );
+                for( int y = 0; y < size; y++ ) {
+                    for( int x = 0; x < size; x++ ) {
+                        assertEquals( "type " + type + ", size " + size, 0xFF336699, img.getRGB( x, y ) );
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void transparentPixelsHaveNoColor() {
+        BufferedImage src = new BufferedImage( 64, 64, BufferedImage.TYPE_INT_ARGB );
+        for( int y = 0; y < 64; y++ ) {
+            for( int x = 0; x < 64; x++ ) {
+                // the color of the transparent half must not bleed into the visible half
+                src.setRGB( x, y, x < 32 ? 0x00FF0000 : 0xFF0000FF );
+            }
+        }
+        BufferedImage img = scale( src, 24, 24 );
+        for( int y = 0; y < 24; y++ ) {
+            for( int x = 0; x < 24; x++ ) {
+                int argb = img.getRGB( x, y );
+                if( (argb >>> 24) > 0 ) {
+                    assertEquals( "no red at " + x + "," + y + ": " + Integer.toHexString( argb ), 0, argb >> 16 & 0xFF );
+                }
+            }
+        }
+        assertEquals( 0, img.getRGB( 0, 0 ) >>> 24 );
+        assertEquals( 0xFF0000FF, img.getRGB( 23, 12 ) );
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.image.image4j.codec.ico;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Write ico files with bitmap and PNG entries and decode them back.
+ *
+ * @author Volker Berlin
+ */
+public class ICOEncoderTest {
+
+    private static final int[] SIZES = { 16, 32, 48, 128, 256 };
+
+    /**
+     * Create a test image with a gradient and a semi transparent border.
+     *
+     * @param size the width and height
+     * @return the image
+     */
+    private static BufferedImage createImage( int size ) {
+        BufferedImage img = new BufferedImage( size, size, BufferedImage.TYPE_INT_ARGB );
+        for( int y = 0; y < size; y++ ) {
+            for( int x = 0; x < size; x++ ) {
+                int alpha = x == 0 || y == 0 ? 0x80 : x == size - 1 ? 0 : 0xFF;
+                img.setRGB( x, y, alpha << 24 | (x * 255 / size) << 16 | (y * 255 / size) << 8 | size & 0xFF );
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Write all test sizes with the compression of the plugin.
+     *
+     * @return the ico file
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] writeCompressed() throws IOException {
+        List<BufferedImage> images = new ArrayList<>();
+        for( int size : SIZES ) {
+            images.add( createImage( size ) );
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ICOEncoder.writeCompressed( images, out );
+        return out.toByteArray();
+    }
+
+    /**
+     * Get the ARGB pixels of an image.
+     *
+     * @param img the image
+     * @return the pixels
+     */
+    private static int[] pixels( BufferedImage img ) {
+        return img.getRGB( 0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth() );
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] ico = writeCompressed();
+        List<ICOImage> images = ICODecoder.readExt( new ByteArrayInputStream( ico ) );
+        assertEquals( SIZES.length, images.size() );
+        for( int i = 0; i < SIZES.length; i++ ) {
+            int size = SIZES[i];
+            ICOImage image = images.get( i );
+            assertEquals( "the order of the images is preserved", i, image.getIconIndex() );
+            assertEquals( "size " + size, size >= ICOEncoder.PNG_MIN_SIZE, image.isPngCompressed() );
+            assertEquals( size, image.getWidth() );
+            assertEquals( size, image.getHeight() );
+            assertArrayEquals( "size " + size, pixels( createImage( size ) ), pixels( image.getImage() ) );
+        }
+    }
+
+    @Test
+    public void pngEntries() throws IOException {
+        byte[] ico = writeCompressed();
+        ByteBuffer data = ByteBuffer.wrap( ico ).order( ByteOrder.LITTLE_ENDIAN );
+        assertEquals( 0, data.getShort() );
+        assertEquals( ICOConstants.TYPE_ICON, data.getShort() );
+        assertEquals( SIZES.length, data.getShort() );
+        int expectedOffset = 6 + 16 * SIZES.length;
+        for( int size : SIZES ) {
+            int pos = data.position();
+            assertEquals( "the size 256 is written as 0", size & 0xFF, data.get( pos ) & 0xFF );
+            int length = data.getInt( pos + 8 );
+            int offset = data.getInt( pos + 12 );
+            assertEquals( "the entries follow each other", expectedOffset, offset );
+            expectedOffset += length;
+            data.position( pos + 16 );
+
+            if( size >= ICOEncoder.PNG_MIN_SIZE ) {
+                // a PNG entry is a complete PNG file that any decoder can read
+                ByteArrayInputStream png = new ByteArrayInputStream( ico, offset, length );
+                BufferedImage img = ImageIO.read( png );
+                assertEquals( size, img.getWidth() );
+                assertArrayEquals( "size " + size, pixels( createImage( size ) ), pixels( img ) );
+            } else {
+                assertEquals( "bitmap info header", 40, data.getInt( offset ) );
+            }
+        }
+        assertEquals( ico.length, expectedOffset );
+    }
+
+    @Test
+    public void deterministic() throws IOException {
+        assertArrayEquals( "the parallel encoding writes the same file", writeCompressed(), writeCompressed() );
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Write cabinets and extract them again with an independent MSZIP reader.
+ *
+ * @author Volker Berlin
+ */
+public class CabinetWriterTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "cabinet" ).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Create a source file with random or repeated content.
+     *
+     * @param name the file name
+     * @param length the size of the file
+     * @param random true for random data that can not be compressed
+     * @return the file
+     * @throws IOException if an I/O error occurs
+     */
+    private File createFile( String name, int length, boolean random ) throws IOException {
+        byte[] data = new byte[length];
+        if( random ) {
+            new Random( length ).nextBytes( data );
+        } else {
+            byte[] text = "The quick brown fox jumps over the lazy dog. ".getBytes( StandardCharsets.US_ASCII );
+            for( int i = 0; i < length; i++ ) {
+                data[i] = text[i % text.length];
+            }
+        }
+        File file = new File( dir, name );
+        Files.write( file.toPath(), data );
+        return file;
+    }
+
+    /**
+     * The checksum of a CFDATA block like described in the MS-CAB specification.
+     *
+     * @param data the data
+     * @param offset the offset
+     * @param length the length
+     * @param seed the start value
+     * @return the checksum
+     */
+    private static int checksum( byte[] data, int offset, int length, int seed ) {
+        ByteBuffer buffer = ByteBuffer.wrap( data, offset, length ).order( ByteOrder.LITTLE_ENDIAN );
+        int checksum = seed;
+        while( buffer.remaining() >= 4 ) {
+            checksum ^= buffer.getInt();
+        }
+        int value = 0;
+        while( buffer.hasRemaining() ) {
+            value = value << 8 | (buffer.get() & 0xFF);
+        }
+        return checksum ^ value;
+    }
+
+    /**
+     * Extract all files of a cabinet and check the structures.
+     *
+     * @param cabinet the cabinet
+     * @return the content of the files by name in the order of the cabinet
+     * @throws Exception if the cabinet is invalid
+     */
+    private static Map<String, byte[]> extract( File cabinet ) throws Exception {
+        byte[] bytes = Files.readAllBytes( cabinet.toPath() );
+        ByteBuffer cab = ByteBuffer.wrap( bytes ).order( ByteOrder.LITTLE_ENDIAN );
+        assertEquals( "MSCF", new String( bytes, 0, 4, StandardCharsets.US_ASCII ) );
+        assertEquals( "cabinet size", bytes.length, cab.getInt( 8 ) );
+        assertEquals( "version", 0x0103, cab.getShort( 24 ) );
+        int folderCount = cab.getShort( 26 ) & 0xFFFF;
+        int fileCount = cab.getShort( 28 ) & 0xFFFF;
+        assertEquals( "no flags and reserved fields", 0, cab.getShort( 30 ) );
+
+        // decompress the folders
+        byte[][] folders = new byte[folderCount][];
+        for( int i = 0; i < folderCount; i++ ) {
+            int offset = cab.getInt( 36 + i * 8 );
+            int blocks = cab.getShort( 36 + i * 8 + 4 ) & 0xFFFF;
+            assertEquals( "MSZIP", 1, cab.getShort( 36 + i * 8 + 6 ) );
+            ByteArrayOutputStream folder = new ByteArrayOutputStream();
+            byte[] previous = null;
+            for( int b = 0; b < blocks; b++ ) {
+                int compressed = cab.getShort( offset + 4 ) & 0xFFFF;
+                int uncompressed = cab.getShort( offset + 6 ) & 0xFFFF;
+                assertTrue( uncompressed <= 32768 );
+                assertEquals( "checksum", cab.getInt( offset ), checksum( bytes, offset + 4, 4, checksum( bytes, offset + 8, compressed, 0 ) ) );
+                assertEquals( 'C', bytes[offset + 8] );
+                assertEquals( 'K', bytes[offset + 9] );
+                Inflater inflater = new Inflater( true );
+                if( previous != null ) {
+                    inflater.setDictionary( previous );
+                }
+                inflater.setInput( bytes, offset + 10, compressed - 2 );
+                byte[] block = new byte[uncompressed];
+                int length = 0;
+                while( length < uncompressed ) {
+                    int count = inflater.inflate( block, length, uncompressed - length );
+                    if( count == 0 && (inflater.needsInput() || inflater.needsDictionary()) ) {
+                        throw new DataFormatException( "truncated block" );
+                    }
+                    length += count;
+                }
+                inflater.end();
+                folder.write( block );
+                previous = block;
+                offset += 8 + compressed;
+            }
+            folders[i] = folder.toByteArray();
+        }
+
+        // the file entries
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        int pos = cab.getInt( 16 );
+        int[] folderSizes = new int[folderCount];
+        for( int i = 0; i < fileCount; i++ ) {
+            int size = cab.getInt( pos );
+            int offset = cab.getInt( pos + 4 );
+            int folder = cab.getShort( pos + 8 );
+            int attribs = cab.getShort( pos + 14 );
+            assertEquals( "files are saved in order", folderSizes[folder], offset );
+            folderSizes[folder] += size;
+            int end = pos + 16;
+            while( bytes[end] != 0 ) {
+                end++;
+            }
+            String name = new String( bytes, pos + 16, end - pos - 16, (attribs & 0x80) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1 );
+            files.put( name, Arrays.copyOfRange( folders[folder], offset, offset + size ) );
+            pos = end + 1;
+        }
+        for( int i = 0; i < folderCount; i++ ) {
+            assertEquals( "folder size", folders[i].length, folderSizes[i] );
+        }
+        return files;
+    }
+
+    @Test
+    public void singleFolder() throws Exception {
+        File small = createFile( "small", 100, false );
+        File large = createFile( "large", 100_000, false );
+        File random = createFile( "random", 70_000, true );
+        File empty = createFile( "empty", 0, false );
+        CabinetWriter writer = new CabinetWriter( 9, 1 );
+        writer.addFile( "small.txt", small );
+        writer.addFile( "large.txt", large );
+        writer.addFile( "random.bin", random );
+        writer.addFile( "empty", empty );
+        writer.addFile( "ümläut€", small );
+        File cabinet = new File( dir, "test.cab" );
+        writer.write( cabinet, dir );
+
+        assertEquals( 1, Files.readAllBytes( cabinet.toPath() )[26] );
+        Map<String, byte[]> files = extract( cabinet );
+        assertEquals( Arrays.asList( "small.txt", "large.txt", "random.bin", "empty", "ümläut€" ), Arrays.asList( files.keySet().toArray() ) );
+        assertArrayEquals( Files.readAllBytes( small.toPath() ), files.get( "small.txt" ) );
+        assertArrayEquals( Files.readAllBytes( large.toPath() ), files.get( "large.txt" ) );
+        assertArrayEquals( Files.readAllBytes( random.toPath() ), files.get( "random.bin" ) );
+        assertEquals( 0, files.get( "empty" ).length );
+        assertArrayEquals( Files.readAllBytes( small.toPath() ), files.get( "ümläut€" ) );
+        assertTrue( "compressed", cabinet.length() < 100 + 100_000 + 70_000 );
+        assertEquals( "temporary files are deleted", 5, dir.list().length );
+    }
+
+    @Test
+    public void multipleFolders() throws Exception {
+        CabinetWriter writer = new CabinetWriter( 1, 2 );
+        Map<String, File> sources = new LinkedHashMap<>();
+        for( int i = 0; i < 12; i++ ) {
+            File file = createFile( "file" + i, 400_000 + i, i % 3 == 0 );
+            sources.put( "file" + i, file );
+            writer.addFile( "file" + i, file );
+        }
+        File cabinet = new File( dir, "test.cab" );
+        writer.write( cabinet, dir );
+
+        assertTrue( "more as one folder", Files.readAllBytes( cabinet.toPath() )[26] > 1 );
+        Map<String, byte[]> files = extract( cabinet );
+        assertEquals( sources.keySet(), files.keySet() );
+        for( Map.Entry<String, File> entry : sources.entrySet() ) {
+            assertArrayEquals( entry.getKey(), Files.readAllBytes( entry.getValue().toPath() ), files.get( entry.getKey() ) );
+        }
+    }
+
+    @Test
+    public void emptyCabinet() throws Exception {
+        File cabinet = new File( dir, "empty.cab" );
+        new CabinetWriter( -1, 0 ).write( cabinet, dir );
+        assertEquals( 0, extract( cabinet ).size() );
+    }
+
+    @Test
+    public void checksum() {
+        byte[] data = new byte[] { 1, 2, 3, 4, 5, 6, 7 };
+        for( int length = 0; length <= data.length; length++ ) {
+            assertEquals( checksum( data, 0, length, 0x12345678 ), CabinetWriter.checksum( data, 0, length, 0x12345678 ) );
+        }
+    }
+}
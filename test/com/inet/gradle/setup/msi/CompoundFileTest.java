@@ -0,0 +1,191 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.inet.gradle.setup.msi.CompoundFile.Entry;
+
+/**
+ * Read and write compound files. The fixture minimal.msi is a handcrafted Windows Installer database with the
+ * summary information, the string pool and the tables _Tables and Property in the mini stream.
+ *
+ * @author Volker Berlin
+ */
+public class CompoundFileTest {
+
+    private static final byte[] MSI_CLSID = { (byte)0x84, 0x10, 0x0C, 0, 0, 0, 0, 0, (byte)0xC0, 0, 0, 0, 0, 0, 0, 0x46 };
+
+    private File                dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "compound" ).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Copy a fixture of the test package into the temporary directory.
+     *
+     * @param name the name of the fixture
+     * @param dir the target directory
+     * @return the copy
+     * @throws IOException if an I/O error occurs
+     */
+    static File copyFixture( String name, File dir ) throws IOException {
+        File file = new File( dir, name );
+        try( InputStream input = CompoundFileTest.class.getResourceAsStream( name ) ) {
+            assertNotNull( "missing fixture " + name, input );
+            Files.copy( input, file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+        return file;
+    }
+
+    /**
+     * Check that two storages have the same children with the same data.
+     *
+     * @param expected the expected storage
+     * @param actual the actual storage
+     * @throws IOException if an I/O error occurs
+     */
+    static void assertStorageEquals( Entry expected, Entry actual ) throws IOException {
+        assertArrayEquals( expected.getName(), expected.getClassId(), actual.getClassId() );
+        assertEquals( expected.getName(), expected.getChildren().size(), actual.getChildren().size() );
+        for( Entry child : expected.getChildren() ) {
+            Entry other = actual.getChild( child.getName() );
+            assertNotNull( "missing " + child.getName(), other );
+            assertEquals( child.isStorage(), other.isStorage() );
+            if( child.isStorage() ) {
+                assertStorageEquals( child, other );
+            } else {
+                assertArrayEquals( child.getName(), child.getData(), other.getData() );
+            }
+        }
+    }
+
+    @Test
+    public void readFixture() throws IOException {
+        try( CompoundFile msi = new CompoundFile( copyFixture( "minimal.msi", dir ) ) ) {
+            Entry root = msi.getRoot();
+            assertArrayEquals( MSI_CLSID, root.getClassId() );
+            assertEquals( 5, root.getChildren().size() );
+            assertNotNull( root.getChild( "\u0005SummaryInformation" ) );
+            Entry property = root.getChild( MsiDatabase.encodeName( "Property", true ) );
+            assertNotNull( property );
+            assertEquals( 12, property.getData().length );
+        }
+    }
+
+    @Test
+    public void saveWithoutChanges() throws IOException {
+        File source = copyFixture( "minimal.msi", dir );
+        File target = new File( dir, "copy.msi" );
+        try( CompoundFile msi = new CompoundFile( source ) ) {
+            msi.save( target );
+            try( CompoundFile copy = new CompoundFile( target ) ) {
+                assertStorageEquals( msi.getRoot(), copy.getRoot() );
+            }
+        }
+    }
+
+    @Test
+    public void largeStreamsAndStorages() throws IOException {
+        File source = copyFixture( "minimal.msi", dir );
+        File target = new File( dir, "large.msi" );
+        byte[] large = new byte[100_000];
+        new Random( 42 ).nextBytes( large );
+        byte[] cutoff = new byte[4096]; // the first size that is not saved in the mini stream
+        try( CompoundFile msi = new CompoundFile( source ) ) {
+            msi.getRoot().addStream( "large", large );
+            msi.getRoot().addStream( "cutoff", cutoff );
+            msi.getRoot().addStream( "empty", new byte[0] );
+            Entry storage = msi.getRoot().addStorage( "1031" );
+            storage.setClassId( MSI_CLSID );
+            storage.addStream( "small", new byte[] { 1, 2, 3 } );
+            msi.save( target );
+
+            try( CompoundFile copy = new CompoundFile( target ) ) {
+                assertStorageEquals( msi.getRoot(), copy.getRoot() );
+                File again = new File( dir, "again.msi" );
+                copy.save( again ); // the large stream is copied from the source file
+                try( CompoundFile copy2 = new CompoundFile( again ) ) {
+                    assertStorageEquals( msi.getRoot(), copy2.getRoot() );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void manyEntries() throws IOException {
+        File source = copyFixture( "minimal.msi", dir );
+        File target = new File( dir, "many.msi" );
+        try( CompoundFile msi = new CompoundFile( source ) ) {
+            for( int i = 0; i < 300; i++ ) {
+                msi.getRoot().addStream( "stream" + i, new byte[i] );
+            }
+            msi.save( target );
+            try( CompoundFile copy = new CompoundFile( target ) ) {
+                assertStorageEquals( msi.getRoot(), copy.getRoot() );
+            }
+        }
+    }
+
+    @Test
+    public void replaceStream() throws IOException {
+        File source = copyFixture( "minimal.msi", dir );
+        File target = new File( dir, "replaced.msi" );
+        try( CompoundFile msi = new CompoundFile( source ) ) {
+            msi.getRoot().addStream( "\u0005SummaryInformation", new byte[] { 7 } );
+            msi.save( target );
+        }
+        try( CompoundFile copy = new CompoundFile( target ) ) {
+            assertEquals( 5, copy.getRoot().getChildren().size() );
+            assertArrayEquals( new byte[] { 7 }, copy.getRoot().getChild( "\u0005SummaryInformation" ).getData() );
+        }
+    }
+
+    @Test
+    public void compareNames() {
+        assertTrue( "shorter names first", CompoundFile.compareNames( "zz", "aaa" ) < 0 );
+        assertTrue( CompoundFile.compareNames( "abc", "abd" ) < 0 );
+        assertEquals( "case insensitive", 0, CompoundFile.compareNames( "Property", "PROPERTY" ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void noCompoundFile() throws IOException {
+        File file = new File( dir, "text.msi" );
+        Files.write( file.toPath(), new byte[512] );
+        new CompoundFile( file ).close();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import static com.inet.gradle.setup.msi.CompoundFileTest.assertStorageEquals;
+import static com.inet.gradle.setup.msi.CompoundFileTest.copyFixture;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.inet.gradle.setup.msi.CompoundFile.Entry;
+
+/**
+ * Patch the handcrafted database minimal.msi and check the result with an independent reader of the streams. The
+ * Property table of the fixture contains ProductLanguage=1033, ProductName and Manufacturer. The package languages
+ * are "Intel;1033". The fixture minimal.mst is a transform with its own string pool and Property table.
+ *
+ * @author Volker Berlin
+ */
+public class MsiDatabaseTest {
+
+    private static final int PID_TITLE     = 2;
+
+    private static final int PID_TEMPLATE  = 7;
+
+    private static final int PID_PAGECOUNT = 14;
+
+    private File             dir;
+
+    private File             msi;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "msidb" ).toFile();
+        msi = copyFixture( "minimal.msi", dir );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Read the properties of the summary information.
+     *
+     * @param file the database
+     * @return the values by property ID, strings as String and integers as Integer
+     * @throws IOException if an I/O error occurs
+     */
+    private static Map<Integer, Object> readSummary( File file ) throws IOException {
+        try( CompoundFile cf = new CompoundFile( file ) ) {
+            ByteBuffer data = ByteBuffer.wrap( cf.getRoot().getChild( "\u0005SummaryInformation" ).getData() ).order( ByteOrder.LITTLE_ENDIAN );
+            int section = data.getInt( 44 );
+            assertEquals( "section size", data.capacity() - section, data.getInt( section ) );
+            Map<Integer, Object> values = new HashMap<>();
+            for( int i = 0; i < data.getInt( section + 4 ); i++ ) {
+                int offset = section + data.getInt( section + 12 + i * 8 );
+                assertEquals( "aligned value", 0, offset % 4 );
+                switch( data.getInt( offset ) ) {
+                    case 2: // VT_I2
+                        values.put( data.getInt( section + 8 + i * 8 ), (int)data.getShort( offset + 4 ) );
+                        break;
+                    case 3: // VT_I4
+                        values.put( data.getInt( section + 8 + i * 8 ), data.getInt( offset + 4 ) );
+                        break;
+                    case 30: // VT_LPSTR with terminating zero
+                        String value = new String( data.array(), offset + 8, data.getInt( offset + 4 ) - 1, StandardCharsets.ISO_8859_1 );
+                        values.put( data.getInt( section + 8 + i * 8 ), value );
+                        break;
+                    default:
+                        throw new AssertionError( "unexpected type" );
+                }
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Read the string pool. Free entries are null.
+     *
+     * @param cf the database
+     * @return the strings by ID, the ID 0 is the null string
+     * @throws IOException if an I/O error occurs
+     */
+    private static List<String> readStrings( CompoundFile cf ) throws IOException {
+        ByteBuffer pool = ByteBuffer.wrap( cf.getRoot().getChild( MsiDatabase.encodeName( "_StringPool", true ) ).getData() ).order( ByteOrder.LITTLE_ENDIAN );
+        byte[] data = cf.getRoot().getChild( MsiDatabase.encodeName( "_StringData", true ) ).getData();
+        List<String> strings = new ArrayList<>();
+        strings.add( null );
+        int offset = 0;
+        for( int i = 4; i < pool.capacity(); i += 4 ) {
+            int length = pool.getShort( i ) & 0xFFFF;
+            int refs = pool.getShort( i + 2 ) & 0xFFFF;
+            strings.add( refs == 0 ? null : new String( data, offset, length, StandardCharsets.ISO_8859_1 ) );
+            offset += length;
+        }
+        assertEquals( "all bytes of the string data are used", data.length, offset );
+        return strings;
+    }
+
+    /**
+     * Read the Property table.
+     *
+     * @param file the database
+     * @return the properties
+     * @throws IOException if an I/O error occurs
+     */
+    private static Map<String, String> readProperties( File file ) throws IOException {
+        try( CompoundFile cf = new CompoundFile( file ) ) {
+            List<String> strings = readStrings( cf );
+            ByteBuffer table = ByteBuffer.wrap( cf.getRoot().getChild( MsiDatabase.encodeName( "Property", true ) ).getData() ).order( ByteOrder.LITTLE_ENDIAN );
+            int rows = table.capacity() / 4;
+            Map<String, String> properties = new LinkedHashMap<>();
+            for( int row = 0; row < rows; row++ ) {
+                properties.put( strings.get( table.getShort( row * 2 ) ), strings.get( table.getShort( (rows + row) * 2 ) ) );
+            }
+            return properties;
+        }
+    }
+
+    @Test
+    public void packageLanguages() throws IOException {
+        Map<Integer, Object> before = readSummary( msi );
+        assertEquals( "Intel;1033", before.get( PID_TEMPLATE ) );
+        try( MsiDatabase db = new MsiDatabase( msi ) ) {
+            db.setPackageLanguages( "1033,1031,1036" );
+            db.save();
+        }
+        Map<Integer, Object> after = readSummary( msi );
+        assertEquals( "Intel;1033,1031,1036", after.get( PID_TEMPLATE ) );
+        assertEquals( "Installation Database", after.get( PID_TITLE ) );
+        assertEquals( 200, after.get( PID_PAGECOUNT ) );
+        assertEquals( before.size(), after.size() );
+    }
+
+    @Test
+    public void productLanguage() throws IOException {
+        try( MsiDatabase db = new MsiDatabase( msi ) ) {
+            db.setProductLanguage( "1031" );
+            db.save();
+        }
+        Map<String, String> properties = readProperties( msi );
+        assertEquals( "1031", properties.get( "ProductLanguage" ) );
+        assertEquals( "Test Product", properties.get( "ProductName" ) );
+        assertEquals( "i-net software", properties.get( "Manufacturer" ) );
+        try( CompoundFile cf = new CompoundFile( msi ) ) {
+            List<String> strings = readStrings( cf );
+            assertNull( "the old value without references is removed", strings.get( 4 ) );
+            assertEquals( "1031", strings.get( 9 ) );
+        }
+
+        // the free entry of the old value is reused
+        try( MsiDatabase db = new MsiDatabase( msi ) ) {
+            db.setProductLanguage( "1036" );
+            db.save();
+        }
+        assertEquals( "1036", readProperties( msi ).get( "ProductLanguage" ) );
+        try( CompoundFile cf = new CompoundFile( msi ) ) {
+            List<String> strings = readStrings( cf );
+            assertEquals( "1036", strings.get( 4 ) );
+            assertNull( strings.get( 9 ) );
+        }
+    }
+
+    @Test
+    public void embedTransform() throws IOException {
+        File mst = copyFixture( "minimal.mst", dir );
+        try( MsiDatabase db = new MsiDatabase( msi ) ) {
+            db.addTransform( "1031", mst );
+            db.save();
+        }
+        try( CompoundFile result = new CompoundFile( msi ); CompoundFile transform = new CompoundFile( mst ) ) {
+            Entry storage = result.getRoot().getChild( "1031" );
+            assertNotNull( storage );
+            assertTrue( storage.isStorage() );
+            assertStorageEquals( transform.getRoot(), storage );
+            assertEquals( 6, result.getRoot().getChildren().size() );
+        }
+        assertEquals( "1033", readProperties( msi ).get( "ProductLanguage" ) );
+    }
+
+    @Test
+    public void multilingualSetup() throws IOException {
+        File mst = copyFixture( "minimal.mst", dir );
+        try( MsiDatabase db = new MsiDatabase( msi ) ) {
+            db.setPackageLanguages( "1033,1031" );
+            db.setProductLanguage( "1033" );
+            db.addTransform( "1031", mst );
+            db.save();
+        }
+        assertEquals( "Intel;1033,1031", readSummary( msi ).get( PID_TEMPLATE ) );
+        try( CompoundFile cf = new CompoundFile( msi ) ) {
+            assertEquals( "the unchanged value is not freed", "1033", readStrings( cf ).get( 4 ) );
+            assertNotNull( cf.getRoot().getChild( "1031" ) );
+        }
+    }
+
+    @Test
+    public void languageTransforms() throws IOException {
+        File french = copyFixture( "minimal.mst", dir );
+        File german = new File( dir, "german.mst" );
+        Files.copy( french.toPath(), german.toPath() );
+        Map<String, File> transforms = new LinkedHashMap<>();
+        transforms.put( "1036", french );
+        transforms.put( "1031", german );
+        try( MsiDatabase db = new MsiDatabase( msi ) ) {
+            db.addLanguageTransforms( "1033", transforms );
+            db.save();
+        }
+        assertEquals( "in the order of the map", "Intel;1033,1036,1031", readSummary( msi ).get( PID_TEMPLATE ) );
+        try( CompoundFile result = new CompoundFile( msi ); CompoundFile transform = new CompoundFile( french ) ) {
+            assertStorageEquals( transform.getRoot(), result.getRoot().getChild( "1036" ) );
+            assertStorageEquals( transform.getRoot(), result.getRoot().getChild( "1031" ) );
+            assertEquals( 7, result.getRoot().getChildren().size() );
+        }
+        assertEquals( "1033", readProperties( msi ).get( "ProductLanguage" ) );
+    }
+
+    @Test
+    public void fileHashes() throws IOException {
+        Map<String, int[]> hashes = new LinkedHashMap<>();
+        hashes.put( "fileB", new int[] { 1, 2, 3, -4 } );
+        hashes.put( "fileA", new int[] { 5, 6, 7, 8 } );
+        try( MsiDatabase db = new MsiDatabase( msi ) ) {
+            db.addFileHashes( hashes );
+            db.save();
+        }
+        hashes.clear();
+        hashes.put( "fileA", new int[] { 9, 9, 9, 9 } ); // existing rows are not changed
+        hashes.put( "fileC", new int[] { 10, 11, 12, 13 } );
+        try( MsiDatabase db = new MsiDatabase( msi ) ) {
+            db.addFileHashes( hashes );
+            db.save();
+        }
+
+        try( CompoundFile cf = new CompoundFile( msi ) ) {
+            List<String> strings = readStrings( cf );
+            ByteBuffer table = ByteBuffer.wrap( cf.getRoot().getChild( MsiDatabase.encodeName( "MsiFileHash", true ) ).getData() ).order( ByteOrder.LITTLE_ENDIAN );
+            int rows = table.capacity() / (2 + 2 + 16);
+            assertEquals( 3, rows );
+            String[] files = new String[rows];
+            int[][] values = new int[rows][4];
+            for( int row = 0; row < rows; row++ ) {
+                files[row] = strings.get( table.getShort( row * 2 ) );
+                assertEquals( "Options", 0x8000, table.getShort( (rows + row) * 2 ) & 0xFFFF );
+                for( int k = 0; k < 4; k++ ) {
+                    values[row][k] = table.getInt( rows * 4 + (k * rows + row) * 4 ) ^ 0x80000000;
+                }
+            }
+            assertArrayEquals( "sorted by the string ID", new String[] { "fileB", "fileA", "fileC" }, files );
+            assertArrayEquals( new int[] { 1, 2, 3, -4 }, values[0] );
+            assertArrayEquals( new int[] { 5, 6, 7, 8 }, values[1] );
+            assertArrayEquals( new int[] { 10, 11, 12, 13 }, values[2] );
+        }
+    }
+
+    @Test( expected = IOException.class )
+    public void missingTable() throws IOException {
+        try( MsiDatabase db = new MsiDatabase( copyFixture( "minimal.mst", dir ) ) ) {
+            db.addFileHashes( new HashMap<>() );
+        }
+    }
+
+    @Test
+    public void encodeName() {
+        assertEquals( "\u4840\u3F3F\u4577\u446C\u3E6A\u44B2\u482F", MsiDatabase.encodeName( "_StringPool", true ) );
+        assertEquals( "\u4840\u3F7F\u4164\u422F\u4836", MsiDatabase.encodeName( "_Tables", true ) );
+        assertEquals( "streams without the table prefix", "\u3F7F\u4164\u422F\u4836", MsiDatabase.encodeName( "_Tables", false ) );
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Change the resources of a copy of the signtool.exe from the sdk folder. The .rsrc section of this file is not the
+ * last section and the file is signed.
+ *
+ * @author Volker Berlin
+ */
+public class PeResourceEditorTest {
+
+    private File   dir;
+
+    private byte[] signtool;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "peresource" ).toFile();
+        try( InputStream input = getClass().getResourceAsStream( "sdk/signtool.exe" ) ) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while( (count = input.read( buffer )) > 0 ) {
+                data.write( buffer, 0, count );
+            }
+            signtool = data.toByteArray();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * The headers of an executable.
+     */
+    private static class Headers {
+
+        private final ByteBuffer buffer;
+
+        private final int        optionalHeader;
+
+        private final int        dataDirectories;
+
+        private Headers( byte[] data ) {
+            buffer = ByteBuffer.wrap( data ).order( ByteOrder.LITTLE_ENDIAN );
+            optionalHeader = buffer.getInt( 0x3C ) + 24;
+            assertEquals( "PE32", 0x10B, buffer.getShort( optionalHeader ) );
+            dataDirectories = optionalHeader + 96;
+        }
+
+        private int sectionCount() {
+            return buffer.getShort( optionalHeader - 18 ) & 0xFFFF;
+        }
+
+        private int directory( int index ) {
+            return buffer.getInt( dataDirectories + index * 8 );
+        }
+
+        private int checksum() {
+            return buffer.getInt( optionalHeader + 64 );
+        }
+
+        /**
+         * Calculate the checksum like CheckSumMappedFile, the checksum field is handled as zero.
+         *
+         * @return the checksum
+         */
+        private int calculateChecksum() {
+            long sum = 0;
+            int length = buffer.capacity();
+            for( int i = 0; i < length; i += 2 ) {
+                int value = i + 1 < length ? buffer.getShort( i ) & 0xFFFF : buffer.get( i ) & 0xFF;
+                if( i == optionalHeader + 64 || i == optionalHeader + 66 ) {
+                    value = 0;
+                }
+                sum += value;
+            }
+            while( (sum >>> 16) != 0 ) {
+                sum = (sum & 0xFFFF) + (sum >>> 16);
+            }
+            return (int)(sum + length);
+        }
+
+        /**
+         * Get the raw data of a section.
+         *
+         * @param name the section name
+         * @return the data
+         */
+        private byte[] section( String name ) {
+            int sectionHeaders = optionalHeader + (buffer.getShort( optionalHeader - 4 ) & 0xFFFF);
+            for( int i = 0; i < sectionCount(); i++ ) {
+                int section = sectionHeaders + i * 40;
+                String sectionName = new String( buffer.array(), section, 8, StandardCharsets.US_ASCII ).trim();
+                if( sectionName.replace( "\u0000", "" ).equals( name ) ) {
+                    int pointer = buffer.getInt( section + 20 );
+                    return Arrays.copyOfRange( buffer.array(), pointer, pointer + buffer.getInt( section + 16 ) );
+                }
+            }
+            throw new AssertionError( "missing section " + name );
+        }
+    }
+
+    /**
+     * Create an ico file.
+     *
+     * @param images the image data
+     * @return the ico file
+     */
+    private static byte[] createIco( byte[]... images ) {
+        ByteBuffer ico = ByteBuffer.allocate( 6 + images.length * 16 + Arrays.stream( images ).mapToInt( image -> image.length ).sum() ).order( ByteOrder.LITTLE_ENDIAN );
+        ico.putShort( (short)0 ).putShort( (short)1 ).putShort( (short)images.length );
+        int offset = 6 + images.length * 16;
+        for( int i = 0; i < images.length; i++ ) {
+            ico.put( (byte)(16 << i) ).put( (byte)(16 << i) ).put( (byte)0 ).put( (byte)0 );
+            ico.putShort( (short)1 ).putShort( (short)32 );
+            ico.putInt( images[i].length ).putInt( offset );
+            offset += images[i].length;
+        }
+        for( byte[] image : images ) {
+            ico.put( image );
+        }
+        return ico.array();
+    }
+
+    @Test
+    public void originalFile() throws IOException {
+        Headers headers = new Headers( signtool );
+        assertNotEquals( "signed", 0, headers.directory( 4 ) );
+        assertEquals( "valid checksum calculation", headers.checksum(), headers.calculateChecksum() );
+        PeResourceEditor editor = new PeResourceEditor( signtool );
+        assertNotNull( editor.getResource( PeResourceEditor.RT_VERSION, 1 ) );
+    }
+
+    @Test
+    public void changeResources() throws IOException {
+        PeResourceEditor editor = new PeResourceEditor( signtool );
+        Map<String, String> strings = new LinkedHashMap<>();
+        strings.put( "ProductName", "Test Product" );
+        strings.put( "CompanyName", null );
+        editor.setVersionInfo( "1.2.3.4", "5.6", strings );
+        byte[] image1 = new byte[] { 1, 2, 3, 4, 5 };
+        byte[] image2 = new byte[3000];
+        Arrays.fill( image2, (byte)7 );
+        editor.setIcon( createIco( image1, image2 ) );
+        byte[] manifest = "<assembly/>".getBytes( StandardCharsets.UTF_8 );
+        editor.setResource( PeResourceEditor.RT_MANIFEST, 1, manifest );
+        editor.setResource( "CUSTOM", "NAME", new byte[] { 42 } );
+        File file = new File( dir, "changed.exe" );
+        editor.save( file );
+
+        byte[] changed = Files.readAllBytes( file.toPath() );
+        Headers original = new Headers( signtool );
+        Headers headers = new Headers( changed );
+        assertEquals( "a new section for the resources", original.sectionCount() + 1, headers.sectionCount() );
+        assertEquals( "signature removed", 0, headers.directory( 4 ) );
+        assertEquals( headers.checksum(), headers.calculateChecksum() );
+        assertArrayEquals( "code unchanged", original.section( ".text" ), headers.section( ".text" ) );
+
+        PeResourceEditor reopened = new PeResourceEditor( file );
+        ByteBuffer version = ByteBuffer.wrap( reopened.getResource( PeResourceEditor.RT_VERSION, 1 ) ).order( ByteOrder.LITTLE_ENDIAN );
+        assertEquals( "block size", version.capacity(), version.getShort( 0 ) );
+        assertEquals( "VS_VERSION_INFO", new String( version.array(), 6, 30, StandardCharsets.UTF_16LE ) );
+        assertEquals( 0xFEEF04BD, version.getInt( 40 ) );
+        assertEquals( 1 << 16 | 2, version.getInt( 48 ) );
+        assertEquals( 3 << 16 | 4, version.getInt( 52 ) );
+        assertEquals( 5 << 16 | 6, version.getInt( 56 ) );
+        assertEquals( 0, version.getInt( 60 ) );
+        String text = new String( version.array(), StandardCharsets.UTF_16LE );
+        assertTrue( "key, padding and value", text.matches( "(?s).*ProductName\u0000+Test Product\u0000.*" ) );
+        assertFalse( "null values are ignored", text.contains( "CompanyName" ) );
+
+        ByteBuffer group = ByteBuffer.wrap( reopened.getResource( PeResourceEditor.RT_GROUP_ICON, 1 ) ).order( ByteOrder.LITTLE_ENDIAN );
+        assertEquals( 6 + 2 * 14, group.capacity() );
+        assertEquals( 2, group.getShort( 4 ) );
+        assertEquals( 16, group.get( 6 ) );
+        assertEquals( image2.length, group.getInt( 6 + 14 + 8 ) );
+        assertArrayEquals( image1, reopened.getResource( PeResourceEditor.RT_ICON, group.getShort( 6 + 12 ) & 0xFFFF ) );
+        assertArrayEquals( image2, reopened.getResource( PeResourceEditor.RT_ICON, group.getShort( 6 + 14 + 12 ) & 0xFFFF ) );
+        assertArrayEquals( manifest, reopened.getResource( PeResourceEditor.RT_MANIFEST, 1 ) );
+        assertArrayEquals( new byte[] { 42 }, reopened.getResource( "CUSTOM", "NAME" ) );
+
+        // the second save reuses the last section
+        reopened.setResource( PeResourceEditor.RT_MANIFEST, 1, new byte[10_000] );
+        File again = new File( dir, "again.exe" );
+        reopened.save( again );
+        Headers headers2 = new Headers( Files.readAllBytes( again.toPath() ) );
+        assertEquals( headers.sectionCount(), headers2.sectionCount() );
+        assertEquals( headers2.checksum(), headers2.calculateChecksum() );
+        PeResourceEditor reopened2 = new PeResourceEditor( again );
+        assertArrayEquals( new byte[10_000], reopened2.getResource( PeResourceEditor.RT_MANIFEST, 1 ) );
+        assertArrayEquals( image2, reopened2.getResource( PeResourceEditor.RT_ICON, group.getShort( 6 + 14 + 12 ) & 0xFFFF ) );
+    }
+
+    @Test
+    public void replaceIcon() throws IOException {
+        PeResourceEditor editor = new PeResourceEditor( signtool );
+        editor.setIcon( createIco( new byte[] { 1 }, new byte[] { 2 }, new byte[] { 3 } ) );
+        editor.setIcon( createIco( new byte[] { 4 } ) );
+        File file = new File( dir, "icon.exe" );
+        editor.save( file );
+
+        PeResourceEditor reopened = new PeResourceEditor( file );
+        ByteBuffer group = ByteBuffer.wrap( reopened.getResource( PeResourceEditor.RT_GROUP_ICON, 1 ) ).order( ByteOrder.LITTLE_ENDIAN );
+        assertEquals( 1, group.getShort( 4 ) );
+        int id = group.getShort( 6 + 12 ) & 0xFFFF;
+        assertArrayEquals( new byte[] { 4 }, reopened.getResource( PeResourceEditor.RT_ICON, id ) );
+        for( int i = 1; i <= 3; i++ ) {
+            if( i != id ) {
+                assertNull( "images of the old group are removed", reopened.getResource( PeResourceEditor.RT_ICON, i ) );
+            }
+        }
+    }
+
+    @Test( expected = IOException.class )
+    public void invalidIcon() throws IOException {
+        new PeResourceEditor( signtool ).setIcon( new byte[] { 0, 0, 2, 0, 1, 0 } );
+    }
+
+    @Test( expected = IOException.class )
+    public void noExecutable() throws IOException {
+        new PeResourceEditor( new byte[1024] );
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.gradle.api.logging.Logging;
+import org.gradle.initialization.BuildCancellationToken;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.inet.gradle.setup.util.ContentCache;
+
+/**
+ * Drive the SignToolBatch with the StubSignTool as signtool.exe.
+ *
+ * @author Volker Berlin
+ */
+public class SignToolBatchTest {
+
+    private File                dir;
+
+    private final List<Process> processes = new ArrayList<>();
+
+    private int                 execCount;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "signtool" ).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for( Process process : processes ) {
+            process.destroyForcibly();
+        }
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Execute the StubSignTool in a new Java process like AbstractBuilder execute signtool.exe.
+     *
+     * @param command the command line with signtool.exe as program
+     * @param cancellation destroy the process if canceled
+     */
+    private void exec( ArrayList<String> command, BuildCancellationToken cancellation ) {
+        List<String> java = new ArrayList<>( Arrays.asList( new File( System.getProperty( "java.home" ), "bin/java" ).getPath(), "-cp", System.getProperty( "java.class.path" ), StubSignTool.class.getName() ) );
+        java.addAll( command.subList( 1, command.size() ) );
+        try {
+            Process process = new ProcessBuilder( java ).inheritIO().start();
+            synchronized( processes ) {
+                processes.add( process );
+                execCount++;
+            }
+            Runnable destroy = process::destroy;
+            cancellation.addCallback( destroy );
+            try {
+                if( process.waitFor() != 0 ) {
+                    throw new RuntimeException( "Exit code: " + process.exitValue() );
+                }
+            } finally {
+                cancellation.removeCallback( destroy );
+            }
+        } catch( IOException | InterruptedException ex ) {
+            throw new RuntimeException( ex );
+        }
+    }
+
+    private SignToolBatch createBatch( ContentCache cache, String... timestamps ) {
+        SignTool sign = new SignTool();
+        sign.setTimestamp( Arrays.asList( timestamps ) );
+        return new SignToolBatch( sign, "signtool.exe", null, "Test", cache, dir, this::exec, Logging.getLogger( SignToolBatchTest.class ) );
+    }
+
+    private File createFile( String name ) throws IOException {
+        File file = new File( dir, name );
+        Files.write( file.toPath(), "content\n".getBytes( StandardCharsets.UTF_8 ) );
+        return file;
+    }
+
+    private static String read( File file ) throws IOException {
+        return new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 );
+    }
+
+    @Test
+    public void signAndTimestamp() throws IOException {
+        File first = createFile( "first.exe" );
+        File second = createFile( "second.exe" );
+        SignToolBatch batch = createBatch( null, "fast" );
+        batch.add( first, false );
+        batch.add( second, false );
+        batch.sign();
+
+        assertEquals( "content\nsigned\ntimestamp fast\n", read( first ) );
+        assertEquals( "content\nsigned\ntimestamp fast\n", read( second ) );
+        assertEquals( "one call for signing and one for the timestamp", 2, execCount );
+    }
+
+    @Test
+    public void losingTimestampRequestsAreAborted() throws IOException {
+        File file = createFile( "setup.msi" );
+        SignToolBatch batch = createBatch( null, "slow", "fail", "fast" );
+        batch.add( file, false );
+        long start = System.currentTimeMillis();
+        batch.sign();
+
+        assertTrue( "waited for the slow server", System.currentTimeMillis() - start < 30_000 );
+        assertEquals( "content\nsigned\ntimestamp fast\n", read( file ) );
+        for( Process process : processes ) {
+            assertFalse( "a timestamp request is still running", process.isAlive() );
+        }
+    }
+
+    @Test
+    public void allTimestampRequestsFail() throws IOException {
+        File file = createFile( "setup.msi" );
+        SignToolBatch batch = createBatch( null, "fail", "fail" );
+        batch.add( file, false );
+        try {
+            batch.sign();
+            throw new AssertionError( "exception expected" );
+        } catch( RuntimeException ex ) {
+            assertEquals( 1, ex.getSuppressed().length );
+        }
+        assertEquals( "content\nsigned\n", read( file ) );
+    }
+
+    @Test
+    public void signedFilesFromCache() throws IOException {
+        ContentCache cache = new ContentCache( new File( dir, "cache" ), Long.MAX_VALUE );
+        File file = createFile( "launcher.exe" );
+        SignToolBatch batch = createBatch( cache, "fast" );
+        batch.add( file, true );
+        batch.sign();
+        assertEquals( 2, execCount );
+
+        File other = createFile( "other.exe" );
+        batch.add( other, true );
+        batch.sign();
+        assertEquals( "no signtool call for a cached file", 2, execCount );
+        assertEquals( "content\nsigned\ntimestamp fast\n", read( other ) );
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A replacement of signtool.exe for the tests. "sign" appends a line to every file of the command line. "timestamp /t
+ * server" appends the server to the files. The server "fail" exits with an error and the server "slow" waits a minute
+ * before it writes.
+ *
+ * @author Volker Berlin
+ */
+public class StubSignTool {
+
+    /**
+     * Run the stub.
+     *
+     * @param args the command line of signtool.exe without the program
+     * @throws Exception if any error occur
+     */
+    public static void main( String[] args ) throws Exception {
+        String line;
+        if( "timestamp".equals( args[0] ) ) {
+            String server = args[2];
+            if( server.equals( "fail" ) ) {
+                System.exit( 1 );
+            }
+            if( server.equals( "slow" ) ) {
+                Thread.sleep( 60_000 );
+            }
+            line = "timestamp " + server + "\n";
+        } else {
+            line = "signed\n";
+        }
+        for( String arg : args ) {
+            File file = new File( arg );
+            if( file.isFile() ) {
+                Files.write( file.toPath(), line.getBytes( StandardCharsets.UTF_8 ), StandardOpenOption.APPEND );
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.msi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.inet.gradle.setup.abstracts.AbstractSetupTask;
+import com.inet.gradle.setup.util.XmlFileBuilder;
+
+/**
+ * Spool File elements and stream them into the components of a wxs file.
+ *
+ * @author Volker Berlin
+ */
+public class WxsFileSpoolTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "spool" ).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * A builder that stream the spooled files into its components like the WxsFileBuilder.
+     */
+    private static class SpoolingBuilder extends XmlFileBuilder<AbstractSetupTask> {
+
+        private final WxsFileSpool spool;
+
+        SpoolingBuilder( File xmlFile, File buildDir, WxsFileSpool spool ) throws Exception {
+            super( null, null, xmlFile, buildDir, null );
+            this.spool = spool;
+        }
+
+        @Override
+        protected boolean hasStreamedChildren( Element element ) {
+            return "Component".equals( element.getNodeName() ) && spool.size( element.getAttribute( "Id" ) ) > 0;
+        }
+
+        @Override
+        protected boolean isSkipped( Element element ) {
+            return "Skipped".equals( element.getAttribute( "Id" ) );
+        }
+
+        @Override
+        protected void writeStreamedChildren( Element element, XMLStreamWriter writer, int depth ) throws Exception {
+            String compID = element.getAttribute( "Id" );
+            for( int i = 0; i < spool.size( compID ); i++ ) {
+                String[] file = spool.read( compID, i );
+                newLine( writer, depth );
+                writer.writeEmptyElement( "File" );
+                writer.writeAttribute( "Id", file[0] );
+                writer.writeAttribute( "Name", file[2] );
+                writer.writeAttribute( "Source", file[1] );
+            }
+        }
+    }
+
+    /**
+     * Parse a saved wxs file without the whitespace between the elements.
+     *
+     * @param file the file
+     * @return the document
+     * @throws Exception if any error occur
+     */
+    private static Document parse( File file ) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( file );
+        removeWhitespace( doc.getDocumentElement() );
+        return doc;
+    }
+
+    /**
+     * Remove the whitespace only text nodes.
+     *
+     * @param node the node
+     */
+    private static void removeWhitespace( Node node ) {
+        for( Node child = node.getFirstChild(); child != null; ) {
+            Node next = child.getNextSibling();
+            if( child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().trim().isEmpty() ) {
+                node.removeChild( child );
+            } else {
+                removeWhitespace( child );
+            }
+            child = next;
+        }
+    }
+
+    @Test
+    public void addAndRead() throws IOException {
+        List<String[]> expected = new ArrayList<>();
+        Random random = new Random( 1 );
+        File tempFile;
+        try( WxsFileSpool spool = new WxsFileSpool( dir ) ) {
+            for( int i = 0; i < 3000; i++ ) {
+                // long sources so that the records cross the read buffer
+                StringBuilder source = new StringBuilder( "C:\\build\\\u00e4\u00f6\u00fc\\\u65e5\u672c\\" );
+                for( int k = random.nextInt( 200 ); k > 0; k-- ) {
+                    source.append( (char)('a' + random.nextInt( 26 )) );
+                }
+                String[] file = { "file" + i, source.toString(), "name" + i + ".txt" };
+                spool.add( "comp" + i % 7, file[0], file[1], file[2] );
+                expected.add( file );
+            }
+            spool.add( "comp0", "file1", "other", "other" );
+            assertEquals( "a duplicate ID is ignored", 429, spool.size( "comp0" ) );
+            assertEquals( 428, spool.size( "comp6" ) );
+            assertEquals( 0, spool.size( "unknown" ) );
+
+            // read the components in a different order as added
+            for( int c = 6; c >= 0; c-- ) {
+                for( int i = 0; i < spool.size( "comp" + c ); i++ ) {
+                    assertArrayEquals( expected.get( i * 7 + c ), spool.read( "comp" + c, i ) );
+                }
+            }
+            assertArrayEquals( "random access", expected.get( 7 * 100 + 3 ), spool.read( "comp3", 100 ) );
+            assertArrayEquals( "random access", expected.get( 0 ), spool.read( "comp0", 0 ) );
+
+            tempFile = dir.listFiles()[0];
+            assertTrue( tempFile.isFile() );
+        }
+        assertFalse( "the temporary file is deleted", tempFile.exists() );
+    }
+
+    @Test
+    public void streamedAsDom() throws Exception {
+        try( WxsFileSpool spool = new WxsFileSpool( dir ) ) {
+            SpoolingBuilder streamed = new SpoolingBuilder( new File( dir, "streamed.wxs" ), dir, spool );
+            XmlFileBuilder<AbstractSetupTask> dom = new XmlFileBuilder<>( null, null, new File( dir, "dom.wxs" ), dir, null );
+            createWxs( streamed, spool );
+            createWxs( dom, null );
+
+            dom.save();
+            streamed.saveStreaming();
+            assertTrue( parse( dom.xmlFile ).isEqualNode( parse( streamed.xmlFile ) ) );
+        }
+    }
+
+    /**
+     * Create the DOM of a wxs file with some components and files.
+     *
+     * @param builder the builder
+     * @param spool the spool for the File elements or null to add them to the DOM
+     * @throws IOException if an I/O error occurs
+     */
+    private static void createWxs( XmlFileBuilder<AbstractSetupTask> builder, WxsFileSpool spool ) throws IOException {
+        Element wix = builder.createChild( builder.doc, "Wix", true );
+        Element product = builder.getOrCreateChildById( wix, "Product", "*" );
+        Element installDir = builder.getOrCreateChildById( builder.getOrCreateChildById( product, "Directory", "TARGETDIR" ), "Directory", "INSTALLDIR" );
+        for( int c = 0; c < 3; c++ ) {
+            Element component = builder.getOrCreateChildById( installDir, "Component", "comp" + c );
+            builder.getOrCreateChild( component, "CreateFolder" );
+            for( int i = 0; i < 5; i++ ) {
+                String id = "file" + c + "_" + i;
+                String source = "C:\\build\\lib & \"more\"\\" + id + ".jar";
+                String name = id + ".jar";
+                if( spool != null ) {
+                    spool.add( "comp" + c, id, source, name );
+                } else {
+                    Element file = builder.getOrCreateChildById( component, "File", id );
+                    file.setAttribute( "Name", name );
+                    file.setAttribute( "Source", source );
+                }
+            }
+        }
+        builder.getOrCreateChildById( installDir, "Component", "empty" );
+        if( spool != null ) {
+            builder.getOrCreateChildById( installDir, "Component", "Skipped" );
+        }
+        builder.getOrCreateChildById( product, "Feature", "MainFeature" );
+    }
+}
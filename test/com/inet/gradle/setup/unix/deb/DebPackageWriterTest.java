@@ -0,0 +1,389 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.deb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.inet.gradle.setup.abstracts.PackageEntries;
+import com.inet.gradle.setup.util.ContentCache;
+
+/**
+ * Write a package from a directory and parse the ar archive, the control archive and the data archive again.
+ *
+ * @author Volker Berlin
+ */
+public class DebPackageWriterTest {
+
+    private static final String LONG_PATH = "opt/app/" + String.join( "", Collections.nCopies( 60, "a" ) ) + '/' + String.join( "", Collections.nCopies( 60, "b" ) ) + ".txt";
+
+    private File                dir;
+
+    private File                root;
+
+    private File                controlDir;
+
+    private boolean             posix;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "deb" ).toFile();
+        root = new File( dir, "root" );
+        controlDir = new File( root, "DEBIAN" );
+        posix = FileSystems.getDefault().supportedFileAttributeViews().contains( "posix" );
+
+        Files.write( Files.createDirectories( controlDir.toPath() ).resolve( "control" ), "Package: app\nInstalled-Size: 1\n".getBytes( StandardCharsets.UTF_8 ) );
+        Path bin = Files.createDirectories( root.toPath().resolve( "opt/app/bin" ) );
+        Path script = Files.write( bin.resolve( "run.sh" ), "#!/bin/sh\necho run\n".getBytes( StandardCharsets.UTF_8 ) );
+        byte[] data = new byte[200_001];
+        new Random( 7 ).nextBytes( data );
+        Files.write( Files.createDirectories( root.toPath().resolve( "opt/app/lib" ) ).resolve( "data.bin" ), data );
+        Path longFile = root.toPath().resolve( LONG_PATH );
+        Files.write( Files.createDirectories( longFile.getParent() ).resolve( longFile.getFileName() ), "long name\n".getBytes( StandardCharsets.UTF_8 ) );
+        if( posix ) {
+            Files.setPosixFilePermissions( script, PosixFilePermissions.fromString( "rwxr-xr-x" ) );
+            Files.createSymbolicLink( root.toPath().resolve( "opt/app/link" ), Paths.get( "bin/run.sh" ) );
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Calculate a digest as lower case hex string.
+     *
+     * @param algorithm the algorithm
+     * @param data the data
+     * @return the hex string
+     * @throws Exception if the algorithm is not available
+     */
+    private static String hex( String algorithm, byte[] data ) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for( byte b : MessageDigest.getInstance( algorithm ).digest( data ) ) {
+            hex.append( String.format( "%02x", b & 0xFF ) );
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Decompress all gzip members of the data.
+     *
+     * @param data the compressed data
+     * @return the uncompressed data
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] gunzip( byte[] data ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try( InputStream input = new GZIPInputStream( new ByteArrayInputStream( data ) ) ) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while( (count = input.read( buffer )) > 0 ) {
+                out.write( buffer, 0, count );
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Read the members of an ar archive and check the header layout that dpkg expects.
+     *
+     * @param ar the archive
+     * @return the content by member name in the order of the archive
+     */
+    private static Map<String, byte[]> readAr( byte[] ar ) {
+        assertEquals( "!<arch>\n", new String( ar, 0, 8, StandardCharsets.US_ASCII ) );
+        Map<String, byte[]> members = new LinkedHashMap<>();
+        int pos = 8;
+        while( pos < ar.length ) {
+            String header = new String( ar, pos, 60, StandardCharsets.US_ASCII );
+            String name = header.substring( 0, 16 ).trim();
+            assertFalse( "name without the GNU slash", name.endsWith( "/" ) );
+            assertTrue( header.substring( 16, 28 ).trim().matches( "[0-9]+" ) );
+            assertEquals( "0     ", header.substring( 28, 34 ) );
+            assertEquals( "0     ", header.substring( 34, 40 ) );
+            assertEquals( "100644  ", header.substring( 40, 48 ) );
+            assertEquals( "`\n", header.substring( 58, 60 ) );
+            int size = Integer.parseInt( header.substring( 48, 58 ).trim() );
+            pos += 60;
+            members.put( name, Arrays.copyOfRange( ar, pos, pos + size ) );
+            pos += size;
+            if( (size & 1) != 0 ) {
+                assertEquals( "padding to an even offset", '\n', ar[pos++] );
+            }
+        }
+        assertEquals( "archive size", ar.length, pos );
+        return members;
+    }
+
+    /**
+     * Parse a number field of a tar header. Sizes can use the GNU base-256 encoding.
+     *
+     * @param header the header block
+     * @param offset the offset of the field
+     * @param length the length of the field
+     * @return the value
+     */
+    static long parseNumber( byte[] header, int offset, int length ) {
+        if( (header[offset] & 0x80) != 0 ) {
+            long value = header[offset] & 0x7F;
+            for( int i = 1; i < length; i++ ) {
+                value = value << 8 | (header[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        String octal = new String( header, offset, length, StandardCharsets.US_ASCII ).trim();
+        int end = octal.indexOf( 0 );
+        return Long.parseLong( end < 0 ? octal : octal.substring( 0, end ), 8 );
+    }
+
+    /**
+     * Read a zero terminated string of a tar header.
+     *
+     * @param header the header block
+     * @param offset the offset of the field
+     * @param length the length of the field
+     * @return the string
+     */
+    private static String parseString( byte[] header, int offset, int length ) {
+        int end = offset;
+        while( end < offset + length && header[end] != 0 ) {
+            end++;
+        }
+        return new String( header, offset, end - offset, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Check the checksum, the owner and the magic of a tar header.
+     *
+     * @param header the header block
+     */
+    static void checkHeader( byte[] header ) {
+        long sum = 0;
+        for( int i = 0; i < header.length; i++ ) {
+            sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+        }
+        assertEquals( "checksum", sum, parseNumber( header, 148, 8 ) );
+        assertEquals( "ustar  ", parseString( header, 257, 8 ) );
+        assertEquals( "root", parseString( header, 265, 32 ) );
+        assertEquals( "root", parseString( header, 297, 32 ) );
+        assertEquals( "uid", 0, parseNumber( header, 108, 8 ) );
+        assertEquals( "gid", 0, parseNumber( header, 116, 8 ) );
+    }
+
+    /**
+     * Read the entries of a tar archive with GNU long names.
+     *
+     * @param tar the uncompressed archive
+     * @return the entries by name, every value is [type, mode, content or link target]
+     */
+    private static Map<String, Object[]> readTar( byte[] tar ) {
+        Map<String, Object[]> entries = new LinkedHashMap<>();
+        String longName = null;
+        String longLink = null;
+        int pos = 0;
+        while( true ) {
+            byte[] header = Arrays.copyOfRange( tar, pos, pos + 512 );
+            pos += 512;
+            if( header[0] == 0 ) {
+                assertArrayEquals( "end of archive", new byte[1024], Arrays.copyOfRange( tar, pos - 512, pos + 512 ) );
+                assertEquals( "archive size", tar.length, pos + 512 );
+                return entries;
+            }
+            checkHeader( header );
+            char type = (char)header[156];
+            int size = (int)parseNumber( header, 124, 12 );
+            byte[] content = Arrays.copyOfRange( tar, pos, pos + size );
+            pos += (size + 511) & ~511;
+            switch( type ) {
+                case 'L':
+                    longName = parseString( content, 0, size );
+                    assertEquals( "zero terminated", size - 1, longName.getBytes( StandardCharsets.UTF_8 ).length );
+                    continue;
+                case 'K':
+                    longLink = parseString( content, 0, size );
+                    continue;
+                default:
+            }
+            String name = parseString( header, 0, 100 );
+            if( longName != null ) {
+                assertTrue( "truncated name in the header", longName.startsWith( name ) );
+                name = longName;
+            }
+            String link = longLink != null ? longLink : parseString( header, 157, 100 );
+            int mode = (int)parseNumber( header, 100, 8 );
+            assertFalse( "no duplicates: " + name, entries.containsKey( name ) );
+            entries.put( name, new Object[] { type, mode, type == '2' ? link : content } );
+            longName = null;
+            longLink = null;
+        }
+    }
+
+    @Test
+    public void writePackage() throws Exception {
+        File debFile = new File( dir, "out/app_1.0_all.deb" );
+        List<String> duplicates;
+        long size;
+        try( DebPackageWriter writer = new DebPackageWriter( debFile, dir, 6, 2 ) ) {
+            writer.addDirectory( root, controlDir );
+            // the first entry of a path wins
+            byte[] other = "other".getBytes( StandardCharsets.UTF_8 );
+            writer.getData().writeFile( "/opt/app/bin/run.sh", 0644, other.length, 0, new ByteArrayInputStream( other ) );
+            writer.getData().writeSymlink( "opt/app/lib/data.bin", "../bin/run.sh", 0 );
+            writer.getData().writeDirectory( "./opt/app/lib", 0700, 0 );
+            duplicates = writer.getData().getDuplicates();
+            size = writer.getManifest().getSize();
+            writer.finish( controlDir );
+        }
+        assertFalse( "temporary data archive is removed", new File( dir, "data.tar.gz" ).exists() );
+
+        // the ar archive
+        Map<String, byte[]> members = readAr( Files.readAllBytes( debFile.toPath() ) );
+        assertEquals( Arrays.asList( "debian-binary", "control.tar.gz", "data.tar.gz" ), new ArrayList<>( members.keySet() ) );
+        assertEquals( "2.0\n", new String( members.get( "debian-binary" ), StandardCharsets.US_ASCII ) );
+
+        // the data archive
+        Map<String, Object[]> data = readTar( gunzip( members.get( "data.tar.gz" ) ) );
+        String longDir = LONG_PATH.substring( 0, LONG_PATH.lastIndexOf( '/' ) + 1 );
+        List<String> expected = new ArrayList<>( Arrays.asList( "./", "./opt/", "./opt/app/", "./" + longDir, "./" + LONG_PATH, "./opt/app/bin/", "./opt/app/bin/run.sh", "./opt/app/lib/", "./opt/app/lib/data.bin" ) );
+        if( posix ) {
+            expected.add( "./opt/app/link" );
+        }
+        assertEquals( "without the control directory", expected, new ArrayList<>( data.keySet() ) );
+        long fileSize = 0;
+        for( Map.Entry<String, Object[]> entry : data.entrySet() ) {
+            String name = entry.getKey();
+            Object[] value = entry.getValue();
+            switch( (char)value[0] ) {
+                case '0':
+                    byte[] content = (byte[])value[2];
+                    assertArrayEquals( name, Files.readAllBytes( root.toPath().resolve( name.substring( 2 ) ) ), content );
+                    fileSize += content.length;
+                    break;
+                case '2':
+                    assertEquals( "bin/run.sh", value[2] );
+                    break;
+                case '5':
+                    assertEquals( name, 0755, value[1] );
+                    break;
+                default:
+                    throw new AssertionError( "unexpected type " + value[0] );
+            }
+        }
+        assertEquals( size, fileSize );
+        if( posix ) {
+            assertEquals( "executable", 0755, data.get( "./opt/app/bin/run.sh" )[1] );
+        }
+        assertEquals( 0644, data.get( "./opt/app/lib/data.bin" )[1] );
+        assertEquals( Arrays.asList( "./opt/app/bin/run.sh", "./opt/app/lib/data.bin" ), duplicates );
+
+        // the control archive with the md5sums of all files
+        Map<String, Object[]> control = readTar( gunzip( members.get( "control.tar.gz" ) ) );
+        assertEquals( Arrays.asList( "./", "./control", "./md5sums" ), new ArrayList<>( control.keySet() ) );
+        assertArrayEquals( Files.readAllBytes( new File( controlDir, "control" ).toPath() ), (byte[])control.get( "./control" )[2] );
+        StringBuilder md5sums = new StringBuilder();
+        for( Map.Entry<String, Object[]> entry : data.entrySet() ) {
+            if( (char)entry.getValue()[0] == '0' ) {
+                md5sums.append( hex( "MD5", (byte[])entry.getValue()[2] ) ).append( "  " ).append( entry.getKey().substring( 2 ) ).append( '\n' );
+            }
+        }
+        assertEquals( md5sums.toString(), new String( (byte[])control.get( "./md5sums" )[2], StandardCharsets.UTF_8 ) );
+    }
+
+    @Test
+    public void base256Size() throws IOException {
+        long size = 10L << 30; // larger than the 11 octal digits of the ustar header
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try( TarArchiveWriter tar = new TarArchiveWriter( out ) ) {
+            assertTrue( tar.writeFileHeader( "big.bin", 0644, size, 0 ) );
+            assertFalse( tar.writeFileHeader( "./big.bin", 0644, size, 0 ) );
+            tar.writeFileHeader( "octal.bin", 0644, 077777777777L, 0 );
+        }
+        byte[] header = Arrays.copyOfRange( out.toByteArray(), 512, 1024 ); // behind the root directory
+        checkHeader( header );
+        assertEquals( "./big.bin", parseString( header, 0, 100 ) );
+        assertEquals( "base-256 marker", (byte)0x80, header[124] );
+        assertEquals( size, parseNumber( header, 124, 12 ) );
+
+        header = Arrays.copyOfRange( out.toByteArray(), 1024, 1536 );
+        checkHeader( header );
+        assertEquals( "the largest octal size", "77777777777", parseString( header, 124, 12 ) );
+    }
+
+    @Test
+    public void cachedEntry() throws Exception {
+        File large = new File( dir, "large.bin" );
+        byte[] content = new byte[300_000];
+        new Random( 11 ).nextBytes( content );
+        Arrays.fill( content, 100_000, 200_000, (byte)'x' );
+        Files.write( large.toPath(), content );
+        File cacheDir = new File( dir, "cache" );
+
+        Map<String, Object[]> previous = null;
+        for( int i = 0; i < 2; i++ ) {
+            File debFile = new File( dir, "out/app" + i + ".deb" );
+            ContentCache cache = new ContentCache( cacheDir, Long.MAX_VALUE );
+            try( DebPackageWriter writer = new DebPackageWriter( debFile, dir, 6, 2 ) ) {
+                writer.setCache( cache );
+                writer.addEntry( PackageEntries.of( large, "lib", "/opt/app" ) );
+                writer.addEntry( PackageEntries.of( large, "lib", "/opt/app" ) ); // duplicate
+                writer.addDirectory( root, controlDir );
+                writer.finish( controlDir );
+            }
+            assertEquals( "hits of build " + i, i, cache.getHits() );
+            assertEquals( "misses of build " + i, 1 - i, cache.getMisses() );
+
+            Map<String, byte[]> members = readAr( Files.readAllBytes( debFile.toPath() ) );
+            Map<String, Object[]> data = readTar( gunzip( members.get( "data.tar.gz" ) ) );
+            assertArrayEquals( content, (byte[])data.get( "./opt/app/lib/large.bin" )[2] );
+            assertArrayEquals( "the following entry is not shifted", Files.readAllBytes( root.toPath().resolve( "opt/app/bin/run.sh" ) ), (byte[])data.get( "./opt/app/bin/run.sh" )[2] );
+            String md5sums = new String( (byte[])readTar( gunzip( members.get( "control.tar.gz" ) ) ).get( "./md5sums" )[2], StandardCharsets.UTF_8 );
+            assertTrue( md5sums, md5sums.startsWith( hex( "MD5", content ) + "  opt/app/lib/large.bin\n" ) );
+            if( previous != null ) {
+                assertEquals( previous.keySet(), data.keySet() );
+            }
+            previous = data;
+        }
+    }
+}
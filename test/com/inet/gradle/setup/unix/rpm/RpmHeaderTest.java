@@ -0,0 +1,188 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.rpm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Parse the header structures like rpm does it.
+ *
+ * @author Volker Berlin
+ */
+public class RpmHeaderTest {
+
+    /**
+     * Read a header at the current position of the buffer and check the structure. The position is moved behind the
+     * header.
+     *
+     * @param buffer the data in network byte order
+     * @param regionTag the expected tag of the immutable region
+     * @return the values by tag in the order of the index: String, List of String, short[], int[], long[] or byte[]
+     */
+    static Map<Integer, Object> read( ByteBuffer buffer, int regionTag ) {
+        assertEquals( "magic", 0x8eade801, buffer.getInt() );
+        assertEquals( "reserved", 0, buffer.getInt() );
+        int indexCount = buffer.getInt();
+        int storeSize = buffer.getInt();
+        int store = buffer.position() + indexCount * 16;
+
+        // the region tag with its trailer at the end of the store
+        assertEquals( "region tag", regionTag, buffer.getInt() );
+        assertEquals( "region type", 7, buffer.getInt() );
+        int trailer = buffer.getInt();
+        assertEquals( "region count", 16, buffer.getInt() );
+        assertEquals( "trailer at the end of the store", storeSize - 16, trailer );
+        assertEquals( regionTag, buffer.getInt( store + trailer ) );
+        assertEquals( 7, buffer.getInt( store + trailer + 4 ) );
+        assertEquals( "region size", -indexCount * 16, buffer.getInt( store + trailer + 8 ) );
+        assertEquals( 16, buffer.getInt( store + trailer + 12 ) );
+
+        Map<Integer, Object> values = new LinkedHashMap<>();
+        int lastTag = -1;
+        for( int i = 1; i < indexCount; i++ ) {
+            int tag = buffer.getInt();
+            int type = buffer.getInt();
+            int offset = buffer.getInt();
+            int count = buffer.getInt();
+            assertTrue( "sorted tags", tag > lastTag );
+            lastTag = tag;
+            assertTrue( offset >= 0 && offset < trailer );
+            int pos = store + offset;
+            switch( type ) {
+                case 3:
+                    assertEquals( "alignment", 0, offset % 2 );
+                    short[] shorts = new short[count];
+                    for( int k = 0; k < count; k++ ) {
+                        shorts[k] = buffer.getShort( pos + k * 2 );
+                    }
+                    values.put( tag, shorts );
+                    break;
+                case 4:
+                    assertEquals( "alignment", 0, offset % 4 );
+                    int[] ints = new int[count];
+                    for( int k = 0; k < count; k++ ) {
+                        ints[k] = buffer.getInt( pos + k * 4 );
+                    }
+                    values.put( tag, ints );
+                    break;
+                case 5:
+                    assertEquals( "alignment", 0, offset % 8 );
+                    long[] longs = new long[count];
+                    for( int k = 0; k < count; k++ ) {
+                        longs[k] = buffer.getLong( pos + k * 8 );
+                    }
+                    values.put( tag, longs );
+                    break;
+                case 6:
+                    assertEquals( 1, count );
+                    values.put( tag, readStrings( buffer, pos, 1 ).get( 0 ) );
+                    break;
+                case 7:
+                    values.put( tag, Arrays.copyOfRange( buffer.array(), buffer.arrayOffset() + pos, buffer.arrayOffset() + pos + count ) );
+                    break;
+                case 8:
+                case 9:
+                    values.put( tag, readStrings( buffer, pos, count ) );
+                    break;
+                default:
+                    throw new AssertionError( "unexpected type " + type );
+            }
+        }
+        assertTrue( "store inside of the data", store + storeSize <= buffer.limit() );
+        buffer.position( store + storeSize );
+        return values;
+    }
+
+    /**
+     * Read zero terminated UTF-8 strings.
+     *
+     * @param buffer the data
+     * @param pos the start position
+     * @param count the count of strings
+     * @return the strings
+     */
+    private static List<String> readStrings( ByteBuffer buffer, int pos, int count ) {
+        List<String> strings = new ArrayList<>();
+        for( int k = 0; k < count; k++ ) {
+            int end = pos;
+            while( buffer.get( end ) != 0 ) {
+                end++;
+            }
+            strings.add( new String( buffer.array(), buffer.arrayOffset() + pos, end - pos, StandardCharsets.UTF_8 ) );
+            pos = end + 1;
+        }
+        return strings;
+    }
+
+    @Test
+    public void allTypes() {
+        RpmHeader header = new RpmHeader();
+        header.addString( RpmHeader.NAME, "setup-ümlaut" );
+        header.addInt16( RpmHeader.FILEMODES, (short)0100644, (short)040755 );
+        header.addInt64( RpmHeader.LONGSIZE, 5_000_000_000L );
+        header.addStringArray( RpmHeader.BASENAMES, Arrays.asList( "a", "", "c" ) );
+        header.addI18nString( RpmHeader.SUMMARY, Arrays.asList( "summary" ) );
+        header.addInt32( RpmHeader.FILESIZES, 1, -1, 0x12345678 );
+        header.addInt32( RpmHeader.BUILDTIME, 42 );
+
+        byte[] data = header.toByteArray( RpmHeader.HEADERIMMUTABLE );
+        ByteBuffer buffer = ByteBuffer.wrap( data );
+        Map<Integer, Object> values = read( buffer, RpmHeader.HEADERIMMUTABLE );
+        assertEquals( data.length, buffer.position() );
+
+        assertEquals( Arrays.asList( RpmHeader.NAME, RpmHeader.SUMMARY, RpmHeader.BUILDTIME, RpmHeader.FILESIZES, RpmHeader.FILEMODES, RpmHeader.BASENAMES, RpmHeader.LONGSIZE ), new ArrayList<>( values.keySet() ) );
+        assertEquals( "setup-ümlaut", values.get( RpmHeader.NAME ) );
+        assertEquals( Arrays.asList( "summary" ), values.get( RpmHeader.SUMMARY ) );
+        assertArrayEquals( new int[] { 42 }, (int[])values.get( RpmHeader.BUILDTIME ) );
+        assertArrayEquals( new int[] { 1, -1, 0x12345678 }, (int[])values.get( RpmHeader.FILESIZES ) );
+        assertArrayEquals( new short[] { (short)0100644, (short)040755 }, (short[])values.get( RpmHeader.FILEMODES ) );
+        assertEquals( Arrays.asList( "a", "", "c" ), values.get( RpmHeader.BASENAMES ) );
+        assertArrayEquals( new long[] { 5_000_000_000L }, (long[])values.get( RpmHeader.LONGSIZE ) );
+    }
+
+    @Test
+    public void signature() {
+        RpmHeader header = new RpmHeader();
+        header.addInt32( RpmHeader.SIG_SIZE, 1 );
+        header.addInt32( RpmHeader.SIG_SIZE, 2 ); // replace the value
+        header.addBinary( RpmHeader.SIG_MD5, new byte[] { 1, 2, 3 } );
+        header.addString( RpmHeader.SIG_SHA1, "abc" );
+        Map<Integer, Object> values = read( ByteBuffer.wrap( header.toByteArray( RpmHeader.HEADERSIGNATURES ) ), RpmHeader.HEADERSIGNATURES );
+        assertEquals( 3, values.size() );
+        assertArrayEquals( new int[] { 2 }, (int[])values.get( RpmHeader.SIG_SIZE ) );
+        assertArrayEquals( new byte[] { 1, 2, 3 }, (byte[])values.get( RpmHeader.SIG_MD5 ) );
+        assertEquals( "abc", values.get( RpmHeader.SIG_SHA1 ) );
+    }
+
+    @Test
+    public void emptyHeader() {
+        byte[] data = new RpmHeader().toByteArray( RpmHeader.HEADERSIGNATURES );
+        assertEquals( 16 + 16 + 16, data.length );
+        assertEquals( 0, read( ByteBuffer.wrap( data ), RpmHeader.HEADERSIGNATURES ).size() );
+    }
+}
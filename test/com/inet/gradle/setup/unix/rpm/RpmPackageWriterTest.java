@@ -0,0 +1,232 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.unix.rpm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Write a package from a directory and parse the lead, the headers and the payload again.
+ *
+ * @author Volker Berlin
+ */
+public class RpmPackageWriterTest {
+
+    private File    dir;
+
+    private File    root;
+
+    private boolean posix;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "rpm" ).toFile();
+        root = new File( dir, "root" );
+        posix = FileSystems.getDefault().supportedFileAttributeViews().contains( "posix" );
+
+        Path bin = Files.createDirectories( root.toPath().resolve( "opt/app/bin" ) );
+        Path script = Files.write( bin.resolve( "run.sh" ), "#!/bin/sh\necho run\n".getBytes( StandardCharsets.UTF_8 ) );
+        byte[] data = new byte[200_000];
+        new Random( 7 ).nextBytes( data );
+        Files.write( Files.createDirectories( root.toPath().resolve( "opt/app/lib" ) ).resolve( "data.bin" ), data );
+        Files.write( Files.createDirectories( root.toPath().resolve( "usr/share/applications" ) ).resolve( "app.desktop" ), "[Desktop Entry]\n".getBytes( StandardCharsets.UTF_8 ) );
+        if( posix ) {
+            Files.setPosixFilePermissions( script, PosixFilePermissions.fromString( "rwxr-xr-x" ) );
+            Files.createSymbolicLink( root.toPath().resolve( "opt/app/link" ), Paths.get( "bin/run.sh" ) );
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Calculate a digest as lower case hex string.
+     *
+     * @param algorithm the algorithm
+     * @param data the data
+     * @return the hex string
+     * @throws Exception if the algorithm is not available
+     */
+    private static String hex( String algorithm, byte[] data ) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for( byte b : MessageDigest.getInstance( algorithm ).digest( data ) ) {
+            hex.append( String.format( "%02x", b & 0xFF ) );
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Read the entries of an uncompressed cpio archive in the new ASCII format.
+     *
+     * @param cpio the archive
+     * @return the content by name, the mode is the first entry of every value: [mode, content]
+     */
+    private static Map<String, Object[]> readCpio( byte[] cpio ) {
+        Map<String, Object[]> entries = new LinkedHashMap<>();
+        int pos = 0;
+        while( true ) {
+            String header = new String( cpio, pos, 110, StandardCharsets.US_ASCII );
+            assertEquals( "070701", header.substring( 0, 6 ) );
+            int mode = Integer.parseInt( header.substring( 14, 22 ), 16 );
+            int size = (int)Long.parseLong( header.substring( 54, 62 ), 16 );
+            int nameSize = Integer.parseInt( header.substring( 94, 102 ), 16 );
+            String name = new String( cpio, pos + 110, nameSize - 1, StandardCharsets.UTF_8 );
+            assertEquals( 0, cpio[pos + 110 + nameSize - 1] );
+            pos = (pos + 110 + nameSize + 3) & ~3;
+            if( name.equals( "TRAILER!!!" ) ) {
+                assertEquals( "archive size", cpio.length, pos );
+                return entries;
+            }
+            entries.put( name, new Object[] { mode, Arrays.copyOfRange( cpio, pos, pos + size ) } );
+            pos = (pos + size + 3) & ~3;
+        }
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void writePackage() throws Exception {
+        File rpmFile = new File( dir, "out/app-1.0-1.noarch.rpm" );
+        List<String> duplicates;
+        try( RpmPackageWriter writer = new RpmPackageWriter( rpmFile, new File( dir, "tmp" ), 6, 2, "/opt/app", true ) ) {
+            writer.addDirectory( root );
+            writer.addDirectory( root );
+            writer.addRequirement( "bash", 0, "" );
+            RpmHeader header = new RpmHeader();
+            header.addString( RpmHeader.NAME, "app" );
+            writer.finish( header, "app-1.0-1" );
+            duplicates = writer.getDuplicates();
+        }
+        assertFalse( "temporary payload is removed", new File( dir, "tmp/payload.cpio.gz" ).exists() );
+
+        // the lead
+        ByteBuffer rpm = ByteBuffer.wrap( Files.readAllBytes( rpmFile.toPath() ) );
+        assertEquals( 0xedabeedb, rpm.getInt( 0 ) );
+        assertEquals( "app-1.0-1", new String( rpm.array(), 10, 9, StandardCharsets.UTF_8 ) );
+        assertEquals( "header style signature", 5, rpm.getShort( 78 ) );
+
+        // the signature
+        rpm.position( 96 );
+        Map<Integer, Object> signature = RpmHeaderTest.read( rpm, RpmHeader.HEADERSIGNATURES );
+        int mainStart = (rpm.position() + 7) & ~7; // the main header is aligned to 8 bytes
+        while( rpm.position() < mainStart ) {
+            assertEquals( "padding", 0, rpm.get() );
+        }
+        Map<Integer, Object> main = RpmHeaderTest.read( rpm, RpmHeader.HEADERIMMUTABLE );
+        byte[] mainBytes = Arrays.copyOfRange( rpm.array(), mainStart, rpm.position() );
+        byte[] payload = Arrays.copyOfRange( rpm.array(), rpm.position(), rpm.limit() );
+        byte[] mainAndPayload = Arrays.copyOfRange( rpm.array(), mainStart, rpm.limit() );
+
+        assertArrayEquals( new int[] { mainAndPayload.length }, (int[])signature.get( RpmHeader.SIG_SIZE ) );
+        assertArrayEquals( MessageDigest.getInstance( "MD5" ).digest( mainAndPayload ), (byte[])signature.get( RpmHeader.SIG_MD5 ) );
+        assertEquals( hex( "SHA-1", mainBytes ), signature.get( RpmHeader.SIG_SHA1 ) );
+        assertEquals( hex( "SHA-256", mainBytes ), signature.get( RpmHeader.SIG_SHA256 ) );
+        assertEquals( Arrays.asList( hex( "SHA-256", payload ) ), main.get( RpmHeader.PAYLOADDIGEST ) );
+        assertEquals( "app", main.get( RpmHeader.NAME ) );
+        assertEquals( "gzip", main.get( RpmHeader.PAYLOADCOMPRESSOR ) );
+        assertTrue( ((List<?>)main.get( RpmHeader.REQUIRENAME )).contains( "bash" ) );
+        assertTrue( ((List<?>)main.get( RpmHeader.REQUIRENAME )).contains( "rpmlib(FileDigests)" ) );
+
+        // the payload
+        ByteArrayOutputStream cpio = new ByteArrayOutputStream();
+        try( InputStream input = new GZIPInputStream( new ByteArrayInputStream( payload ) ) ) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while( (count = input.read( buffer )) > 0 ) {
+                cpio.write( buffer, 0, count );
+            }
+        }
+        assertArrayEquals( new int[] { cpio.size() }, (int[])signature.get( RpmHeader.SIG_PAYLOADSIZE ) );
+        Map<String, Object[]> entries = readCpio( cpio.toByteArray() );
+
+        // the file list of the header
+        List<String> dirNames = (List<String>)main.get( RpmHeader.DIRNAMES );
+        List<String> baseNames = (List<String>)main.get( RpmHeader.BASENAMES );
+        int[] dirIndexes = (int[])main.get( RpmHeader.DIRINDEXES );
+        List<String> paths = new ArrayList<>();
+        for( int i = 0; i < baseNames.size(); i++ ) {
+            paths.add( dirNames.get( dirIndexes[i] ) + baseNames.get( i ) );
+        }
+        List<String> expected = new ArrayList<>( Arrays.asList( "/opt/app", "/opt/app/bin", "/opt/app/bin/run.sh", "/opt/app/lib", "/opt/app/lib/data.bin", "/usr/share/applications/app.desktop" ) );
+        if( posix ) {
+            expected.add( 5, "/opt/app/link" );
+        }
+        assertEquals( expected, paths );
+        assertEquals( paths.size(), entries.size() );
+
+        int[] sizes = (int[])main.get( RpmHeader.FILESIZES );
+        short[] modes = (short[])main.get( RpmHeader.FILEMODES );
+        List<String> digests = (List<String>)main.get( RpmHeader.FILEDIGESTS );
+        List<String> linkTos = (List<String>)main.get( RpmHeader.FILELINKTOS );
+        for( int i = 0; i < paths.size(); i++ ) {
+            Object[] entry = entries.get( '.' + paths.get( i ) );
+            byte[] content = (byte[])entry[1];
+            assertEquals( paths.get( i ), modes[i] & 0xFFFF, entry[0] );
+            switch( (modes[i] & 0170000) ) {
+                case 0100000:
+                    assertEquals( content.length, sizes[i] );
+                    assertEquals( hex( "SHA-256", content ), digests.get( i ) );
+                    Path source = root.toPath().resolve( paths.get( i ).substring( 1 ) );
+                    assertArrayEquals( Files.readAllBytes( source ), content );
+                    break;
+                case 0120000:
+                    assertEquals( "bin/run.sh", linkTos.get( i ) );
+                    assertEquals( "bin/run.sh", new String( content, StandardCharsets.UTF_8 ) );
+                    break;
+                case 040000:
+                    assertEquals( 0, content.length );
+                    break;
+                default:
+                    throw new AssertionError( "unexpected mode " + modes[i] );
+            }
+        }
+        if( posix ) {
+            assertEquals( "executable", 0100755, modes[paths.indexOf( "/opt/app/bin/run.sh" )] & 0xFFFF );
+            assertEquals( 0100644, modes[paths.indexOf( "/opt/app/lib/data.bin" )] & 0xFFFF );
+        }
+
+        // the second call adds only duplicates, directories are ignored
+        assertEquals( paths.size() - 3, duplicates.size() );
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the commit of new entries, the locks and the LRU eviction of the cache.
+ *
+ * @author Volker Berlin
+ */
+public class ContentCacheTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "cache" ).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Add an entry with the given content and last access time.
+     *
+     * @param cache the cache
+     * @param key the key
+     * @param size the size of the content
+     * @param lastModified the last access time
+     * @return the committed file
+     * @throws IOException if an I/O error occurs
+     */
+    private static File add( ContentCache cache, String key, int size, long lastModified ) throws IOException {
+        File temp = cache.createFile( key );
+        Files.write( temp.toPath(), new byte[size] );
+        File file = cache.commit( key, temp );
+        assertTrue( file.setLastModified( lastModified ) );
+        return file;
+    }
+
+    @Test
+    public void key() throws IOException {
+        byte[] content = "content".getBytes( StandardCharsets.UTF_8 );
+        String key = ContentCache.key( new ByteArrayInputStream( content ), "/opt/app/file", 0644 );
+        assertEquals( 64, key.length() );
+        assertEquals( key, ContentCache.key( new ByteArrayInputStream( content ), "/opt/app/file", 0644 ) );
+        assertNotEquals( "other mode", key, ContentCache.key( new ByteArrayInputStream( content ), "/opt/app/file", 0755 ) );
+        assertNotEquals( "values are separated", ContentCache.key( new ByteArrayInputStream( content ), "ab", "c" ), ContentCache.key( new ByteArrayInputStream( content ), "a", "bc" ) );
+    }
+
+    @Test
+    public void interruptedWrite() throws IOException {
+        ContentCache cache = new ContentCache( dir, Long.MAX_VALUE );
+        File aborted = cache.createFile( "key" );
+        try( OutputStream out = new FileOutputStream( aborted ) ) {
+            out.write( "partial".getBytes( StandardCharsets.UTF_8 ) );
+            // the build is interrupted before the commit
+        }
+        assertNull( "not committed data is not visible", cache.get( "key" ) );
+        assertEquals( 1, cache.getMisses() );
+
+        File temp = cache.createFile( "key" );
+        assertNotEquals( "every writer has its own file", aborted, temp );
+        Files.write( temp.toPath(), "complete".getBytes( StandardCharsets.UTF_8 ) );
+        File file = cache.commit( "key", temp );
+        assertFalse( temp.exists() );
+        assertEquals( file, cache.get( "key" ) );
+        assertEquals( 1, cache.getHits() );
+
+        // a parallel build commits the same key, the first commit wins
+        File other = cache.createFile( "key" );
+        Files.write( other.toPath(), "complete".getBytes( StandardCharsets.UTF_8 ) );
+        assertEquals( file, cache.commit( "key", other ) );
+        assertFalse( "the second temporary file is removed", other.exists() );
+        assertArrayEquals( "complete".getBytes( StandardCharsets.UTF_8 ), Files.readAllBytes( file.toPath() ) );
+
+        // the left over of the interrupted build is removed if it is old enough
+        cache.evict();
+        assertTrue( "a current temporary file can be from a running build", aborted.exists() );
+        assertTrue( aborted.setLastModified( System.currentTimeMillis() - TimeUnit.DAYS.toMillis( 2 ) ) );
+        cache.evict();
+        assertFalse( aborted.exists() );
+        assertNotNull( cache.get( "key" ) );
+    }
+
+    @Test
+    public void directory() throws IOException {
+        ContentCache cache = new ContentCache( dir, Long.MAX_VALUE );
+        File temp = cache.createDirectory( "jre" );
+        Files.write( Files.createDirectories( temp.toPath().resolve( "bin" ) ).resolve( "java" ), new byte[10] );
+        File entry = cache.commit( "jre", temp );
+        assertTrue( new File( entry, "bin/java" ).isFile() );
+        assertEquals( entry, cache.get( "jre" ) );
+    }
+
+    @Test
+    public void eviction() throws IOException {
+        ContentCache cache = new ContentCache( dir, 250 );
+        long now = System.currentTimeMillis();
+        File oldest = add( cache, "a", 100, now - 30_000 );
+        File older = add( cache, "b", 100, now - 20_000 );
+        File newer = add( cache, "c", 100, now - 10_000 );
+        File jre = cache.createDirectory( "d" );
+        Files.write( jre.toPath().resolve( "file" ), new byte[40] );
+        jre = cache.commit( "d", jre );
+        assertTrue( jre.setLastModified( now - 5_000 ) );
+
+        assertNotNull( "the access updates the time", cache.get( "a" ) );
+        cache.evict();
+        assertTrue( oldest.exists() );
+        assertFalse( "the least recently used entry is removed", older.exists() );
+        assertTrue( newer.exists() );
+        assertTrue( "the size of a directory is the size of its files", jre.exists() );
+        assertTrue( "the lock file is not evicted", new File( dir, ".lock" ).exists() );
+
+        new ContentCache( dir, 0 ).evict();
+        assertEquals( "only the lock file and the temp directory", 2, dir.list().length );
+    }
+
+    @Test
+    public void noEvictionWhileShared() throws Exception {
+        ContentCache cache = new ContentCache( dir, 0 );
+        File file = add( cache, "a", 100, System.currentTimeMillis() );
+        CountDownLatch locked = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+        Thread reader = new Thread( () -> {
+            try( Closeable lock = new ContentCache( dir, 0 ).lockShared() ) {
+                locked.countDown();
+                release.await();
+            } catch( Exception ex ) {
+                throw new IllegalStateException( ex );
+            }
+        } );
+        reader.start();
+        try {
+            assertTrue( locked.await( 10, TimeUnit.SECONDS ) );
+
+            // a second shared lock of another thread does not wait
+            try( Closeable lock = cache.lockShared() ) {
+                assertNotNull( cache.get( "a" ) );
+            }
+
+            cache.evict();
+            assertTrue( "the eviction is skipped while another build reads", file.exists() );
+        } finally {
+            release.countDown();
+            reader.join();
+        }
+        cache.evict();
+        assertFalse( file.exists() );
+    }
+
+    @Test
+    public void commitMissingFile() throws IOException {
+        ContentCache cache = new ContentCache( dir, Long.MAX_VALUE );
+        try {
+            cache.commit( "key", new File( dir, "missing" ) );
+            fail( "exception expected" );
+        } catch( IOException ex ) {
+            assertNull( cache.get( "key" ) );
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+/**
+ * Compress data with multiple threads and read the gzip members back.
+ *
+ * @author Volker Berlin
+ */
+public class ParallelGZIPOutputStreamTest {
+
+    private static final int MB = 1024 * 1024;
+
+    /**
+     * Create test data that is partly compressible.
+     *
+     * @param size the size
+     * @param seed the seed of the random part
+     * @return the data
+     */
+    private static byte[] createData( int size, long seed ) {
+        byte[] data = new byte[size];
+        Random random = new Random( seed );
+        for( int i = 0; i < size; i++ ) {
+            data[i] = (byte)(i % 3 == 0 ? random.nextInt() : 'a' + i % 7);
+        }
+        return data;
+    }
+
+    /**
+     * Decompress all members with GZIPInputStream like gzip, dpkg and rpm do it.
+     *
+     * @param data the compressed data
+     * @return the uncompressed data
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] gunzip( byte[] data ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try( InputStream input = new GZIPInputStream( new ByteArrayInputStream( data ) ) ) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while( (count = input.read( buffer )) > 0 ) {
+                out.write( buffer, 0, count );
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Split the data into its gzip members and check the header and the trailer of every member.
+     *
+     * @param data the compressed data
+     * @return the uncompressed content of every member
+     * @throws DataFormatException if a member is invalid
+     */
+    private static List<byte[]> readMembers( byte[] data ) throws DataFormatException {
+        List<byte[]> members = new ArrayList<>();
+        int pos = 0;
+        while( pos < data.length ) {
+            assertEquals( "magic", 0x1f, data[pos] & 0xFF );
+            assertEquals( "magic", 0x8b, data[pos + 1] & 0xFF );
+            assertEquals( "deflate", 8, data[pos + 2] );
+            assertEquals( "no flags", 0, data[pos + 3] );
+            Inflater inflater = new Inflater( true );
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try {
+                inflater.setInput( data, pos + 10, data.length - pos - 10 );
+                byte[] buffer = new byte[64 * 1024];
+                while( !inflater.finished() ) {
+                    int count = inflater.inflate( buffer );
+                    assertTrue( "truncated member", count > 0 || !inflater.needsInput() );
+                    content.write( buffer, 0, count );
+                }
+                pos = data.length - inflater.getRemaining();
+            } finally {
+                inflater.end();
+            }
+            ByteBuffer trailer = ByteBuffer.wrap( data, pos, 8 ).order( ByteOrder.LITTLE_ENDIAN );
+            CRC32 crc = new CRC32();
+            crc.update( content.toByteArray() );
+            assertEquals( "crc", (int)crc.getValue(), trailer.getInt() );
+            assertEquals( "size", content.size(), trailer.getInt() );
+            pos += 8;
+            members.add( content.toByteArray() );
+        }
+        return members;
+    }
+
+    /**
+     * Compress the data with the stream.
+     *
+     * @param data the data
+     * @param threads the count of threads
+     * @return the compressed data
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] compress( byte[] data, int threads ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try( ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream( out, 6, threads ) ) {
+            // different write sizes that do not match the block size
+            int pos = 0;
+            int step = 1;
+            while( pos < data.length ) {
+                int size = Math.min( step, data.length - pos );
+                if( size == 1 ) {
+                    gzip.write( data[pos] );
+                } else {
+                    gzip.write( data, pos, size );
+                }
+                pos += size;
+                step = step * 7 + 1;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void multiMember() throws Exception {
+        byte[] data = createData( 3 * MB + MB / 2, 1 );
+        for( int threads : new int[] { 1, 4 } ) {
+            byte[] compressed = compress( data, threads );
+            assertArrayEquals( "threads: " + threads, data, gunzip( compressed ) );
+            assertTrue( "compressed", compressed.length < data.length );
+
+            List<byte[]> members = readMembers( compressed );
+            assertEquals( 4, members.size() );
+            for( int i = 0; i < members.size(); i++ ) {
+                byte[] expected = Arrays.copyOfRange( data, i * MB, Math.min( data.length, (i + 1) * MB ) );
+                assertArrayEquals( "member boundary at the block size", expected, members.get( i ) );
+            }
+        }
+    }
+
+    @Test
+    public void emptyStream() throws Exception {
+        byte[] compressed = compress( new byte[0], 2 );
+        assertEquals( "a single empty member", 1, readMembers( compressed ).size() );
+        assertEquals( 0, gunzip( compressed ).length );
+    }
+
+    @Test
+    public void finishMember() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try( ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream( out, 9, 2 ) ) {
+            gzip.write( "abc".getBytes( StandardCharsets.US_ASCII ) );
+            gzip.finishMember();
+            gzip.finishMember(); // no empty member
+            gzip.write( "def".getBytes( StandardCharsets.US_ASCII ) );
+        }
+        List<byte[]> members = readMembers( out.toByteArray() );
+        assertEquals( 2, members.size() );
+        assertEquals( "abc", new String( members.get( 0 ), StandardCharsets.US_ASCII ) );
+        assertEquals( "def", new String( members.get( 1 ), StandardCharsets.US_ASCII ) );
+    }
+
+    @Test
+    public void captureAndReplay() throws Exception {
+        byte[] head = createData( 1000, 2 );
+        byte[] captured = createData( 2 * MB + 100, 3 );
+        byte[] tail = createData( 5000, 4 );
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream capture = new ByteArrayOutputStream();
+        try( ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream( first, 6, 3 ) ) {
+            gzip.write( head );
+            gzip.startCapture( capture );
+            gzip.write( captured );
+            gzip.endCapture();
+            gzip.write( tail );
+        }
+        assertArrayEquals( "the capture is a valid gzip stream", captured, gunzip( capture.toByteArray() ) );
+        assertEquals( 3, readMembers( capture.toByteArray() ).size() );
+
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        try( ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream( second, 6, 3 ) ) {
+            gzip.write( head );
+            gzip.writeMembers( new ByteArrayInputStream( capture.toByteArray() ) );
+            gzip.write( tail );
+        }
+        assertArrayEquals( "the replay produce the same members", first.toByteArray(), second.toByteArray() );
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write( head );
+        expected.write( captured );
+        expected.write( tail );
+        assertArrayEquals( expected.toByteArray(), gunzip( second.toByteArray() ) );
+    }
+}
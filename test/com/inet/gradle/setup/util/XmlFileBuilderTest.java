@@ -0,0 +1,336 @@
+/*
+ * Copyright 2026 i-net software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.inet.gradle.setup.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+import com.inet.gradle.setup.abstracts.AbstractSetupTask;
+
+/**
+ * Compare the indexed lookups of the XmlFileBuilder with a scan of the children like it was done before the index and
+ * the streaming save with the save of the transformer.
+ *
+ * @author Volker Berlin
+ */
+public class XmlFileBuilderTest {
+
+    private static final String[] NAMES  = { "Component", "Directory", "File", "Property" };
+
+    private static final String[] KEYS   = { "Id", "Name" };
+
+    private static final String[] VALUES = { "a", "b", "c", "d", "e" };
+
+    private File                  dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "xml" ).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk( dir.toPath() ).sorted( ( a, b ) -> b.compareTo( a ) ).forEach( path -> path.toFile().delete() );
+    }
+
+    /**
+     * Create a builder without a task and template.
+     *
+     * @return the builder
+     * @throws Exception if any error occur
+     */
+    private XmlFileBuilder<AbstractSetupTask> createBuilder() throws Exception {
+        XmlFileBuilder<AbstractSetupTask> builder = new XmlFileBuilder<>( null, null, new File( dir, "test.xml" ), dir, null );
+        builder.doc.appendChild( builder.doc.createElement( "Wix" ) );
+        return builder;
+    }
+
+    /**
+     * Parse a saved XML file. CDATA sections are converted to text and whitespace between elements is removed because
+     * the indentation of the writers differ.
+     *
+     * @param file the file
+     * @return the document
+     * @throws Exception if any error occur
+     */
+    private static Document parse( File file ) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setCoalescing( true );
+        Document doc = factory.newDocumentBuilder().parse( file );
+        removeWhitespace( doc );
+        doc.normalizeDocument();
+        return doc;
+    }
+
+    /**
+     * Remove the whitespace only text nodes of elements with child elements.
+     *
+     * @param node the node
+     */
+    private static void removeWhitespace( Node node ) {
+        boolean hasElements = false;
+        for( Node child = node.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            hasElements |= child.getNodeType() != Node.TEXT_NODE;
+        }
+        for( Node child = node.getFirstChild(); child != null; ) {
+            Node next = child.getNextSibling();
+            if( child.getNodeType() == Node.TEXT_NODE ) {
+                if( hasElements && child.getNodeValue().trim().isEmpty() ) {
+                    node.removeChild( child );
+                }
+            } else {
+                removeWhitespace( child );
+            }
+            child = next;
+        }
+    }
+
+    /**
+     * Find a child with a scan of all children.
+     *
+     * @param parent the parent node
+     * @param name the tag name
+     * @param key the name of the attribute or null to find by name only
+     * @param value the value or null for elements without the attribute
+     * @return the first matching child or null
+     */
+    private static Element scan( Node parent, String name, String key, String value ) {
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( name.equals( child.getNodeName() ) ) {
+                Element element = (Element)child;
+                if( key == null || Objects.equals( value, element.getAttribute( key ) ) || (value == null && !element.hasAttribute( key )) ) {
+                    return element;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Create a child element like the builder.
+     *
+     * @param parent the parent node
+     * @param name the tag name
+     * @param key the name of the attribute or null
+     * @param value the value or null
+     * @param append true, append at end of the children; false, add at top of the children
+     * @return the new element
+     */
+    private static Element create( Node parent, String name, String key, String value, boolean append ) {
+        Element child = parent.getOwnerDocument().createElement( name );
+        if( key != null && value != null ) {
+            child.setAttribute( key, value );
+        }
+        if( append || parent.getFirstChild() == null ) {
+            parent.appendChild( child );
+        } else {
+            parent.insertBefore( child, parent.getFirstChild() );
+        }
+        return child;
+    }
+
+    /**
+     * The position of an element in the document as list of child indexes.
+     *
+     * @param element the element or null
+     * @return the path
+     */
+    private static String path( Node element ) {
+        if( element == null ) {
+            return null;
+        }
+        StringBuilder path = new StringBuilder();
+        for( Node node = element; node.getParentNode() != null; node = node.getParentNode() ) {
+            int idx = 0;
+            for( Node sibling = node.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling() ) {
+                idx++;
+            }
+            path.insert( 0, "/" + idx );
+        }
+        return path.toString();
+    }
+
+    @Test
+    public void sameTreeAsScan() throws Exception {
+        for( long seed = 0; seed < 20; seed++ ) {
+            Random random = new Random( seed );
+            XmlFileBuilder<AbstractSetupTask> builder = createBuilder();
+            Document expected = createBuilder().doc;
+            List<Element> parents = new ArrayList<>();
+            List<Element> expectedParents = new ArrayList<>();
+            parents.add( builder.doc.getDocumentElement() );
+            expectedParents.add( expected.getDocumentElement() );
+
+            for( int i = 0; i < 2000; i++ ) {
+                int p = random.nextInt( parents.size() );
+                Element parent = parents.get( p );
+                Element expectedParent = expectedParents.get( p );
+                String name = NAMES[random.nextInt( NAMES.length )];
+                String key = KEYS[random.nextInt( KEYS.length )];
+                String value = random.nextInt( 10 ) == 0 ? null : VALUES[random.nextInt( VALUES.length )];
+                boolean append = random.nextInt( 4 ) != 0;
+                Element actual;
+                Element reference;
+                switch( random.nextInt( 6 ) ) {
+                    case 0:
+                        actual = builder.getOrCreateChild( parent, name, append );
+                        reference = scan( expectedParent, name, null, null );
+                        if( reference == null ) {
+                            reference = create( expectedParent, name, null, null, append );
+                        }
+                        break;
+                    case 1:
+                        actual = builder.getOrCreateChildById( parent, name, value, append );
+                        reference = scan( expectedParent, name, "Id", value );
+                        if( reference == null ) {
+                            reference = create( expectedParent, name, "Id", value, append );
+                        }
+                        break;
+                    case 2:
+                        actual = builder.getOrCreateChildByKeyValue( parent, name, key, value, append );
+                        reference = scan( expectedParent, name, key, value );
+                        if( reference == null ) {
+                            reference = create( expectedParent, name, key, value, append );
+                        }
+                        break;
+                    case 3:
+                        if( value == null ) {
+                            value = "a";
+                        }
+                        actual = builder.getChildByKeyValue( parent, name, key, value );
+                        reference = scan( expectedParent, name, key, value );
+                        break;
+                    case 4:
+                        // a new child that get its key attribute from the caller
+                        actual = builder.createChild( parent, name, append );
+                        reference = create( expectedParent, name, null, null, append );
+                        if( value != null ) {
+                            actual.setAttribute( key, value );
+                            reference.setAttribute( key, value );
+                        }
+                        break;
+                    default:
+                        // other attributes are set by the caller after the lookup
+                        actual = builder.getOrCreateChildById( parent, name, value, append );
+                        reference = scan( expectedParent, name, "Id", value );
+                        if( reference == null ) {
+                            reference = create( expectedParent, name, "Id", value, append );
+                        }
+                        actual.setAttribute( "Source", "s" + i );
+                        reference.setAttribute( "Source", "s" + i );
+                }
+                assertEquals( "seed " + seed + ", step " + i, path( reference ), path( actual ) );
+                if( actual != null && parents.size() < 50 && random.nextInt( 5 ) == 0 ) {
+                    parents.add( actual );
+                    expectedParents.add( reference );
+                }
+            }
+            assertTrue( "seed " + seed, expected.isEqualNode( builder.doc ) );
+        }
+    }
+
+    @Test
+    public void emptyValue() throws Exception {
+        XmlFileBuilder<AbstractSetupTask> builder = createBuilder();
+        Element root = builder.doc.getDocumentElement();
+        Element withoutKey = builder.getOrCreateChild( root, "Property" );
+        assertSame( "an empty value match an element without the attribute", withoutKey, builder.getOrCreateChildByKeyValue( root, "Property", "Id", "" ) );
+        assertSame( "null match an element without the attribute", withoutKey, builder.getOrCreateChildById( root, "Property", null ) );
+        Element created = builder.getOrCreateChildById( root, "Property", "x" );
+        assertSame( created, builder.getChildByKeyValue( root, "Property", "Id", "x" ) );
+        assertSame( "lookup by name only", withoutKey, builder.getChildByKeyValue( root, "Property", null, null ) );
+        assertNull( builder.getChildByKeyValue( root, "Property", "Id", "y" ) );
+    }
+
+    @Test
+    public void externalChanges() throws Exception {
+        XmlFileBuilder<AbstractSetupTask> builder = createBuilder();
+        Element root = builder.doc.getDocumentElement();
+        Element first = builder.getOrCreateChildById( root, "File", "a" );
+        Element second = builder.getOrCreateChildById( root, "File", "b" );
+
+        // a moved element is found again at its new position
+        Element other = builder.getOrCreateChild( root, "Directory" );
+        other.appendChild( first );
+        assertSame( other, first.getParentNode() );
+        Element recreated = builder.getOrCreateChildById( root, "File", "a" );
+        assertTrue( recreated != first );
+        assertSame( recreated, root.getLastChild() );
+
+        // a removed element is not returned
+        root.removeChild( second );
+        assertNull( builder.getChildByKeyValue( root, "File", "Id", "b" ) );
+    }
+
+    @Test
+    public void saveStreamingAsSave() throws Exception {
+        File template = new File( dir, "template.xml" );
+        Files.write( template.toPath(), ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" //
+                        + "<Wix xmlns=\"http://schemas.microsoft.com/wix/2006/wi\">\n" //
+                        + "  <Product Id=\"*\" Name=\"Test &amp; &lt;App&gt; \u00e4\u00f6\u00fc \u20ac\" Version=\"1.0\">\n" //
+                        + "    <!-- comments of the template are ignored -->\n" //
+                        + "    <Property Id=\"EMPTY\"/>\n" //
+                        + "    <Condition Message=\"quote &quot; and apostrophe '\"><![CDATA[Installed OR VersionNT >= 601]]></Condition>\n" //
+                        + "    <CustomAction Id=\"script\"><![CDATA[if a < b then ]]]]><![CDATA[> end]]></CustomAction>\n" //
+                        + "    <?include other.wxi ?>\n" //
+                        + "    <Directory Id=\"TARGETDIR\" Name=\"SourceDir\">\n" //
+                        + "      <Directory Id=\"ProgramFilesFolder\"/>\n" //
+                        + "    </Directory>\n" //
+                        + "  </Product>\n" //
+                        + "</Wix>\n").getBytes( StandardCharsets.UTF_8 ) );
+        XmlFileBuilder<AbstractSetupTask> builder = new XmlFileBuilder<>( null, null, new File( dir, "save.xml" ), dir, template.toURI().toURL() );
+        Element product = builder.getOrCreateChild( builder.doc.getDocumentElement(), "Product" );
+        Element dirs = builder.getOrCreateChildById( product, "Directory", "TARGETDIR" );
+        Element installDir = builder.getOrCreateChildById( builder.getOrCreateChildById( dirs, "Directory", "ProgramFilesFolder" ), "Directory", "INSTALLDIR" );
+        installDir.setAttribute( "Name", "\u65e5\u672c\u8a9e" );
+        builder.addNodeText( builder.getOrCreateChildById( product, "Property", "TEXT" ), "text with  spaces\tand\nlines" );
+        builder.getOrCreateChildById( product, "Property", "FIRST", false );
+        product.appendChild( builder.doc.createComment( " added comment " ) );
+        ProcessingInstruction pi = builder.doc.createProcessingInstruction( "define", "Var=\"1\"" );
+        product.insertBefore( pi, product.getFirstChild() );
+
+        builder.save();
+        File streamed = new File( dir, "streamed.xml" );
+        builder.saveStreaming( streamed );
+
+        Document expected = parse( builder.xmlFile );
+        Document actual = parse( streamed );
+        assertTrue( expected.isEqualNode( actual ) );
+        assertEquals( "\u65e5\u672c\u8a9e", ((Element)actual.getElementsByTagName( "Directory" ).item( 2 )).getAttribute( "Name" ) );
+        assertEquals( "text only elements are not indented", "text with  spaces\tand\nlines", actual.getElementsByTagName( "Property" ).item( 2 ).getTextContent() );
+    }
+}